@@ -2,15 +2,20 @@ package fr.xephi.authme;
 
 import com.google.common.annotations.VisibleForTesting;
 import fr.xephi.authme.api.API;
+import fr.xephi.authme.api.AsyncAPI;
 import fr.xephi.authme.api.NewAPI;
 import fr.xephi.authme.cache.auth.PlayerAuth;
 import fr.xephi.authme.cache.auth.PlayerCache;
 import fr.xephi.authme.cache.backup.PlayerDataStorage;
 import fr.xephi.authme.cache.limbo.LimboCache;
 import fr.xephi.authme.command.CommandHandler;
+import fr.xephi.authme.datasource.AsyncDataSource;
 import fr.xephi.authme.datasource.CacheDataSource;
+import fr.xephi.authme.datasource.ChangeLogPoller;
 import fr.xephi.authme.datasource.DataSource;
 import fr.xephi.authme.datasource.DataSourceType;
+import fr.xephi.authme.datasource.EmbeddedDataSource;
+import fr.xephi.authme.datasource.InstrumentedDataSource;
 import fr.xephi.authme.datasource.FlatFile;
 import fr.xephi.authme.datasource.MySQL;
 import fr.xephi.authme.datasource.SQLite;
@@ -25,6 +30,11 @@ import fr.xephi.authme.listener.AuthMePlayerListener;
 import fr.xephi.authme.listener.AuthMePlayerListener16;
 import fr.xephi.authme.listener.AuthMePlayerListener18;
 import fr.xephi.authme.listener.AuthMeServerListener;
+import fr.xephi.authme.listener.ListenerService;
+import fr.xephi.authme.mail.SendMailSSL;
+import fr.xephi.authme.metrics.MetricsRegistry;
+import fr.xephi.authme.metrics.MetricsService;
+import fr.xephi.authme.metrics.SlowOperationWatchdog;
 import fr.xephi.authme.output.ConsoleFilter;
 import fr.xephi.authme.output.Log4JFilter;
 import fr.xephi.authme.output.MessageKey;
@@ -33,6 +43,7 @@ import fr.xephi.authme.permission.AuthGroupHandler;
 import fr.xephi.authme.permission.PermissionsManager;
 import fr.xephi.authme.permission.PermissionsSystemType;
 import fr.xephi.authme.process.Management;
+import fr.xephi.authme.process.ProcessExecutor;
 import fr.xephi.authme.security.PasswordSecurity;
 import fr.xephi.authme.security.crypts.SHA256;
 import fr.xephi.authme.settings.NewSetting;
@@ -70,6 +81,7 @@ import org.bukkit.scheduler.BukkitScheduler;
 import org.bukkit.scheduler.BukkitWorker;
 
 import java.io.File;
+import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -107,7 +119,10 @@ public class AuthMe extends JavaPlugin {
     private Messages messages;
     private PasswordSecurity passwordSecurity;
     private DataSource database;
+    private MetricsRegistry metricsRegistry;
+    private SlowOperationWatchdog watchdog;
     private PluginHooks pluginHooks;
+    private ListenerService listenerService;
     private SpawnLoader spawnLoader;
     private BukkitService bukkitService;
     private AuthMeServiceInitializer initializer;
@@ -212,6 +227,8 @@ public class AuthMe extends JavaPlugin {
         }
 
         // Connect to the database and setup tables
+        metricsRegistry = new MetricsRegistry();
+        watchdog = new SlowOperationWatchdog(metricsRegistry, newSettings);
         try {
             setupDatabase(newSettings);
         } catch (Exception e) {
@@ -236,6 +253,8 @@ public class AuthMe extends JavaPlugin {
         // Register elements we instantiate manually
         initializer.register(NewSetting.class, newSettings);
         initializer.register(DataSource.class, database);
+        initializer.register(MetricsRegistry.class, metricsRegistry);
+        initializer.register(SlowOperationWatchdog.class, watchdog);
 
         instantiateServices(initializer);
 
@@ -275,8 +294,9 @@ public class AuthMe extends JavaPlugin {
             ConsoleLogger.warning("Warning! This server uses PermissionsBukkit for permissions. Some permissions features may not be supported!");
         }
 
-        // Purge on start if enabled
+        // Continue an interrupted purge and purge on start if enabled
         PurgeService purgeService = initializer.get(PurgeService.class);
+        purgeService.resumeInterruptedPurge();
         purgeService.runAutoPurge();
     }
 
@@ -292,9 +312,12 @@ public class AuthMe extends JavaPlugin {
         spawnLoader = initializer.get(SpawnLoader.class);
         commandHandler = initializer.get(CommandHandler.class);
         management = initializer.get(Management.class);
+        listenerService = initializer.get(ListenerService.class);
         geoLiteApi = initializer.get(GeoLiteAPI.class);
         initializer.get(NewAPI.class);
+        initializer.get(AsyncAPI.class);
         initializer.get(API.class);
+        initializer.get(MetricsService.class);
     }
 
     /**
@@ -419,6 +442,24 @@ public class AuthMe extends JavaPlugin {
 
     @Override
     public void onDisable() {
+        // Stop accepting asynchronous API requests
+        AsyncAPI asyncApi = initializer.getIfAvailable(AsyncAPI.class);
+        if (asyncApi != null) {
+            asyncApi.close();
+        }
+
+        // Let the processes of players finish
+        ProcessExecutor processExecutor = initializer.getIfAvailable(ProcessExecutor.class);
+        if (processExecutor != null) {
+            processExecutor.close();
+        }
+
+        // Let the pending database operations finish
+        AsyncDataSource asyncDataSource = initializer.getIfAvailable(AsyncDataSource.class);
+        if (asyncDataSource != null) {
+            asyncDataSource.close();
+        }
+
         // Save player data
         BukkitService bukkitService = initializer.getIfAvailable(BukkitService.class);
         LimboCache limboCache = initializer.getIfAvailable(LimboCache.class);
@@ -431,6 +472,27 @@ public class AuthMe extends JavaPlugin {
             }
         }
 
+        // Write pending player data to disk
+        PlayerDataStorage playerDataStorage = initializer.getIfAvailable(PlayerDataStorage.class);
+        if (playerDataStorage != null) {
+            playerDataStorage.close();
+        }
+
+        // Stop the metrics endpoint and the slow operation watchdog
+        MetricsService metricsService = initializer.getIfAvailable(MetricsService.class);
+        if (metricsService != null) {
+            metricsService.close();
+        }
+        if (watchdog != null) {
+            watchdog.close();
+        }
+
+        // Save emails which have not been sent yet
+        SendMailSSL sendMailSsl = initializer.getIfAvailable(SendMailSSL.class);
+        if (sendMailSsl != null) {
+            sendMailSsl.close();
+        }
+
         // Do backup on stop if enabled
         if (newSettings != null) {
             new PerformBackup(this, newSettings).doBackup(PerformBackup.BackupCause.STOP);
@@ -507,34 +569,55 @@ public class AuthMe extends JavaPlugin {
      *
      * @throws ClassNotFoundException if no driver could be found for the datasource
      * @throws SQLException           when initialization of a SQL datasource failed
+     * @throws IOException            when the journal of the embedded datasource could not be opened
      * @see AuthMe#database
      */
-    public void setupDatabase(NewSetting settings) throws ClassNotFoundException, SQLException {
+    public void setupDatabase(NewSetting settings) throws ClassNotFoundException, SQLException, IOException {
         if (this.database != null) {
             this.database.close();
         }
 
         DataSourceType dataSourceType = settings.getProperty(DatabaseSettings.BACKEND);
         DataSource dataSource;
+        MySQL mySql = null;
         switch (dataSourceType) {
             case FILE:
                 dataSource = new FlatFile();
                 break;
             case MYSQL:
-                dataSource = new MySQL(settings);
+                mySql = new MySQL(settings);
+                if (metricsRegistry != null) {
+                    mySql.registerMetrics(metricsRegistry);
+                }
+                dataSource = mySql;
                 break;
             case SQLITE:
                 dataSource = new SQLite(settings);
                 break;
+            case EMBEDDED:
+                dataSource = new EmbeddedDataSource(settings);
+                break;
             default:
                 throw new UnsupportedOperationException("Unknown data source type '" + dataSourceType + "'");
         }
 
         DataSource convertedSource = MigrationService.convertFlatfileToSqlite(newSettings, dataSource);
         dataSource = convertedSource == null ? dataSource : convertedSource;
+        if (metricsRegistry != null) {
+            dataSource = InstrumentedDataSource.wrap(dataSource, metricsRegistry, watchdog);
+        }
 
         if (newSettings.getProperty(DatabaseSettings.USE_CACHING)) {
-            dataSource = new CacheDataSource(dataSource);
+            CacheDataSource cacheDataSource = new CacheDataSource(dataSource, newSettings);
+            if (mySql != null && newSettings.getProperty(DatabaseSettings.MYSQL_CHANGE_LOG)) {
+                // Keep the cache up to date with the changes made by other servers
+                long interval = newSettings.getProperty(DatabaseSettings.MYSQL_CHANGE_LOG_INTERVAL)
+                    * BukkitService.TICKS_PER_SECOND;
+                getServer().getScheduler().runTaskTimerAsynchronously(this,
+                    new ChangeLogPoller(mySql, cacheDataSource), interval, interval);
+                cacheDataSource.trackExternalWrites();
+            }
+            dataSource = cacheDataSource;
         }
 
         database = dataSource;
@@ -545,7 +628,7 @@ public class AuthMe extends JavaPlugin {
                     int accounts = database.getAccountsRegistered();
                     if (accounts >= 4000) {
                         ConsoleLogger.warning("YOU'RE USING THE SQLITE DATABASE WITH "
-                            + accounts + "+ ACCOUNTS; FOR BETTER PERFORMANCE, PLEASE UPGRADE TO MYSQL!!");
+                            + accounts + "+ ACCOUNTS; FOR BETTER PERFORMANCE, PLEASE UPGRADE TO MYSQL OR EMBEDDED!!");
                     }
                 }
             });
@@ -707,4 +790,14 @@ public class AuthMe extends JavaPlugin {
     public PluginHooks getPluginHooks() {
         return pluginHooks;
     }
+
+    /**
+     * @return listener service
+     *
+     * @deprecated should be used in API classes only (temporarily)
+     */
+    @Deprecated
+    public ListenerService getListenerService() {
+        return listenerService;
+    }
 }
@@ -1,16 +1,14 @@
 package fr.xephi.authme;
 
 import com.google.common.base.Throwables;
+import fr.xephi.authme.output.AsyncLogFileAppender;
 import fr.xephi.authme.settings.NewSetting;
 import fr.xephi.authme.settings.properties.SecuritySettings;
 import fr.xephi.authme.util.StringUtils;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 /**
@@ -18,12 +16,12 @@ import java.util.logging.Logger;
  */
 public final class ConsoleLogger {
 
-    private static final String NEW_LINE = System.getProperty("line.separator");
-    private static final DateFormat DATE_FORMAT = new SimpleDateFormat("[MM-dd HH:mm:ss]");
     private static Logger logger;
     private static boolean useLogging = false;
     private static File logFile;
-    private static FileWriter fileWriter;
+    private static volatile AsyncLogFileAppender fileAppender;
+    /** Number of messages discarded by the log file appenders which have been closed. */
+    private static final AtomicLong closedAppenderDrops = new AtomicLong();
 
     private ConsoleLogger() {
     }
@@ -37,17 +35,17 @@ public final class ConsoleLogger {
     }
 
     public static void setLoggingOptions(NewSetting settings) {
+        // Close the current appender so that changed settings are taken over
+        close();
         ConsoleLogger.useLogging = settings.getProperty(SecuritySettings.USE_LOGGING);
         if (useLogging) {
-            if (fileWriter == null) {
-                try {
-                    fileWriter = new FileWriter(logFile, true);
-                } catch (IOException e) {
-                    ConsoleLogger.logException("Failed to create the log file:", e);
-                }
+            AsyncLogFileAppender appender = new AsyncLogFileAppender(logFile, settings);
+            try {
+                appender.start();
+                fileAppender = appender;
+            } catch (IOException e) {
+                ConsoleLogger.logException("Failed to create the log file:", e);
             }
-        } else {
-            close();
         }
     }
 
@@ -77,22 +75,14 @@ public final class ConsoleLogger {
     }
 
     /**
-     * Write a message into the log file with a TimeStamp.
+     * Queue a message to be written into the log file with a TimeStamp.
      *
      * @param message String
      */
     private static void writeLog(String message) {
-        String dateTime;
-        synchronized (DATE_FORMAT) {
-            dateTime = DATE_FORMAT.format(new Date());
-        }
-        try {
-            fileWriter.write(dateTime);
-            fileWriter.write(": ");
-            fileWriter.write(message);
-            fileWriter.write(NEW_LINE);
-            fileWriter.flush();
-        } catch (IOException ignored) {
+        AsyncLogFileAppender appender = fileAppender;
+        if (appender != null) {
+            appender.append(message);
         }
     }
 
@@ -109,14 +99,25 @@ public final class ConsoleLogger {
         }
     }
 
+    /**
+     * Returns the number of messages which were not written to the log file because its queue was full.
+     *
+     * @return the number of discarded log messages since the start
+     */
+    public static long getDroppedLogMessages() {
+        AsyncLogFileAppender appender = fileAppender;
+        return closedAppenderDrops.get() + (appender == null ? 0 : appender.getDroppedMessages());
+    }
+
+    /**
+     * Write all pending messages to the log file and close it.
+     */
     public static void close() {
-        if (fileWriter != null) {
-            try {
-                fileWriter.flush();
-                fileWriter.close();
-                fileWriter = null;
-            } catch (IOException ignored) {
-            }
+        AsyncLogFileAppender appender = fileAppender;
+        if (appender != null) {
+            fileAppender = null;
+            appender.close();
+            closedAppenderDrops.addAndGet(appender.getDroppedMessages());
         }
     }
 }
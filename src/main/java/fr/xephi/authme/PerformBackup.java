@@ -89,6 +89,8 @@ public class PerformBackup {
                 return mySqlBackup();
             case SQLITE:
                 return fileBackup(dbName + ".db");
+            case EMBEDDED:
+                return fileBackup(dbName + ".journal");
             default:
                 ConsoleLogger.warning("Unknown data source type '" + dataSourceType + "' for backup");
         }
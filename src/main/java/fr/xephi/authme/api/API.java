@@ -4,6 +4,7 @@ import fr.xephi.authme.AuthMe;
 import fr.xephi.authme.cache.auth.PlayerAuth;
 import fr.xephi.authme.cache.auth.PlayerCache;
 import fr.xephi.authme.datasource.DataSource;
+import fr.xephi.authme.listener.ListenerService;
 import fr.xephi.authme.process.Management;
 import fr.xephi.authme.security.PasswordSecurity;
 import fr.xephi.authme.security.crypts.HashedPassword;
@@ -27,6 +28,7 @@ public class API {
     private static DataSource dataSource;
     private static PasswordSecurity passwordSecurity;
     private static Management management;
+    private static ListenerService listenerService;
 
     /**
      * Constructor for the deprecated API.
@@ -35,11 +37,13 @@ public class API {
      */
     @Deprecated
     @Inject
-    API(AuthMe instance, DataSource dataSource, PasswordSecurity passwordSecurity, Management management) {
+    API(AuthMe instance, DataSource dataSource, PasswordSecurity passwordSecurity, Management management,
+        ListenerService listenerService) {
         API.instance = instance;
         API.dataSource = dataSource;
         API.passwordSecurity = passwordSecurity;
         API.management = management;
+        API.listenerService = listenerService;
     }
 
     /**
@@ -153,7 +157,11 @@ public class API {
             .lastLogin(0)
             .realName(playerName)
             .build();
-        return dataSource.saveAuth(auth);
+        if (dataSource.saveAuth(auth)) {
+            listenerService.invalidateRegistration(name);
+            return true;
+        }
+        return false;
     }
 
     /**
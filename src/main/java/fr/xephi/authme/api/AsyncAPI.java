@@ -0,0 +1,177 @@
+package fr.xephi.authme.api;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import fr.xephi.authme.cache.auth.PlayerAuth;
+import fr.xephi.authme.cache.auth.PlayerCache;
+import fr.xephi.authme.datasource.AsyncDataSource;
+import fr.xephi.authme.security.PasswordSecurity;
+import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.PluginSettings;
+import fr.xephi.authme.util.BukkitService;
+import org.bukkit.Location;
+
+import javax.inject.Inject;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous API of AuthMe. Recommended method of retrieving the API object:
+ * <code>
+ * AsyncAPI authmeApi = AsyncAPI.getInstance();
+ * </code>
+ * <p>
+ * Unlike {@link NewAPI}, the methods of this API never access the database or compute hashes on the
+ * calling thread: they return a future immediately and do the work on AuthMe's own threads. Use it
+ * from the main thread to keep the server from lagging. Note that callbacks registered on the futures
+ * without an executor are run on AuthMe's threads; schedule a task to get back to the main thread.
+ */
+public class AsyncAPI {
+
+    /** Maximum number of requests waiting to be processed. */
+    private static final int MAX_QUEUED_REQUESTS = 10000;
+
+    private static AsyncAPI singleton;
+
+    private final AsyncDataSource asyncDataSource;
+    private final PasswordSecurity passwordSecurity;
+    private final BukkitService bukkitService;
+    private final ListeningExecutorService executor;
+
+    @Inject
+    AsyncAPI(AsyncDataSource asyncDataSource, PasswordSecurity passwordSecurity, BukkitService bukkitService,
+             NewSetting settings) {
+        this.asyncDataSource = asyncDataSource;
+        this.passwordSecurity = passwordSecurity;
+        this.bukkitService = bukkitService;
+        int threads = Math.max(1, settings.getProperty(PluginSettings.PROCESS_THREADS));
+        ThreadPoolExecutor threadPool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(MAX_QUEUED_REQUESTS),
+            new ThreadFactoryBuilder().setNameFormat("AuthMe-API-%d").setDaemon(true).build());
+        threadPool.allowCoreThreadTimeOut(true);
+        executor = MoreExecutors.listeningDecorator(threadPool);
+        singleton = this;
+    }
+
+    /**
+     * Get the API object for AuthMe.
+     *
+     * @return The API object, or null if AuthMe is not enabled
+     */
+    public static AsyncAPI getInstance() {
+        return singleton;
+    }
+
+    /**
+     * Return whether the player is registered.
+     *
+     * @param playerName The player name to check
+     * @return Future with true if the player is registered, false otherwise
+     */
+    public ListenableFuture<Boolean> isRegistered(String playerName) {
+        return asyncDataSource.isAuthAvailable(playerName.toLowerCase());
+    }
+
+    /**
+     * Return whether the given players are registered. The players are looked up with as few
+     * queries as possible.
+     *
+     * @param playerNames The player names to check
+     * @return Future with whether each player is registered, by the given name
+     */
+    public ListenableFuture<Map<String, Boolean>> areRegistered(final Collection<String> playerNames) {
+        return Futures.transform(asyncDataSource.getAuths(playerNames),
+            new Function<Map<String, PlayerAuth>, Map<String, Boolean>>() {
+                @Override
+                public Map<String, Boolean> apply(Map<String, PlayerAuth> auths) {
+                    Map<String, Boolean> result = new HashMap<>();
+                    for (String name : playerNames) {
+                        result.put(name, auths.containsKey(name.toLowerCase()));
+                    }
+                    return result;
+                }
+            });
+    }
+
+    /**
+     * Return the data of the given players. Cached players are answered from the cache and all
+     * others are loaded with as few queries as possible.
+     *
+     * @param playerNames The player names to look up
+     * @return Future with the data of the registered players, by lowercase name
+     */
+    public ListenableFuture<Map<String, PlayerAuth>> getAuths(Collection<String> playerNames) {
+        return asyncDataSource.getAuths(playerNames);
+    }
+
+    /**
+     * Check the password for the given player. The hash is computed on AuthMe's threads.
+     *
+     * @param playerName      The player to check the password for
+     * @param passwordToCheck The password to check
+     * @return Future with true if the password is correct, false otherwise
+     */
+    public ListenableFuture<Boolean> checkPassword(final String playerName, final String passwordToCheck) {
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return passwordSecurity.comparePassword(passwordToCheck, playerName);
+            }
+        });
+    }
+
+    /**
+     * Get the last location of a player, also if the player is offline.
+     *
+     * @param playerName The player to process
+     * @return Future with the location of the player, or null if the player is not registered
+     */
+    public ListenableFuture<Location> getLastLocation(String playerName) {
+        PlayerAuth loggedInAuth = PlayerCache.getInstance().getAuth(playerName);
+        ListenableFuture<PlayerAuth> auth = loggedInAuth == null
+            ? asyncDataSource.getAuth(playerName)
+            : Futures.immediateFuture(loggedInAuth);
+        return Futures.transform(auth, new Function<PlayerAuth, Location>() {
+            @Override
+            public Location apply(PlayerAuth auth) {
+                if (auth == null) {
+                    return null;
+                }
+                return new Location(bukkitService.getWorld(auth.getWorld()),
+                    auth.getQuitLocX(), auth.getQuitLocY(), auth.getQuitLocZ());
+            }
+        });
+    }
+
+    /**
+     * Stops accepting requests and waits briefly for the pending ones.
+     */
+    public void close() {
+        singleton = null;
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> ListenableFuture<T> submit(Callable<T> task) {
+        try {
+            return executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            // Too many pending requests or AuthMe is being disabled
+            return Futures.immediateFailedFuture(e);
+        }
+    }
+}
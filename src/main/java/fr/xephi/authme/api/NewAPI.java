@@ -17,6 +17,9 @@ import javax.inject.Inject;
  * <code>
  * NewAPI authmeApi = NewAPI.getInstance();
  * </code>
+ * <p>
+ * Methods which need the database block the calling thread until the database has answered.
+ * Prefer {@link AsyncAPI} when calling them from the main thread.
  */
 public class NewAPI {
 
@@ -122,6 +125,7 @@ public class NewAPI {
      *
      * @param playerName The player name to check
      * @return true if player is registered, false otherwise
+     * @see AsyncAPI#isRegistered(String)
      */
     public boolean isRegistered(String playerName) {
         String player = playerName.toLowerCase();
@@ -134,6 +138,7 @@ public class NewAPI {
      * @param playerName      The player to check the password for
      * @param passwordToCheck The password to check
      * @return true if the password is correct, false otherwise
+     * @see AsyncAPI#checkPassword(String, String)
      */
     public boolean checkPassword(String playerName, String passwordToCheck) {
         return isRegistered(playerName) && plugin.getPasswordSecurity().comparePassword(passwordToCheck, playerName);
@@ -158,7 +163,11 @@ public class NewAPI {
             .password(result)
             .realName(playerName)
             .build();
-        return plugin.getDataSource().saveAuth(auth);
+        if (plugin.getDataSource().saveAuth(auth)) {
+            plugin.getListenerService().invalidateRegistration(name);
+            return true;
+        }
+        return false;
     }
 
     /**
@@ -0,0 +1,432 @@
+package fr.xephi.authme.cache.backup;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.cache.limbo.PlayerData;
+import fr.xephi.authme.util.BukkitService;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Stores all player data in a single append-only file of compact binary records. The offset of each
+ * player's latest record is kept in memory. Changes are collected and appended in batches by a
+ * background thread, and the file is compacted once most of its records are outdated.
+ * <p>
+ * File layout: a header (magic number and version) followed by records of the form
+ * {@code [int payload length][payload][int CRC32 of payload]}. The payload starts with the operation
+ * (write or remove) and the player's id; write records are followed by the player data.
+ */
+class BinaryPlayerDataStore implements PlayerDataStore {
+
+    private static final int MAGIC = 0x414D5044; // "AMPD"
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 5;
+    private static final int RECORD_OVERHEAD = 8;
+    private static final byte OP_WRITE = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final long COMPACTION_MIN_FILE_SIZE = 1024 * 1024;
+    private static final long FLUSH_INTERVAL_MILLIS = 1000;
+
+    private final File file;
+    private final BukkitService bukkitService;
+    /** Location of the latest record for each player id in the file. */
+    private final Map<String, RecordPointer> index = new ConcurrentHashMap<>();
+    /** Encoded records which have not been written to the file yet. */
+    private final ConcurrentMap<String, byte[]> pendingRecords = new ConcurrentHashMap<>();
+    /**
+     * Read lock for reading records from the file, write lock for updating the index and replacing the file.
+     * Records are appended and the file is compacted without the lock, by one flush at a time.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService writer;
+    private FileChannel channel;
+    /** Only accessed by the flushing thread. */
+    private long liveBytes;
+
+    BinaryPlayerDataStore(File file, BukkitService bukkitService) throws IOException {
+        this.file = file;
+        this.bukkitService = bukkitService;
+        load();
+        writer = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("AuthMe-PlayerDataWriter")
+            .build());
+        writer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public PlayerData read(String id) {
+        byte[] pending = pendingRecords.get(id);
+        if (pending != null) {
+            return decodePlayerData(pending, 4, pending.length - RECORD_OVERHEAD);
+        }
+
+        lock.readLock().lock();
+        try {
+            RecordPointer pointer = index.get(id);
+            if (pointer == null) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(pointer.length);
+            readFully(channel, buffer, pointer.offset);
+            return decodePlayerData(buffer.array(), 4, pointer.length - RECORD_OVERHEAD);
+        } catch (IOException e) {
+            ConsoleLogger.logException("Could not read player data on disk for '" + id + "'", e);
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void write(String id, PlayerData playerData) {
+        pendingRecords.put(id, encodeRecord(id, playerData));
+    }
+
+    @Override
+    public void remove(String id) {
+        if (index.containsKey(id) || pendingRecords.containsKey(id)) {
+            pendingRecords.put(id, encodeRecord(id, null));
+        }
+    }
+
+    @Override
+    public boolean contains(String id) {
+        byte[] pending = pendingRecords.get(id);
+        if (pending != null) {
+            return pending[4] == OP_WRITE;
+        }
+        return index.containsKey(id);
+    }
+
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            flush();
+            lock.writeLock().lock();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                ConsoleLogger.logException("Could not close player data file:", e);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Appends all pending records to the file in one write. The records are written and synced without
+     * the lock, so that reads are only blocked while the index is updated.
+     *
+     * @return true if all pending records have been written, false otherwise
+     */
+    synchronized boolean flush() {
+        if (pendingRecords.isEmpty()) {
+            return true;
+        }
+        if (!channel.isOpen()) {
+            return false;
+        }
+
+        List<String> ids = new ArrayList<>(pendingRecords.size());
+        List<byte[]> records = new ArrayList<>(pendingRecords.size());
+        int totalSize = 0;
+        for (Map.Entry<String, byte[]> entry : pendingRecords.entrySet()) {
+            ids.add(entry.getKey());
+            records.add(entry.getValue());
+            totalSize += entry.getValue().length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(totalSize);
+        for (byte[] record : records) {
+            buffer.put(record);
+        }
+        buffer.flip();
+
+        // Readers don't look past the records of the index, so appending doesn't need the lock
+        final long start;
+        try {
+            start = channel.size();
+            writeFully(channel, buffer, start);
+            channel.force(false);
+        } catch (IOException e) {
+            ConsoleLogger.logException("Could not write player data to '" + file.getName() + "':", e);
+            return false;
+        }
+
+        lock.writeLock().lock();
+        try {
+            long offset = start;
+            for (int i = 0; i < ids.size(); ++i) {
+                byte[] record = records.get(i);
+                RecordPointer previous = record[4] == OP_WRITE
+                    ? index.put(ids.get(i), new RecordPointer(offset, record.length))
+                    : index.remove(ids.get(i));
+                if (record[4] == OP_WRITE) {
+                    liveBytes += record.length;
+                }
+                if (previous != null) {
+                    liveBytes -= previous.length;
+                }
+                offset += record.length;
+                // Only remove the pending record if it hasn't been replaced in the meantime
+                pendingRecords.remove(ids.get(i), record);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        long fileSize = start + totalSize;
+        if (fileSize > COMPACTION_MIN_FILE_SIZE && liveBytes < (fileSize - HEADER_SIZE) / 2) {
+            try {
+                compact();
+            } catch (IOException e) {
+                ConsoleLogger.logException("Could not compact player data file '" + file.getName() + "':", e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Rewrites the file with only the latest record of each player. The records are copied without the
+     * lock, which is only taken to replace the file. Must be called by the flushing thread.
+     */
+    private void compact() throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        Map<String, RecordPointer> newIndex = new HashMap<>(index.size());
+        long newLiveBytes = 0;
+        // The index is only changed by flushes, so it doesn't change while it is copied
+        try (FileChannel target = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(target, createHeader(), 0);
+            long offset = HEADER_SIZE;
+            for (Map.Entry<String, RecordPointer> entry : index.entrySet()) {
+                RecordPointer pointer = entry.getValue();
+                ByteBuffer record = ByteBuffer.allocate(pointer.length);
+                readFully(channel, record, pointer.offset);
+                record.flip();
+                writeFully(target, record, offset);
+                newIndex.put(entry.getKey(), new RecordPointer(offset, pointer.length));
+                offset += pointer.length;
+                newLiveBytes += pointer.length;
+            }
+            target.force(true);
+        }
+
+        lock.writeLock().lock();
+        try {
+            channel.close();
+            try {
+                Files.move(tempFile.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            index.clear();
+            index.putAll(newIndex);
+            liveBytes = newLiveBytes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Opens the file and builds the index from its records. An incomplete or corrupted record at the
+     * end of the file (e.g. after a crash) is discarded along with anything after it.
+     */
+    private void load() throws IOException {
+        channel = FileChannel.open(file.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() == 0) {
+            writeFully(channel, createHeader(), 0);
+            return;
+        }
+
+        final long size = channel.size();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(0))));
+        if (size < HEADER_SIZE || in.readInt() != MAGIC || in.readByte() != VERSION) {
+            channel.close();
+            throw new IOException("File '" + file.getName() + "' is not a valid player data file");
+        }
+
+        long position = HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        try {
+            while (position + RECORD_OVERHEAD <= size) {
+                int length = in.readInt();
+                if (length <= 0 || position + RECORD_OVERHEAD + length > size) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                crc.reset();
+                crc.update(payload);
+                if (in.readInt() != (int) crc.getValue()) {
+                    break;
+                }
+
+                DataInputStream payloadIn = new DataInputStream(new ByteArrayInputStream(payload));
+                byte operation = payloadIn.readByte();
+                String id = payloadIn.readUTF();
+                RecordPointer previous = operation == OP_WRITE
+                    ? index.put(id, new RecordPointer(position, length + RECORD_OVERHEAD))
+                    : index.remove(id);
+                if (operation == OP_WRITE) {
+                    liveBytes += length + RECORD_OVERHEAD;
+                }
+                if (previous != null) {
+                    liveBytes -= previous.length;
+                }
+                position += length + RECORD_OVERHEAD;
+            }
+        } catch (EOFException ignored) {
+            // Handled below
+        }
+
+        if (position < size) {
+            ConsoleLogger.warning("Discarding " + (size - position) + " bytes of incomplete player data in '"
+                + file.getName() + "'");
+            channel.truncate(position);
+        }
+    }
+
+    private byte[] encodeRecord(String id, PlayerData playerData) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(payload)) {
+            out.writeByte(playerData == null ? OP_REMOVE : OP_WRITE);
+            out.writeUTF(id);
+            if (playerData != null) {
+                Location location = playerData.getLocation();
+                out.writeBoolean(location != null && location.getWorld() != null);
+                if (location != null && location.getWorld() != null) {
+                    out.writeUTF(location.getWorld().getName());
+                    out.writeDouble(location.getX());
+                    out.writeDouble(location.getY());
+                    out.writeDouble(location.getZ());
+                    out.writeFloat(location.getYaw());
+                    out.writeFloat(location.getPitch());
+                }
+                out.writeUTF(playerData.getGroup() == null ? "" : playerData.getGroup());
+                out.writeBoolean(playerData.isOperator());
+                out.writeBoolean(playerData.isCanFly());
+                out.writeFloat(playerData.getWalkSpeed());
+                out.writeFloat(playerData.getFlySpeed());
+            }
+        } catch (IOException e) {
+            // Cannot happen when writing to a byte array
+            throw new IllegalStateException(e);
+        }
+
+        byte[] payloadBytes = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payloadBytes);
+        return ByteBuffer.allocate(payloadBytes.length + RECORD_OVERHEAD)
+            .putInt(payloadBytes.length)
+            .put(payloadBytes)
+            .putInt((int) crc.getValue())
+            .array();
+    }
+
+    private PlayerData decodePlayerData(byte[] bytes, int offset, int length) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, offset, length))) {
+            if (in.readByte() != OP_WRITE) {
+                return null;
+            }
+            in.readUTF(); // id
+
+            Location location = null;
+            if (in.readBoolean()) {
+                World world = bukkitService.getWorld(in.readUTF());
+                double x = in.readDouble();
+                double y = in.readDouble();
+                double z = in.readDouble();
+                float yaw = in.readFloat();
+                float pitch = in.readFloat();
+                if (world != null) {
+                    location = new Location(world, x, y, z, yaw, pitch);
+                }
+            }
+            String group = in.readUTF();
+            boolean operator = in.readBoolean();
+            boolean canFly = in.readBoolean();
+            float walkSpeed = in.readFloat();
+            float flySpeed = in.readFloat();
+            return new PlayerData(location, operator, group, canFly, walkSpeed, flySpeed);
+        } catch (IOException e) {
+            ConsoleLogger.logException("Could not decode player data record:", e);
+            return null;
+        }
+    }
+
+    private static ByteBuffer createHeader() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).put(VERSION);
+        header.flip();
+        return header;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Unexpected end of player data file");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long current = position;
+        while (buffer.hasRemaining()) {
+            current += channel.write(buffer, current);
+        }
+    }
+
+    private static final class RecordPointer {
+        private final long offset;
+        private final int length;
+
+        RecordPointer(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -1,59 +1,50 @@
 package fr.xephi.authme.cache.backup;
 
-import com.google.common.base.Charsets;
-import com.google.common.io.Files;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
 import fr.xephi.authme.ConsoleLogger;
 import fr.xephi.authme.cache.limbo.PlayerData;
 import fr.xephi.authme.initialization.DataFolder;
 import fr.xephi.authme.permission.PermissionsManager;
+import fr.xephi.authme.settings.NewSetting;
 import fr.xephi.authme.settings.SpawnLoader;
+import fr.xephi.authme.settings.properties.PluginSettings;
 import fr.xephi.authme.util.BukkitService;
-import fr.xephi.authme.util.FileUtils;
 import fr.xephi.authme.util.Utils;
 import org.bukkit.Location;
-import org.bukkit.World;
 import org.bukkit.entity.Player;
 
 import javax.inject.Inject;
 import java.io.File;
 import java.io.IOException;
-import java.lang.reflect.Type;
 
 /**
  * Class used to store player's data (OP, flying, speed, position) to disk.
  */
 public class PlayerDataStorage {
 
-    private final Gson gson;
-    private final File cacheDir;
+    private final PlayerDataStore store;
     private PermissionsManager permissionsManager;
     private SpawnLoader spawnLoader;
-    private BukkitService bukkitService;
 
     @Inject
     PlayerDataStorage(@DataFolder File dataFolder, PermissionsManager permsMan,
-                      SpawnLoader spawnLoader, BukkitService bukkitService) {
+                      SpawnLoader spawnLoader, BukkitService bukkitService, NewSetting settings) {
         this.permissionsManager = permsMan;
         this.spawnLoader = spawnLoader;
-        this.bukkitService = bukkitService;
 
-        cacheDir = new File(dataFolder, "playerdata");
-        if (!cacheDir.exists() && !cacheDir.isDirectory() && !cacheDir.mkdir()) {
-            ConsoleLogger.warning("Failed to create userdata directory.");
+        File cacheDir = new File(dataFolder, "playerdata");
+        PlayerDataStore binaryStore = null;
+        if (settings.getProperty(PluginSettings.PLAYER_DATA_STORAGE) == PlayerDataStorageType.BINARY) {
+            binaryStore = createBinaryStore(dataFolder, cacheDir, bukkitService);
+        }
+
+        if (binaryStore != null) {
+            store = binaryStore;
+        } else {
+            if (!cacheDir.exists() && !cacheDir.isDirectory() && !cacheDir.mkdir()) {
+                ConsoleLogger.warning("Failed to create userdata directory.");
+            }
+            store = new JsonPlayerDataStore(cacheDir, bukkitService);
         }
-        gson = new GsonBuilder()
-            .registerTypeAdapter(PlayerData.class, new PlayerDataSerializer())
-            .registerTypeAdapter(PlayerData.class, new PlayerDataDeserializer())
-            .setPrettyPrinting()
-            .create();
     }
 
     /**
@@ -64,19 +55,7 @@ public class PlayerDataStorage {
      * @return PlayerData object if the data is exist, null otherwise.
      */
     public PlayerData readData(Player player) {
-        String id = Utils.getUUIDorName(player);
-        File file = new File(cacheDir, id + File.separator + "data.json");
-        if (!file.exists()) {
-            return null;
-        }
-
-        try {
-            String str = Files.toString(file, Charsets.UTF_8);
-            return gson.fromJson(str, PlayerData.class);
-        } catch (IOException e) {
-            ConsoleLogger.logException("Could not read player data on disk for '" + player.getName() + "'", e);
-            return null;
-        }
+        return store.read(Utils.getUUIDorName(player));
     }
 
     /**
@@ -93,31 +72,16 @@ public class PlayerDataStorage {
         float walkSpeed = player.getWalkSpeed();
         float flySpeed = player.getFlySpeed();
         PlayerData playerData = new PlayerData(location, operator, group, canFly, walkSpeed, flySpeed);
-        try {
-            File file = new File(cacheDir, id + File.separator + "data.json");
-            Files.createParentDirs(file);
-            Files.touch(file);
-            Files.write(gson.toJson(playerData), file, Charsets.UTF_8);
-        } catch (IOException e) {
-            ConsoleLogger.logException("Failed to write " + player.getName() + " data.", e);
-        }
+        store.write(id, playerData);
     }
 
     /**
-     * Remove player data, this will delete
-     * "playerdata/&lt;uuid or name&gt;/" folder from disk.
+     * Remove player data from disk.
      *
      * @param player player to remove
      */
     public void removeData(Player player) {
-        String id = Utils.getUUIDorName(player);
-        File file = new File(cacheDir, id);
-        if (file.exists()) {
-            FileUtils.purgeDirectory(file);
-            if (!file.delete()) {
-                ConsoleLogger.warning("Failed to remove " + player.getName() + " cache.");
-            }
-        }
+        store.remove(Utils.getUUIDorName(player));
     }
 
     /**
@@ -128,84 +92,63 @@ public class PlayerDataStorage {
      * @return true if data exist, false otherwise.
      */
     public boolean hasData(Player player) {
-        String id = Utils.getUUIDorName(player);
-        File file = new File(cacheDir, id + File.separator + "data.json");
-        return file.exists();
+        return store.contains(Utils.getUUIDorName(player));
     }
 
-    private class PlayerDataDeserializer implements JsonDeserializer<PlayerData> {
-        @Override
-        public PlayerData deserialize(JsonElement jsonElement, Type type,
-                                      JsonDeserializationContext context) {
-            JsonObject jsonObject = jsonElement.getAsJsonObject();
-            if (jsonObject == null) {
-                return null;
-            }
-
-            Location loc = null;
-            String group = "";
-            boolean operator = false;
-            boolean canFly = false;
-            float walkSpeed = 0.2f;
-            float flySpeed = 0.2f;
-
-            JsonElement e;
-            if ((e = jsonObject.getAsJsonObject("location")) != null) {
-                JsonObject obj = e.getAsJsonObject();
-                World world = bukkitService.getWorld(obj.get("world").getAsString());
-                if (world != null) {
-                    double x = obj.get("x").getAsDouble();
-                    double y = obj.get("y").getAsDouble();
-                    double z = obj.get("z").getAsDouble();
-                    float yaw = obj.get("yaw").getAsFloat();
-                    float pitch = obj.get("pitch").getAsFloat();
-                    loc = new Location(world, x, y, z, yaw, pitch);
-                }
-            }
-            if ((e = jsonObject.get("group")) != null) {
-                group = e.getAsString();
-            }
-            if ((e = jsonObject.get("operator")) != null) {
-                operator = e.getAsBoolean();
-            }
-            if ((e = jsonObject.get("can-fly")) != null) {
-                canFly = e.getAsBoolean();
-            }
-            if ((e = jsonObject.get("walk-speed")) != null) {
-                walkSpeed = e.getAsFloat();
-            }
-            if ((e = jsonObject.get("fly-speed")) != null) {
-                flySpeed = e.getAsFloat();
-            }
+    /**
+     * Write all pending changes to disk. To be called when the plugin is disabled.
+     */
+    public void close() {
+        store.close();
+    }
 
-            return new PlayerData(loc, operator, group, canFly, walkSpeed, flySpeed);
+    private static PlayerDataStore createBinaryStore(File dataFolder, File jsonFolder, BukkitService bukkitService) {
+        BinaryPlayerDataStore binaryStore;
+        try {
+            binaryStore = new BinaryPlayerDataStore(new File(dataFolder, "playerdata.dat"), bukkitService);
+        } catch (IOException e) {
+            ConsoleLogger.logException("Could not open the player data file, falling back to JSON storage:", e);
+            return null;
         }
-    }
 
-    private class PlayerDataSerializer implements JsonSerializer<PlayerData> {
-        @Override
-        public JsonElement serialize(PlayerData playerData, Type type,
-                                     JsonSerializationContext context) {
-            JsonObject obj = new JsonObject();
-            obj.addProperty("group", playerData.getGroup());
-
-            Location loc = playerData.getLocation();
-            JsonObject obj2 = new JsonObject();
-            obj2.addProperty("world", loc.getWorld().getName());
-            obj2.addProperty("x", loc.getX());
-            obj2.addProperty("y", loc.getY());
-            obj2.addProperty("z", loc.getZ());
-            obj2.addProperty("yaw", loc.getYaw());
-            obj2.addProperty("pitch", loc.getPitch());
-            obj.add("location", obj2);
-
-            obj.addProperty("operator", playerData.isOperator());
-            obj.addProperty("can-fly", playerData.isCanFly());
-            obj.addProperty("walk-speed", playerData.getWalkSpeed());
-            obj.addProperty("fly-speed", playerData.getFlySpeed());
-            return obj;
+        if (jsonFolder.isDirectory()) {
+            migrateJsonFiles(jsonFolder, new JsonPlayerDataStore(jsonFolder, bukkitService), binaryStore);
         }
+        return binaryStore;
     }
 
+    /**
+     * Copies all entries of the JSON folder into the given store and renames the JSON folder afterwards
+     * so that the migration only runs once.
+     */
+    private static void migrateJsonFiles(File jsonFolder, JsonPlayerDataStore jsonStore,
+                                         BinaryPlayerDataStore binaryStore) {
+        File[] playerFolders = jsonFolder.listFiles();
+        if (playerFolders == null) {
+            return;
+        }
+        ConsoleLogger.info("Migrating " + playerFolders.length + " player data entries to the binary format");
+        int migratedEntries = 0;
+        for (File playerFolder : playerFolders) {
+            PlayerData playerData = jsonStore.read(playerFolder.getName());
+            if (playerData != null) {
+                binaryStore.write(playerFolder.getName(), playerData);
+                ++migratedEntries;
+            }
+        }
+        if (!binaryStore.flush()) {
+            ConsoleLogger.warning("Could not write the migrated player data. The folder '" + jsonFolder.getName()
+                + "' is kept and the migration will be run again on the next start");
+            return;
+        }
 
+        File migratedFolder = new File(jsonFolder.getParentFile(), "playerdata-migrated");
+        if (jsonFolder.renameTo(migratedFolder)) {
+            ConsoleLogger.info("Migrated " + migratedEntries + " player data entries. The old files have "
+                + "been moved to '" + migratedFolder.getName() + "' and can be deleted");
+        } else {
+            ConsoleLogger.warning("Migrated " + migratedEntries + " player data entries but could not rename the "
+                + "folder '" + jsonFolder.getName() + "'. Please remove it to prevent another migration");
+        }
+    }
 }
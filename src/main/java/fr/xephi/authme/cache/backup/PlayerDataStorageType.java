@@ -0,0 +1,14 @@
+package fr.xephi.authme.cache.backup;
+
+/**
+ * Available formats to store the player data of unauthenticated players on disk.
+ */
+public enum PlayerDataStorageType {
+
+    /** One JSON file per player in the playerdata folder. */
+    JSON,
+
+    /** All players in a single, compact binary file. */
+    BINARY
+
+}
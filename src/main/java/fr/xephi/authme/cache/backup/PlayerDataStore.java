@@ -0,0 +1,46 @@
+package fr.xephi.authme.cache.backup;
+
+import fr.xephi.authme.cache.limbo.PlayerData;
+
+/**
+ * Storage engine for {@link PlayerData} entries, identified by the player's UUID or name.
+ */
+interface PlayerDataStore {
+
+    /**
+     * Reads the player data with the given id.
+     *
+     * @param id the player's id
+     * @return the player data, or null if not available
+     */
+    PlayerData read(String id);
+
+    /**
+     * Saves the player data under the given id, replacing any previous entry.
+     *
+     * @param id the player's id
+     * @param playerData the data to save
+     */
+    void write(String id, PlayerData playerData);
+
+    /**
+     * Removes the player data with the given id.
+     *
+     * @param id the player's id
+     */
+    void remove(String id);
+
+    /**
+     * Returns whether player data exists for the given id.
+     *
+     * @param id the player's id
+     * @return true if data exists, false otherwise
+     */
+    boolean contains(String id);
+
+    /**
+     * Writes all pending changes to disk and releases the resources of the store.
+     */
+    void close();
+
+}
@@ -4,6 +4,7 @@ import com.google.common.collect.ImmutableSet;
 import fr.xephi.authme.command.executable.HelpCommand;
 import fr.xephi.authme.command.executable.authme.AccountsCommand;
 import fr.xephi.authme.command.executable.authme.AuthMeCommand;
+import fr.xephi.authme.command.executable.authme.CacheStatsCommand;
 import fr.xephi.authme.command.executable.authme.ChangePasswordAdminCommand;
 import fr.xephi.authme.command.executable.authme.ConverterCommand;
 import fr.xephi.authme.command.executable.authme.FirstSpawnCommand;
@@ -11,6 +12,7 @@ import fr.xephi.authme.command.executable.authme.ForceLoginCommand;
 import fr.xephi.authme.command.executable.authme.GetEmailCommand;
 import fr.xephi.authme.command.executable.authme.GetIpCommand;
 import fr.xephi.authme.command.executable.authme.LastLoginCommand;
+import fr.xephi.authme.command.executable.authme.MetricsCommand;
 import fr.xephi.authme.command.executable.authme.PurgeBannedPlayersCommand;
 import fr.xephi.authme.command.executable.authme.PurgeCommand;
 import fr.xephi.authme.command.executable.authme.PurgeLastPositionCommand;
@@ -266,6 +268,26 @@ public class CommandInitializer {
             .executableCommand(ReloadCommand.class)
             .build();
 
+        // Register the metrics command
+        CommandDescription.builder()
+            .parent(AUTHME_BASE)
+            .labels("metrics", "perf")
+            .description("Show performance metrics")
+            .detailedDescription("Show how long data source calls, player processes and password hashing take.")
+            .permission(AdminPermission.VIEW_METRICS)
+            .executableCommand(MetricsCommand.class)
+            .build();
+
+        // Register the cache statistics command
+        CommandDescription.builder()
+            .parent(AUTHME_BASE)
+            .labels("cachestats", "cache")
+            .description("Show cache statistics")
+            .detailedDescription("Show the size, hit rate, load time and evictions of the player data cache.")
+            .permission(AdminPermission.VIEW_METRICS)
+            .executableCommand(CacheStatsCommand.class)
+            .build();
+
         // Register the version command
         CommandDescription.builder()
             .parent(AUTHME_BASE)
@@ -282,7 +304,7 @@ public class CommandInitializer {
             .description("Converter command")
             .detailedDescription("Converter command for AuthMeReloaded.")
             .withArgument("job", "Conversion job: xauth / crazylogin / rakamak / " +
-                "royalauth / vauth / sqlitetosql", false)
+                "royalauth / vauth / sqlitetosql / sqlitetoembedded", false)
             .permission(AdminPermission.CONVERTER)
             .executableCommand(ConverterCommand.class)
             .build();
@@ -0,0 +1,45 @@
+package fr.xephi.authme.command.executable.authme;
+
+import com.google.common.cache.CacheStats;
+import fr.xephi.authme.command.ExecutableCommand;
+import fr.xephi.authme.datasource.CacheDataSource;
+import fr.xephi.authme.datasource.DataSource;
+import fr.xephi.authme.metrics.LatencyHistogram;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+
+import javax.inject.Inject;
+import java.util.List;
+
+/**
+ * Shows the statistics of the player data cache.
+ */
+public class CacheStatsCommand implements ExecutableCommand {
+
+    @Inject
+    private DataSource dataSource;
+
+    @Override
+    public void executeCommand(CommandSender sender, List<String> arguments) {
+        if (!(dataSource instanceof CacheDataSource)) {
+            sender.sendMessage(ChatColor.RED + "[AuthMe] Caching is disabled (DataSource.caching in the config)");
+            return;
+        }
+        CacheDataSource cacheDataSource = (CacheDataSource) dataSource;
+        CacheStats stats = cacheDataSource.getCacheStats();
+        long size = cacheDataSource.getCacheSize();
+
+        sender.sendMessage(ChatColor.GOLD + "[AuthMe] Player data cache statistics since startup:");
+        sendValue(sender, "Entries", size + " (" + cacheDataSource.getCachedUnregisteredCount()
+            + " unregistered names)");
+        sendValue(sender, "Hit rate", String.format("%.1f%% (%d hits, %d misses)",
+            stats.hitRate() * 100, stats.hitCount(), stats.missCount()));
+        sendValue(sender, "Loads", stats.loadCount() + " (" + stats.loadExceptionCount() + " failed), average "
+            + LatencyHistogram.formatNanos((long) stats.averageLoadPenalty()));
+        sendValue(sender, "Evictions", String.valueOf(stats.evictionCount()));
+    }
+
+    private static void sendValue(CommandSender sender, String name, String value) {
+        sender.sendMessage(ChatColor.WHITE + "  " + name + ": " + ChatColor.GRAY + value);
+    }
+}
@@ -8,6 +8,7 @@ import fr.xephi.authme.converter.Converter;
 import fr.xephi.authme.converter.CrazyLoginConverter;
 import fr.xephi.authme.converter.RakamakConverter;
 import fr.xephi.authme.converter.RoyalAuthConverter;
+import fr.xephi.authme.converter.SqliteToEmbedded;
 import fr.xephi.authme.converter.SqliteToSql;
 import fr.xephi.authme.converter.vAuthConverter;
 import fr.xephi.authme.converter.xAuthConverter;
@@ -71,7 +72,8 @@ public class ConverterCommand implements ExecutableCommand {
         RAKAMAK("rakamak", RakamakConverter.class),
         ROYALAUTH("royalauth", RoyalAuthConverter.class),
         VAUTH("vauth", vAuthConverter.class),
-        SQLITETOSQL("sqlitetosql", SqliteToSql.class);
+        SQLITETOSQL("sqlitetosql", SqliteToSql.class),
+        SQLITETOEMBEDDED("sqlitetoembedded", SqliteToEmbedded.class);
 
         private final String name;
         private final Class<? extends Converter> converterClass;
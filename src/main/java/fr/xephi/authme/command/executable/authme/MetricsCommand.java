@@ -0,0 +1,70 @@
+package fr.xephi.authme.command.executable.authme;
+
+import fr.xephi.authme.command.ExecutableCommand;
+import fr.xephi.authme.metrics.LatencyHistogram;
+import fr.xephi.authme.metrics.Metric;
+import fr.xephi.authme.metrics.MetricsRegistry;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+
+import javax.inject.Inject;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shows the performance metrics of the plugin.
+ */
+public class MetricsCommand implements ExecutableCommand {
+
+    @Inject
+    private MetricsRegistry metricsRegistry;
+
+    @Override
+    public void executeCommand(CommandSender sender, List<String> arguments) {
+        sender.sendMessage(ChatColor.GOLD + "[AuthMe] Performance metrics since startup:");
+        for (Metric metric : Metric.values()) {
+            if (metric.isLatency()) {
+                sendHistograms(sender, metric);
+            } else {
+                sendCounters(sender, metric);
+            }
+        }
+
+        Map<String, Double> gauges = metricsRegistry.getGaugeValues();
+        if (!gauges.isEmpty()) {
+            sender.sendMessage(ChatColor.GOLD + "Current values:");
+            for (Map.Entry<String, Double> gauge : gauges.entrySet()) {
+                sender.sendMessage(ChatColor.WHITE + "  " + gauge.getKey() + ": "
+                    + ChatColor.GRAY + String.format("%.2f", gauge.getValue()));
+            }
+        }
+    }
+
+    private void sendHistograms(CommandSender sender, Metric metric) {
+        Map<String, LatencyHistogram> histograms = metricsRegistry.getHistograms(metric);
+        if (histograms.isEmpty()) {
+            return;
+        }
+        sender.sendMessage(ChatColor.GOLD + metric.getDescription() + ":");
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            if (histogram.getCount() > 0) {
+                sender.sendMessage(ChatColor.WHITE + "  " + entry.getKey() + ": " + ChatColor.GRAY
+                    + histogram.getCount() + "x, p50 " + LatencyHistogram.formatNanos(histogram.getQuantile(0.5))
+                    + ", p99 " + LatencyHistogram.formatNanos(histogram.getQuantile(0.99))
+                    + ", max " + LatencyHistogram.formatNanos(histogram.getMax()));
+            }
+        }
+    }
+
+    private void sendCounters(CommandSender sender, Metric metric) {
+        Map<String, Long> counters = metricsRegistry.getCounters(metric);
+        if (counters.isEmpty()) {
+            return;
+        }
+        sender.sendMessage(ChatColor.GOLD + metric.getDescription() + ":");
+        for (Map.Entry<String, Long> entry : counters.entrySet()) {
+            sender.sendMessage(ChatColor.WHITE + "  " + entry.getKey() + ": " + ChatColor.GRAY + entry.getValue());
+        }
+    }
+}
@@ -5,6 +5,7 @@ import fr.xephi.authme.cache.auth.PlayerCache;
 import fr.xephi.authme.command.CommandService;
 import fr.xephi.authme.command.ExecutableCommand;
 import fr.xephi.authme.datasource.DataSource;
+import fr.xephi.authme.listener.ListenerService;
 import fr.xephi.authme.output.MessageKey;
 import fr.xephi.authme.permission.AuthGroupHandler;
 import fr.xephi.authme.permission.AuthGroupType;
@@ -39,6 +40,9 @@ public class UnregisterAdminCommand implements ExecutableCommand {
     @Inject
     private Management management;
 
+    @Inject
+    private ListenerService listenerService;
+
 
     @Override
     public void executeCommand(final CommandSender sender, List<String> arguments) {
@@ -57,6 +61,7 @@ public class UnregisterAdminCommand implements ExecutableCommand {
             commandService.send(sender, MessageKey.ERROR);
             return;
         }
+        listenerService.invalidateRegistration(playerNameLowerCase);
 
         // Unregister the player
         Player target = bukkitService.getPlayerExact(playerNameLowerCase);
@@ -73,9 +73,19 @@ public class RecoverEmailCommand extends PlayerCommand {
                 commandService.send(player, MessageKey.INVALID_EMAIL);
                 return;
             }
+            HashedPassword oldPassword = auth.getPassword();
             auth.setPassword(hashNew);
-            dataSource.updatePassword(auth);
-            sendMailSsl.sendPasswordMail(auth, thePass);
+            if (!dataSource.updatePassword(auth)) {
+                commandService.send(player, MessageKey.ERROR);
+                return;
+            }
+            if (!sendMailSsl.sendPasswordMail(auth, thePass)) {
+                // The player would never get the new password: keep the old one
+                auth.setPassword(oldPassword);
+                dataSource.updatePassword(auth);
+                commandService.send(player, MessageKey.ERROR);
+                return;
+            }
             commandService.send(player, MessageKey.RECOVERY_EMAIL_SENT_MESSAGE);
         } else {
             commandService.send(player, MessageKey.REGISTER_EMAIL_MESSAGE);
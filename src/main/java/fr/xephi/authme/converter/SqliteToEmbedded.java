@@ -0,0 +1,57 @@
+package fr.xephi.authme.converter;
+
+import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.cache.auth.PlayerAuth;
+import fr.xephi.authme.datasource.DataSource;
+import fr.xephi.authme.datasource.DataSourceType;
+import fr.xephi.authme.datasource.SQLite;
+import fr.xephi.authme.output.MessageKey;
+import fr.xephi.authme.output.Messages;
+import fr.xephi.authme.settings.NewSetting;
+import org.bukkit.command.CommandSender;
+
+import javax.inject.Inject;
+
+/**
+ * Copies the accounts of the SQLite database to the embedded data source.
+ */
+public class SqliteToEmbedded implements Converter {
+
+    private final NewSetting settings;
+    private final DataSource dataSource;
+    private final Messages messages;
+
+    @Inject
+    SqliteToEmbedded(NewSetting settings, DataSource dataSource, Messages messages) {
+        this.settings = settings;
+        this.dataSource = dataSource;
+        this.messages = messages;
+    }
+
+    @Override
+    public void execute(CommandSender sender) {
+        if (dataSource.getType() != DataSourceType.EMBEDDED) {
+            sender.sendMessage("Please set the backend to embedded and re-run this command");
+            return;
+        }
+        SQLite data = null;
+        try {
+            data = new SQLite(settings);
+            int converted = 0;
+            for (PlayerAuth auth : data.getAllAuths()) {
+                if (dataSource.saveAuth(auth)) {
+                    ++converted;
+                }
+            }
+            ConsoleLogger.info("Copied " + converted + " accounts from SQLite to the embedded data source");
+        } catch (Exception e) {
+            messages.send(sender, MessageKey.ERROR);
+            ConsoleLogger.logException("Problem during SQLite to embedded conversion:", e);
+        } finally {
+            if (data != null) {
+                data.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,256 @@
+package fr.xephi.authme.datasource;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.cache.auth.PlayerAuth;
+import fr.xephi.authme.security.crypts.HashedPassword;
+import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.DatabaseSettings;
+
+import javax.inject.Inject;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking access to the {@link DataSource}: every method returns a future immediately
+ * and runs the database operation on a dedicated pool of database threads.
+ * <p>
+ * Use this class from the main thread and from event handlers. Code which already runs on a
+ * worker thread (e.g. the asynchronous processes) may keep using the blocking {@link DataSource}.
+ * Callbacks registered on the futures without an executor are run on the database threads.
+ */
+public class AsyncDataSource {
+
+    /** Maximum number of operations waiting for a database thread. */
+    private static final int MAX_QUEUED_OPERATIONS = 10000;
+    /** Maximum time to wait for the pending operations when the plugin is disabled. */
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private final DataSource dataSource;
+    private final ThreadPoolExecutor threadPool;
+    private final ListeningExecutorService executor;
+
+    /**
+     * Constructor.
+     *
+     * @param dataSource the data source to run the operations on
+     * @param settings the settings
+     */
+    @Inject
+    public AsyncDataSource(DataSource dataSource, NewSetting settings) {
+        this.dataSource = dataSource;
+        int threads = getThreadCount(settings);
+        threadPool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(MAX_QUEUED_OPERATIONS),
+            new ThreadFactoryBuilder().setNameFormat("AuthMe-Database-%d").setDaemon(true).build());
+        threadPool.allowCoreThreadTimeOut(true);
+        executor = MoreExecutors.listeningDecorator(threadPool);
+    }
+
+    /**
+     * @param user the username to look up
+     * @return future with true if the player is registered
+     * @see DataSource#isAuthAvailable(String)
+     */
+    public ListenableFuture<Boolean> isAuthAvailable(final String user) {
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return dataSource.isAuthAvailable(user);
+            }
+        });
+    }
+
+    /**
+     * @param user the user whose password should be retrieved
+     * @return future with the password hash of the player
+     * @see DataSource#getPassword(String)
+     */
+    public ListenableFuture<HashedPassword> getPassword(final String user) {
+        return submit(new Callable<HashedPassword>() {
+            @Override
+            public HashedPassword call() {
+                return dataSource.getPassword(user);
+            }
+        });
+    }
+
+    /**
+     * @param user the username to look up
+     * @return future with the data of the player, or with null if the player is not registered
+     * @see DataSource#getAuth(String)
+     */
+    public ListenableFuture<PlayerAuth> getAuth(final String user) {
+        return submit(new Callable<PlayerAuth>() {
+            @Override
+            public PlayerAuth call() {
+                return dataSource.getAuth(user);
+            }
+        });
+    }
+
+    /**
+     * @param users the usernames to look up
+     * @return future with the data of the registered players, by lowercase name
+     * @see DataSource#getAuths(Collection)
+     */
+    public ListenableFuture<Map<String, PlayerAuth>> getAuths(final Collection<String> users) {
+        return submit(new Callable<Map<String, PlayerAuth>>() {
+            @Override
+            public Map<String, PlayerAuth> call() {
+                return dataSource.getAuths(users);
+            }
+        });
+    }
+
+    /**
+     * @param auth the data of the player to register
+     * @return future with true if the player was saved
+     * @see DataSource#saveAuth(PlayerAuth)
+     */
+    public ListenableFuture<Boolean> saveAuth(final PlayerAuth auth) {
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return dataSource.saveAuth(auth);
+            }
+        });
+    }
+
+    /**
+     * @param auth the data of the player with the new session
+     * @return future with true if the session was updated
+     * @see DataSource#updateSession(PlayerAuth)
+     */
+    public ListenableFuture<Boolean> updateSession(final PlayerAuth auth) {
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return dataSource.updateSession(auth);
+            }
+        });
+    }
+
+    /**
+     * @param user the player whose password should be changed
+     * @param password the new password hash
+     * @return future with true if the password was updated
+     * @see DataSource#updatePassword(String, HashedPassword)
+     */
+    public ListenableFuture<Boolean> updatePassword(final String user, final HashedPassword password) {
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return dataSource.updatePassword(user, password);
+            }
+        });
+    }
+
+    /**
+     * @param auth the data of the player with the new quit location
+     * @return future with true if the location was updated
+     * @see DataSource#updateQuitLoc(PlayerAuth)
+     */
+    public ListenableFuture<Boolean> updateQuitLoc(final PlayerAuth auth) {
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return dataSource.updateQuitLoc(auth);
+            }
+        });
+    }
+
+    /**
+     * @param auth the data of the player with the new email
+     * @return future with true if the email was updated
+     * @see DataSource#updateEmail(PlayerAuth)
+     */
+    public ListenableFuture<Boolean> updateEmail(final PlayerAuth auth) {
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return dataSource.updateEmail(auth);
+            }
+        });
+    }
+
+    /**
+     * @param user the player whose name should be updated
+     * @param realName the name with the correct casing
+     * @return future with true if the name was updated
+     * @see DataSource#updateRealName(String, String)
+     */
+    public ListenableFuture<Boolean> updateRealName(final String user, final String realName) {
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return dataSource.updateRealName(user, realName);
+            }
+        });
+    }
+
+    /**
+     * @param user the player to unregister
+     * @return future with true if the player was removed
+     * @see DataSource#removeAuth(String)
+     */
+    public ListenableFuture<Boolean> removeAuth(final String user) {
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return dataSource.removeAuth(user);
+            }
+        });
+    }
+
+    /**
+     * @return the number of operations which have been submitted but not started yet
+     */
+    public int getQueueSize() {
+        return threadPool.getQueue().size();
+    }
+
+    /**
+     * Stops accepting operations and waits for the pending ones to finish.
+     */
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                ConsoleLogger.warning("Stopped waiting for " + getQueueSize() + " database operations to finish");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> ListenableFuture<T> submit(Callable<T> task) {
+        try {
+            return executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            // Too many pending operations or AuthMe is being disabled
+            return Futures.immediateFailedFuture(e);
+        }
+    }
+
+    /**
+     * Returns the number of database threads. With MySQL, there is no use in having more threads than
+     * connections in the pool; the other backends use a single connection or file.
+     */
+    private static int getThreadCount(NewSetting settings) {
+        if (settings.getProperty(DatabaseSettings.BACKEND) == DataSourceType.MYSQL) {
+            return Math.max(1, settings.getProperty(DatabaseSettings.MYSQL_POOL_SIZE));
+        }
+        return 1;
+    }
+}
@@ -1,39 +1,95 @@
 package fr.xephi.authme.datasource;
 
-import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Striped;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import fr.xephi.authme.ConsoleLogger;
 import fr.xephi.authme.cache.auth.PlayerAuth;
 import fr.xephi.authme.cache.auth.PlayerCache;
 import fr.xephi.authme.security.crypts.HashedPassword;
+import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.DatabaseSettings;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
-
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Data source which caches the player data of an underlying data source.
+ * <p>
+ * Successful writes are applied to the cached data directly (write-through) instead of reloading the
+ * player from the database. Cached entries are replaced rather than modified, so that readers never
+ * see a partially applied write. Every write gets a version from a global clock; a value which was
+ * being loaded from the database while the player was written may be outdated and is reloaded.
+ * <p>
+ * The size of the cache is bounded by {@link DatabaseSettings#CACHE_MAXIMUM_WEIGHT}. Names which are not
+ * registered are kept in a separate cache of their own, bounded by the same setting, for
+ * {@link DatabaseSettings#CACHE_UNREGISTERED_TTL} seconds. A flood of unknown names therefore neither fills the
+ * heap nor pushes registered players out of the cache.
+ * <p>
+ * The data of players who quit is kept for {@link DatabaseSettings#CACHE_QUIT_RETENTION} minutes if no other
+ * server can change it unnoticed, i.e. if the data source is not shared or if the changes of other servers are
+ * read from the change log (see {@link #trackExternalWrites()}). Otherwise the data of a player who quits is
+ * dropped, since the password or email may be changed on another server in the meantime.
+ */
 public class CacheDataSource implements DataSource {
 
+    /** Time after which cache entries which have not been read are evicted, in minutes. */
+    private static final int EXPIRE_AFTER_ACCESS_MINUTES = 15;
+    /** Weight of a cached registered player. */
+    private static final int REGISTERED_WEIGHT = 10;
+
     private final DataSource source;
-    private final LoadingCache<String, Optional<PlayerAuth>> cachedAuths;
+    /** Data of registered players. */
+    private final LoadingCache<String, CachedAuth> cachedAuths;
+    /** Names which are not registered, with the version they were loaded at. */
+    private final Cache<String, CachedAuth> unregisteredNames;
+    /** Lookups answered by {@link #unregisteredNames}, which are not recorded by the cache itself. */
+    private final AtomicLong unregisteredHits = new AtomicLong();
     private final ListeningExecutorService executorService;
+    /** Version of the last write of each recently written player. */
+    private final Cache<String, Long> recentWrites;
+    private final AtomicLong clock = new AtomicLong();
+    /** Serializes the cache updates of the writes to a player. */
+    private final Striped<Lock> writeLocks = Striped.lock(64);
+    /** Time at which each recently quit player has quit, from {@link System#nanoTime()}. */
+    private final Cache<String, Long> recentlyQuit;
+    private final long quitRetentionNanos;
+    /** Whether the writes of other servers are applied to the cache, see {@link #trackExternalWrites()}. */
+    private volatile boolean externalWritesTracked;
 
     /**
      * Constructor for CacheDataSource.
      *
      * @param src DataSource
+     * @param settings the settings
      */
-    public CacheDataSource(DataSource src) {
+    public CacheDataSource(DataSource src, NewSetting settings) {
         source = src;
+        // Only MySQL can be shared with other servers
+        externalWritesTracked = src.getType() != DataSourceType.MYSQL;
+        int maximumWeight = settings.getProperty(DatabaseSettings.CACHE_MAXIMUM_WEIGHT);
+        int quitRetention = settings.getProperty(DatabaseSettings.CACHE_QUIT_RETENTION);
+        quitRetentionNanos = TimeUnit.MINUTES.toNanos(quitRetention);
+        int entryLifetime = Math.max(EXPIRE_AFTER_ACCESS_MINUTES, quitRetention);
         executorService = MoreExecutors.listeningDecorator(
             Executors.newCachedThreadPool(new ThreadFactoryBuilder()
                 .setDaemon(true)
@@ -42,27 +98,144 @@ public class CacheDataSource implements DataSource {
         );
         cachedAuths = CacheBuilder.newBuilder()
             .refreshAfterWrite(5, TimeUnit.MINUTES)
-            .expireAfterAccess(15, TimeUnit.MINUTES)
-            .build(new CacheLoader<String, Optional<PlayerAuth>>() {
+            .expireAfterAccess(entryLifetime, TimeUnit.MINUTES)
+            .maximumWeight(maximumWeight)
+            .weigher(new Weigher<String, CachedAuth>() {
+                @Override
+                public int weigh(String key, CachedAuth value) {
+                    // Names which are not registered are moved to unregisteredNames after loading
+                    // and must not evict registered players in the meantime
+                    return value.auth == null ? 0 : REGISTERED_WEIGHT;
+                }
+            })
+            .recordStats()
+            .build(new CacheLoader<String, CachedAuth>() {
                 @Override
-                public Optional<PlayerAuth> load(String key) {
-                    return Optional.fromNullable(source.getAuth(key));
+                public CachedAuth load(String key) {
+                    // Take the version before reading so that writes during the read are detected
+                    long version = clock.get();
+                    return new CachedAuth(source.getAuth(key), version);
                 }
 
                 @Override
-                public ListenableFuture<Optional<PlayerAuth>> reload(final String key, Optional<PlayerAuth> oldValue) {
-                    return executorService.submit(new Callable<Optional<PlayerAuth>>() {
+                public ListenableFuture<CachedAuth> reload(final String key, CachedAuth oldValue) {
+                    return executorService.submit(new Callable<CachedAuth>() {
                         @Override
-                        public Optional<PlayerAuth> call() {
+                        public CachedAuth call() {
                             return load(key);
                         }
                     });
                 }
             });
+        // Only evictions are recorded: lookups go through asMap() so that misses are counted once, by
+        // cachedAuths. Hits are counted in unregisteredHits
+        unregisteredNames = CacheBuilder.newBuilder()
+            .expireAfterWrite(settings.getProperty(DatabaseSettings.CACHE_UNREGISTERED_TTL), TimeUnit.SECONDS)
+            .maximumSize(maximumWeight)
+            .recordStats()
+            .build();
+        // Writes must be remembered for as long as a value loaded before them may stay in the cache
+        recentWrites = CacheBuilder.newBuilder()
+            .expireAfterWrite(entryLifetime, TimeUnit.MINUTES)
+            .build();
+        recentlyQuit = CacheBuilder.newBuilder()
+            .expireAfterWrite(entryLifetime, TimeUnit.MINUTES)
+            .build();
+    }
+
+    /**
+     * @return the statistics of the player data cache
+     */
+    public CacheStats getCacheStats() {
+        CacheStats unregisteredStats = unregisteredNames.stats();
+        return cachedAuths.stats().plus(new CacheStats(unregisteredHits.get(), 0, 0, 0, 0,
+            unregisteredStats.evictionCount()));
+    }
+
+    /**
+     * @return the number of entries in the cache
+     */
+    public long getCacheSize() {
+        return cachedAuths.size() + unregisteredNames.size();
+    }
+
+    /**
+     * @return the number of cached names which are not registered
+     */
+    public int getCachedUnregisteredCount() {
+        return (int) unregisteredNames.size();
+    }
+
+    /**
+     * Declares that the players written by other servers are invalidated in this cache (e.g. by reading
+     * the change log), so that the data of players who quit can be kept without checking it again.
+     */
+    public void trackExternalWrites() {
+        externalWritesTracked = true;
+    }
+
+    /**
+     * Sets the password of the cached player data, e.g. after it was changed by another server.
+     *
+     * @param user the name of the player
+     * @param password the new password
+     */
+    public void updateCachedPassword(String user, final HashedPassword password) {
+        applyWrite(user.toLowerCase(), new AuthUpdate() {
+            @Override
+            public void apply(PlayerAuth auth) {
+                auth.setPassword(password);
+            }
+        });
+    }
+
+    /**
+     * Sets the IP address, last login and real name of the cached player data, e.g. after the player
+     * logged in on another server.
+     *
+     * @param auth the session data of the player
+     */
+    public void updateCachedSession(final PlayerAuth auth) {
+        applyWrite(auth.getNickname().toLowerCase(), new AuthUpdate() {
+            @Override
+            public void apply(PlayerAuth cachedAuth) {
+                cachedAuth.setIp(auth.getIp());
+                cachedAuth.setLastLogin(auth.getLastLogin());
+                cachedAuth.setRealName(auth.getRealName());
+            }
+        });
     }
 
-    public LoadingCache<String, Optional<PlayerAuth>> getCachedAuths() {
-        return cachedAuths;
+    /**
+     * Removes a player from the cache so that the data is loaded from the database on the next access.
+     *
+     * @param user the name of the player
+     */
+    public void invalidateCache(String user) {
+        String name = user.toLowerCase();
+        Lock lock = writeLocks.get(name);
+        lock.lock();
+        try {
+            recentWrites.put(name, clock.incrementAndGet());
+            cachedAuths.invalidate(name);
+            unregisteredNames.invalidate(name);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Keeps the data of a player who has quit in the cache, so that it does not have to be loaded again
+     * if the player rejoins soon. If writes of other servers are not tracked, the data is dropped instead.
+     *
+     * @param user the name of the player
+     */
+    public void retainQuitPlayer(String user) {
+        if (quitRetentionNanos <= 0 || !externalWritesTracked) {
+            invalidateCache(user);
+        } else {
+            recentlyQuit.put(user.toLowerCase(), System.nanoTime());
+        }
     }
 
     @Override
@@ -78,9 +251,9 @@ public class CacheDataSource implements DataSource {
     @Override
     public HashedPassword getPassword(String user) {
         user = user.toLowerCase();
-        Optional<PlayerAuth> pAuthOpt = cachedAuths.getIfPresent(user);
-        if (pAuthOpt != null && pAuthOpt.isPresent()) {
-            return pAuthOpt.get().getPassword();
+        CachedAuth cached = cachedAuths.getIfPresent(user);
+        if (cached != null && cached.auth != null && isCurrent(user, cached) && !isQuitRetentionOver(user)) {
+            return cached.auth.getPassword();
         }
         return source.getPassword(user);
     }
@@ -88,14 +261,57 @@ public class CacheDataSource implements DataSource {
     @Override
     public PlayerAuth getAuth(String user) {
         user = user.toLowerCase();
-        return cachedAuths.getUnchecked(user).orNull();
+        CachedAuth cached = getCached(user);
+        Long quitTime = recentlyQuit.asMap().remove(user);
+        boolean isQuitRetentionOver = quitTime != null && cached.createdAt < quitTime
+            && System.nanoTime() - quitTime > quitRetentionNanos;
+        if (!isCurrent(user, cached) || isQuitRetentionOver) {
+            // Expired or loaded while the player was being written: load again
+            cachedAuths.invalidate(user);
+            unregisteredNames.invalidate(user);
+            cached = getCached(user);
+        }
+        return cached.auth;
+    }
+
+    @Override
+    public Map<String, PlayerAuth> getAuths(Collection<String> users) {
+        Map<String, PlayerAuth> auths = new HashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        for (String user : users) {
+            String name = user.toLowerCase();
+            CachedAuth unregistered = unregisteredNames.asMap().get(name);
+            if (unregistered != null && isCurrent(name, unregistered)) {
+                unregisteredHits.incrementAndGet();
+                continue;
+            }
+            CachedAuth cached = cachedAuths.getIfPresent(name);
+            if (cached == null || cached.auth == null || !isCurrent(name, cached)) {
+                missing.add(name);
+            } else {
+                auths.put(name, cached.auth);
+            }
+        }
+        if (!missing.isEmpty()) {
+            // Load all players which are not cached with one query
+            long version = clock.get();
+            Map<String, PlayerAuth> loaded = source.getAuths(missing);
+            for (String name : missing) {
+                PlayerAuth auth = loaded.get(name);
+                cacheLoadedAuth(name, new CachedAuth(auth, version));
+                if (auth != null) {
+                    auths.put(name, auth);
+                }
+            }
+        }
+        return auths;
     }
 
     @Override
     public boolean saveAuth(PlayerAuth auth) {
         boolean result = source.saveAuth(auth);
         if (result) {
-            cachedAuths.refresh(auth.getNickname());
+            putWrittenAuth(auth.getNickname(), copyOf(auth));
         }
         return result;
     }
@@ -104,7 +320,7 @@ public class CacheDataSource implements DataSource {
     public boolean updatePassword(PlayerAuth auth) {
         boolean result = source.updatePassword(auth);
         if (result) {
-            cachedAuths.refresh(auth.getNickname());
+            updateCachedPassword(auth.getNickname(), auth.getPassword());
         }
         return result;
     }
@@ -114,7 +330,7 @@ public class CacheDataSource implements DataSource {
         user = user.toLowerCase();
         boolean result = source.updatePassword(user, password);
         if (result) {
-            cachedAuths.refresh(user);
+            updateCachedPassword(user, password);
         }
         return result;
     }
@@ -123,7 +339,7 @@ public class CacheDataSource implements DataSource {
     public boolean updateSession(PlayerAuth auth) {
         boolean result = source.updateSession(auth);
         if (result) {
-            cachedAuths.refresh(auth.getNickname());
+            updateCachedSession(auth);
         }
         return result;
     }
@@ -132,7 +348,15 @@ public class CacheDataSource implements DataSource {
     public boolean updateQuitLoc(final PlayerAuth auth) {
         boolean result = source.updateQuitLoc(auth);
         if (result) {
-            cachedAuths.refresh(auth.getNickname());
+            applyWrite(auth.getNickname(), new AuthUpdate() {
+                @Override
+                public void apply(PlayerAuth cachedAuth) {
+                    cachedAuth.setQuitLocX(auth.getQuitLocX());
+                    cachedAuth.setQuitLocY(auth.getQuitLocY());
+                    cachedAuth.setQuitLocZ(auth.getQuitLocZ());
+                    cachedAuth.setWorld(auth.getWorld());
+                }
+            });
         }
         return result;
     }
@@ -142,12 +366,17 @@ public class CacheDataSource implements DataSource {
         return source.getRecordsToPurge(until);
     }
 
+    @Override
+    public List<String> getRecordsToPurge(long until, String afterName, int limit) {
+        return source.getRecordsToPurge(until, afterName, limit);
+    }
+
     @Override
     public boolean removeAuth(String name) {
         name = name.toLowerCase();
         boolean result = source.removeAuth(name);
         if (result) {
-            cachedAuths.invalidate(name);
+            putWrittenAuth(name, null);
         }
         return result;
     }
@@ -156,6 +385,7 @@ public class CacheDataSource implements DataSource {
     public void close() {
         source.close();
         cachedAuths.invalidateAll();
+        unregisteredNames.invalidateAll();
         executorService.shutdown();
         try {
             executorService.awaitTermination(5, TimeUnit.SECONDS);
@@ -168,7 +398,12 @@ public class CacheDataSource implements DataSource {
     public boolean updateEmail(final PlayerAuth auth) {
         boolean result = source.updateEmail(auth);
         if (result) {
-            cachedAuths.refresh(auth.getNickname());
+            applyWrite(auth.getNickname(), new AuthUpdate() {
+                @Override
+                public void apply(PlayerAuth cachedAuth) {
+                    cachedAuth.setEmail(auth.getEmail());
+                }
+            });
         }
         return result;
     }
@@ -186,7 +421,9 @@ public class CacheDataSource implements DataSource {
     @Override
     public void purgeRecords(final Set<String> banned) {
         source.purgeRecords(banned);
-        cachedAuths.invalidateAll(banned);
+        for (String name : banned) {
+            putWrittenAuth(name.toLowerCase(), null);
+        }
     }
 
     @Override
@@ -221,10 +458,15 @@ public class CacheDataSource implements DataSource {
     }
 
     @Override
-    public boolean updateRealName(String user, String realName) {
+    public boolean updateRealName(String user, final String realName) {
         boolean result = source.updateRealName(user, realName);
         if (result) {
-            cachedAuths.refresh(user);
+            applyWrite(user.toLowerCase(), new AuthUpdate() {
+                @Override
+                public void apply(PlayerAuth cachedAuth) {
+                    cachedAuth.setRealName(realName);
+                }
+            });
         }
         return result;
     }
@@ -238,4 +480,182 @@ public class CacheDataSource implements DataSource {
     public List<PlayerAuth> getLoggedPlayers() {
         return new ArrayList<>(PlayerCache.getInstance().getCache().values());
     }
+
+    /**
+     * Returns the cached value of a player, loading it if necessary. A name which turns out not to be
+     * registered is moved to the cache of unregistered names.
+     *
+     * @param name the lowercase name of the player
+     * @return the cached value
+     */
+    private CachedAuth getCached(String name) {
+        CachedAuth unregistered = unregisteredNames.asMap().get(name);
+        if (unregistered != null && isCurrent(name, unregistered)) {
+            unregisteredHits.incrementAndGet();
+            return unregistered;
+        }
+        CachedAuth cached = cachedAuths.getUnchecked(name);
+        if (cached.auth == null) {
+            cachedAuths.asMap().remove(name, cached);
+            cacheUnregistered(name, cached);
+        }
+        return cached;
+    }
+
+    /**
+     * Remembers that a name is not registered unless the player has been written since it was loaded.
+     *
+     * @param name the lowercase name
+     * @param loaded the loaded value without player data
+     */
+    private void cacheUnregistered(String name, CachedAuth loaded) {
+        Lock lock = writeLocks.get(name);
+        lock.lock();
+        try {
+            if (isCurrent(name, loaded)) {
+                unregisteredNames.put(name, loaded);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns whether the cached value may be used: it must be at least as recent as the last write
+     * to the player.
+     *
+     * @param name the lowercase name of the player
+     * @param cached the cached value
+     * @return true if the value is current, false if it has to be loaded again
+     */
+    private boolean isCurrent(String name, CachedAuth cached) {
+        Long lastWrite = recentWrites.getIfPresent(name);
+        return lastWrite == null || cached.version >= lastWrite;
+    }
+
+    /**
+     * Returns whether the given player has quit longer than the quit retention ago.
+     *
+     * @param name the lowercase name of the player
+     * @return true if the cached data of the player should not be used anymore, false otherwise
+     */
+    private boolean isQuitRetentionOver(String name) {
+        Long quitTime = recentlyQuit.getIfPresent(name);
+        return quitTime != null && System.nanoTime() - quitTime > quitRetentionNanos;
+    }
+
+    /**
+     * Applies a successful write to the cached data of a player. The cached data is replaced by an
+     * updated copy. If the player is not cached, it will be loaded on the next access as usual.
+     *
+     * @param name the lowercase name of the player
+     * @param update the update to apply
+     */
+    private void applyWrite(String name, AuthUpdate update) {
+        Lock lock = writeLocks.get(name);
+        lock.lock();
+        try {
+            long version = clock.incrementAndGet();
+            recentWrites.put(name, version);
+            CachedAuth cached = cachedAuths.getIfPresent(name);
+            if (cached != null && cached.auth != null) {
+                PlayerAuth updated = copyOf(cached.auth);
+                update.apply(updated);
+                cachedAuths.put(name, new CachedAuth(updated, version));
+            }
+            // The cache may say that the player is not registered, but the database accepted the write
+            unregisteredNames.invalidate(name);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stores the data of a player which has just been written, or null if the player was removed.
+     *
+     * @param name the lowercase name of the player
+     * @param auth the written data, or null
+     */
+    private void putWrittenAuth(String name, PlayerAuth auth) {
+        Lock lock = writeLocks.get(name);
+        lock.lock();
+        try {
+            long version = clock.incrementAndGet();
+            recentWrites.put(name, version);
+            if (auth == null) {
+                cachedAuths.invalidate(name);
+                unregisteredNames.put(name, new CachedAuth(null, version));
+            } else {
+                unregisteredNames.invalidate(name);
+                cachedAuths.put(name, new CachedAuth(auth, version));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stores data which has been loaded from the source unless the player has been written since
+     * the data was loaded or a current value is cached already.
+     *
+     * @param name the lowercase name of the player
+     * @param loaded the loaded data
+     */
+    private void cacheLoadedAuth(String name, CachedAuth loaded) {
+        Lock lock = writeLocks.get(name);
+        lock.lock();
+        try {
+            if (!isCurrent(name, loaded)) {
+                return;
+            }
+            if (loaded.auth == null) {
+                unregisteredNames.put(name, loaded);
+            } else {
+                CachedAuth cached = cachedAuths.getIfPresent(name);
+                if (cached == null || !isCurrent(name, cached)) {
+                    cachedAuths.put(name, loaded);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static PlayerAuth copyOf(PlayerAuth auth) {
+        return PlayerAuth.builder()
+            .name(auth.getNickname())
+            .realName(auth.getRealName())
+            .password(auth.getPassword())
+            .ip(auth.getIp())
+            .lastLogin(auth.getLastLogin())
+            .locX(auth.getQuitLocX())
+            .locY(auth.getQuitLocY())
+            .locZ(auth.getQuitLocZ())
+            .locWorld(auth.getWorld())
+            .email(auth.getEmail())
+            .groupId(auth.getGroupId())
+            .build();
+    }
+
+    /**
+     * Update of the fields of a player which have been written to the data source.
+     */
+    private interface AuthUpdate {
+        void apply(PlayerAuth auth);
+    }
+
+    /**
+     * Cached data of a player with the version of the clock it was loaded or written at.
+     */
+    private static final class CachedAuth {
+        /** The player data, or null if the player is not registered. */
+        private final PlayerAuth auth;
+        private final long version;
+        private final long createdAt = System.nanoTime();
+
+        CachedAuth(PlayerAuth auth, long version) {
+            this.auth = auth;
+            this.version = version;
+        }
+    }
 }
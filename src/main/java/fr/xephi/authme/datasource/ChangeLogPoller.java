@@ -0,0 +1,116 @@
+package fr.xephi.authme.datasource;
+
+import fr.xephi.authme.ConsoleLogger;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the changes which other servers sharing the MySQL database have recorded in the change log
+ * and removes the changed players from the cache of this server, so that they are loaded again on
+ * the next access. Works without BungeeCord.
+ * <p>
+ * The ids of the change log are assigned when a row is inserted but the row only becomes visible when
+ * its transaction commits, so a change with a lower id may appear after changes with higher ids. The
+ * poller therefore does not move past a missing id until it has been missing for
+ * {@link #GAP_GRACE_MILLIS} ms, and reads the changes after the first missing id again on every run.
+ */
+public class ChangeLogPoller implements Runnable {
+
+    /** Maximum number of changes to read with one query. */
+    private static final int MAX_CHANGES_PER_QUERY = 1000;
+    /** Time after which changes are deleted from the change log. */
+    private static final long RETENTION_MILLIS = TimeUnit.HOURS.toMillis(1);
+    /** Time between two deletions of old changes. */
+    private static final long CLEANUP_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    /**
+     * Time after which a missing id is assumed to belong to a rolled back transaction (or to be skipped
+     * by the auto-increment settings) rather than to a transaction which has not committed yet.
+     */
+    private static final long GAP_GRACE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final MySQL mySql;
+    private final CacheDataSource cacheDataSource;
+    /** All changes up to this id have been read or their ids have been missing for too long. */
+    private long lastChangeId;
+    /** Ids after {@link #lastChangeId} which have been read already. */
+    private final Set<Long> readIds = new HashSet<>();
+    /** Ids after {@link #lastChangeId} which are missing, with the time they were first noticed at. */
+    private final Map<Long, Long> missingIds = new HashMap<>();
+    private long nextCleanup;
+
+    /**
+     * Constructor. Changes recorded before the poller is created are skipped.
+     *
+     * @param mySql the MySQL data source recording the changes
+     * @param cacheDataSource the cache to update
+     * @throws SQLException if the change log could not be read
+     */
+    public ChangeLogPoller(MySQL mySql, CacheDataSource cacheDataSource) throws SQLException {
+        this.mySql = mySql;
+        this.cacheDataSource = cacheDataSource;
+        this.lastChangeId = mySql.getLatestChangeId();
+    }
+
+    @Override
+    public synchronized void run() {
+        try {
+            long now = System.currentTimeMillis();
+            long afterId = lastChangeId;
+            List<MySQL.Change> changes;
+            do {
+                changes = mySql.getChanges(afterId, MAX_CHANGES_PER_QUERY);
+                for (MySQL.Change change : changes) {
+                    // Ids between the previous and this change have not been committed (yet)
+                    for (long id = afterId + 1; id < change.id; ++id) {
+                        if (!readIds.contains(id) && !missingIds.containsKey(id)) {
+                            missingIds.put(id, now);
+                        }
+                    }
+                    afterId = change.id;
+                    missingIds.remove(change.id);
+                    // Changes after a missing id are read again on the next runs, so skip the known ones.
+                    // The changes of this server have been applied to the cache already
+                    if (readIds.add(change.id) && !change.isOwnChange) {
+                        // The replicas may not have received the change yet, so reload from the primary
+                        mySql.markWritten(change.name);
+                        cacheDataSource.invalidateCache(change.name);
+                    }
+                }
+            } while (changes.size() == MAX_CHANGES_PER_QUERY);
+            advanceLastChangeId(now);
+
+            if (now >= nextCleanup) {
+                mySql.deleteChanges(now - RETENTION_MILLIS);
+                nextCleanup = now + CLEANUP_INTERVAL_MILLIS;
+            }
+        } catch (SQLException e) {
+            ConsoleLogger.logException("Could not read the change log:", e);
+        }
+    }
+
+    /**
+     * Moves {@link #lastChangeId} past all ids which have been read and past the ids which have been
+     * missing for longer than the grace period, up to the first id which may still be committed.
+     *
+     * @param now the current time
+     */
+    private void advanceLastChangeId(long now) {
+        while (true) {
+            long nextId = lastChangeId + 1;
+            if (readIds.remove(nextId)) {
+                lastChangeId = nextId;
+            } else if (missingIds.containsKey(nextId) && now - missingIds.get(nextId) >= GAP_GRACE_MILLIS) {
+                missingIds.remove(nextId);
+                lastChangeId = nextId;
+            } else {
+                return;
+            }
+        }
+    }
+}
@@ -4,7 +4,9 @@ import fr.xephi.authme.cache.auth.PlayerAuth;
 import fr.xephi.authme.initialization.Reloadable;
 import fr.xephi.authme.security.crypts.HashedPassword;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -36,6 +38,14 @@ public interface DataSource extends Reloadable {
      */
     PlayerAuth getAuth(String user);
 
+    /**
+     * Retrieve the PlayerAuth objects of multiple users at once.
+     *
+     * @param users The users to retrieve
+     * @return The PlayerAuth objects of the registered users, by lowercase username
+     */
+    Map<String, PlayerAuth> getAuths(Collection<String> users);
+
     /**
      * Save a new PlayerAuth object.
      *
@@ -77,6 +87,17 @@ public interface DataSource extends Reloadable {
      */
     Set<String> getRecordsToPurge(long until);
 
+    /**
+     * Get a page of the records whose last login was before the given time, ordered by name. To iterate
+     * over all records, pass the last name of the previous page as {@code afterName}.
+     *
+     * @param until The minimum last login
+     * @param afterName The name after which the page starts (exclusive), or null to start from the beginning
+     * @param limit The maximum number of names to return
+     * @return The account names selected to purge, in ascending order
+     */
+    List<String> getRecordsToPurge(long until, String afterName, int limit);
+
     /**
      * Purge the given players from the database.
      *
@@ -10,6 +10,8 @@ public enum DataSourceType {
     @Deprecated
     FILE,
 
-    SQLITE
+    SQLITE,
+
+    EMBEDDED
 
 }
@@ -0,0 +1,954 @@
+package fr.xephi.authme.datasource;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.Striped;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.cache.auth.PlayerAuth;
+import fr.xephi.authme.security.crypts.HashedPassword;
+import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.DatabaseSettings;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Embedded data source which keeps the players in an append-only log file with an in-memory index,
+ * for servers which do not want to run a database server.
+ * <p>
+ * Every change appends a record with the complete data of the player, or a deletion marker, to the log.
+ * The index maps each name to its latest record, so that a player is found with one hash lookup and
+ * one positional read. Writes of concurrent threads are committed together with a single fsync.
+ * When the log is opened, it is replayed to rebuild the index; an incomplete or corrupted record at
+ * the end, as left behind by a crash, is cut off. A corrupted record followed by valid records is not
+ * repaired automatically: the log is not opened. Outdated records are removed in the background by
+ * copying the live records to a new log.
+ */
+public class EmbeddedDataSource implements DataSource {
+
+    /** Identifies the file as AuthMe log ("AMLG"). */
+    private static final int MAGIC = 0x414D4C47;
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 8;
+    /** Size of the length and the checksum preceding every record. */
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final byte TYPE_PUT = 1;
+    private static final byte TYPE_DELETE = 2;
+    /** Logs smaller than this are never compacted. */
+    private static final long MIN_COMPACTION_SIZE = 1024 * 1024;
+    private static final long COMPACTION_CHECK_INTERVAL_SECONDS = 60;
+    /** Maximum size of invalid data at the end of the log which is checked for valid records. */
+    private static final long MAX_TAIL_SCAN_SIZE = 16 * 1024 * 1024;
+
+    private final Path file;
+    private final Path compactionFile;
+    private final ScheduledExecutorService compactionExecutor;
+    /** Guards the swap of the log file during compaction: reads hold the read lock. */
+    private final ReadWriteLock fileLock = new ReentrantReadWriteLock();
+    /** Serializes read-modify-write operations of the same player. */
+    private final Striped<Lock> playerLocks = Striped.lock(64);
+
+    private final Lock commitLock = new ReentrantLock();
+    private final Condition commitFinished = commitLock.newCondition();
+    /** Writes waiting for the next commit. Guarded by commitLock. */
+    private List<PendingWrite> pendingWrites = new ArrayList<>();
+    /** Whether a thread is writing to the log (committing or compacting). Guarded by commitLock. */
+    private boolean writing;
+
+    private volatile FileChannel channel;
+    /** The latest record of each player, by lowercase name. */
+    private volatile Map<String, Entry> index = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+    // Only accessed by the thread which is writing to the log
+    private long writePosition;
+    private long garbageBytes;
+
+    /**
+     * Constructor for EmbeddedDataSource.
+     *
+     * @param settings The settings instance
+     *
+     * @throws IOException if the log could not be opened
+     */
+    public EmbeddedDataSource(NewSetting settings) throws IOException {
+        this(new File("plugins/AuthMe", settings.getProperty(DatabaseSettings.MYSQL_DATABASE) + ".journal"));
+    }
+
+    @VisibleForTesting
+    EmbeddedDataSource(File file) throws IOException {
+        this.file = file.toPath();
+        this.compactionFile = new File(file.getPath() + ".compact").toPath();
+        try {
+            open();
+        } catch (IOException e) {
+            ConsoleLogger.logException("Error during initialization of the embedded data source:", e);
+            throw e;
+        }
+        compactionExecutor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("AuthMe-Journal-Compaction").setDaemon(true).build());
+        compactionExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                compactIfNeeded();
+            }
+        }, COMPACTION_CHECK_INTERVAL_SECONDS, COMPACTION_CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void reload() {
+        // Nothing to reload: the log stays open while the plugin is enabled
+    }
+
+    @Override
+    public boolean isAuthAvailable(String user) {
+        return index.containsKey(user.toLowerCase());
+    }
+
+    @Override
+    public HashedPassword getPassword(String user) {
+        PlayerAuth auth = getAuth(user);
+        return auth == null ? null : auth.getPassword();
+    }
+    @Override
+    public PlayerAuth getAuth(String user) {
+        String name = user.toLowerCase();
+        fileLock.readLock().lock();
+        try {
+            Entry entry = index.get(name);
+            return entry == null ? null : read(entry);
+        } catch (IOException e) {
+            logReadException(e);
+            return null;
+        } finally {
+            fileLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<String, PlayerAuth> getAuths(Collection<String> users) {
+        Map<String, PlayerAuth> auths = new HashMap<>();
+        fileLock.readLock().lock();
+        try {
+            for (String user : users) {
+                String name = user.toLowerCase();
+                Entry entry = index.get(name);
+                if (entry != null) {
+                    auths.put(name, read(entry));
+                }
+            }
+        } catch (IOException e) {
+            logReadException(e);
+        } finally {
+            fileLock.readLock().unlock();
+        }
+        return auths;
+    }
+
+    @Override
+    public boolean saveAuth(PlayerAuth auth) {
+        String name = auth.getNickname().toLowerCase();
+        Lock lock = playerLocks.get(name);
+        lock.lock();
+        try {
+            return !index.containsKey(name) && commit(Collections.singletonList(Record.put(name, auth, false)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean updatePassword(PlayerAuth auth) {
+        return updatePassword(auth.getNickname(), auth.getPassword());
+    }
+
+    @Override
+    public boolean updatePassword(String user, final HashedPassword password) {
+        return update(user, new AuthUpdate() {
+            @Override
+            public void apply(PlayerAuth auth) {
+                auth.setPassword(password);
+            }
+        });
+    }
+
+    @Override
+    public boolean updateSession(final PlayerAuth auth) {
+        return update(auth.getNickname(), new AuthUpdate() {
+            @Override
+            public void apply(PlayerAuth storedAuth) {
+                storedAuth.setIp(auth.getIp());
+                storedAuth.setLastLogin(auth.getLastLogin());
+                storedAuth.setRealName(auth.getRealName());
+            }
+        });
+    }
+
+    @Override
+    public Set<String> getRecordsToPurge(long until) {
+        Set<String> names = new HashSet<>();
+        for (Map.Entry<String, Entry> entry : index.entrySet()) {
+            if (entry.getValue().lastLogin < until) {
+                names.add(entry.getKey());
+            }
+        }
+        return names;
+    }
+
+    @Override
+    public List<String> getRecordsToPurge(long until, String afterName, int limit) {
+        TreeSet<String> names = new TreeSet<>();
+        for (Map.Entry<String, Entry> entry : index.entrySet()) {
+            if (entry.getValue().lastLogin < until && (afterName == null || entry.getKey().compareTo(afterName) > 0)) {
+                names.add(entry.getKey());
+                if (names.size() > limit) {
+                    names.pollLast();
+                }
+            }
+        }
+        return new ArrayList<>(names);
+    }
+
+    @Override
+    public void purgeRecords(Set<String> toPurge) {
+        Iterable<Lock> locks = playerLocks.bulkGet(toPurge);
+        for (Lock lock : locks) {
+            lock.lock();
+        }
+        try {
+            List<Record> deletions = new ArrayList<>();
+            for (String name : toPurge) {
+                if (index.containsKey(name)) {
+                    deletions.add(Record.delete(name));
+                }
+            }
+            if (!deletions.isEmpty()) {
+                commit(deletions);
+            }
+        } finally {
+            for (Lock lock : locks) {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public boolean removeAuth(String user) {
+        String name = user.toLowerCase();
+        Lock lock = playerLocks.get(name);
+        lock.lock();
+        try {
+            return index.containsKey(name) && commit(Collections.singletonList(Record.delete(name)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean updateQuitLoc(final PlayerAuth auth) {
+        return update(auth.getNickname(), new AuthUpdate() {
+            @Override
+            public void apply(PlayerAuth storedAuth) {
+                storedAuth.setQuitLocX(auth.getQuitLocX());
+                storedAuth.setQuitLocY(auth.getQuitLocY());
+                storedAuth.setQuitLocZ(auth.getQuitLocZ());
+                storedAuth.setWorld(auth.getWorld());
+            }
+        });
+    }
+
+    @Override
+    public List<String> getAllAuthsByIp(String ip) {
+        List<String> names = new ArrayList<>();
+        for (Map.Entry<String, Entry> entry : index.entrySet()) {
+            if (ip.equals(entry.getValue().ip)) {
+                names.add(entry.getKey());
+            }
+        }
+        return names;
+    }
+
+    @Override
+    public int countAuthsByEmail(String email) {
+        int count = 0;
+        for (Entry entry : index.values()) {
+            if (email.equalsIgnoreCase(entry.email)) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public boolean updateEmail(final PlayerAuth auth) {
+        return update(auth.getNickname(), new AuthUpdate() {
+            @Override
+            public void apply(PlayerAuth storedAuth) {
+                storedAuth.setEmail(auth.getEmail());
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        compactionExecutor.shutdown();
+        try {
+            compactionExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        beginWriting();
+        try {
+            fileLock.writeLock().lock();
+            try {
+                closed = true;
+                channel.close();
+            } finally {
+                fileLock.writeLock().unlock();
+            }
+        } catch (IOException e) {
+            ConsoleLogger.logException("Could not close the journal:", e);
+        } finally {
+            endWriting();
+        }
+    }
+
+    @Override
+    public DataSourceType getType() {
+        return DataSourceType.EMBEDDED;
+    }
+
+    @Override
+    public boolean isLogged(String user) {
+        Entry entry = index.get(user.toLowerCase());
+        return entry != null && entry.logged;
+    }
+
+    @Override
+    public void setLogged(String user) {
+        updateLogged(user, true);
+    }
+
+    @Override
+    public void setUnlogged(String user) {
+        updateLogged(user, false);
+    }
+
+    @Override
+    public void purgeLogged() {
+        for (Map.Entry<String, Entry> entry : index.entrySet()) {
+            if (entry.getValue().logged) {
+                updateLogged(entry.getKey(), false);
+            }
+        }
+    }
+
+    @Override
+    public List<PlayerAuth> getLoggedPlayers() {
+        List<PlayerAuth> auths = new ArrayList<>();
+        fileLock.readLock().lock();
+        try {
+            for (Entry entry : index.values()) {
+                if (entry.logged) {
+                    auths.add(read(entry));
+                }
+            }
+        } catch (IOException e) {
+            logReadException(e);
+        } finally {
+            fileLock.readLock().unlock();
+        }
+        return auths;
+    }
+
+    @Override
+    public int getAccountsRegistered() {
+        return index.size();
+    }
+
+    @Override
+    public boolean updateRealName(String user, final String realName) {
+        return update(user, new AuthUpdate() {
+            @Override
+            public void apply(PlayerAuth auth) {
+                auth.setRealName(realName);
+            }
+        });
+    }
+
+    @Override
+    public List<PlayerAuth> getAllAuths() {
+        List<PlayerAuth> auths = new ArrayList<>(index.size());
+        fileLock.readLock().lock();
+        try {
+            for (Entry entry : index.values()) {
+                auths.add(read(entry));
+            }
+        } catch (IOException e) {
+            logReadException(e);
+        } finally {
+            fileLock.readLock().unlock();
+        }
+        return auths;
+    }
+
+    /**
+     * Copies the live records to a new log if at least half of the log consists of outdated records.
+     */
+    @VisibleForTesting
+    void compactIfNeeded() {
+        beginWriting();
+        try {
+            long size = writePosition;
+            if (!closed && size >= MIN_COMPACTION_SIZE && garbageBytes * 2 >= size) {
+                compact();
+            }
+        } catch (IOException e) {
+            ConsoleLogger.logException("Could not compact the journal:", e);
+        } finally {
+            endWriting();
+        }
+    }
+
+    /**
+     * Copies the live records to a new log and replaces the current log with it.
+     * Must only be called by the thread which is writing to the log.
+     */
+    @VisibleForTesting
+    void compact() throws IOException {
+        long previousSize = writePosition;
+        Map<String, Entry> compactedIndex = new ConcurrentHashMap<>();
+        long position = FILE_HEADER_SIZE;
+        try (FileOutputStream fileOut = new FileOutputStream(compactionFile.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (Map.Entry<String, Entry> mapEntry : index.entrySet()) {
+                Entry entry = mapEntry.getValue();
+                ByteBuffer record = ByteBuffer.allocate(entry.length);
+                readFully(record, entry.offset);
+                out.write(record.array());
+                compactedIndex.put(mapEntry.getKey(), entry.movedTo(position));
+                position += entry.length;
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        }
+
+        fileLock.writeLock().lock();
+        try {
+            channel.close();
+            try {
+                Files.move(compactionFile, file, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                // Reopens the old log if the new one could not be moved into place
+                channel = openChannel();
+            }
+            index = compactedIndex;
+            writePosition = position;
+            garbageBytes = 0;
+        } finally {
+            fileLock.writeLock().unlock();
+        }
+        ConsoleLogger.info("Compacted the journal from " + previousSize + " to " + position + " bytes");
+    }
+
+    /**
+     * Opens the log and rebuilds the index from it. Cuts off incomplete or corrupted data at the end.
+     *
+     * @throws IOException if the log could not be read or is corrupted before its last record
+     */
+    private void open() throws IOException {
+        // Left behind if the server stopped during compaction; the original log is still intact
+        Files.deleteIfExists(compactionFile);
+        if (!Files.exists(file) || Files.size(file) == 0) {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+            }
+        }
+
+        long fileSize = Files.size(file);
+        long position;
+        try (InputStream fileIn = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(fileIn, 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("File '" + file + "' is not a journal of this AuthMe version");
+            }
+            position = FILE_HEADER_SIZE;
+            while (true) {
+                byte[] payload;
+                try {
+                    int length = in.readInt();
+                    int checksum = in.readInt();
+                    if (length <= 0 || length > fileSize - position - RECORD_HEADER_SIZE) {
+                        break;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    if (checksum(payload) != checksum) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                int recordLength = RECORD_HEADER_SIZE + payload.length;
+                apply(Record.decode(payload, 0, payload.length), position, recordLength);
+                position += recordLength;
+            }
+        }
+
+        if (position < fileSize && hasRecordAfter(position)) {
+            // Cutting off the log here would delete all accounts written after the corrupted record
+            throw new IOException("The journal '" + file + "' is corrupted at byte " + position + " but has "
+                + "valid records after it. The file has not been changed; please restore it from a backup");
+        }
+        channel = openChannel();
+        long size = channel.size();
+        if (position < size) {
+            ConsoleLogger.warning("Discarding " + (size - position) + " bytes of incomplete data at the end of "
+                + "the journal '" + file + "'; the server probably stopped while writing to it");
+            channel.truncate(position);
+            channel.force(true);
+        }
+        writePosition = position;
+        ConsoleLogger.info("Loaded " + index.size() + " accounts from the journal");
+    }
+
+    /**
+     * Returns whether the log contains a valid record which starts after the given position. Used to tell
+     * an incomplete last record, as left by a crash during a write, from corruption within the log.
+     *
+     * @param start the position of the invalid record
+     * @return true if a valid record follows, false otherwise
+     */
+    private boolean hasRecordAfter(long start) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            long tailSize = in.size() - start;
+            if (tailSize > MAX_TAIL_SCAN_SIZE) {
+                // Far too large to be the remains of a single write
+                return true;
+            }
+            ByteBuffer tail = ByteBuffer.allocate((int) tailSize);
+            readFully(in, tail, start);
+            for (int offset = 1; offset + RECORD_HEADER_SIZE < tail.limit(); ++offset) {
+                int length = tail.getInt(offset);
+                int payloadOffset = offset + RECORD_HEADER_SIZE;
+                if (length <= 0 || length > tail.limit() - payloadOffset) {
+                    continue;
+                }
+                byte type = tail.get(payloadOffset);
+                if (type != TYPE_PUT && type != TYPE_DELETE) {
+                    continue;
+                }
+                byte[] payload = new byte[length];
+                ByteBuffer source = tail.duplicate();
+                source.position(payloadOffset);
+                source.get(payload);
+                if (checksum(payload) == tail.getInt(offset + 4)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private FileChannel openChannel() throws IOException {
+        return FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Reads the data of the player at the given entry. The caller must hold the read lock.
+     */
+    private PlayerAuth read(Entry entry) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(entry.length);
+        readFully(buffer, entry.offset);
+        return Record.decode(buffer.array(), RECORD_HEADER_SIZE, entry.length - RECORD_HEADER_SIZE).auth;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        try {
+            readFully(currentChannel(), buffer, position);
+        } catch (ClosedByInterruptException e) {
+            throw e;
+        } catch (AsynchronousCloseException e) {
+            // Another thread was interrupted while using the channel, which closes it: retry with a new one
+            buffer.clear();
+            readFully(currentChannel(), buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Unexpected end of the journal at " + (position + buffer.position()));
+            }
+        }
+    }
+
+    /**
+     * Returns the channel of the log. A file channel is closed when a thread using it is interrupted,
+     * so the log is reopened if necessary.
+     */
+    private FileChannel currentChannel() throws IOException {
+        FileChannel current = channel;
+        if (!current.isOpen()) {
+            synchronized (this) {
+                if (closed) {
+                    throw new ClosedChannelException();
+                }
+                if (!channel.isOpen()) {
+                    channel = openChannel();
+                }
+                current = channel;
+            }
+        }
+        return current;
+    }
+
+    private boolean update(String user, AuthUpdate update) {
+        String name = user.toLowerCase();
+        Lock lock = playerLocks.get(name);
+        lock.lock();
+        try {
+            Entry entry = index.get(name);
+            PlayerAuth auth = getAuth(name);
+            if (entry == null || auth == null) {
+                return false;
+            }
+            update.apply(auth);
+            return commit(Collections.singletonList(Record.put(name, auth, entry.logged)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void updateLogged(String user, boolean logged) {
+        String name = user.toLowerCase();
+        Lock lock = playerLocks.get(name);
+        lock.lock();
+        try {
+            Entry entry = index.get(name);
+            PlayerAuth auth = getAuth(name);
+            if (entry != null && auth != null && entry.logged != logged) {
+                commit(Collections.singletonList(Record.put(name, auth, logged)));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends the records to the log and waits until they are on disk. The first waiting thread writes
+     * the records of all threads which are waiting at that moment, with one fsync for all of them.
+     *
+     * @param records the records to append
+     * @return true if the records have been written, false otherwise
+     */
+    private boolean commit(List<Record> records) {
+        PendingWrite write = new PendingWrite(records);
+        commitLock.lock();
+        try {
+            pendingWrites.add(write);
+            while (!write.done) {
+                if (writing) {
+                    commitFinished.awaitUninterruptibly();
+                } else {
+                    List<PendingWrite> batch = pendingWrites;
+                    pendingWrites = new ArrayList<>();
+                    writing = true;
+                    commitLock.unlock();
+                    try {
+                        writeBatch(batch);
+                    } finally {
+                        commitLock.lock();
+                        writing = false;
+                        commitFinished.signalAll();
+                    }
+                }
+            }
+            return write.success;
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    private void writeBatch(List<PendingWrite> batch) {
+        boolean success = false;
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            for (PendingWrite write : batch) {
+                for (Record record : write.records) {
+                    buffer.write(record.bytes);
+                }
+            }
+            FileChannel current = currentChannel();
+            ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+            long position = writePosition;
+            try {
+                while (bytes.hasRemaining()) {
+                    position += current.write(bytes, position);
+                }
+                current.force(false);
+            } catch (IOException e) {
+                // Remove the partially written records; they would be cut off on the next start otherwise
+                truncateQuietly(writePosition);
+                throw e;
+            }
+
+            position = writePosition;
+            for (PendingWrite write : batch) {
+                for (Record record : write.records) {
+                    apply(record, position, record.bytes.length);
+                    position += record.bytes.length;
+                }
+            }
+            writePosition = position;
+            success = true;
+        } catch (IOException e) {
+            ConsoleLogger.logException("Could not write to the journal:", e);
+        } finally {
+            for (PendingWrite write : batch) {
+                write.success = success;
+                write.done = true;
+            }
+        }
+    }
+
+    private void truncateQuietly(long size) {
+        try {
+            currentChannel().truncate(size);
+        } catch (IOException e) {
+            ConsoleLogger.logException("Could not remove incomplete data from the journal:", e);
+        }
+    }
+
+    /**
+     * Updates the index with a record which has been written at the given position.
+     */
+    private void apply(Record record, long position, int length) {
+        Entry previous = record.auth == null
+            ? index.remove(record.name)
+            : index.put(record.name, new Entry(position, length, record.auth, record.logged));
+        if (previous != null) {
+            garbageBytes += previous.length;
+        }
+        if (record.auth == null) {
+            garbageBytes += length;
+        }
+    }
+
+    private void beginWriting() {
+        commitLock.lock();
+        try {
+            while (writing) {
+                commitFinished.awaitUninterruptibly();
+            }
+            writing = true;
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    private void endWriting() {
+        commitLock.lock();
+        try {
+            writing = false;
+            commitFinished.signalAll();
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static void logReadException(IOException e) {
+        ConsoleLogger.logException("Could not read from the journal:", e);
+    }
+
+    private interface AuthUpdate {
+        void apply(PlayerAuth auth);
+    }
+
+    /**
+     * Location of the latest record of a player in the log, and the fields which are searched.
+     */
+    private static final class Entry {
+        final long offset;
+        final int length;
+        final long lastLogin;
+        final String ip;
+        final String email;
+        final boolean logged;
+
+        Entry(long offset, int length, PlayerAuth auth, boolean logged) {
+            this(offset, length, auth.getLastLogin(), auth.getIp(), auth.getEmail(), logged);
+        }
+
+        private Entry(long offset, int length, long lastLogin, String ip, String email, boolean logged) {
+            this.offset = offset;
+            this.length = length;
+            this.lastLogin = lastLogin;
+            this.ip = ip;
+            this.email = email;
+            this.logged = logged;
+        }
+
+        Entry movedTo(long newOffset) {
+            return new Entry(newOffset, length, lastLogin, ip, email, logged);
+        }
+    }
+
+    /**
+     * Records of a thread which are waiting to be committed.
+     */
+    private static final class PendingWrite {
+        final List<Record> records;
+        // Guarded by commitLock once the write has been submitted
+        boolean done;
+        boolean success;
+
+        PendingWrite(List<Record> records) {
+            this.records = records;
+        }
+    }
+
+    /**
+     * A record of the log: the complete data of a player or, if the auth is null, the deletion of a player.
+     * The bytes to write contain the length and the checksum of the payload followed by the payload;
+     * they are only created for new records.
+     */
+    private static final class Record {
+        final String name;
+        final PlayerAuth auth;
+        final boolean logged;
+        final byte[] bytes;
+
+        private Record(String name, PlayerAuth auth, boolean logged, boolean encode) {
+            this.name = name;
+            this.auth = auth;
+            this.logged = logged;
+            this.bytes = encode ? encode() : null;
+        }
+
+        static Record put(String name, PlayerAuth auth, boolean logged) {
+            return new Record(name, auth, logged, true);
+        }
+
+        static Record delete(String name) {
+            return new Record(name, null, false, true);
+        }
+
+        static Record decode(byte[] data, int offset, int length) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, offset, length));
+            byte type = in.readByte();
+            String name = in.readUTF();
+            if (type == TYPE_DELETE) {
+                return new Record(name, null, false, false);
+            } else if (type != TYPE_PUT) {
+                throw new IOException("Unknown record type " + type + " for '" + name + "'");
+            }
+            PlayerAuth auth = PlayerAuth.builder()
+                .name(name)
+                .realName(readNullableString(in))
+                .password(readNullableString(in), readNullableString(in))
+                .ip(readNullableString(in))
+                .email(readNullableString(in))
+                .lastLogin(in.readLong())
+                .locX(in.readDouble())
+                .locY(in.readDouble())
+                .locZ(in.readDouble())
+                .locWorld(readNullableString(in))
+                .build();
+            return new Record(name, auth, in.readBoolean(), false);
+        }
+
+        private byte[] encode() {
+            try {
+                ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(128);
+                DataOutputStream out = new DataOutputStream(payloadBytes);
+                out.writeByte(auth == null ? TYPE_DELETE : TYPE_PUT);
+                out.writeUTF(name);
+                if (auth != null) {
+                    HashedPassword password = auth.getPassword();
+                    writeNullableString(out, auth.getRealName());
+                    writeNullableString(out, password == null ? null : password.getHash());
+                    writeNullableString(out, password == null ? null : password.getSalt());
+                    writeNullableString(out, auth.getIp());
+                    writeNullableString(out, auth.getEmail());
+                    out.writeLong(auth.getLastLogin());
+                    out.writeDouble(auth.getQuitLocX());
+                    out.writeDouble(auth.getQuitLocY());
+                    out.writeDouble(auth.getQuitLocZ());
+                    writeNullableString(out, auth.getWorld());
+                    out.writeBoolean(logged);
+                }
+                byte[] payload = payloadBytes.toByteArray();
+                return ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length)
+                    .putInt(payload.length)
+                    .putInt(checksum(payload))
+                    .put(payload)
+                    .array();
+            } catch (IOException e) {
+                // Cannot happen when writing to a byte array
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+            out.writeBoolean(value != null);
+            if (value != null) {
+                out.writeUTF(value);
+            }
+        }
+
+        private static String readNullableString(DataInputStream in) throws IOException {
+            return in.readBoolean() ? in.readUTF() : null;
+        }
+    }
+}
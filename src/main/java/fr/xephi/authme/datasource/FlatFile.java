@@ -17,8 +17,12 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -98,7 +102,6 @@ public class FlatFile implements DataSource {
         }
         return null;
     }
-
     @Override
     public synchronized boolean saveAuth(PlayerAuth auth) {
         if (isAuthAvailable(auth.getNickname())) {
@@ -255,6 +258,18 @@ public class FlatFile implements DataSource {
         return list;
     }
 
+    @Override
+    public List<String> getRecordsToPurge(long until, String afterName, int limit) {
+        List<String> names = new ArrayList<>();
+        for (String name : getRecordsToPurge(until)) {
+            if (afterName == null || name.compareTo(afterName) > 0) {
+                names.add(name);
+            }
+        }
+        Collections.sort(names);
+        return names.size() > limit ? new ArrayList<>(names.subList(0, limit)) : names;
+    }
+
     @Override
     public void purgeRecords(Set<String> toPurge) {
         BufferedReader br = null;
@@ -339,6 +354,34 @@ public class FlatFile implements DataSource {
         return null;
     }
 
+    @Override
+    public synchronized Map<String, PlayerAuth> getAuths(Collection<String> users) {
+        Set<String> names = new HashSet<>();
+        for (String user : users) {
+            names.add(user.toLowerCase());
+        }
+        Map<String, PlayerAuth> auths = new HashMap<>();
+        BufferedReader br = null;
+        try {
+            br = new BufferedReader(new FileReader(source));
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] args = line.split(":");
+                if (names.contains(args[0].toLowerCase())) {
+                    PlayerAuth auth = buildAuthFromArray(args);
+                    if (auth != null) {
+                        auths.put(auth.getNickname(), auth);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            ConsoleLogger.warning(ex.getMessage());
+        } finally {
+            silentClose(br);
+        }
+        return auths;
+    }
+
     @Override
     public synchronized void close() {
     }
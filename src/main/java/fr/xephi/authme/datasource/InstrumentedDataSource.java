@@ -0,0 +1,73 @@
+package fr.xephi.authme.datasource;
+
+import fr.xephi.authme.metrics.LatencyHistogram;
+import fr.xephi.authme.metrics.Metric;
+import fr.xephi.authme.metrics.MetricsRegistry;
+import fr.xephi.authme.metrics.SlowOperationWatchdog;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records the duration of every call to a data source in the {@link MetricsRegistry}
+ * and registers the calls with the {@link SlowOperationWatchdog}.
+ */
+public final class InstrumentedDataSource implements InvocationHandler {
+
+    private final DataSource source;
+    private final MetricsRegistry metricsRegistry;
+    private final SlowOperationWatchdog watchdog;
+    private final Map<Method, LatencyHistogram> histograms = new HashMap<>();
+    private final Map<Method, String> operationNames = new HashMap<>();
+
+    private InstrumentedDataSource(DataSource source, MetricsRegistry metricsRegistry,
+                                   SlowOperationWatchdog watchdog) {
+        this.source = source;
+        this.metricsRegistry = metricsRegistry;
+        this.watchdog = watchdog;
+        // Create all entries up front so the maps are never modified after construction
+        for (Method method : DataSource.class.getMethods()) {
+            histograms.put(method, metricsRegistry.getHistogram(Metric.DATA_SOURCE, method.getName()));
+            operationNames.put(method, "datasource." + method.getName());
+        }
+    }
+
+    /**
+     * Returns a data source which delegates all calls to the given data source and records their duration.
+     *
+     * @param source the data source to instrument
+     * @param metricsRegistry the registry to record the metrics in
+     * @param watchdog the watchdog to register the calls with
+     * @return the instrumented data source
+     */
+    public static DataSource wrap(DataSource source, MetricsRegistry metricsRegistry,
+                                  SlowOperationWatchdog watchdog) {
+        return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(),
+            new Class<?>[]{DataSource.class}, new InstrumentedDataSource(source, metricsRegistry, watchdog));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        LatencyHistogram histogram = histograms.get(method);
+        if (histogram == null) {
+            // Methods of Object such as toString()
+            return method.invoke(source, args);
+        }
+
+        SlowOperationWatchdog.Operation operation = watchdog.start(operationNames.get(method));
+        long start = System.nanoTime();
+        try {
+            return method.invoke(source, args);
+        } catch (InvocationTargetException e) {
+            metricsRegistry.increment(Metric.DATA_SOURCE_ERRORS, method.getName());
+            throw e.getCause();
+        } finally {
+            histogram.recordSince(start);
+            watchdog.finish(operation);
+        }
+    }
+}
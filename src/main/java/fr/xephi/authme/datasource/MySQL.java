@@ -1,10 +1,18 @@
 package fr.xephi.authme.datasource;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Joiner;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Iterables;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import com.zaxxer.hikari.pool.HikariPool.PoolInitializationException;
 import fr.xephi.authme.ConsoleLogger;
 import fr.xephi.authme.cache.auth.PlayerAuth;
+import fr.xephi.authme.metrics.LatencyHistogram;
+import fr.xephi.authme.metrics.Metric;
+import fr.xephi.authme.metrics.MetricsRegistry;
 import fr.xephi.authme.security.HashAlgorithm;
 import fr.xephi.authme.security.crypts.HashedPassword;
 import fr.xephi.authme.security.crypts.XFBCRYPT;
@@ -14,7 +22,6 @@ import fr.xephi.authme.settings.properties.HooksSettings;
 import fr.xephi.authme.settings.properties.SecuritySettings;
 import fr.xephi.authme.util.StringUtils;
 
-import java.sql.Blob;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
@@ -23,12 +30,28 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 public class MySQL implements DataSource {
 
+    /** Maximum number of accounts to delete with one statement when purging. */
+    private static final int PURGE_CHUNK_SIZE = 500;
+    /** Maximum number of accounts to retrieve with one statement. */
+    private static final int LOOKUP_CHUNK_SIZE = 500;
+    /** Time during which reads go to the primary after the replicas could not be reached, in seconds. */
+    private static final int REPLICA_RETRY_SECONDS = 30;
+    /** Interval at which the replication lag of the replicas is checked, in seconds. */
+    private static final int REPLICA_LAG_CHECK_SECONDS = 10;
+
     private String host;
     private String port;
     private String username;
@@ -39,10 +62,34 @@ public class MySQL implements DataSource {
     private Columns col;
     private HashAlgorithm hashAlgorithm;
     private HikariDataSource ds;
+    /** Pool of connections to the read replicas, or null if no replicas are configured. */
+    private HikariDataSource replicaDs;
+    private List<String> replicaHosts;
+    /** Players which have been written recently and must be read from the primary. */
+    private Cache<String, Boolean> recentlyWritten;
+    private volatile long replicaRetryTime;
+    private volatile long nextReplicaLagCheck;
+    /** False if the replication lag cannot be queried, e.g. because of missing privileges. */
+    private volatile boolean replicaLagCheckEnabled = true;
+    private int replicaLagTolerance;
+    private int poolSize;
+    private int minimumIdle;
+    private int connectionTimeout;
+    private int idleTimeout;
+    private int maxLifetime;
+    private int leakDetectionThreshold;
+    private int queryTimeout;
+    /** Histogram of the time to acquire connections, or null if metrics are not recorded. */
+    private volatile LatencyHistogram connectionAcquireTime;
+    private volatile LatencyHistogram replicaConnectionAcquireTime;
 
     private String phpBbPrefix;
     private int phpBbGroup;
     private String wordpressPrefix;
+    /** Name of the change log table, or null if changes are not recorded. */
+    private String changeLogTable;
+    /** Identifies the changes recorded by this server in the change log. */
+    private final String serverId = UUID.randomUUID().toString();
 
     public MySQL(NewSetting settings) throws ClassNotFoundException, SQLException, PoolInitializationException {
         setParameters(settings);
@@ -80,6 +127,12 @@ public class MySQL implements DataSource {
         setParameters(settings);
     }
 
+    @VisibleForTesting
+    MySQL(NewSetting settings, HikariDataSource hikariDataSource, HikariDataSource replicaDataSource) {
+        this(settings, hikariDataSource);
+        replicaDs = replicaDataSource;
+    }
+
     private void setParameters(NewSetting settings) {
         this.host = settings.getProperty(DatabaseSettings.MYSQL_HOST);
         this.port = settings.getProperty(DatabaseSettings.MYSQL_PORT);
@@ -93,34 +146,71 @@ public class MySQL implements DataSource {
         this.phpBbPrefix = settings.getProperty(HooksSettings.PHPBB_TABLE_PREFIX);
         this.phpBbGroup = settings.getProperty(HooksSettings.PHPBB_ACTIVATED_GROUP_ID);
         this.wordpressPrefix = settings.getProperty(HooksSettings.WORDPRESS_TABLE_PREFIX);
+        this.poolSize = settings.getProperty(DatabaseSettings.MYSQL_POOL_SIZE);
+        this.minimumIdle = settings.getProperty(DatabaseSettings.MYSQL_MINIMUM_IDLE);
+        this.connectionTimeout = settings.getProperty(DatabaseSettings.MYSQL_CONNECTION_TIMEOUT);
+        this.idleTimeout = settings.getProperty(DatabaseSettings.MYSQL_IDLE_TIMEOUT);
+        this.maxLifetime = settings.getProperty(DatabaseSettings.MYSQL_MAX_LIFETIME);
+        this.leakDetectionThreshold = settings.getProperty(DatabaseSettings.MYSQL_LEAK_DETECTION_THRESHOLD);
+        this.queryTimeout = settings.getProperty(DatabaseSettings.MYSQL_QUERY_TIMEOUT);
+        this.replicaHosts = settings.getProperty(DatabaseSettings.MYSQL_REPLICA_HOSTS);
+        this.replicaLagTolerance = settings.getProperty(DatabaseSettings.MYSQL_REPLICA_LAG_TOLERANCE);
+        this.recentlyWritten = CacheBuilder.newBuilder()
+            .expireAfterWrite(replicaLagTolerance, TimeUnit.SECONDS)
+            .build();
+        this.changeLogTable = settings.getProperty(DatabaseSettings.MYSQL_CHANGE_LOG)
+            ? settings.getProperty(DatabaseSettings.MYSQL_CHANGE_LOG_TABLE)
+            : null;
     }
 
     private void setConnectionArguments() throws RuntimeException {
-        ds = new HikariDataSource();
-        ds.setPoolName("AuthMeMYSQLPool");
+        ds = createPool("AuthMeMYSQLPool", "jdbc:mysql://" + this.host + ":" + this.port + "/" + this.database);
+        if (!replicaHosts.isEmpty()) {
+            // Connector/J balances the connections over the replicas and skips replicas which are down
+            String protocol = replicaHosts.size() == 1 ? "jdbc:mysql://" : "jdbc:mysql:loadbalance://";
+            replicaDs = createPool("AuthMeMYSQLReplicaPool",
+                protocol + Joiner.on(',').join(replicaHosts) + "/" + this.database);
+            replicaDs.setReadOnly(true);
+        }
+        ConsoleLogger.info("Connection arguments loaded, Hikari ConnectionPool ready!");
+    }
+
+    private HikariDataSource createPool(String poolName, String jdbcUrl) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setPoolName(poolName);
 
         // Database URL
-        ds.setJdbcUrl("jdbc:mysql://" + this.host + ":" + this.port + "/" + this.database);
+        pool.setJdbcUrl(jdbcUrl);
 
         // Auth
-        ds.setUsername(this.username);
-        ds.setPassword(this.password);
+        pool.setUsername(this.username);
+        pool.setPassword(this.password);
+
+        // Pool size and timeouts
+        pool.setMaximumPoolSize(poolSize);
+        if (minimumIdle >= 0) {
+            pool.setMinimumIdle(minimumIdle);
+        }
+        pool.setConnectionTimeout(TimeUnit.SECONDS.toMillis(connectionTimeout));
+        pool.setIdleTimeout(TimeUnit.SECONDS.toMillis(idleTimeout));
+        pool.setMaxLifetime(TimeUnit.SECONDS.toMillis(maxLifetime));
+        // Logs a warning with the stack trace of where a connection was taken if it is held too long
+        pool.setLeakDetectionThreshold(TimeUnit.SECONDS.toMillis(leakDetectionThreshold));
 
         // Encoding
-        ds.addDataSourceProperty("characterEncoding", "utf8");
-        ds.addDataSourceProperty("encoding","UTF-8");
-        ds.addDataSourceProperty("useUnicode", "true");
+        pool.addDataSourceProperty("characterEncoding", "utf8");
+        pool.addDataSourceProperty("encoding","UTF-8");
+        pool.addDataSourceProperty("useUnicode", "true");
 
         // Random stuff
-        ds.addDataSourceProperty("rewriteBatchedStatements", "true");
-        ds.addDataSourceProperty("jdbcCompliantTruncation", "false");
+        pool.addDataSourceProperty("rewriteBatchedStatements", "true");
+        pool.addDataSourceProperty("jdbcCompliantTruncation", "false");
 
         // Caching
-        ds.addDataSourceProperty("cachePrepStmts", "true");
-        ds.addDataSourceProperty("prepStmtCacheSize", "250");
-        ds.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
-
-        ConsoleLogger.info("Connection arguments loaded, Hikari ConnectionPool ready!");
+        pool.addDataSourceProperty("cachePrepStmts", "true");
+        pool.addDataSourceProperty("prepStmtCacheSize", "250");
+        pool.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        return pool;
     }
 
     @Override
@@ -128,16 +218,172 @@ public class MySQL implements DataSource {
         if (ds != null) {
             ds.close();
         }
+        if (replicaDs != null) {
+            replicaDs.close();
+            replicaDs = null;
+        }
         setConnectionArguments();
         ConsoleLogger.info("Hikari ConnectionPool arguments reloaded!");
     }
 
+    /**
+     * Registers the gauges of the connection pool and records the time it takes to acquire connections.
+     *
+     * @param metricsRegistry the registry to record the metrics in
+     */
+    public void registerMetrics(MetricsRegistry metricsRegistry) {
+        connectionAcquireTime = metricsRegistry.getHistogram(Metric.CONNECTION_ACQUIRE, "mysql");
+        replicaConnectionAcquireTime = metricsRegistry.getHistogram(Metric.CONNECTION_ACQUIRE, "mysql_replica");
+        metricsRegistry.registerGauge("authme_datasource_pool_active_connections",
+            "Number of database connections in use", new MetricsRegistry.Gauge() {
+                @Override
+                public double getValue() {
+                    HikariPoolMXBean pool = ds.getHikariPoolMXBean();
+                    return pool == null ? 0 : pool.getActiveConnections();
+                }
+            });
+        metricsRegistry.registerGauge("authme_datasource_pool_idle_connections",
+            "Number of idle database connections", new MetricsRegistry.Gauge() {
+                @Override
+                public double getValue() {
+                    HikariPoolMXBean pool = ds.getHikariPoolMXBean();
+                    return pool == null ? 0 : pool.getIdleConnections();
+                }
+            });
+        metricsRegistry.registerGauge("authme_datasource_pool_waiting_threads",
+            "Number of threads waiting for a database connection", new MetricsRegistry.Gauge() {
+                @Override
+                public double getValue() {
+                    HikariPoolMXBean pool = ds.getHikariPoolMXBean();
+                    return pool == null ? 0 : pool.getThreadsAwaitingConnection();
+                }
+            });
+    }
+
     private Connection getConnection() throws SQLException {
-        return ds.getConnection();
+        return getConnection(ds, connectionAcquireTime, true);
+    }
+
+    /**
+     * Returns a connection to the primary without the query timeout, for schema changes and for bulk
+     * operations such as the purge, which may legitimately take longer than a single player query.
+     *
+     * @return the connection
+     * @throws SQLException if no connection could be acquired
+     */
+    private Connection getConnectionWithoutTimeout() throws SQLException {
+        return getConnection(ds, connectionAcquireTime, false);
+    }
+
+    /**
+     * Returns a connection to read with. Reads go to the replicas if configured, except for players which
+     * have been written recently, since the replicas may not have received the write yet. If the replicas
+     * cannot be reached or lag behind by more than the configured tolerance, the primary is used for the
+     * next {@link #REPLICA_RETRY_SECONDS} seconds.
+     *
+     * @param users the players to read, empty if the read is not about specific players
+     * @return the connection
+     * @throws SQLException if no connection could be acquired
+     */
+    private Connection getReadConnection(Collection<String> users) throws SQLException {
+        HikariDataSource replicas = replicaDs;
+        if (replicas == null || System.currentTimeMillis() < replicaRetryTime || isRecentlyWritten(users)) {
+            return getConnection();
+        }
+        Connection connection;
+        try {
+            connection = getConnection(replicas, replicaConnectionAcquireTime, true);
+        } catch (SQLException | RuntimeException e) {
+            // The replica pool is started lazily, so Hikari throws a PoolInitializationException if the
+            // replicas cannot be reached on the first use
+            readFromPrimary("Could not connect to the MySQL replicas: " + e.getMessage());
+            return getConnection();
+        }
+        if (isReplicaBehind(connection)) {
+            connection.close();
+            return getConnection();
+        }
+        return connection;
+    }
+
+    /**
+     * Checks every {@link #REPLICA_LAG_CHECK_SECONDS} seconds whether the replica of the given connection
+     * lags behind the primary by more than the tolerance, or doesn't replicate at all.
+     * <p>
+     * With several replicas only the replica the connection was balanced to is checked. The other replicas
+     * are only checked once a later check gets a connection to them, so a lagging replica may serve reads
+     * for several check intervals before it is noticed.
+     *
+     * @param connection the replica connection to check
+     * @return true if reads have been switched to the primary, false otherwise
+     */
+    private boolean isReplicaBehind(Connection connection) {
+        long now = System.currentTimeMillis();
+        if (!replicaLagCheckEnabled || now < nextReplicaLagCheck) {
+            return false;
+        }
+        nextReplicaLagCheck = now + TimeUnit.SECONDS.toMillis(REPLICA_LAG_CHECK_SECONDS);
+        try (Statement st = connection.createStatement(); ResultSet rs = st.executeQuery("SHOW SLAVE STATUS")) {
+            if (!rs.next()) {
+                // Not a replica
+                return false;
+            }
+            long lag = rs.getLong("Seconds_Behind_Master");
+            if (rs.wasNull()) {
+                readFromPrimary("Replication of the MySQL replica is not running");
+                return true;
+            } else if (lag > replicaLagTolerance) {
+                readFromPrimary("The MySQL replica is " + lag + " seconds behind");
+                return true;
+            }
+        } catch (SQLException e) {
+            replicaLagCheckEnabled = false;
+            ConsoleLogger.warning("Could not check the replication lag of the MySQL replicas, the user needs the "
+                + "REPLICATION CLIENT privilege: " + e.getMessage());
+        }
+        return false;
+    }
+
+    private void readFromPrimary(String reason) {
+        replicaRetryTime = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(REPLICA_RETRY_SECONDS);
+        ConsoleLogger.warning(reason + ". Reading from the primary for the next "
+            + REPLICA_RETRY_SECONDS + " seconds");
+    }
+
+    @VisibleForTesting
+    long getReplicaRetryTime() {
+        return replicaRetryTime;
+    }
+
+    private Connection getReadConnection(String user) throws SQLException {
+        return getReadConnection(Collections.singleton(user));
+    }
+
+    private Connection getReadConnection() throws SQLException {
+        return getReadConnection(Collections.<String>emptySet());
+    }
+
+    private boolean isRecentlyWritten(Collection<String> users) {
+        for (String user : users) {
+            if (recentlyWritten.getIfPresent(user.toLowerCase()) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Connection getConnection(HikariDataSource pool, LatencyHistogram histogram, boolean withTimeout)
+        throws SQLException {
+        long start = System.nanoTime();
+        Connection connection = pool.getConnection();
+        if (histogram != null) {
+            histogram.recordSince(start);
+        }
+        return withTimeout && queryTimeout > 0 ? QueryTimeoutConnection.wrap(connection, queryTimeout) : connection;
     }
 
     private void checkTablesAndColumns() throws SQLException {
-        try (Connection con = getConnection(); Statement st = con.createStatement()) {
+        try (Connection con = getConnectionWithoutTimeout(); Statement st = con.createStatement()) {
             // Create table with ID column if it doesn't exist
             String sql = "CREATE TABLE IF NOT EXISTS " + tableName + " ("
                 + col.ID + " MEDIUMINT(8) UNSIGNED AUTO_INCREMENT,"
@@ -203,6 +449,18 @@ public class MySQL implements DataSource {
                 st.executeUpdate("ALTER TABLE " + tableName + " ADD COLUMN "
                     + col.IS_LOGGED + " SMALLINT NOT NULL DEFAULT '0' AFTER " + col.EMAIL);
             }
+
+            if (changeLogTable != null) {
+                st.executeUpdate("CREATE TABLE IF NOT EXISTS " + changeLogTable + " ("
+                    + "id BIGINT UNSIGNED AUTO_INCREMENT,"
+                    + "name VARCHAR(255) NOT NULL,"
+                    + "operation VARCHAR(20) NOT NULL,"
+                    + "server CHAR(36) CHARACTER SET ascii NOT NULL,"
+                    + "created BIGINT NOT NULL,"
+                    + "PRIMARY KEY (id),"
+                    + "INDEX (created)"
+                    + ") CHARACTER SET = utf8;");
+            }
         }
         ConsoleLogger.info("MySQL setup finished");
     }
@@ -217,7 +475,7 @@ public class MySQL implements DataSource {
     public boolean isAuthAvailable(String user) {
         String sql = "SELECT " + col.NAME + " FROM " + tableName + " WHERE " + col.NAME + "=?;";
         ResultSet rs = null;
-        try (Connection con = getConnection(); PreparedStatement pst = con.prepareStatement(sql)) {
+        try (Connection con = getReadConnection(user); PreparedStatement pst = con.prepareStatement(sql)) {
             pst.setString(1, user.toLowerCase());
             rs = pst.executeQuery();
             return rs.next();
@@ -235,7 +493,7 @@ public class MySQL implements DataSource {
         String sql = "SELECT " + col.PASSWORD
             + (useSalt ? ", " + col.SALT : "")
             + " FROM " + tableName + " WHERE " + col.NAME + "=?;";
-        try (Connection con = getConnection(); PreparedStatement pst = con.prepareStatement(sql)) {
+        try (Connection con = getReadConnection(user); PreparedStatement pst = con.prepareStatement(sql)) {
             pst.setString(1, user.toLowerCase());
             try (ResultSet rs = pst.executeQuery()) {
                 if (rs.next()) {
@@ -248,242 +506,195 @@ public class MySQL implements DataSource {
         }
         return null;
     }
-
     @Override
     public PlayerAuth getAuth(String user) {
-        String sql = "SELECT * FROM " + tableName + " WHERE " + col.NAME + "=?;";
-        PlayerAuth auth;
-        try (Connection con = getConnection(); PreparedStatement pst = con.prepareStatement(sql)) {
+        String sql = selectAuths("t." + col.NAME + "=?");
+        try (Connection con = getReadConnection(user); PreparedStatement pst = con.prepareStatement(sql)) {
             pst.setString(1, user.toLowerCase());
-            int id;
             try (ResultSet rs = pst.executeQuery()) {
-                if (!rs.next()) {
-                    return null;
-                }
-                id = rs.getInt(col.ID);
-                auth = buildAuthFromResultSet(rs);
-            }
-            if (hashAlgorithm == HashAlgorithm.XFBCRYPT) {
-                try (PreparedStatement pst2 = con.prepareStatement(
-                    "SELECT data FROM xf_user_authenticate WHERE " + col.ID + "=?;")) {
-                    pst2.setInt(1, id);
-                    try (ResultSet rs = pst2.executeQuery()) {
-                        if (rs.next()) {
-                            Blob blob = rs.getBlob("data");
-                            byte[] bytes = blob.getBytes(1, (int) blob.length());
-                            auth.setPassword(new HashedPassword(XFBCRYPT.getHashFromBlob(bytes)));
-                        }
-                    }
+                if (rs.next()) {
+                    return buildAuthWithForumPassword(rs);
                 }
+                return null;
             }
-            return auth;
         } catch (SQLException ex) {
             logSqlException(ex);
         }
         return null;
     }
 
+    @Override
+    public Map<String, PlayerAuth> getAuths(Collection<String> users) {
+        Map<String, PlayerAuth> auths = new HashMap<>();
+        for (List<String> chunk : Iterables.partition(users, LOOKUP_CHUNK_SIZE)) {
+            String sql = selectAuths("t." + col.NAME + " IN ("
+                + Joiner.on(", ").join(Collections.nCopies(chunk.size(), "?")) + ")");
+            try (Connection con = getReadConnection(chunk); PreparedStatement pst = con.prepareStatement(sql)) {
+                for (int i = 0; i < chunk.size(); ++i) {
+                    pst.setString(i + 1, chunk.get(i).toLowerCase());
+                }
+                try (ResultSet rs = pst.executeQuery()) {
+                    while (rs.next()) {
+                        PlayerAuth auth = buildAuthWithForumPassword(rs);
+                        auths.put(auth.getNickname(), auth);
+                    }
+                }
+            } catch (SQLException ex) {
+                logSqlException(ex);
+            }
+        }
+        return auths;
+    }
+
     @Override
     public boolean saveAuth(PlayerAuth auth) {
         try (Connection con = getConnection()) {
-            PreparedStatement pst;
-            PreparedStatement pst2;
-            ResultSet rs;
-            String sql;
-
-            boolean useSalt = !col.SALT.isEmpty() || !StringUtils.isEmpty(auth.getPassword().getSalt());
-            sql = "INSERT INTO " + tableName + "("
-                + col.NAME + "," + col.PASSWORD + "," + col.IP + ","
-                + col.LAST_LOGIN + "," + col.REAL_NAME + "," + col.EMAIL
-                + (useSalt ? "," + col.SALT : "")
-                + ") VALUES (?,?,?,?,?,?" + (useSalt ? ",?" : "") + ");";
-            pst = con.prepareStatement(sql);
-            pst.setString(1, auth.getNickname());
-            pst.setString(2, auth.getPassword().getHash());
-            pst.setString(3, auth.getIp());
-            pst.setLong(4, auth.getLastLogin());
-            pst.setString(5, auth.getRealName());
-            pst.setString(6, auth.getEmail());
+            // Register the player in the forum tables in the same transaction, so that no half registered
+            // player remains if one of the statements fails
+            con.setAutoCommit(false);
+            try {
+                int id = insertAuth(con, auth);
+                if (hashAlgorithm == HashAlgorithm.PHPBB) {
+                    savePhpBbData(con, id);
+                } else if (hashAlgorithm == HashAlgorithm.WORDPRESS) {
+                    saveWordpressData(con, auth, id);
+                } else if (hashAlgorithm == HashAlgorithm.XFBCRYPT) {
+                    saveXenForoData(con, auth, id);
+                }
+                onWrite(con, auth.getNickname(), ChangeType.REGISTER);
+                con.commit();
+                return true;
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            } finally {
+                con.setAutoCommit(true);
+            }
+        } catch (SQLException ex) {
+            logSqlException(ex);
+        }
+        return false;
+    }
+
+    /**
+     * Inserts the player into the AuthMe table, including the additional name columns and the columns
+     * of the phpBB users table.
+     *
+     * @param con the connection to use
+     * @param auth the player to insert
+     * @return the id of the inserted row if a forum integration needs it, 0 otherwise
+     */
+    private int insertAuth(Connection con, PlayerAuth auth) throws SQLException {
+        boolean useSalt = !col.SALT.isEmpty() || !StringUtils.isEmpty(auth.getPassword().getSalt());
+        boolean isPhpBb = hashAlgorithm == HashAlgorithm.PHPBB;
+        boolean needsId = isPhpBb || hashAlgorithm == HashAlgorithm.WORDPRESS
+            || hashAlgorithm == HashAlgorithm.XFBCRYPT;
+
+        List<String> columns = new ArrayList<>(Arrays.asList(
+            col.NAME, col.PASSWORD, col.IP, col.LAST_LOGIN, col.REAL_NAME, col.EMAIL));
+        if (useSalt) {
+            columns.add(col.SALT);
+        }
+        columns.addAll(columnOthers);
+        if (isPhpBb) {
+            columns.addAll(Arrays.asList("username_clean", "group_id", "user_regdate", "user_lastvisit"));
+        }
+        String sql = "INSERT INTO " + tableName + " (" + Joiner.on(',').join(columns) + ") VALUES ("
+            + Joiner.on(',').join(Collections.nCopies(columns.size(), "?")) + ");";
+
+        try (PreparedStatement pst = needsId
+            ? con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+            : con.prepareStatement(sql)) {
+            int index = 1;
+            pst.setString(index++, auth.getNickname());
+            pst.setString(index++, auth.getPassword().getHash());
+            pst.setString(index++, auth.getIp());
+            pst.setLong(index++, auth.getLastLogin());
+            pst.setString(index++, auth.getRealName());
+            pst.setString(index++, auth.getEmail());
             if (useSalt) {
-                pst.setString(7, auth.getPassword().getSalt());
+                pst.setString(index++, auth.getPassword().getSalt());
+            }
+            for (int i = 0; i < columnOthers.size(); ++i) {
+                pst.setString(index++, auth.getRealName());
+            }
+            if (isPhpBb) {
+                // Current time without ms
+                long time = System.currentTimeMillis() / 1000;
+                pst.setString(index++, auth.getNickname());
+                pst.setInt(index++, phpBbGroup);
+                pst.setLong(index++, time);
+                pst.setLong(index, time);
             }
             pst.executeUpdate();
-            pst.close();
 
-            if (!columnOthers.isEmpty()) {
-                for (String column : columnOthers) {
-                    pst = con.prepareStatement("UPDATE " + tableName + " SET " + column + "=? WHERE " + col.NAME + "=?;");
-                    pst.setString(1, auth.getRealName());
-                    pst.setString(2, auth.getNickname());
-                    pst.executeUpdate();
-                    pst.close();
+            if (!needsId) {
+                return 0;
+            }
+            try (ResultSet rs = pst.getGeneratedKeys()) {
+                if (!rs.next()) {
+                    throw new SQLException("No id was generated for player '" + auth.getNickname() + "'");
                 }
+                return rs.getInt(1);
             }
+        }
+    }
 
-            if (hashAlgorithm == HashAlgorithm.PHPBB) {
-                sql = "SELECT " + col.ID + " FROM " + tableName + " WHERE " + col.NAME + "=?;";
-                pst = con.prepareStatement(sql);
-                pst.setString(1, auth.getNickname());
-                rs = pst.executeQuery();
-                if (rs.next()) {
-                    int id = rs.getInt(col.ID);
-                    // Insert player in phpbb_user_group
-                    sql = "INSERT INTO " + phpBbPrefix
-                        + "user_group (group_id, user_id, group_leader, user_pending) VALUES (?,?,?,?);";
-                    pst2 = con.prepareStatement(sql);
-                    pst2.setInt(1, phpBbGroup);
-                    pst2.setInt(2, id);
-                    pst2.setInt(3, 0);
-                    pst2.setInt(4, 0);
-                    pst2.executeUpdate();
-                    pst2.close();
-                    // Update username_clean in phpbb_users
-                    sql = "UPDATE " + tableName + " SET " + tableName
-                        + ".username_clean=? WHERE " + col.NAME + "=?;";
-                    pst2 = con.prepareStatement(sql);
-                    pst2.setString(1, auth.getNickname());
-                    pst2.setString(2, auth.getNickname());
-                    pst2.executeUpdate();
-                    pst2.close();
-                    // Update player group in phpbb_users
-                    sql = "UPDATE " + tableName + " SET " + tableName
-                        + ".group_id=? WHERE " + col.NAME + "=?;";
-                    pst2 = con.prepareStatement(sql);
-                    pst2.setInt(1, phpBbGroup);
-                    pst2.setString(2, auth.getNickname());
-                    pst2.executeUpdate();
-                    pst2.close();
-                    // Get current time without ms
-                    long time = System.currentTimeMillis() / 1000;
-                    // Update user_regdate
-                    sql = "UPDATE " + tableName + " SET " + tableName
-                        + ".user_regdate=? WHERE " + col.NAME + "=?;";
-                    pst2 = con.prepareStatement(sql);
-                    pst2.setLong(1, time);
-                    pst2.setString(2, auth.getNickname());
-                    pst2.executeUpdate();
-                    pst2.close();
-                    // Update user_lastvisit
-                    sql = "UPDATE " + tableName + " SET " + tableName
-                        + ".user_lastvisit=? WHERE " + col.NAME + "=?;";
-                    pst2 = con.prepareStatement(sql);
-                    pst2.setLong(1, time);
-                    pst2.setString(2, auth.getNickname());
-                    pst2.executeUpdate();
-                    pst2.close();
-                    // Increment num_users
-                    sql = "UPDATE " + phpBbPrefix
-                        + "config SET config_value = config_value + 1 WHERE config_name = 'num_users';";
-                    pst2 = con.prepareStatement(sql);
-                    pst2.executeUpdate();
-                    pst2.close();
-                }
-                rs.close();
-                pst.close();
-            } else if (hashAlgorithm == HashAlgorithm.WORDPRESS) {
-                // NOTE: Eclipse says pst should be closed HERE, but it's a bug, we already close it above. -sgdc3
-                pst = con.prepareStatement("SELECT " + col.ID + " FROM " + tableName + " WHERE " + col.NAME + "=?;");
-                pst.setString(1, auth.getNickname());
-                rs = pst.executeQuery();
-                if (rs.next()) {
-                    int id = rs.getInt(col.ID);
-                    sql = "INSERT INTO " + wordpressPrefix + "usermeta (user_id, meta_key, meta_value) VALUES (?,?,?)";
-                    pst2 = con.prepareStatement(sql);
-                    // First Name
-                    pst2.setInt(1, id);
-                    pst2.setString(2, "first_name");
-                    pst2.setString(3, "");
-                    pst2.addBatch();
-                    // Last Name
-                    pst2.setInt(1, id);
-                    pst2.setString(2, "last_name");
-                    pst2.setString(3, "");
-                    pst2.addBatch();
-                    // Nick Name
-                    pst2.setInt(1, id);
-                    pst2.setString(2, "nickname");
-                    pst2.setString(3, auth.getNickname());
-                    pst2.addBatch();
-                    // Description
-                    pst2.setInt(1, id);
-                    pst2.setString(2, "description");
-                    pst2.setString(3, "");
-                    pst2.addBatch();
-                    // Rich_Editing
-                    pst2.setInt(1, id);
-                    pst2.setString(2, "rich_editing");
-                    pst2.setString(3, "true");
-                    pst2.addBatch();
-                    // Comments_Shortcuts
-                    pst2.setInt(1, id);
-                    pst2.setString(2, "comment_shortcuts");
-                    pst2.setString(3, "false");
-                    pst2.addBatch();
-                    // admin_color
-                    pst2.setInt(1, id);
-                    pst2.setString(2, "admin_color");
-                    pst2.setString(3, "fresh");
-                    pst2.addBatch();
-                    // use_ssl
-                    pst2.setInt(1, id);
-                    pst2.setString(2, "use_ssl");
-                    pst2.setString(3, "0");
-                    pst2.addBatch();
-                    // show_admin_bar_front
-                    pst2.setInt(1, id);
-                    pst2.setString(2, "show_admin_bar_front");
-                    pst2.setString(3, "true");
-                    pst2.addBatch();
-                    // wp_capabilities
-                    pst2.setInt(1, id);
-                    pst2.setString(2, wordpressPrefix + "capabilities");
-                    pst2.setString(3, "a:1:{s:10:\"subscriber\";b:1;}");
-                    pst2.addBatch();
-                    // wp_user_level
-                    pst2.setInt(1, id);
-                    pst2.setString(2, wordpressPrefix + "user_level");
-                    pst2.setString(3, "0");
-                    pst2.addBatch();
-                    // default_password_nag
-                    pst2.setInt(1, id);
-                    pst2.setString(2, "default_password_nag");
-                    pst2.setString(3, "");
-                    pst2.addBatch();
-
-                    // Execute queries
-                    pst2.executeBatch();
-                    pst2.clearBatch();
-                    pst2.close();
-                }
-                rs.close();
-                pst.close();
-            } else if (hashAlgorithm == HashAlgorithm.XFBCRYPT) {
-                // NOTE: Eclipse says pst should be closed HERE, but it's a bug, we already close it above. -sgdc3
-                pst = con.prepareStatement("SELECT " + col.ID + " FROM " + tableName + " WHERE " + col.NAME + "=?;");
-                pst.setString(1, auth.getNickname());
-                rs = pst.executeQuery();
-                if (rs.next()) {
-                    int id = rs.getInt(col.ID);
-                    sql = "INSERT INTO xf_user_authenticate (user_id, scheme_class, data) VALUES (?,?,?)";
-                    pst2 = con.prepareStatement(sql);
-                    pst2.setInt(1, id);
-                    pst2.setString(2, XFBCRYPT.SCHEME_CLASS);
-                    String serializedHash = XFBCRYPT.serializeHash(auth.getPassword().getHash());
-                    byte[] bytes = serializedHash.getBytes();
-                    Blob blob = con.createBlob();
-                    blob.setBytes(1, bytes);
-                    pst2.setBlob(3, blob);
-                    pst2.executeUpdate();
-                    pst2.close();
-                }
-                rs.close();
-                pst.close();
+    private void savePhpBbData(Connection con, int id) throws SQLException {
+        // Insert player in phpbb_user_group
+        String sql = "INSERT INTO " + phpBbPrefix
+            + "user_group (group_id, user_id, group_leader, user_pending) VALUES (?,?,?,?);";
+        try (PreparedStatement pst = con.prepareStatement(sql)) {
+            pst.setInt(1, phpBbGroup);
+            pst.setInt(2, id);
+            pst.setInt(3, 0);
+            pst.setInt(4, 0);
+            pst.executeUpdate();
+        }
+        // Increment num_users
+        sql = "UPDATE " + phpBbPrefix + "config SET config_value = config_value + 1 WHERE config_name = 'num_users';";
+        try (PreparedStatement pst = con.prepareStatement(sql)) {
+            pst.executeUpdate();
+        }
+    }
+
+    private void saveWordpressData(Connection con, PlayerAuth auth, int id) throws SQLException {
+        String[][] metaData = {
+            {"first_name", ""},
+            {"last_name", ""},
+            {"nickname", auth.getNickname()},
+            {"description", ""},
+            {"rich_editing", "true"},
+            {"comment_shortcuts", "false"},
+            {"admin_color", "fresh"},
+            {"use_ssl", "0"},
+            {"show_admin_bar_front", "true"},
+            {wordpressPrefix + "capabilities", "a:1:{s:10:\"subscriber\";b:1;}"},
+            {wordpressPrefix + "user_level", "0"},
+            {"default_password_nag", ""}
+        };
+        // Insert all rows with one statement
+        String sql = "INSERT INTO " + wordpressPrefix + "usermeta (user_id, meta_key, meta_value) VALUES "
+            + Joiner.on(',').join(Collections.nCopies(metaData.length, "(?,?,?)")) + ";";
+        try (PreparedStatement pst = con.prepareStatement(sql)) {
+            int index = 1;
+            for (String[] meta : metaData) {
+                pst.setInt(index++, id);
+                pst.setString(index++, meta[0]);
+                pst.setString(index++, meta[1]);
             }
-            return true;
-        } catch (SQLException ex) {
-            logSqlException(ex);
+            pst.executeUpdate();
+        }
+    }
+
+    private void saveXenForoData(Connection con, PlayerAuth auth, int id) throws SQLException {
+        String sql = "INSERT INTO xf_user_authenticate (user_id, scheme_class, data) VALUES (?,?,?);";
+        try (PreparedStatement pst = con.prepareStatement(sql)) {
+            pst.setInt(1, id);
+            pst.setString(2, XFBCRYPT.SCHEME_CLASS);
+            pst.setBytes(3, XFBCRYPT.serializeHash(auth.getPassword().getHash()).getBytes());
+            pst.executeUpdate();
         }
-        return false;
     }
 
     @Override
@@ -494,61 +705,53 @@ public class MySQL implements DataSource {
     @Override
     public boolean updatePassword(String user, HashedPassword password) {
         user = user.toLowerCase();
+        boolean useSalt = !col.SALT.isEmpty();
+        String sql = useSalt
+            ? String.format("UPDATE %s SET %s = ?, %s = ? WHERE %s = ?;", tableName, col.PASSWORD, col.SALT, col.NAME)
+            : String.format("UPDATE %s SET %s = ? WHERE %s = ?;", tableName, col.PASSWORD, col.NAME);
         try (Connection con = getConnection()) {
-            boolean useSalt = !col.SALT.isEmpty();
-            PreparedStatement pst;
-            if (useSalt) {
-                String sql = String.format("UPDATE %s SET %s = ?, %s = ? WHERE %s = ?;",
-                    tableName, col.PASSWORD, col.SALT, col.NAME);
-                pst = con.prepareStatement(sql);
-                pst.setString(1, password.getHash());
-                pst.setString(2, password.getSalt());
-                pst.setString(3, user);
-            } else {
-                String sql = String.format("UPDATE %s SET %s = ? WHERE %s = ?;",
-                    tableName, col.PASSWORD, col.NAME);
-                pst = con.prepareStatement(sql);
-                pst.setString(1, password.getHash());
-                pst.setString(2, user);
-            }
-            pst.executeUpdate();
-            pst.close();
-            if (hashAlgorithm == HashAlgorithm.XFBCRYPT) {
-                String sql = "SELECT " + col.ID + " FROM " + tableName + " WHERE " + col.NAME + "=?;";
-                pst = con.prepareStatement(sql);
-                pst.setString(1, user);
-                ResultSet rs = pst.executeQuery();
-                if (rs.next()) {
-                    int id = rs.getInt(col.ID);
-                    // Insert password in the correct table
-                    sql = "UPDATE xf_user_authenticate SET data=? WHERE " + col.ID + "=?;";
-                    PreparedStatement pst2 = con.prepareStatement(sql);
-                    String serializedHash = XFBCRYPT.serializeHash(password.getHash());
-                    byte[] bytes = serializedHash.getBytes();
-                    Blob blob = con.createBlob();
-                    blob.setBytes(1, bytes);
-                    pst2.setBlob(1, blob);
-                    pst2.setInt(2, id);
-                    pst2.executeUpdate();
-                    pst2.close();
-                    // ...
-                    sql = "UPDATE xf_user_authenticate SET scheme_class=? WHERE " + col.ID + "=?;";
-                    pst2 = con.prepareStatement(sql);
-                    pst2.setString(1, XFBCRYPT.SCHEME_CLASS);
-                    pst2.setInt(2, id);
-                    pst2.executeUpdate();
-                    pst2.close();
+            // Update the password in the forum table in the same transaction, so that both always match
+            con.setAutoCommit(false);
+            try {
+                try (PreparedStatement pst = con.prepareStatement(sql)) {
+                    int index = 1;
+                    pst.setString(index++, password.getHash());
+                    if (useSalt) {
+                        pst.setString(index++, password.getSalt());
+                    }
+                    pst.setString(index, user);
+                    pst.executeUpdate();
                 }
-                rs.close();
-                pst.close();
+                if (hashAlgorithm == HashAlgorithm.XFBCRYPT) {
+                    updateXenForoPassword(con, user, password);
+                }
+                onWrite(con, user, ChangeType.PASSWORD);
+                con.commit();
+                return true;
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            } finally {
+                con.setAutoCommit(true);
             }
-            return true;
         } catch (SQLException ex) {
             logSqlException(ex);
         }
         return false;
     }
 
+    private void updateXenForoPassword(Connection con, String user, HashedPassword password) throws SQLException {
+        // Update the password in the XenForo table with a single statement
+        String sql = "UPDATE xf_user_authenticate SET data=?, scheme_class=? WHERE " + col.ID
+            + "=(SELECT " + col.ID + " FROM " + tableName + " WHERE " + col.NAME + "=?);";
+        try (PreparedStatement pst = con.prepareStatement(sql)) {
+            pst.setBytes(1, XFBCRYPT.serializeHash(password.getHash()).getBytes());
+            pst.setString(2, XFBCRYPT.SCHEME_CLASS);
+            pst.setString(3, user);
+            pst.executeUpdate();
+        }
+    }
+
     @Override
     public boolean updateSession(PlayerAuth auth) {
         String sql = "UPDATE " + tableName + " SET "
@@ -559,6 +762,7 @@ public class MySQL implements DataSource {
             pst.setString(3, auth.getRealName());
             pst.setString(4, auth.getNickname());
             pst.executeUpdate();
+            onWrite(con, auth.getNickname(), ChangeType.SESSION);
             return true;
         } catch (SQLException ex) {
             logSqlException(ex);
@@ -571,7 +775,7 @@ public class MySQL implements DataSource {
         Set<String> list = new HashSet<>();
 
         String select = "SELECT " + col.NAME + " FROM " + tableName + " WHERE " + col.LAST_LOGIN + "<?;";
-        try (Connection con = getConnection();
+        try (Connection con = getConnectionWithoutTimeout();
              PreparedStatement selectPst = con.prepareStatement(select)) {
             selectPst.setLong(1, until);
             try (ResultSet rs = selectPst.executeQuery()) {
@@ -586,6 +790,32 @@ public class MySQL implements DataSource {
         return list;
     }
 
+    @Override
+    public List<String> getRecordsToPurge(long until, String afterName, int limit) {
+        List<String> list = new ArrayList<>();
+
+        String select = "SELECT " + col.NAME + " FROM " + tableName + " WHERE " + col.LAST_LOGIN + "<?"
+            + (afterName == null ? "" : " AND " + col.NAME + ">?") + " ORDER BY " + col.NAME + " LIMIT ?;";
+        try (Connection con = getConnectionWithoutTimeout();
+             PreparedStatement selectPst = con.prepareStatement(select)) {
+            int index = 1;
+            selectPst.setLong(index++, until);
+            if (afterName != null) {
+                selectPst.setString(index++, afterName);
+            }
+            selectPst.setInt(index, limit);
+            try (ResultSet rs = selectPst.executeQuery()) {
+                while (rs.next()) {
+                    list.add(rs.getString(col.NAME));
+                }
+            }
+        } catch (SQLException ex) {
+            logSqlException(ex);
+        }
+
+        return list;
+    }
+
     @Override
     public boolean removeAuth(String user) {
         user = user.toLowerCase();
@@ -609,6 +839,7 @@ public class MySQL implements DataSource {
             }
             pst.setString(1, user);
             pst.executeUpdate();
+            onWrite(con, user, ChangeType.UNREGISTER);
             return true;
         } catch (SQLException ex) {
             logSqlException(ex);
@@ -631,6 +862,7 @@ public class MySQL implements DataSource {
             pst.setString(4, auth.getWorld());
             pst.setString(5, auth.getNickname());
             pst.executeUpdate();
+            onWrite(con, auth.getNickname(), ChangeType.QUIT_LOCATION);
             return true;
         } catch (SQLException ex) {
             logSqlException(ex);
@@ -645,6 +877,7 @@ public class MySQL implements DataSource {
             pst.setString(1, auth.getEmail());
             pst.setString(2, auth.getNickname());
             pst.executeUpdate();
+            onWrite(con, auth.getNickname(), ChangeType.EMAIL);
             return true;
         } catch (SQLException ex) {
             logSqlException(ex);
@@ -657,13 +890,16 @@ public class MySQL implements DataSource {
         if (ds != null && !ds.isClosed()) {
             ds.close();
         }
+        if (replicaDs != null && !replicaDs.isClosed()) {
+            replicaDs.close();
+        }
     }
 
     @Override
     public List<String> getAllAuthsByIp(String ip) {
         List<String> result = new ArrayList<>();
         String sql = "SELECT " + col.NAME + " FROM " + tableName + " WHERE " + col.IP + "=?;";
-        try (Connection con = getConnection(); PreparedStatement pst = con.prepareStatement(sql)) {
+        try (Connection con = getReadConnection(); PreparedStatement pst = con.prepareStatement(sql)) {
             pst.setString(1, ip);
             try (ResultSet rs = pst.executeQuery()) {
                 while (rs.next()) {
@@ -679,7 +915,7 @@ public class MySQL implements DataSource {
     @Override
     public int countAuthsByEmail(String email) {
         String sql = "SELECT COUNT(1) FROM " + tableName + " WHERE UPPER(" + col.EMAIL + ") = UPPER(?)";
-        try (Connection con = getConnection(); PreparedStatement pst = con.prepareStatement(sql)) {
+        try (Connection con = getReadConnection(); PreparedStatement pst = con.prepareStatement(sql)) {
             pst.setString(1, email);
             try (ResultSet rs = pst.executeQuery()) {
                 if (rs.next()) {
@@ -694,14 +930,20 @@ public class MySQL implements DataSource {
 
     @Override
     public void purgeRecords(Set<String> toPurge) {
-        String sql = "DELETE FROM " + tableName + " WHERE " + col.NAME + "=?;";
-        try (Connection con = getConnection(); PreparedStatement pst = con.prepareStatement(sql)) {
-            for (String name : toPurge) {
-                pst.setString(1, name);
-                pst.executeUpdate();
+        // Delete in chunks so that no single statement holds locks on too many rows
+        for (List<String> chunk : Iterables.partition(toPurge, PURGE_CHUNK_SIZE)) {
+            String delete = "DELETE FROM " + tableName + " WHERE " + col.NAME + " IN ("
+                + Joiner.on(", ").join(Collections.nCopies(chunk.size(), "?")) + ");";
+            try (Connection con = getConnectionWithoutTimeout();
+                 PreparedStatement deletePst = con.prepareStatement(delete)) {
+                for (int i = 0; i < chunk.size(); ++i) {
+                    deletePst.setString(i + 1, chunk.get(i));
+                }
+                deletePst.executeUpdate();
+                onWrite(con, chunk, ChangeType.UNREGISTER);
+            } catch (SQLException ex) {
+                logSqlException(ex);
             }
-        } catch (SQLException ex) {
-            logSqlException(ex);
         }
     }
 
@@ -751,7 +993,7 @@ public class MySQL implements DataSource {
     @Override
     public void purgeLogged() {
         String sql = "UPDATE " + tableName + " SET " + col.IS_LOGGED + "=? WHERE " + col.IS_LOGGED + "=?;";
-        try (Connection con = getConnection(); PreparedStatement pst = con.prepareStatement(sql)) {
+        try (Connection con = getConnectionWithoutTimeout(); PreparedStatement pst = con.prepareStatement(sql)) {
             pst.setInt(1, 0);
             pst.setInt(2, 1);
             pst.executeUpdate();
@@ -764,7 +1006,7 @@ public class MySQL implements DataSource {
     public int getAccountsRegistered() {
         int result = 0;
         String sql = "SELECT COUNT(*) FROM " + tableName;
-        try (Connection con = getConnection();
+        try (Connection con = getReadConnection();
              Statement st = con.createStatement();
              ResultSet rs = st.executeQuery(sql)) {
             if (rs.next()) {
@@ -783,6 +1025,7 @@ public class MySQL implements DataSource {
             pst.setString(1, realName);
             pst.setString(2, user);
             pst.executeUpdate();
+            onWrite(con, user, ChangeType.REAL_NAME);
             return true;
         } catch (SQLException ex) {
             logSqlException(ex);
@@ -793,28 +1036,12 @@ public class MySQL implements DataSource {
     @Override
     public List<PlayerAuth> getAllAuths() {
         List<PlayerAuth> auths = new ArrayList<>();
-        try (Connection con = getConnection()) {
-            Statement st = con.createStatement();
-            ResultSet rs = st.executeQuery("SELECT * FROM " + tableName);
+        try (Connection con = getConnectionWithoutTimeout();
+             Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery(selectAuths(null))) {
             while (rs.next()) {
-                PlayerAuth pAuth = buildAuthFromResultSet(rs);
-                if (hashAlgorithm == HashAlgorithm.XFBCRYPT) {
-                    try (PreparedStatement pst = con.prepareStatement("SELECT data FROM xf_user_authenticate WHERE " + col.ID + "=?;")) {
-                        int id = rs.getInt(col.ID);
-                        pst.setInt(1, id);
-                        ResultSet rs2 = pst.executeQuery();
-                        if (rs2.next()) {
-                            Blob blob = rs2.getBlob("data");
-                            byte[] bytes = blob.getBytes(1, (int) blob.length());
-                            pAuth.setPassword(new HashedPassword(XFBCRYPT.getHashFromBlob(bytes)));
-                        }
-                        rs2.close();
-                    }
-                }
-                auths.add(pAuth);
+                auths.add(buildAuthWithForumPassword(rs));
             }
-            rs.close();
-            st.close();
         } catch (SQLException ex) {
             logSqlException(ex);
         }
@@ -824,26 +1051,12 @@ public class MySQL implements DataSource {
     @Override
     public List<PlayerAuth> getLoggedPlayers() {
         List<PlayerAuth> auths = new ArrayList<>();
-        String sql = "SELECT * FROM " + tableName + " WHERE " + col.IS_LOGGED + "=1;";
+        String sql = selectAuths("t." + col.IS_LOGGED + "=1");
         try (Connection con = getConnection();
              Statement st = con.createStatement();
              ResultSet rs = st.executeQuery(sql)) {
             while (rs.next()) {
-                PlayerAuth pAuth = buildAuthFromResultSet(rs);
-                if (hashAlgorithm == HashAlgorithm.XFBCRYPT) {
-                    try (PreparedStatement pst = con.prepareStatement("SELECT data FROM xf_user_authenticate WHERE " + col.ID + "=?;")) {
-                        int id = rs.getInt(col.ID);
-                        pst.setInt(1, id);
-                        ResultSet rs2 = pst.executeQuery();
-                        if (rs2.next()) {
-                            Blob blob = rs2.getBlob("data");
-                            byte[] bytes = blob.getBytes(1, (int) blob.length());
-                            pAuth.setPassword(new HashedPassword(XFBCRYPT.getHashFromBlob(bytes)));
-                        }
-                        rs2.close();
-                    }
-                }
-                auths.add(pAuth);
+                auths.add(buildAuthWithForumPassword(rs));
             }
         } catch (SQLException ex) {
             logSqlException(ex);
@@ -851,6 +1064,42 @@ public class MySQL implements DataSource {
         return auths;
     }
 
+    /**
+     * Returns the query to select players from the AuthMe table. With XenForo, the password data is
+     * joined from the XenForo authentication table so that no additional query per player is needed.
+     *
+     * @param whereClause the condition on the AuthMe table (alias {@code t}), or null to select all rows
+     * @return the SQL query
+     */
+    private String selectAuths(String whereClause) {
+        StringBuilder sql = new StringBuilder("SELECT t.*");
+        if (hashAlgorithm == HashAlgorithm.XFBCRYPT) {
+            sql.append(", xf.data AS xf_data FROM ").append(tableName)
+                .append(" t LEFT JOIN xf_user_authenticate xf ON xf.").append(col.ID).append("=t.").append(col.ID);
+        } else {
+            sql.append(" FROM ").append(tableName).append(" t");
+        }
+        if (whereClause != null) {
+            sql.append(" WHERE ").append(whereClause);
+        }
+        return sql.append(';').toString();
+    }
+
+    /**
+     * Creates a PlayerAuth from a row returned by a query of {@link #selectAuths(String)}, taking the
+     * password from the XenForo data if available.
+     */
+    private PlayerAuth buildAuthWithForumPassword(ResultSet row) throws SQLException {
+        PlayerAuth auth = buildAuthFromResultSet(row);
+        if (hashAlgorithm == HashAlgorithm.XFBCRYPT) {
+            byte[] data = row.getBytes("xf_data");
+            if (data != null) {
+                auth.setPassword(new HashedPassword(XFBCRYPT.getHashFromBlob(data)));
+            }
+        }
+        return auth;
+    }
+
     private PlayerAuth buildAuthFromResultSet(ResultSet row) throws SQLException {
         String salt = col.SALT.isEmpty() ? null : row.getString(col.SALT);
         int group = col.GROUP.isEmpty() ? -1 : row.getInt(col.GROUP);
@@ -914,6 +1163,106 @@ public class MySQL implements DataSource {
         }
     }
 
+    /**
+     * Returns the id of the latest change in the change log.
+     *
+     * @return the id of the latest change, or 0 if the change log is empty
+     * @throws SQLException if the change log could not be read
+     */
+    long getLatestChangeId() throws SQLException {
+        String sql = "SELECT MAX(id) FROM " + changeLogTable + ";";
+        try (Connection con = getConnection(); Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Returns the changes recorded after the given change, ordered by id.
+     *
+     * @param afterId the id of the last change which has been read
+     * @param limit the maximum number of changes to return
+     * @return the changes
+     * @throws SQLException if the change log could not be read
+     */
+    List<Change> getChanges(long afterId, int limit) throws SQLException {
+        List<Change> changes = new ArrayList<>();
+        String sql = "SELECT id, name, server FROM " + changeLogTable + " WHERE id>? ORDER BY id LIMIT ?;";
+        try (Connection con = getConnection(); PreparedStatement pst = con.prepareStatement(sql)) {
+            pst.setLong(1, afterId);
+            pst.setInt(2, limit);
+            try (ResultSet rs = pst.executeQuery()) {
+                while (rs.next()) {
+                    changes.add(new Change(rs.getLong("id"), rs.getString("name"),
+                        serverId.equals(rs.getString("server"))));
+                }
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Deletes the changes which have been recorded before the given time.
+     *
+     * @param until the timestamp before which changes are deleted
+     * @throws SQLException if the changes could not be deleted
+     */
+    void deleteChanges(long until) throws SQLException {
+        String sql = "DELETE FROM " + changeLogTable + " WHERE created<?;";
+        try (Connection con = getConnectionWithoutTimeout(); PreparedStatement pst = con.prepareStatement(sql)) {
+            pst.setLong(1, until);
+            pst.executeUpdate();
+        }
+    }
+
+    /**
+     * Sends the reads of the given player to the primary until the replicas have caught up with a write
+     * to the player, e.g. after the player has been written by another server.
+     *
+     * @param name the name of the written player
+     */
+    void markWritten(String name) {
+        if (replicaDs != null) {
+            recentlyWritten.put(name.toLowerCase(), Boolean.TRUE);
+        }
+    }
+
+    private void onWrite(Connection con, String name, ChangeType type) {
+        onWrite(con, Collections.singletonList(name), type);
+    }
+
+    /**
+     * Called after players have been written successfully. Keeps the reads of the players on the primary
+     * until the replicas have caught up and records the changes in the change log, if enabled.
+     *
+     * @param con the connection the changes have been written with
+     * @param names the names of the changed players
+     * @param type the type of the changes
+     */
+    private void onWrite(Connection con, Collection<String> names, ChangeType type) {
+        for (String name : names) {
+            markWritten(name);
+        }
+        if (changeLogTable == null) {
+            return;
+        }
+        String sql = "INSERT INTO " + changeLogTable + " (name, operation, server, created) VALUES (?,?,?,?);";
+        try (PreparedStatement pst = con.prepareStatement(sql)) {
+            long now = System.currentTimeMillis();
+            for (String name : names) {
+                pst.setString(1, name.toLowerCase());
+                pst.setString(2, type.name());
+                pst.setString(3, serverId);
+                pst.setLong(4, now);
+                pst.addBatch();
+            }
+            pst.executeBatch();
+        } catch (SQLException e) {
+            // The change itself has been saved; other servers only pick it up when their cache is refreshed
+            logSqlException(e);
+        }
+    }
+
     private static void logSqlException(SQLException e) {
         ConsoleLogger.logException("Error during SQL operation:", e);
     }
@@ -938,4 +1287,27 @@ public class MySQL implements DataSource {
         }
     }
 
+
+    /**
+     * Type of a change recorded in the change log.
+     */
+    enum ChangeType {
+        REGISTER, SESSION, PASSWORD, QUIT_LOCATION, EMAIL, REAL_NAME, UNREGISTER
+    }
+
+    /**
+     * Change to a player read from the change log.
+     */
+    static final class Change {
+        final long id;
+        final String name;
+        /** Whether the change has been made by this server. */
+        final boolean isOwnChange;
+
+        Change(long id, String name, boolean isOwnChange) {
+            this.id = id;
+            this.name = name;
+            this.isOwnChange = isOwnChange;
+        }
+    }
 }
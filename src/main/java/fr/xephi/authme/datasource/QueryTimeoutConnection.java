@@ -0,0 +1,51 @@
+package fr.xephi.authme.datasource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * Sets a query timeout on all statements created with a connection, so that a stuck
+ * database makes the operation fail instead of blocking the calling thread forever.
+ */
+final class QueryTimeoutConnection implements InvocationHandler {
+
+    private final Connection connection;
+    private final int queryTimeout;
+
+    private QueryTimeoutConnection(Connection connection, int queryTimeout) {
+        this.connection = connection;
+        this.queryTimeout = queryTimeout;
+    }
+
+    /**
+     * Returns a connection which delegates all calls to the given connection and sets the query
+     * timeout on the statements it creates.
+     *
+     * @param connection the connection to wrap
+     * @param queryTimeout the query timeout in seconds
+     * @return the wrapped connection
+     */
+    static Connection wrap(Connection connection, int queryTimeout) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, new QueryTimeoutConnection(connection, queryTimeout));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        Object result;
+        try {
+            result = method.invoke(connection, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+        // Covers Statement, PreparedStatement and CallableStatement
+        if (result instanceof Statement) {
+            ((Statement) result).setQueryTimeout(queryTimeout);
+        }
+        return result;
+    }
+}
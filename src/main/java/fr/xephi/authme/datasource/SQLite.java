@@ -1,6 +1,8 @@
 package fr.xephi.authme.datasource;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Joiner;
+import com.google.common.collect.Iterables;
 import fr.xephi.authme.ConsoleLogger;
 import fr.xephi.authme.cache.auth.PlayerAuth;
 import fr.xephi.authme.security.crypts.HashedPassword;
@@ -16,14 +18,23 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
  */
 public class SQLite implements DataSource {
 
+    /** Maximum number of accounts to delete with one statement when purging. */
+    private static final int PURGE_CHUNK_SIZE = 500;
+    /** Maximum number of accounts to retrieve with one statement. */
+    private static final int LOOKUP_CHUNK_SIZE = 500;
+
     private final String database;
     private final String tableName;
     private final Columns col;
@@ -184,7 +195,6 @@ public class SQLite implements DataSource {
         }
         return null;
     }
-
     @Override
     public PlayerAuth getAuth(String user) {
         PreparedStatement pst = null;
@@ -205,6 +215,29 @@ public class SQLite implements DataSource {
         return null;
     }
 
+    @Override
+    public Map<String, PlayerAuth> getAuths(Collection<String> users) {
+        Map<String, PlayerAuth> auths = new HashMap<>();
+        for (List<String> chunk : Iterables.partition(users, LOOKUP_CHUNK_SIZE)) {
+            String sql = "SELECT * FROM " + tableName + " WHERE LOWER(" + col.NAME + ") IN ("
+                + Joiner.on(", ").join(Collections.nCopies(chunk.size(), "?")) + ");";
+            try (PreparedStatement pst = con.prepareStatement(sql)) {
+                for (int i = 0; i < chunk.size(); ++i) {
+                    pst.setString(i + 1, chunk.get(i).toLowerCase());
+                }
+                try (ResultSet rs = pst.executeQuery()) {
+                    while (rs.next()) {
+                        PlayerAuth auth = buildAuthFromResultSet(rs);
+                        auths.put(auth.getNickname(), auth);
+                    }
+                }
+            } catch (SQLException ex) {
+                logSqlException(ex);
+            }
+        }
+        return auths;
+    }
+
     @Override
     public boolean saveAuth(PlayerAuth auth) {
         PreparedStatement pst = null;
@@ -317,16 +350,45 @@ public class SQLite implements DataSource {
     }
 
     @Override
-    public void purgeRecords(Set<String> toPurge) {
-        String delete = "DELETE FROM " + tableName + " WHERE " + col.NAME + "=?;";
-        try (PreparedStatement deletePst = con.prepareStatement(delete)) {
-            for (String name : toPurge) {
-                deletePst.setString(1, name);
-                deletePst.executeUpdate();
+    public List<String> getRecordsToPurge(long until, String afterName, int limit) {
+        List<String> list = new ArrayList<>();
+
+        String select = "SELECT " + col.NAME + " FROM " + tableName + " WHERE " + col.LAST_LOGIN + "<?"
+            + (afterName == null ? "" : " AND " + col.NAME + ">?") + " ORDER BY " + col.NAME + " LIMIT ?;";
+        try (PreparedStatement selectPst = con.prepareStatement(select)) {
+            int index = 1;
+            selectPst.setLong(index++, until);
+            if (afterName != null) {
+                selectPst.setString(index++, afterName);
+            }
+            selectPst.setInt(index, limit);
+            try (ResultSet rs = selectPst.executeQuery()) {
+                while (rs.next()) {
+                    list.add(rs.getString(col.NAME));
+                }
             }
         } catch (SQLException ex) {
             logSqlException(ex);
         }
+
+        return list;
+    }
+
+    @Override
+    public void purgeRecords(Set<String> toPurge) {
+        // Delete in chunks so that no single statement holds locks on too many rows
+        for (List<String> chunk : Iterables.partition(toPurge, PURGE_CHUNK_SIZE)) {
+            String delete = "DELETE FROM " + tableName + " WHERE " + col.NAME + " IN ("
+                + Joiner.on(", ").join(Collections.nCopies(chunk.size(), "?")) + ");";
+            try (PreparedStatement deletePst = con.prepareStatement(delete)) {
+                for (int i = 0; i < chunk.size(); ++i) {
+                    deletePst.setString(i + 1, chunk.get(i));
+                }
+                deletePst.executeUpdate();
+            } catch (SQLException ex) {
+                logSqlException(ex);
+            }
+        }
     }
 
     @Override
@@ -6,8 +6,11 @@ import com.google.common.io.ByteStreams;
 import fr.xephi.authme.ConsoleLogger;
 import fr.xephi.authme.cache.auth.PlayerAuth;
 import fr.xephi.authme.cache.auth.PlayerCache;
+import fr.xephi.authme.datasource.CacheDataSource;
 import fr.xephi.authme.datasource.DataSource;
 import fr.xephi.authme.security.crypts.HashedPassword;
+import fr.xephi.authme.service.BungeeProtocol;
+import fr.xephi.authme.service.BungeeProtocol.Message;
 import fr.xephi.authme.settings.NewSetting;
 import fr.xephi.authme.settings.properties.SecuritySettings;
 import fr.xephi.authme.util.BukkitService;
@@ -15,6 +18,7 @@ import org.bukkit.entity.Player;
 import org.bukkit.plugin.messaging.PluginMessageListener;
 
 import javax.inject.Inject;
+import java.util.List;
 
 
 public class BungeeCordMessage implements PluginMessageListener {
@@ -27,7 +31,7 @@ public class BungeeCordMessage implements PluginMessageListener {
 
     @Inject
     private PlayerCache playerCache;
-    
+
     @Inject
     private NewSetting settings;
 
@@ -41,47 +45,150 @@ public class BungeeCordMessage implements PluginMessageListener {
         }
         ByteArrayDataInput in = ByteStreams.newDataInput(message);
         String subChannel = in.readUTF();
-        if ("AuthMe".equalsIgnoreCase(subChannel)) {
-            String str = in.readUTF();
-            final String[] args = str.split(";");
-            final String act = args[0];
-            final String name = args[1];
-            bukkitService.runTaskAsynchronously(new Runnable() {
-                @Override
-                public void run() {
-                    PlayerAuth auth = dataSource.getAuth(name);
-                    if (auth == null) {
-                        return;
-                    }
-                    if ("login".equals(act)) {
-                        playerCache.updatePlayer(auth);
-                        dataSource.setLogged(name);
-
-                        if (!settings.getProperty(SecuritySettings.REMOVE_SPAM_FROM_CONSOLE)) {
-                            ConsoleLogger.info("Player " + auth.getNickname() + " has logged in from one of your server!");
-                        }
-                    } else if ("logout".equals(act)) {
-                        playerCache.removePlayer(name);
-                        dataSource.setUnlogged(name);
-
-                        if (!settings.getProperty(SecuritySettings.REMOVE_SPAM_FROM_CONSOLE)) {
-                            ConsoleLogger.info("Player " + auth.getNickname() + " has logged out from one of your server!");
-                        }
-                    } else if ("register".equals(act)) {
-                        if (!settings.getProperty(SecuritySettings.REMOVE_SPAM_FROM_CONSOLE)) {
-                            ConsoleLogger.info("Player " + auth.getNickname() + " has registered out from one of your server!");
-                        }
-                    } else if ("changepassword".equals(act)) {
-                        final String password = args[2];
-                        final String salt = args.length >= 4 ? args[3] : null;
-                        auth.setPassword(new HashedPassword(password, salt));
-                        playerCache.updatePlayer(auth);
-                        dataSource.updatePassword(auth);
-                    }
+        if (BungeeProtocol.SUB_CHANNEL.equals(subChannel)) {
+            byte[] frame = new byte[in.readUnsignedShort()];
+            in.readFully(frame);
+            handleFrame(frame);
+        } else if ("AuthMe".equalsIgnoreCase(subChannel)) {
+            handleLegacyMessage(in.readUTF());
+        }
+    }
+
+    private void handleFrame(byte[] frame) {
+        List<Message> messages;
+        try {
+            messages = BungeeProtocol.decodeFrame(frame);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            ConsoleLogger.warning("Ignoring BungeeCord message from another server: " + e.getMessage()
+                + ". Please make sure all servers run the same AuthMe version");
+            return;
+        }
+
+        for (Message message : messages) {
+            switch (message.getOperation()) {
+                case LOGIN:
+                    handleLogin(message);
+                    break;
+                case LOGOUT:
+                    playerCache.removePlayer(message.getName());
+                    logAction(message.getName(), "has logged out from one of your server!");
+                    break;
+                case REGISTER:
+                    // Forget that the account did not exist
+                    invalidateCachedAuth(message.getName());
+                    logAction(message.getName(), "has registered out from one of your server!");
+                    break;
+                case CHANGE_PASSWORD:
+                    updatePassword(message.getName(), message.getPassword());
+                    break;
+                default:
+                    throw new IllegalStateException("Unhandled operation '" + message.getOperation() + "'");
+            }
+        }
+    }
+
+    /**
+     * Marks the player as logged in. The database has already been updated by the server the player
+     * logged in on, so the session data of the message is applied to the local caches. The player is
+     * only loaded if it is in neither of them.
+     */
+    private void handleLogin(final Message message) {
+        final String name = message.getName();
+        if (dataSource instanceof CacheDataSource) {
+            ((CacheDataSource) dataSource).updateCachedSession(PlayerAuth.builder()
+                .name(name)
+                .realName(message.getRealName())
+                .ip(message.getIp())
+                .lastLogin(message.getLastLogin())
+                .build());
+        }
 
+        PlayerAuth auth = playerCache.getAuth(name);
+        if (auth != null) {
+            auth.setRealName(message.getRealName());
+            auth.setIp(message.getIp());
+            auth.setLastLogin(message.getLastLogin());
+            logAction(name, "has logged in from one of your server!");
+            return;
+        }
+        bukkitService.runTaskAsynchronously(new Runnable() {
+            @Override
+            public void run() {
+                PlayerAuth loadedAuth = dataSource.getAuth(name);
+                if (loadedAuth != null) {
+                    playerCache.updatePlayer(PlayerAuth.builder()
+                        .name(name)
+                        .realName(message.getRealName())
+                        .ip(message.getIp())
+                        .lastLogin(message.getLastLogin())
+                        .email(loadedAuth.getEmail())
+                        .password(loadedAuth.getPassword())
+                        .build());
+                    logAction(name, "has logged in from one of your server!");
                 }
-            });
+            }
+        });
+    }
+
+    private void updatePassword(String name, HashedPassword password) {
+        PlayerAuth auth = playerCache.getAuth(name);
+        if (auth != null) {
+            auth.setPassword(password);
+        }
+        if (dataSource instanceof CacheDataSource) {
+            ((CacheDataSource) dataSource).updateCachedPassword(name, password);
+        }
+    }
+
+    private void invalidateCachedAuth(String name) {
+        if (dataSource instanceof CacheDataSource) {
+            ((CacheDataSource) dataSource).invalidateCache(name);
+        }
+    }
+
+    private void logAction(String name, String action) {
+        if (!settings.getProperty(SecuritySettings.REMOVE_SPAM_FROM_CONSOLE)) {
+            ConsoleLogger.info("Player " + name + " " + action);
         }
     }
 
+    /**
+     * Handles a message of the text-based protocol used by older versions of AuthMe,
+     * so that a network can be updated one server at a time.
+     */
+    private void handleLegacyMessage(String str) {
+        final String[] args = str.split(";");
+        if (args.length < 2) {
+            return;
+        }
+        final String act = args[0];
+        final String name = args[1];
+        bukkitService.runTaskAsynchronously(new Runnable() {
+            @Override
+            public void run() {
+                PlayerAuth auth = dataSource.getAuth(name);
+                if (auth == null) {
+                    return;
+                }
+                if ("login".equals(act)) {
+                    playerCache.updatePlayer(auth);
+                    dataSource.setLogged(name);
+                    logAction(auth.getNickname(), "has logged in from one of your server!");
+                } else if ("logout".equals(act)) {
+                    playerCache.removePlayer(name);
+                    dataSource.setUnlogged(name);
+                    logAction(auth.getNickname(), "has logged out from one of your server!");
+                } else if ("register".equals(act)) {
+                    logAction(auth.getNickname(), "has registered out from one of your server!");
+                } else if ("changepassword".equals(act) && args.length >= 3) {
+                    final String password = args[2];
+                    final String salt = args.length >= 4 ? args[3] : null;
+                    auth.setPassword(new HashedPassword(password, salt));
+                    playerCache.updatePlayer(auth);
+                    dataSource.updatePassword(auth);
+                }
+            }
+        });
+    }
+
 }
@@ -1,18 +1,23 @@
 package fr.xephi.authme.initialization;
 
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
 import fr.xephi.authme.settings.NewSetting;
 
 import javax.annotation.PostConstruct;
 import java.lang.annotation.Annotation;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Dependency injector of AuthMe: initializes and injects services and tasks.
@@ -22,11 +27,19 @@ import java.util.Set;
  * <p>
  * {@link PostConstruct @PostConstruct} methods are recognized and invoked upon
  * instantiation. Note that the parent classes are <i>not</i> scanned for such methods.
+ * <p>
+ * The way a class is instantiated is only determined once: the {@link Injection} and the
+ * post construct method of each class are cached, so that repeated calls to {@link #newInstance}
+ * do not need to scan the class again.
  */
 public class AuthMeServiceInitializer {
 
+    private static final MethodType POST_CONSTRUCT_TYPE = MethodType.methodType(void.class, Object.class);
+
     private final Set<String> ALLOWED_PACKAGES;
     private final Map<Class<?>, Object> objects;
+    private final ConcurrentMap<Class<?>, Injection<?>> injections = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, Optional<MethodHandle>> postConstructMethods = new ConcurrentHashMap<>();
 
     /**
      * Constructor.
@@ -168,13 +181,7 @@ public class AuthMeServiceInitializer {
      * @return the instantiated object
      */
     private <T> T instantiate(Class<T> clazz, Set<Class<?>> traversedClasses) {
-        Injection<T> injection = InjectionHelper.getInjection(clazz);
-        if (injection == null) {
-            throw new IllegalStateException("Did not find injection method for " + clazz + ". Make sure you have "
-                + "a constructor with @Inject or fields with @Inject. Fields with @Inject require "
-                + "the default constructor");
-        }
-
+        Injection<T> injection = getInjection(clazz);
         validateInjectionHasNoCircularDependencies(injection.getDependencies(), traversedClasses);
         Object[] dependencies = resolveDependencies(injection, traversedClasses);
         T object = injection.instantiateWith(dependencies);
@@ -182,6 +189,28 @@ public class AuthMeServiceInitializer {
         return object;
     }
 
+    /**
+     * Returns the injection to instantiate the given class with. The result is cached per class.
+     *
+     * @param clazz the class to get the injection for
+     * @param <T> the class' type
+     * @return the injection
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Injection<T> getInjection(Class<T> clazz) {
+        Injection<T> injection = (Injection<T>) injections.get(clazz);
+        if (injection == null) {
+            injection = InjectionHelper.getInjection(clazz);
+            if (injection == null) {
+                throw new IllegalStateException("Did not find injection method for " + clazz + ". Make sure you "
+                    + "have a constructor with @Inject or fields with @Inject. Fields with @Inject require "
+                    + "the default constructor");
+            }
+            injections.putIfAbsent(clazz, injection);
+        }
+        return injection;
+    }
+
     /**
      * Resolves the dependencies for the given class instantiation, i.e. returns a collection that satisfy
      * the class' dependencies by retrieving elements or instantiating them where necessary.
@@ -267,16 +296,41 @@ public class AuthMeServiceInitializer {
      *
      * @param object the object to execute the post construct method for
      */
-    private static void executePostConstructMethod(Object object) {
-        Method postConstructMethod = InjectionHelper.getAndValidatePostConstructMethod(object.getClass());
-        if (postConstructMethod != null) {
+    private void executePostConstructMethod(Object object) {
+        Optional<MethodHandle> postConstructMethod = getPostConstructMethod(object.getClass());
+        if (postConstructMethod.isPresent()) {
             try {
-                postConstructMethod.setAccessible(true);
-                postConstructMethod.invoke(object);
-            } catch (IllegalAccessException | InvocationTargetException e) {
-                throw new UnsupportedOperationException("Error executing @PostConstruct method", e);
+                postConstructMethod.get().invokeExact(object);
+            } catch (Throwable t) {
+                throw new UnsupportedOperationException("Error executing @PostConstruct method", t);
+            }
+        }
+    }
+
+    /**
+     * Returns a method handle for the class' {@link PostConstruct} method, if present. The result
+     * is cached per class.
+     *
+     * @param clazz the class to process
+     * @return handle to the post construct method, taking the instance as {@code Object}
+     */
+    private Optional<MethodHandle> getPostConstructMethod(Class<?> clazz) {
+        Optional<MethodHandle> handle = postConstructMethods.get(clazz);
+        if (handle == null) {
+            Method method = InjectionHelper.getAndValidatePostConstructMethod(clazz);
+            if (method == null) {
+                handle = Optional.absent();
+            } else {
+                try {
+                    method.setAccessible(true);
+                    handle = Optional.of(MethodHandles.lookup().unreflect(method).asType(POST_CONSTRUCT_TYPE));
+                } catch (IllegalAccessException e) {
+                    throw new UnsupportedOperationException("Error executing @PostConstruct method", e);
+                }
             }
+            postConstructMethods.putIfAbsent(clazz, handle);
         }
+        return handle;
     }
 
     private static void validateInstantiable(Class<?> clazz) {
@@ -5,8 +5,8 @@ import com.google.common.base.Preconditions;
 import javax.inject.Inject;
 import javax.inject.Provider;
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 
 /**
  * Functionality for constructor injection.
@@ -14,9 +14,11 @@ import java.lang.reflect.InvocationTargetException;
 class ConstructorInjection<T> implements Injection<T> {
 
     private final Constructor<T> constructor;
+    private final MethodHandle constructorHandle;
 
     private ConstructorInjection(Constructor<T> constructor) {
         this.constructor = constructor;
+        this.constructorHandle = InjectionHelper.toSpreadingHandle(constructor);
     }
 
     @Override
@@ -39,11 +41,7 @@ class ConstructorInjection<T> implements Injection<T> {
     @Override
     public T instantiateWith(Object... values) {
         validateNoNullValues(values);
-        try {
-            return constructor.newInstance(values);
-        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
-            throw new UnsupportedOperationException(e);
-        }
+        return constructor.getDeclaringClass().cast(InjectionHelper.invokeSpreading(constructorHandle, values));
     }
 
     public static <T> Provider<ConstructorInjection<T>> provide(final Class<T> clazz) {
@@ -5,9 +5,11 @@ import com.google.common.base.Preconditions;
 import javax.inject.Inject;
 import javax.inject.Provider;
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -18,12 +20,25 @@ import java.util.List;
  */
 class FieldInjection<T> implements Injection<T> {
 
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
     private final Field[] fields;
     private final Constructor<T> defaultConstructor;
+    private final MethodHandle constructorHandle;
+    private final MethodHandle[] setters;
 
     private FieldInjection(Constructor<T> defaultConstructor, Collection<Field> fields) {
         this.fields = fields.toArray(new Field[fields.size()]);
         this.defaultConstructor = defaultConstructor;
+        this.constructorHandle = InjectionHelper.toSpreadingHandle(defaultConstructor);
+        this.setters = new MethodHandle[this.fields.length];
+        for (int i = 0; i < this.fields.length; ++i) {
+            try {
+                setters[i] = MethodHandles.lookup().unreflectSetter(this.fields[i]).asType(SETTER_TYPE);
+            } catch (IllegalAccessException e) {
+                throw new UnsupportedOperationException(e);
+            }
+        }
     }
 
     @Override
@@ -49,19 +64,15 @@ class FieldInjection<T> implements Injection<T> {
         Preconditions.checkArgument(values.length == fields.length,
             "The number of values must be equal to the number of fields");
 
-        T instance;
-        try {
-            instance = defaultConstructor.newInstance();
-        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
-            throw new UnsupportedOperationException(e);
-        }
+        T instance = defaultConstructor.getDeclaringClass().cast(
+            InjectionHelper.invokeSpreading(constructorHandle, new Object[0]));
 
         for (int i = 0; i < fields.length; ++i) {
+            Preconditions.checkNotNull(values[i]);
             try {
-                Preconditions.checkNotNull(values[i]);
-                fields[i].set(instance, values[i]);
-            } catch (IllegalAccessException e) {
-                throw new UnsupportedOperationException(e);
+                setters[i].invokeExact(instance, values[i]);
+            } catch (Throwable t) {
+                throw new UnsupportedOperationException(t);
             }
         }
         return instance;
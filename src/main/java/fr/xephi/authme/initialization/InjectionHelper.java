@@ -2,6 +2,10 @@ package fr.xephi.authme.initialization;
 
 import javax.annotation.PostConstruct;
 import javax.inject.Provider;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 
@@ -10,6 +14,8 @@ import java.lang.reflect.Modifier;
  */
 public class InjectionHelper {
 
+    private static final MethodType SPREADING_TYPE = MethodType.methodType(Object.class, Object[].class);
+
     private InjectionHelper() {
     }
 
@@ -53,6 +59,39 @@ public class InjectionHelper {
         return postConstructMethod;
     }
 
+    /**
+     * Returns a method handle for the given constructor which takes all arguments as one {@code Object[]}
+     * and returns the new instance as {@code Object}, ready to be used with {@link #invokeSpreading}.
+     *
+     * @param constructor the constructor to create a handle for
+     * @return the method handle
+     */
+    static MethodHandle toSpreadingHandle(Constructor<?> constructor) {
+        try {
+            constructor.setAccessible(true);
+            MethodHandle handle = MethodHandles.lookup().unreflectConstructor(constructor);
+            return handle.asSpreader(Object[].class, constructor.getParameterTypes().length).asType(SPREADING_TYPE);
+        } catch (IllegalAccessException e) {
+            throw new UnsupportedOperationException(e);
+        }
+    }
+
+    /**
+     * Invokes a handle created by {@link #toSpreadingHandle} with the given arguments. Any exception
+     * is wrapped into an {@link UnsupportedOperationException}.
+     *
+     * @param handle the handle to invoke
+     * @param arguments the arguments
+     * @return the result of the invocation
+     */
+    static Object invokeSpreading(MethodHandle handle, Object[] arguments) {
+        try {
+            return (Object) handle.invokeExact(arguments);
+        } catch (Throwable t) {
+            throw new UnsupportedOperationException(t);
+        }
+    }
+
     @SafeVarargs
     private static <T> Injection<T> firstNotNull(Provider<? extends Injection<T>>... providers) {
         for (Provider<? extends Injection<T>> provider : providers) {
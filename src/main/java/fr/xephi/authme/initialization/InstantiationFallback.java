@@ -3,9 +3,9 @@ package fr.xephi.authme.initialization;
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import javax.inject.Provider;
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 
 /**
  * Fallback instantiation method for classes with an accessible no-args constructor
@@ -14,9 +14,11 @@ import java.lang.reflect.InvocationTargetException;
 class InstantiationFallback<T> implements Injection<T> {
 
     private final Constructor<T> constructor;
+    private final MethodHandle constructorHandle;
 
     private InstantiationFallback(Constructor<T> constructor) {
         this.constructor = constructor;
+        this.constructorHandle = InjectionHelper.toSpreadingHandle(constructor);
     }
 
     @Override
@@ -34,11 +36,7 @@ class InstantiationFallback<T> implements Injection<T> {
         if (values == null || values.length > 0) {
             throw new UnsupportedOperationException("Instantiation fallback cannot have parameters");
         }
-        try {
-            return constructor.newInstance();
-        } catch (InvocationTargetException | IllegalAccessException | InstantiationException e) {
-            throw new UnsupportedOperationException(e);
-        }
+        return constructor.getDeclaringClass().cast(InjectionHelper.invokeSpreading(constructorHandle, values));
     }
 
     /**
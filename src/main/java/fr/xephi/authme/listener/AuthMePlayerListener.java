@@ -1,10 +1,17 @@
 package fr.xephi.authme.listener;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 import fr.xephi.authme.AntiBot;
+import fr.xephi.authme.ConsoleLogger;
 import fr.xephi.authme.cache.auth.PlayerAuth;
+import fr.xephi.authme.datasource.AsyncDataSource;
 import fr.xephi.authme.datasource.DataSource;
 import fr.xephi.authme.output.MessageKey;
 import fr.xephi.authme.output.Messages;
+import fr.xephi.authme.permission.PermissionsManager;
 import fr.xephi.authme.process.Management;
 import fr.xephi.authme.settings.NewSetting;
 import fr.xephi.authme.settings.SpawnLoader;
@@ -24,6 +31,7 @@ import org.bukkit.event.entity.EntityDamageByEntityEvent;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryOpenEvent;
 import org.bukkit.event.player.AsyncPlayerChatEvent;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerBedEnterEvent;
 import org.bukkit.event.player.PlayerCommandPreprocessEvent;
 import org.bukkit.event.player.PlayerDropItemEvent;
@@ -41,9 +49,11 @@ import org.bukkit.event.player.PlayerRespawnEvent;
 import org.bukkit.event.player.PlayerShearEntityEvent;
 
 import javax.inject.Inject;
+import java.net.InetAddress;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import static fr.xephi.authme.settings.properties.RestrictionSettings.ALLOWED_MOVEMENT_RADIUS;
 import static fr.xephi.authme.settings.properties.RestrictionSettings.ALLOW_UNAUTHED_MOVEMENT;
@@ -55,6 +65,11 @@ public class AuthMePlayerListener implements Listener {
 
     public static final ConcurrentHashMap<String, String> joinMessage = new ConcurrentHashMap<>();
 
+    /** Lowercase names of the players whose registration status has been verified in the pre-login event. */
+    private final Cache<String, Boolean> verifiedLogins = CacheBuilder.newBuilder()
+        .expireAfterWrite(1, TimeUnit.MINUTES)
+        .build();
+
     @Inject
     private NewSetting settings;
     @Inject
@@ -62,6 +77,8 @@ public class AuthMePlayerListener implements Listener {
     @Inject
     private DataSource dataSource;
     @Inject
+    private AsyncDataSource asyncDataSource;
+    @Inject
     private AntiBot antiBot;
     @Inject
     private Management management;
@@ -74,6 +91,8 @@ public class AuthMePlayerListener implements Listener {
     @Inject
     private ListenerService listenerService;
     @Inject
+    private PermissionsManager permissionsManager;
+    @Inject
     private TeleportationService teleportationService;
 
     @EventHandler(ignoreCancelled = true, priority = EventPriority.LOWEST)
@@ -200,9 +219,33 @@ public class AuthMePlayerListener implements Listener {
 
     // Note: AsyncPlayerPreLoginEvent is not fired by all servers in offline mode
     // e.g. CraftBukkit does not. So we need to run crucial things in onPlayerLogin, too
-    // We have no performance improvements if we do the same thing on two different events
+    // The checks which need the database run in the async event, which is fired on a separate thread for
+    // each connecting player, so that the main thread never waits for the database
     // Important: the single session feature works if we use the low priority to the sync handler
 
+    @EventHandler(priority = EventPriority.HIGHEST)
+    public void onPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            return;
+        }
+        final String name = event.getName();
+        final String lowerName = name.toLowerCase();
+        if (Utils.isUnrestricted(lowerName)) {
+            return;
+        }
+
+        try {
+            onJoinVerifier.checkSingleSession(lowerName);
+            onJoinVerifier.checkIsValidName(name);
+            verifyRegistrationStatus(name, event.getAddress());
+        } catch (FailedVerificationException e) {
+            event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER,
+                m.retrieveSingle(e.getReason(), e.getArgs()));
+            return;
+        }
+        verifiedLogins.put(lowerName, Boolean.TRUE);
+    }
+
     @EventHandler(priority = EventPriority.LOWEST)
     public void onPlayerLogin(PlayerLoginEvent event) {
         final Player player = event.getPlayer();
@@ -218,31 +261,73 @@ public class AuthMePlayerListener implements Listener {
         final String lowerName = name.toLowerCase();
 
         try {
-            // Fast stuff
             onJoinVerifier.checkSingleSession(lowerName);
             onJoinVerifier.checkIsValidName(name);
-            
-            // Get the auth later as this may cause the single session check to fail
-            // Slow stuff
-            final PlayerAuth auth = dataSource.getAuth(player.getName());
-            final boolean isAuthAvailable = (auth != null);
-            onJoinVerifier.checkAntibot(lowerName, isAuthAvailable);
-            onJoinVerifier.checkKickNonRegistered(isAuthAvailable);
-            onJoinVerifier.checkNameCasing(player, auth);
-            onJoinVerifier.checkPlayerCountry(isAuthAvailable, event);
         } catch (FailedVerificationException e) {
             event.setKickMessage(m.retrieveSingle(e.getReason(), e.getArgs()));
             event.setResult(PlayerLoginEvent.Result.KICK_OTHER);
             return;
         }
+        if (verifiedLogins.asMap().remove(lowerName) == null) {
+            // The pre-login event has not been fired (e.g. CraftBukkit in offline mode) or has failed
+            verifyAfterLogin(player, event.getAddress());
+        }
 
         antiBot.handlePlayerJoin(player);
         teleportationService.teleportOnJoin(player);
     }
 
+    /**
+     * Performs the checks which depend on whether the player is registered. Queries the database, so it
+     * must not be called on the main thread.
+     *
+     * @param name the name of the player
+     * @param address the address the player connects from
+     * @throws FailedVerificationException if the player may not join
+     */
+    private void verifyRegistrationStatus(String name, InetAddress address) throws FailedVerificationException {
+        String lowerName = name.toLowerCase();
+        PlayerAuth auth = dataSource.getAuth(lowerName);
+        boolean isAuthAvailable = auth != null;
+        onJoinVerifier.checkAntibot(lowerName, isAuthAvailable);
+        onJoinVerifier.checkKickNonRegistered(isAuthAvailable);
+        onJoinVerifier.checkNameCasing(name, auth);
+        onJoinVerifier.checkPlayerCountry(isAuthAvailable, address);
+    }
+
+    /**
+     * Verifies the registration status of a player who has not been verified in the pre-login event
+     * in the background, and kicks the player if the verification fails.
+     *
+     * @param player the player who is logging in
+     * @param address the address the player connects from
+     */
+    private void verifyAfterLogin(final Player player, final InetAddress address) {
+        final String name = player.getName();
+        bukkitService.runTaskAsynchronously(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    verifyRegistrationStatus(name, address);
+                } catch (final FailedVerificationException e) {
+                    bukkitService.scheduleSyncDelayedTask(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (player.isOnline()) {
+                                player.kickPlayer(m.retrieveSingle(e.getReason(), e.getArgs()));
+                            }
+                        }
+                    });
+                }
+            }
+        });
+    }
+
     @EventHandler(priority = EventPriority.HIGHEST)
     public void onPlayerQuit(PlayerQuitEvent event) {
         Player player = event.getPlayer();
+        listenerService.invalidateRegistration(player.getName());
+        permissionsManager.invalidatePermissionCache(player);
 
         if (settings.getProperty(RegistrationSettings.REMOVE_LEAVE_MESSAGE)) {
             event.setQuitMessage(null);
@@ -369,13 +454,25 @@ public class AuthMePlayerListener implements Listener {
         Player player = event.getPlayer();
         String name = player.getName().toLowerCase();
         Location spawn = spawnLoader.getSpawnLocation(player);
-        if (settings.getProperty(RestrictionSettings.SAVE_QUIT_LOCATION) && dataSource.isAuthAvailable(name)) {
-            PlayerAuth auth = PlayerAuth.builder()
+        if (settings.getProperty(RestrictionSettings.SAVE_QUIT_LOCATION)) {
+            final PlayerAuth auth = PlayerAuth.builder()
                 .name(name)
                 .realName(player.getName())
                 .location(spawn)
                 .build();
-            dataSource.updateQuitLoc(auth);
+            Futures.addCallback(asyncDataSource.isAuthAvailable(name), new FutureCallback<Boolean>() {
+                @Override
+                public void onSuccess(Boolean isRegistered) {
+                    if (isRegistered) {
+                        asyncDataSource.updateQuitLoc(auth);
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    ConsoleLogger.logException("Could not save the quit location of '" + auth.getNickname() + "':", t);
+                }
+            });
         }
         if (spawn != null && spawn.getWorld() != null) {
             event.setRespawnLocation(spawn);
@@ -1,7 +1,8 @@
 package fr.xephi.authme.listener;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import fr.xephi.authme.cache.auth.PlayerCache;
-import fr.xephi.authme.datasource.DataSource;
+import fr.xephi.authme.datasource.AsyncDataSource;
 import fr.xephi.authme.hooks.PluginHooks;
 import fr.xephi.authme.initialization.SettingsDependent;
 import fr.xephi.authme.settings.NewSetting;
@@ -15,22 +16,31 @@ import org.bukkit.event.player.PlayerEvent;
 import javax.inject.Inject;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Service class for the AuthMe listeners to determine whether an event should be canceled.
  */
-class ListenerService implements SettingsDependent {
+public class ListenerService implements SettingsDependent {
 
-    private final DataSource dataSource;
+    private final AsyncDataSource asyncDataSource;
     private final PluginHooks pluginHooks;
     private final PlayerCache playerCache;
+    /**
+     * Lookups of whether players are registered, by lowercase name. A result is kept until the player
+     * registers, is unregistered or quits, see {@link #invalidateRegistration(String)}.
+     */
+    private final ConcurrentMap<String, ListenableFuture<Boolean>> registrationLookups = new ConcurrentHashMap<>();
 
     private boolean isRegistrationForced;
     private Set<String> unrestrictedNames;
 
     @Inject
-    ListenerService(NewSetting settings, DataSource dataSource, PluginHooks pluginHooks, PlayerCache playerCache) {
-        this.dataSource = dataSource;
+    ListenerService(NewSetting settings, AsyncDataSource asyncDataSource, PluginHooks pluginHooks,
+                    PlayerCache playerCache) {
+        this.asyncDataSource = asyncDataSource;
         this.pluginHooks = pluginHooks;
         this.playerCache = playerCache;
         reload(settings);
@@ -73,6 +83,16 @@ class ListenerService implements SettingsDependent {
         return player != null && !checkAuth(player.getName()) && !pluginHooks.isNpc(player);
     }
 
+    /**
+     * Forgets whether the player is registered, so that it is looked up again on the next event.
+     * Must be called when the player registers, is unregistered or quits.
+     *
+     * @param name the name of the player
+     */
+    public void invalidateRegistration(String name) {
+        registrationLookups.remove(name.toLowerCase());
+    }
+
     @Override
     public void reload(NewSetting settings) {
         isRegistrationForced = settings.getProperty(RegistrationSettings.FORCE);
@@ -91,12 +111,41 @@ class ListenerService implements SettingsDependent {
         if (isUnrestricted(name) || playerCache.isAuthenticated(name)) {
             return true;
         }
-        if (!isRegistrationForced && !dataSource.isAuthAvailable(name)) {
+        if (!isRegistrationForced && !isRegistered(name)) {
             return true;
         }
         return false;
     }
 
+    /**
+     * Checks whether the player is registered without blocking the calling thread. As long as
+     * the lookup is pending, the player is considered to be registered so that events are canceled.
+     *
+     * @param name the name of the player to verify
+     * @return true if the player is or may be registered, false otherwise
+     */
+    private boolean isRegistered(String name) {
+        String key = name.toLowerCase();
+        ListenableFuture<Boolean> lookup = registrationLookups.get(key);
+        if (lookup == null) {
+            lookup = asyncDataSource.isAuthAvailable(key);
+            ListenableFuture<Boolean> existingLookup = registrationLookups.putIfAbsent(key, lookup);
+            if (existingLookup != null) {
+                lookup = existingLookup;
+            }
+        }
+        if (!lookup.isDone()) {
+            return true;
+        }
+        try {
+            return lookup.get();
+        } catch (InterruptedException | ExecutionException e) {
+            // Look the player up again on the next event
+            registrationLookups.remove(key, lookup);
+            return true;
+        }
+    }
+
     /**
      * Checks if the name is unrestricted according to the configured settings.
      *
@@ -3,7 +3,7 @@ package fr.xephi.authme.listener;
 import fr.xephi.authme.AntiBot;
 import fr.xephi.authme.ConsoleLogger;
 import fr.xephi.authme.cache.auth.PlayerAuth;
-import fr.xephi.authme.datasource.DataSource;
+import fr.xephi.authme.datasource.AsyncDataSource;
 import fr.xephi.authme.initialization.Reloadable;
 import fr.xephi.authme.output.MessageKey;
 import fr.xephi.authme.output.Messages;
@@ -23,6 +23,7 @@ import org.bukkit.event.player.PlayerLoginEvent;
 
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
+import java.net.InetAddress;
 import java.util.Collection;
 import java.util.regex.Pattern;
 
@@ -34,7 +35,7 @@ class OnJoinVerifier implements Reloadable {
     @Inject
     private NewSetting settings;
     @Inject
-    private DataSource dataSource;
+    private AsyncDataSource asyncDataSource;
     @Inject
     private Messages messages;
     @Inject
@@ -144,12 +145,21 @@ class OnJoinVerifier implements Reloadable {
      * @param auth the auth object associated with the player
      */
     public void checkNameCasing(Player player, PlayerAuth auth) throws FailedVerificationException {
+        checkNameCasing(player.getName(), auth);
+    }
+
+    /**
+     * Checks that the casing in the username corresponds to the one in the database, if so configured.
+     *
+     * @param connectingName the name of the player to verify
+     * @param auth the auth object associated with the player
+     */
+    public void checkNameCasing(String connectingName, PlayerAuth auth) throws FailedVerificationException {
         if (auth != null && settings.getProperty(RegistrationSettings.PREVENT_OTHER_CASE)) {
             String realName = auth.getRealName(); // might be null or "Player"
-            String connectingName = player.getName();
 
             if (StringUtils.isEmpty(realName) || "Player".equals(realName)) {
-                dataSource.updateRealName(connectingName.toLowerCase(), connectingName);
+                asyncDataSource.updateRealName(connectingName.toLowerCase(), connectingName);
             } else if (!realName.equals(connectingName)) {
                 throw new FailedVerificationException(MessageKey.INVALID_NAME_CASE, realName, connectingName);
             }
@@ -164,8 +174,18 @@ class OnJoinVerifier implements Reloadable {
      */
     public void checkPlayerCountry(boolean isAuthAvailable,
                                     PlayerLoginEvent event) throws FailedVerificationException {
+        checkPlayerCountry(isAuthAvailable, event.getAddress());
+    }
+
+    /**
+     * Checks that the player's country is admitted if he is not registered.
+     *
+     * @param isAuthAvailable whether or not the user is registered
+     * @param address the address the player connects from
+     */
+    public void checkPlayerCountry(boolean isAuthAvailable, InetAddress address) throws FailedVerificationException {
         if (!isAuthAvailable && settings.getProperty(ProtectionSettings.ENABLE_PROTECTION)) {
-            String playerIp = event.getAddress().getHostAddress();
+            String playerIp = address.getHostAddress();
             if (!validationService.isCountryAdmitted(playerIp)) {
                 throw new FailedVerificationException(MessageKey.COUNTRY_BANNED_ERROR);
             }
@@ -0,0 +1,145 @@
+package fr.xephi.authme.mail;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An email which has not been sent yet. Emails still pending when the plugin is disabled
+ * are saved to disk and sent after the next start.
+ */
+final class PendingMail {
+
+    private static final int FILE_VERSION = 1;
+
+    private final String recipient;
+    private final String playerName;
+    private final String content;
+    private final String imagePassword;
+
+    /**
+     * Constructor.
+     *
+     * @param recipient the email address to send the mail to
+     * @param playerName the name of the player the mail is for
+     * @param content the HTML content of the mail
+     * @param imagePassword the password to draw into an image, or null to not add an image
+     */
+    PendingMail(String recipient, String playerName, String content, String imagePassword) {
+        this.recipient = recipient;
+        this.playerName = playerName;
+        this.content = content;
+        this.imagePassword = imagePassword;
+    }
+
+    String getRecipient() {
+        return recipient;
+    }
+
+    String getPlayerName() {
+        return playerName;
+    }
+
+    String getContent() {
+        return content;
+    }
+
+    String getImagePassword() {
+        return imagePassword;
+    }
+
+    /**
+     * Saves the given mails to the file, replacing it. The mails contain new passwords, so the file
+     * is created readable by the owner only before anything is written to it.
+     *
+     * @param file the file to write to
+     * @param mails the mails to save
+     * @throws IOException if the file could not be written
+     */
+    static void saveAll(File file, Collection<PendingMail> mails) throws IOException {
+        Path path = file.toPath();
+        Files.deleteIfExists(path);
+        createPrivateFile(path);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(FILE_VERSION);
+            out.writeInt(mails.size());
+            for (PendingMail mail : mails) {
+                writeString(out, mail.recipient);
+                writeString(out, mail.playerName);
+                writeString(out, mail.content);
+                out.writeBoolean(mail.imagePassword != null);
+                if (mail.imagePassword != null) {
+                    writeString(out, mail.imagePassword);
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads the mails saved in the given file.
+     *
+     * @param file the file to read
+     * @return the saved mails
+     * @throws IOException if the file could not be read
+     */
+    static List<PendingMail> loadAll(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int version = in.readInt();
+            if (version != FILE_VERSION) {
+                throw new IOException("Unsupported mail queue version " + version);
+            }
+            int count = in.readInt();
+            List<PendingMail> mails = new ArrayList<>(Math.min(count, 1024));
+            for (int i = 0; i < count; ++i) {
+                String recipient = readString(in);
+                String playerName = readString(in);
+                String content = readString(in);
+                String imagePassword = in.readBoolean() ? readString(in) : null;
+                mails.add(new PendingMail(recipient, playerName, content, imagePassword));
+            }
+            return mails;
+        } catch (EOFException e) {
+            throw new IOException("Mail queue file is truncated", e);
+        }
+    }
+
+    private static void createPrivateFile(Path path) throws IOException {
+        if (path.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            File file = Files.createFile(path).toFile();
+            file.setReadable(false, false);
+            file.setWritable(false, false);
+            file.setReadable(true, true);
+            file.setWritable(true, true);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -1,45 +1,113 @@
 package fr.xephi.authme.mail;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import fr.xephi.authme.AuthMe;
 import fr.xephi.authme.ConsoleLogger;
 import fr.xephi.authme.cache.auth.PlayerAuth;
+import fr.xephi.authme.initialization.DataFolder;
+import fr.xephi.authme.initialization.SettingsDependent;
 import fr.xephi.authme.settings.NewSetting;
 import fr.xephi.authme.settings.properties.EmailSettings;
-import fr.xephi.authme.util.BukkitService;
 import fr.xephi.authme.util.StringUtils;
 import org.apache.commons.mail.EmailConstants;
 import org.apache.commons.mail.EmailException;
 import org.apache.commons.mail.HtmlEmail;
 
+import javax.annotation.PostConstruct;
 import javax.activation.DataSource;
-import javax.activation.FileDataSource;
 import javax.imageio.ImageIO;
 import javax.inject.Inject;
+import javax.mail.MessagingException;
 import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+import javax.mail.util.ByteArrayDataSource;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.security.Security;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static fr.xephi.authme.settings.properties.EmailSettings.MAIL_ACCOUNT;
 import static fr.xephi.authme.settings.properties.EmailSettings.MAIL_PASSWORD;
 
 
 /**
+ * Sends emails to players. Emails are queued and sent by a small number of worker threads,
+ * each of which keeps its connection to the SMTP server open between emails.
+ *
  * @author Xephi59
  */
-public class SendMailSSL {
+public class SendMailSSL implements SettingsDependent {
+
+    /** Name of the file pending emails are saved to when the plugin is disabled. */
+    private static final String QUEUE_FILE_NAME = "mail-queue.dat";
+    /** Seconds after which an unused SMTP connection is closed. */
+    private static final int IDLE_CONNECTION_SECONDS = 60;
+    /** Delay before the first retry of a failed email, multiplied by four for each further attempt. */
+    private static final long RETRY_BASE_DELAY_MILLIS = 2000L;
+    /** Seconds to wait on reload for the emails which are being sent. */
+    private static final int RELOAD_AWAIT_SECONDS = 5;
+    /** Put into the queue of the workers to stop them once they have sent their current email. */
+    private static final PendingMail STOP_WORKERS = new PendingMail("", "", "", null);
 
     @Inject
     private AuthMe plugin;
     @Inject
     private NewSetting settings;
     @Inject
-    private BukkitService bukkitService;
+    @DataFolder
+    private File dataFolder;
+
+    private final Object lock = new Object();
+    private volatile BlockingQueue<PendingMail> queue;
+    private ExecutorService workers;
+    private List<PendingMail> unsentMails = new ArrayList<>();
+    private volatile int maxSendAttempts;
+    private volatile boolean isClosed;
 
     SendMailSSL() {
     }
 
+    @PostConstruct
+    private void loadPendingMails() {
+        reload(settings);
+        File queueFile = new File(dataFolder, QUEUE_FILE_NAME);
+        if (!queueFile.exists()) {
+            return;
+        }
+        List<PendingMail> mails = Collections.emptyList();
+        try {
+            mails = PendingMail.loadAll(queueFile);
+        } catch (IOException e) {
+            ConsoleLogger.logException("Could not read pending emails from '" + queueFile + "':", e);
+        }
+        // The file contains passwords: remove it before the mails are sent, they are saved again on stop if needed
+        if (!queueFile.delete()) {
+            ConsoleLogger.warning("Could not delete '" + queueFile + "', clearing it instead");
+            try {
+                PendingMail.saveAll(queueFile, Collections.<PendingMail>emptyList());
+            } catch (IOException e) {
+                ConsoleLogger.logException("Could not clear '" + queueFile + "':", e);
+            }
+        }
+        if (!mails.isEmpty()) {
+            ConsoleLogger.info("Sending " + mails.size() + " email(s) which could not be sent before the last stop");
+            for (PendingMail mail : mails) {
+                queueMail(mail);
+            }
+        }
+    }
+
     /**
      * Returns whether all necessary settings are set for sending mails.
      *
@@ -51,63 +119,195 @@ public class SendMailSSL {
     }
 
     /**
-     * Sends an email to the user with his new password.
+     * Sends an email to the user with his new password. The email is sent in the background; a return
+     * value of false means that it will not be sent at all, so the new password must not be kept.
      *
      * @param auth the player auth of the player
      * @param newPass the new password
+     * @return true if the email has been queued, false if it was rejected
      */
-    public void sendPasswordMail(final PlayerAuth auth, final String newPass) {
+    public boolean sendPasswordMail(final PlayerAuth auth, final String newPass) {
         if (!hasAllInformation()) {
             ConsoleLogger.warning("Cannot perform email registration: not all email settings are complete");
-            return;
+            return false;
         }
 
-        final String mailText = replaceMailTags(settings.getEmailMessage(), auth, newPass);
-        bukkitService.runTaskAsynchronously(new Runnable() {
+        String mailText = replaceMailTags(settings.getEmailMessage(), auth, newPass);
+        String imagePassword = settings.getProperty(EmailSettings.PASSWORD_AS_IMAGE) ? newPass : null;
+        return queueMail(new PendingMail(auth.getEmail(), auth.getNickname(), mailText, imagePassword));
+    }
 
-            @Override
-            public void run() {
-                Thread.currentThread().setContextClassLoader(this.getClass().getClassLoader());
-                HtmlEmail email;
-                try {
-                    email = initializeMail(auth.getEmail());
-                } catch (EmailException e) {
-                    ConsoleLogger.logException("Failed to create email with the given settings:", e);
-                    return;
-                }
+    /**
+     * Returns the number of emails waiting to be sent.
+     *
+     * @return number of queued emails
+     */
+    public int getQueueSize() {
+        BlockingQueue<PendingMail> currentQueue = queue;
+        return currentQueue == null ? 0 : currentQueue.size();
+    }
 
-                String content = mailText;
-                // Generate an image?
-                File file = null;
-                if (settings.getProperty(EmailSettings.PASSWORD_AS_IMAGE)) {
-                    try {
-                        file = generateImage(auth.getNickname(), plugin, newPass);
-                        content = embedImageIntoEmailContent(file, email, content);
-                    } catch (IOException | EmailException e) {
-                        ConsoleLogger.logException(
-                            "Unable to send new password as image for email " + auth.getEmail() + ":", e);
-                    }
-                }
+    /**
+     * Stops sending emails. Emails which have not been sent yet are saved and sent after the next start.
+     */
+    public void close() {
+        ExecutorService currentWorkers;
+        synchronized (lock) {
+            isClosed = true;
+            currentWorkers = workers;
+            workers = null;
+        }
+        if (currentWorkers != null) {
+            currentWorkers.shutdownNow();
+            try {
+                currentWorkers.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
 
-                sendEmail(content, email);
-                if (file != null) {
-                    file.delete();
+        List<PendingMail> pendingMails;
+        synchronized (lock) {
+            pendingMails = new ArrayList<>(unsentMails);
+            unsentMails.clear();
+            if (queue != null) {
+                queue.drainTo(pendingMails);
+            }
+        }
+        if (!pendingMails.isEmpty()) {
+            File queueFile = new File(dataFolder, QUEUE_FILE_NAME);
+            try {
+                PendingMail.saveAll(queueFile, pendingMails);
+                ConsoleLogger.info("Saved " + pendingMails.size() + " unsent email(s); they will be sent after the next start");
+            } catch (IOException e) {
+                ConsoleLogger.logException("Could not save " + pendingMails.size() + " unsent email(s):", e);
+            }
+        }
+    }
+
+    @Override
+    public void reload(NewSetting settings) {
+        maxSendAttempts = Math.max(1, settings.getProperty(EmailSettings.MAX_SEND_ATTEMPTS));
+        int queueSize = Math.max(1, settings.getProperty(EmailSettings.MAIL_QUEUE_SIZE));
+        ExecutorService oldWorkers;
+        synchronized (lock) {
+            BlockingQueue<PendingMail> oldQueue = queue;
+            queue = new ArrayBlockingQueue<>(queueSize);
+            if (oldQueue != null) {
+                oldQueue.drainTo(queue);
+                oldQueue.drainTo(unsentMails);
+                // The old queue is empty now, so there is room for the stop signal
+                oldQueue.offer(STOP_WORKERS);
+            }
+            oldWorkers = workers;
+            workers = null;
+        }
+
+        // Restart the workers so that they use the new SMTP settings. The emails which are being sent are
+        // finished first; workers which are still busy after the timeout put their email back
+        if (oldWorkers != null) {
+            oldWorkers.shutdown();
+            try {
+                if (!oldWorkers.awaitTermination(RELOAD_AWAIT_SECONDS, TimeUnit.SECONDS)) {
+                    oldWorkers.shutdownNow();
+                    oldWorkers.awaitTermination(1, TimeUnit.SECONDS);
                 }
+            } catch (InterruptedException e) {
+                oldWorkers.shutdownNow();
+                Thread.currentThread().interrupt();
             }
-        });
+        }
+
+        synchronized (lock) {
+            if (isClosed) {
+                return;
+            }
+            requeueUnsentMails();
+            if (!queue.isEmpty() && workers == null) {
+                startWorkers();
+            }
+        }
+    }
+
+    /**
+     * Moves the emails which could not be queued or sent before into the queue, as far as it has room.
+     */
+    private void requeueUnsentMails() {
+        Iterator<PendingMail> iterator = unsentMails.iterator();
+        while (iterator.hasNext() && queue.offer(iterator.next())) {
+            iterator.remove();
+        }
+        if (!unsentMails.isEmpty()) {
+            ConsoleLogger.warning(unsentMails.size() + " email(s) do not fit into the queue. They are saved on "
+                + "stop and sent after the next start. Consider increasing Email.queueSize");
+        }
+    }
+
+    private boolean queueMail(PendingMail mail) {
+        synchronized (lock) {
+            if (isClosed) {
+                unsentMails.add(mail);
+                return true;
+            }
+            if (!queue.offer(mail)) {
+                ConsoleLogger.warning("Cannot send email to '" + mail.getRecipient() + "': too many emails are "
+                    + "waiting to be sent. Consider increasing Email.queueSize");
+                return false;
+            }
+            if (workers == null) {
+                startWorkers();
+            }
+            return true;
+        }
+    }
+
+    private void startWorkers() {
+        int connections = Math.max(1, settings.getProperty(EmailSettings.SMTP_CONNECTIONS));
+        workers = Executors.newFixedThreadPool(connections, new ThreadFactoryBuilder()
+            .setNameFormat("AuthMe-Mail-%d")
+            .setDaemon(true)
+            .build());
+        for (int i = 0; i < connections; ++i) {
+            workers.execute(new MailWorker(queue));
+        }
     }
 
-    private static File generateImage(String name, AuthMe plugin, String newPass) throws IOException {
-        ImageGenerator gen = new ImageGenerator(newPass);
-        File file = new File(plugin.getDataFolder(), name + "_new_pass.jpg");
-        ImageIO.write(gen.generateImage(), "jpg", file);
-        return file;
+    /**
+     * Builds the email to send.
+     *
+     * @param mail the mail to build
+     * @return the MIME message to send
+     * @throws EmailException if the email could not be built
+     */
+    private MimeMessage buildMessage(PendingMail mail) throws EmailException {
+        HtmlEmail email = initializeMail(mail.getRecipient());
+        String content = mail.getContent();
+        if (mail.getImagePassword() != null) {
+            try {
+                content = embedImageIntoEmailContent(mail.getPlayerName(), mail.getImagePassword(), email, content);
+            } catch (IOException | EmailException e) {
+                ConsoleLogger.logException(
+                    "Unable to send new password as image for email " + mail.getRecipient() + ":", e);
+            }
+        }
+
+        try {
+            email.setHtmlMsg(content);
+            email.setTextMsg(content);
+        } catch (EmailException e) {
+            ConsoleLogger.logException("Your email.html config contains an error and cannot be sent:", e);
+            throw e;
+        }
+        email.buildMimeMessage();
+        return email.getMimeMessage();
     }
 
-    private static String embedImageIntoEmailContent(File image, HtmlEmail email, String content)
-            throws EmailException {
-        DataSource source = new FileDataSource(image);
-        String tag = email.embed(source, image.getName());
+    private static String embedImageIntoEmailContent(String name, String newPass, HtmlEmail email, String content)
+            throws IOException, EmailException {
+        ByteArrayOutputStream imageBytes = new ByteArrayOutputStream();
+        ImageIO.write(new ImageGenerator(newPass).generateImage(), "jpg", imageBytes);
+        DataSource source = new ByteArrayDataSource(imageBytes.toByteArray(), "image/jpeg");
+        String tag = email.embed(source, name + "_new_pass.jpg");
         return content.replace("<image />", "<img src=\"cid:" + tag + "\">");
     }
 
@@ -132,23 +332,6 @@ public class SendMailSSL {
         return email;
     }
 
-    private static boolean sendEmail(String content, HtmlEmail email) {
-        try {
-            email.setHtmlMsg(content);
-            email.setTextMsg(content);
-        } catch (EmailException e) {
-            ConsoleLogger.logException("Your email.html config contains an error and cannot be sent:", e);
-            return false;
-        }
-        try {
-            email.send();
-            return true;
-        } catch (EmailException e) {
-            ConsoleLogger.logException("Failed to send a mail to " + email.getToAddresses() + ":", e);
-            return false;
-        }
-    }
-
     private String replaceMailTags(String mailText, PlayerAuth auth, String newPass) {
         return mailText
             .replace("<playername />", auth.getNickname())
@@ -192,4 +375,96 @@ public class SendMailSSL {
                 email.setSSLCheckServerIdentity(true);
         }
     }
+
+    /**
+     * Sends the emails of the queue over one SMTP connection, which is kept open while there are emails
+     * to send. Failed emails are retried with an increasing delay.
+     */
+    private final class MailWorker implements Runnable {
+
+        private final BlockingQueue<PendingMail> workerQueue;
+        private Transport transport;
+
+        MailWorker(BlockingQueue<PendingMail> workerQueue) {
+            this.workerQueue = workerQueue;
+        }
+
+        @Override
+        public void run() {
+            Thread.currentThread().setContextClassLoader(SendMailSSL.class.getClassLoader());
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    PendingMail mail = workerQueue.poll(IDLE_CONNECTION_SECONDS, TimeUnit.SECONDS);
+                    if (mail == null) {
+                        closeTransport();
+                    } else if (mail == STOP_WORKERS) {
+                        // Pass the signal on to the next worker of this queue
+                        workerQueue.offer(STOP_WORKERS);
+                        return;
+                    } else {
+                        sendWithRetries(mail);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                closeTransport();
+            }
+        }
+
+        private void sendWithRetries(PendingMail mail) throws InterruptedException {
+            MimeMessage message;
+            try {
+                message = buildMessage(mail);
+            } catch (EmailException e) {
+                ConsoleLogger.logException("Failed to create email with the given settings:", e);
+                return;
+            }
+
+            for (int attempt = 1; attempt <= maxSendAttempts; ++attempt) {
+                try {
+                    send(message);
+                    return;
+                } catch (MessagingException e) {
+                    closeTransport();
+                    if (attempt == maxSendAttempts) {
+                        ConsoleLogger.logException("Failed to send a mail to " + mail.getRecipient() + ":", e);
+                        return;
+                    }
+                    ConsoleLogger.warning("Failed to send a mail to " + mail.getRecipient() + " (attempt "
+                        + attempt + "): " + e.getMessage() + ". Retrying");
+                }
+
+                try {
+                    Thread.sleep(RETRY_BASE_DELAY_MILLIS << (2 * (attempt - 1)));
+                } catch (InterruptedException e) {
+                    synchronized (lock) {
+                        unsentMails.add(mail);
+                    }
+                    throw e;
+                }
+            }
+        }
+
+        private void send(MimeMessage message) throws MessagingException {
+            if (transport == null || !transport.isConnected()) {
+                closeTransport();
+                transport = message.getSession().getTransport();
+                transport.connect();
+            }
+            message.saveChanges();
+            transport.sendMessage(message, message.getAllRecipients());
+        }
+
+        private void closeTransport() {
+            if (transport != null) {
+                try {
+                    transport.close();
+                } catch (MessagingException e) {
+                    ConsoleLogger.warning("Could not close SMTP connection: " + e.getMessage());
+                }
+                transport = null;
+            }
+        }
+    }
 }
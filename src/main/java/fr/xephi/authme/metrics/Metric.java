@@ -0,0 +1,76 @@
+package fr.xephi.authme.metrics;
+
+/**
+ * The metrics recorded by AuthMe. Each metric is recorded per value of its label,
+ * e.g. per data source method.
+ */
+public enum Metric {
+
+    /** Duration of calls to the data source. */
+    DATA_SOURCE("authme_datasource_seconds", "method", "Duration of data source calls", true),
+
+    /** Number of data source calls which threw an exception. */
+    DATA_SOURCE_ERRORS("authme_datasource_errors_total", "method", "Data source calls which failed", false),
+
+    /** Time to acquire a connection from the connection pool. */
+    CONNECTION_ACQUIRE("authme_datasource_connection_acquire_seconds", "pool",
+        "Time waited for a database connection", true),
+
+    /** Time a player process (login, register, ...) waited for the scheduler before it was run. */
+    PROCESS_WAIT("authme_process_wait_seconds", "process", "Time player processes waited to be run", true),
+
+    /** Duration of player processes (login, register, ...). */
+    PROCESS("authme_process_seconds", "process", "Duration of player processes", true),
+
+    /** Duration of the computation of password hashes. */
+    HASH_COMPUTE("authme_hash_compute_seconds", "algorithm", "Duration of computing password hashes", true),
+
+    /** Duration of checking passwords against their hash. */
+    HASH_COMPARE("authme_hash_compare_seconds", "algorithm", "Duration of checking passwords", true),
+
+    /** Time spent per tick running the queued main thread tasks, by whether tasks were left for the next tick. */
+    SYNC_TASK_DRAIN("authme_sync_task_drain_seconds", "result", "Time per tick spent on main thread tasks", true),
+
+    /** Number of operations which took longer than the slow operation threshold. */
+    SLOW_OPERATIONS("authme_slow_operations_total", "operation", "Operations slower than the threshold", false);
+
+    private final String name;
+    private final String labelName;
+    private final String description;
+    private final boolean isLatency;
+
+    Metric(String name, String labelName, String description, boolean isLatency) {
+        this.name = name;
+        this.labelName = labelName;
+        this.description = description;
+        this.isLatency = isLatency;
+    }
+
+    /**
+     * @return the name of the metric in the Prometheus format
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the name of the label the metric is recorded by
+     */
+    public String getLabelName() {
+        return labelName;
+    }
+
+    /**
+     * @return description of the metric
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return true if the metric is a {@link LatencyHistogram}, false if it is a counter
+     */
+    public boolean isLatency() {
+        return isLatency;
+    }
+}
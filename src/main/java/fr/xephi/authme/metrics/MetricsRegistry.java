@@ -0,0 +1,227 @@
+package fr.xephi.authme.metrics;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps AuthMe's internal performance metrics: latency histograms and counters for the
+ * {@link Metric} entries, and gauges registered by other services (cache hit ratios,
+ * queue sizes, ...).
+ * <p>
+ * Recording is lock-free and may be done from any thread.
+ */
+public class MetricsRegistry {
+
+    /** Quantiles exported for every latency histogram. */
+    private static final double[] EXPORTED_QUANTILES = {0.5, 0.9, 0.99};
+
+    private final Map<Metric, ConcurrentMap<String, LatencyHistogram>> histograms = new EnumMap<>(Metric.class);
+    private final Map<Metric, ConcurrentMap<String, AtomicLong>> counters = new EnumMap<>(Metric.class);
+    private final ConcurrentMap<String, RegisteredGauge> gauges = new ConcurrentHashMap<>();
+
+    public MetricsRegistry() {
+        for (Metric metric : Metric.values()) {
+            if (metric.isLatency()) {
+                histograms.put(metric, new ConcurrentHashMap<String, LatencyHistogram>());
+            } else {
+                counters.put(metric, new ConcurrentHashMap<String, AtomicLong>());
+            }
+        }
+    }
+
+    /**
+     * Returns the histogram of the given metric for the given label value, creating it if necessary.
+     * Keep the returned histogram to record values in hot paths.
+     *
+     * @param metric the metric (must be a latency metric)
+     * @param label the label value, e.g. the data source method
+     * @return the histogram
+     */
+    public LatencyHistogram getHistogram(Metric metric, String label) {
+        ConcurrentMap<String, LatencyHistogram> metricHistograms = getMetricMap(histograms, metric);
+        LatencyHistogram histogram = metricHistograms.get(label);
+        if (histogram == null) {
+            LatencyHistogram newHistogram = new LatencyHistogram();
+            histogram = metricHistograms.putIfAbsent(label, newHistogram);
+            if (histogram == null) {
+                histogram = newHistogram;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Records the time elapsed since the given start time.
+     *
+     * @param metric the metric to record (must be a latency metric)
+     * @param label the label value, e.g. the process name
+     * @param startNanos the start time as returned by {@link System#nanoTime()}
+     */
+    public void recordLatency(Metric metric, String label, long startNanos) {
+        getHistogram(metric, label).recordSince(startNanos);
+    }
+
+    /**
+     * Increments the counter of the given metric for the given label value.
+     *
+     * @param metric the metric (must be a counter metric)
+     * @param label the label value
+     */
+    public void increment(Metric metric, String label) {
+        ConcurrentMap<String, AtomicLong> metricCounters = getMetricMap(counters, metric);
+        AtomicLong counter = metricCounters.get(label);
+        if (counter == null) {
+            AtomicLong newCounter = new AtomicLong();
+            counter = metricCounters.putIfAbsent(label, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        counter.incrementAndGet();
+    }
+
+    /**
+     * Registers a gauge, i.e. a value which is read when the metrics are displayed.
+     * Replaces any gauge previously registered with the same name.
+     *
+     * @param name the name of the gauge in the Prometheus format, e.g. {@code authme_mail_queue_size}
+     * @param description description of the gauge
+     * @param gauge the gauge
+     */
+    public void registerGauge(String name, String description, Gauge gauge) {
+        gauges.put(name, new RegisteredGauge(description, gauge));
+    }
+
+    /**
+     * Returns the histograms of the given metric by label value.
+     *
+     * @param metric the metric (must be a latency metric)
+     * @return the histograms, sorted by label value
+     */
+    public SortedMap<String, LatencyHistogram> getHistograms(Metric metric) {
+        return Collections.unmodifiableSortedMap(new TreeMap<>(getMetricMap(histograms, metric)));
+    }
+
+    /**
+     * Returns the counter values of the given metric by label value.
+     *
+     * @param metric the metric (must be a counter metric)
+     * @return the counter values, sorted by label value
+     */
+    public SortedMap<String, Long> getCounters(Metric metric) {
+        SortedMap<String, Long> values = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> entry : getMetricMap(counters, metric).entrySet()) {
+            values.put(entry.getKey(), entry.getValue().get());
+        }
+        return values;
+    }
+
+    /**
+     * Returns the current values of all registered gauges.
+     *
+     * @return the gauge values, sorted by name
+     */
+    public SortedMap<String, Double> getGaugeValues() {
+        SortedMap<String, Double> values = new TreeMap<>();
+        for (Map.Entry<String, RegisteredGauge> entry : gauges.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().gauge.getValue());
+        }
+        return values;
+    }
+
+    /**
+     * Returns all metrics in the Prometheus text exposition format.
+     *
+     * @return the metrics as text
+     */
+    public String toPrometheusFormat() {
+        StringBuilder sb = new StringBuilder();
+        for (Metric metric : Metric.values()) {
+            appendHeader(sb, metric.getName(), metric.getDescription(), metric.isLatency() ? "summary" : "counter");
+            if (metric.isLatency()) {
+                for (Map.Entry<String, LatencyHistogram> entry : getHistograms(metric).entrySet()) {
+                    appendHistogram(sb, metric, entry.getKey(), entry.getValue());
+                }
+            } else {
+                for (Map.Entry<String, Long> entry : getCounters(metric).entrySet()) {
+                    sb.append(metric.getName()).append(label(metric.getLabelName(), entry.getKey(), null))
+                        .append(' ').append(entry.getValue()).append('\n');
+                }
+            }
+        }
+
+        for (Map.Entry<String, RegisteredGauge> entry : new TreeMap<>(gauges).entrySet()) {
+            appendHeader(sb, entry.getKey(), entry.getValue().description, "gauge");
+            sb.append(entry.getKey()).append(' ').append(entry.getValue().gauge.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static void appendHistogram(StringBuilder sb, Metric metric, String labelValue,
+                                        LatencyHistogram histogram) {
+        String name = metric.getName();
+        String labelName = metric.getLabelName();
+        for (double quantile : EXPORTED_QUANTILES) {
+            sb.append(name).append(label(labelName, labelValue, quantile))
+                .append(' ').append(toSeconds(histogram.getQuantile(quantile))).append('\n');
+        }
+        sb.append(name).append("_sum").append(label(labelName, labelValue, null))
+            .append(' ').append(toSeconds(histogram.getSum())).append('\n');
+        sb.append(name).append("_count").append(label(labelName, labelValue, null))
+            .append(' ').append(histogram.getCount()).append('\n');
+    }
+
+    private static void appendHeader(StringBuilder sb, String name, String description, String type) {
+        sb.append("# HELP ").append(name).append(' ').append(description).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String label(String name, String value, Double quantile) {
+        String escapedValue = value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        String label = "{" + name + "=\"" + escapedValue + "\"";
+        if (quantile != null) {
+            label += ",quantile=\"" + quantile + "\"";
+        }
+        return label + "}";
+    }
+
+    private static double toSeconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    private static <V> ConcurrentMap<String, V> getMetricMap(Map<Metric, ConcurrentMap<String, V>> map,
+                                                            Metric metric) {
+        ConcurrentMap<String, V> metricMap = map.get(metric);
+        if (metricMap == null) {
+            throw new IllegalArgumentException("Metric '" + metric + "' is not of the requested type");
+        }
+        return metricMap;
+    }
+
+    /**
+     * A value which is read when the metrics are displayed.
+     */
+    public interface Gauge {
+
+        /**
+         * @return the current value
+         */
+        double getValue();
+    }
+
+    private static final class RegisteredGauge {
+        private final String description;
+        private final Gauge gauge;
+
+        RegisteredGauge(String description, Gauge gauge) {
+            this.description = description;
+            this.gauge = gauge;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package fr.xephi.authme.metrics;
+
+import com.google.common.cache.CacheStats;
+import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.datasource.AsyncDataSource;
+import fr.xephi.authme.datasource.CacheDataSource;
+import fr.xephi.authme.datasource.DataSource;
+import fr.xephi.authme.initialization.SettingsDependent;
+import fr.xephi.authme.mail.SendMailSSL;
+import fr.xephi.authme.permission.PermissionsManager;
+import fr.xephi.authme.process.ProcessExecutor;
+import fr.xephi.authme.service.BungeeService;
+import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.PluginSettings;
+import fr.xephi.authme.util.SyncTaskDispatcher;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import java.io.IOException;
+
+/**
+ * Registers the gauges of AuthMe's services in the {@link MetricsRegistry} and runs
+ * the Prometheus endpoint if it is enabled.
+ */
+public class MetricsService implements SettingsDependent {
+
+    @Inject
+    private MetricsRegistry metricsRegistry;
+
+    @Inject
+    private NewSetting settings;
+
+    @Inject
+    private DataSource dataSource;
+
+    @Inject
+    private AsyncDataSource asyncDataSource;
+
+    @Inject
+    private PermissionsManager permissionsManager;
+
+    @Inject
+    private SendMailSSL sendMailSsl;
+
+    @Inject
+    private BungeeService bungeeService;
+
+    @Inject
+    private ProcessExecutor processExecutor;
+
+    @Inject
+    private SyncTaskDispatcher syncTaskDispatcher;
+
+    private PrometheusEndpoint endpoint;
+    private int endpointPort;
+
+    MetricsService() {
+    }
+
+    @PostConstruct
+    private void registerGauges() {
+        metricsRegistry.registerGauge("authme_permission_cache_hit_ratio",
+            "Ratio of permission checks answered from the cache", new MetricsRegistry.Gauge() {
+                @Override
+                public double getValue() {
+                    return ratio(permissionsManager.getPermissionCacheHits(),
+                        permissionsManager.getPermissionCacheMisses());
+                }
+            });
+        if (dataSource instanceof CacheDataSource) {
+            final CacheDataSource cacheDataSource = (CacheDataSource) dataSource;
+            metricsRegistry.registerGauge("authme_auth_cache_hit_ratio",
+                "Ratio of player data lookups answered from the cache", new MetricsRegistry.Gauge() {
+                    @Override
+                    public double getValue() {
+                        CacheStats stats = cacheDataSource.getCacheStats();
+                        return ratio(stats.hitCount(), stats.missCount());
+                    }
+                });
+            metricsRegistry.registerGauge("authme_auth_cache_size",
+                "Number of players in the player data cache", new MetricsRegistry.Gauge() {
+                    @Override
+                    public double getValue() {
+                        return cacheDataSource.getCacheSize();
+                    }
+                });
+            metricsRegistry.registerGauge("authme_auth_cache_evictions",
+                "Number of entries evicted from the full player data cache", new MetricsRegistry.Gauge() {
+                    @Override
+                    public double getValue() {
+                        return cacheDataSource.getCacheStats().evictionCount();
+                    }
+                });
+        }
+        metricsRegistry.registerGauge("authme_database_queue_size",
+            "Number of database operations waiting for a database thread", new MetricsRegistry.Gauge() {
+                @Override
+                public double getValue() {
+                    return asyncDataSource.getQueueSize();
+                }
+            });
+        metricsRegistry.registerGauge("authme_mail_queue_size",
+            "Number of emails waiting to be sent", new MetricsRegistry.Gauge() {
+                @Override
+                public double getValue() {
+                    return sendMailSsl.getQueueSize();
+                }
+            });
+        metricsRegistry.registerGauge("authme_bungeecord_queue_size",
+            "Number of BungeeCord messages waiting to be sent", new MetricsRegistry.Gauge() {
+                @Override
+                public double getValue() {
+                    return bungeeService.getPendingMessageCount();
+                }
+            });
+        metricsRegistry.registerGauge("authme_process_queue_size",
+            "Number of player processes waiting or running", new MetricsRegistry.Gauge() {
+                @Override
+                public double getValue() {
+                    return processExecutor.getQueueSize();
+                }
+            });
+        metricsRegistry.registerGauge("authme_process_pending_players",
+            "Number of players with processes waiting or running", new MetricsRegistry.Gauge() {
+                @Override
+                public double getValue() {
+                    return processExecutor.getPendingPlayerCount();
+                }
+            });
+        metricsRegistry.registerGauge("authme_log_messages_dropped",
+            "Number of log messages discarded because the log file queue was full", new MetricsRegistry.Gauge() {
+                @Override
+                public double getValue() {
+                    return ConsoleLogger.getDroppedLogMessages();
+                }
+            });
+        metricsRegistry.registerGauge("authme_sync_task_backlog",
+            "Number of tasks waiting to be run on the main thread", new MetricsRegistry.Gauge() {
+                @Override
+                public double getValue() {
+                    return syncTaskDispatcher.getBacklog();
+                }
+            });
+        reload(settings);
+    }
+
+    @Override
+    public void reload(NewSetting settings) {
+        boolean isEnabled = settings.getProperty(PluginSettings.METRICS_ENDPOINT_ENABLED);
+        int port = settings.getProperty(PluginSettings.METRICS_ENDPOINT_PORT);
+        if (endpoint != null && (!isEnabled || port != endpointPort)) {
+            close();
+        }
+        if (isEnabled && endpoint == null) {
+            try {
+                endpoint = new PrometheusEndpoint(port, metricsRegistry);
+                endpointPort = port;
+                ConsoleLogger.info("Serving metrics on http://127.0.0.1:" + port + "/metrics");
+            } catch (IOException e) {
+                ConsoleLogger.logException("Could not start the metrics endpoint on port " + port + ":", e);
+            }
+        }
+    }
+
+    /**
+     * Stops the Prometheus endpoint if it is running.
+     */
+    public void close() {
+        if (endpoint != null) {
+            endpoint.stop();
+            endpoint = null;
+        }
+    }
+
+    private static double ratio(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
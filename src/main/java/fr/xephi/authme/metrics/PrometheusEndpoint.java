@@ -0,0 +1,70 @@
+package fr.xephi.authme.metrics;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * HTTP endpoint serving the metrics in the Prometheus text format on {@code /metrics}.
+ * Only listens on the loopback interface.
+ */
+class PrometheusEndpoint {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Starts the endpoint.
+     *
+     * @param port the port to listen on
+     * @param metricsRegistry the metrics to serve
+     * @throws IOException if the port could not be bound
+     */
+    PrometheusEndpoint(int port, final MetricsRegistry metricsRegistry) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    if (!"GET".equals(exchange.getRequestMethod())) {
+                        exchange.sendResponseHeaders(405, -1);
+                        return;
+                    }
+                    byte[] body = metricsRegistry.toPrometheusFormat().getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+                    exchange.sendResponseHeaders(200, body.length);
+                    try (OutputStream os = exchange.getResponseBody()) {
+                        os.write(body);
+                    }
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("AuthMe-Metrics")
+            .setDaemon(true)
+            .build());
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Stops the endpoint.
+     */
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
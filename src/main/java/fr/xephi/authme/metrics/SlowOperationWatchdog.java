@@ -0,0 +1,282 @@
+package fr.xephi.authme.metrics;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.initialization.SettingsDependent;
+import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.PluginSettings;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps track of running operations (player processes, data source calls) and reports the ones
+ * which take longer than the configured threshold.
+ * <p>
+ * Once an operation exceeds the threshold, the stack of its thread is sampled periodically. When the
+ * operation finishes, a summary of where its thread spent the time is logged. Operations which are
+ * still running are reported periodically, so that hanging operations do not go unnoticed.
+ * <p>
+ * Operations may be nested on the same thread, e.g. data source calls made by a player process. Each
+ * operation is judged by its total time, including its nested operations, so that a process which is
+ * slow because of many short data source calls is reported as well. Only the outermost operation is
+ * reported, with the share of its nested operations: a slow data source call is part of the report of
+ * the process which made it and is not reported again on its own.
+ */
+public class SlowOperationWatchdog implements SettingsDependent {
+
+    /** Interval in which operations which are still running are reported again. */
+    private static final long STILL_RUNNING_REPORT_NANOS = TimeUnit.SECONDS.toNanos(30);
+    /** Maximum number of distinct locations kept per operation. */
+    private static final int MAX_LOCATIONS = 50;
+    /** Number of locations shown in a report. */
+    private static final int REPORTED_LOCATIONS = 5;
+    private static final String AUTHME_PACKAGE = "fr.xephi.authme.";
+
+    private final MetricsRegistry metricsRegistry;
+    private final Set<Operation> runningOperations =
+        Collections.newSetFromMap(new ConcurrentHashMap<Operation, Boolean>());
+    /** Innermost running operation of each thread. */
+    private final ThreadLocal<Operation> currentOperation = new ThreadLocal<>();
+
+    private volatile long thresholdNanos;
+    private long sampleIntervalMillis;
+    private ScheduledExecutorService sampler;
+
+    /**
+     * Constructor.
+     *
+     * @param metricsRegistry the metrics registry to count slow operations in
+     * @param settings the settings
+     */
+    @Inject
+    public SlowOperationWatchdog(MetricsRegistry metricsRegistry, NewSetting settings) {
+        this.metricsRegistry = metricsRegistry;
+        reload(settings);
+    }
+
+    /**
+     * Registers the start of an operation on the current thread.
+     *
+     * @param name the name of the operation, e.g. {@code process.login}
+     * @return the operation to pass to {@link #finish}, or null if the watchdog is disabled
+     */
+    public Operation start(String name) {
+        if (thresholdNanos <= 0) {
+            return null;
+        }
+        Operation parent = currentOperation.get();
+        Operation operation = new Operation(name, Thread.currentThread(), System.nanoTime(), parent);
+        if (parent != null) {
+            parent.child = operation;
+        }
+        currentOperation.set(operation);
+        runningOperations.add(operation);
+        return operation;
+    }
+
+    /**
+     * Registers the end of an operation and reports it if it was slow.
+     *
+     * @param operation the operation returned by {@link #start}, may be null
+     */
+    public void finish(Operation operation) {
+        if (operation == null) {
+            return;
+        }
+        runningOperations.remove(operation);
+        long duration = System.nanoTime() - operation.startNanos;
+        if (thresholdNanos > 0 && duration >= thresholdNanos) {
+            metricsRegistry.increment(Metric.SLOW_OPERATIONS, operation.name);
+            // A nested operation is part of the report of its parent, which takes at least as long
+            if (operation.parent == null) {
+                ConsoleLogger.warning("Slow operation '" + operation.name + "' took "
+                    + LatencyHistogram.formatNanos(duration) + describeNestedTime(operation.nestedNanos, duration)
+                    + buildReport(operation));
+            }
+        }
+
+        Operation parent = operation.parent;
+        if (parent == null) {
+            currentOperation.remove();
+        } else {
+            currentOperation.set(parent);
+            parent.nestedNanos += duration;
+            parent.child = null;
+        }
+    }
+
+    @Override
+    public void reload(NewSetting settings) {
+        long threshold = TimeUnit.MILLISECONDS.toNanos(settings.getProperty(PluginSettings.SLOW_OPERATION_THRESHOLD));
+        long interval = Math.max(10, settings.getProperty(PluginSettings.STACK_SAMPLE_INTERVAL));
+        synchronized (this) {
+            thresholdNanos = threshold;
+            if (sampler != null && (threshold <= 0 || interval != sampleIntervalMillis)) {
+                sampler.shutdownNow();
+                sampler = null;
+            }
+            if (threshold > 0 && sampler == null) {
+                sampleIntervalMillis = interval;
+                sampler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("AuthMe-Watchdog")
+                    .setDaemon(true)
+                    .build());
+                sampler.scheduleAtFixedRate(new Runnable() {
+                    @Override
+                    public void run() {
+                        sampleSlowOperations();
+                    }
+                }, interval, interval, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (threshold <= 0) {
+            runningOperations.clear();
+        }
+    }
+
+    /**
+     * Stops sampling.
+     */
+    public synchronized void close() {
+        if (sampler != null) {
+            sampler.shutdownNow();
+            sampler = null;
+        }
+    }
+
+    /**
+     * Samples the stack of all outermost operations running longer than the threshold. Runs on the sampler
+     * thread. Nested operations are not sampled separately: they are on the stack of their outermost operation.
+     */
+    void sampleSlowOperations() {
+        long now = System.nanoTime();
+        for (Operation operation : runningOperations) {
+            long duration = now - operation.startNanos;
+            if (operation.parent != null || duration < thresholdNanos) {
+                continue;
+            }
+            operation.addSample(operation.thread.getStackTrace());
+
+            if (operation.nextReportNanos == 0) {
+                operation.nextReportNanos = now + STILL_RUNNING_REPORT_NANOS;
+            } else if (now >= operation.nextReportNanos) {
+                operation.nextReportNanos = now + STILL_RUNNING_REPORT_NANOS;
+                Operation child = operation.child;
+                long nestedNanos = operation.nestedNanos + (child == null ? 0 : now - child.startNanos);
+                ConsoleLogger.warning("Operation '" + operation.name + "' is still running after "
+                    + LatencyHistogram.formatNanos(duration) + describeNestedTime(nestedNanos, duration)
+                    + " on thread '" + operation.thread.getName() + "'" + buildReport(operation));
+            }
+        }
+    }
+
+    private static String describeNestedTime(long nestedNanos, long duration) {
+        if (nestedNanos <= 0) {
+            return "";
+        }
+        return " (" + LatencyHistogram.formatNanos(nestedNanos) + " or " + nestedNanos * 100 / duration
+            + "% of it in nested operations)";
+    }
+
+    private static String buildReport(Operation operation) {
+        List<Map.Entry<String, AtomicInteger>> locations = new ArrayList<>(operation.locations.entrySet());
+        if (locations.isEmpty()) {
+            return "";
+        }
+        Collections.sort(locations, new Comparator<Map.Entry<String, AtomicInteger>>() {
+            @Override
+            public int compare(Map.Entry<String, AtomicInteger> e1, Map.Entry<String, AtomicInteger> e2) {
+                return Integer.compare(e2.getValue().get(), e1.getValue().get());
+            }
+        });
+
+        int samples = operation.sampleCount.get();
+        StringBuilder sb = new StringBuilder(". Where the time was spent (" + samples + " samples):");
+        for (Map.Entry<String, AtomicInteger> location : locations.subList(0, Math.min(REPORTED_LOCATIONS,
+            locations.size()))) {
+            sb.append("\n  ").append(location.getValue().get() * 100 / samples).append("% ")
+                .append(location.getKey());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the location to aggregate a stack sample by: the top frame, and the closest
+     * AuthMe frame if the top frame is in another library.
+     *
+     * @param stack the stack trace
+     * @return the location, or null for an empty stack
+     */
+    static String toLocation(StackTraceElement[] stack) {
+        if (stack.length == 0) {
+            return null;
+        }
+        String top = stack[0].toString();
+        if (stack[0].getClassName().startsWith(AUTHME_PACKAGE)) {
+            return top;
+        }
+        for (int i = 1; i < stack.length; ++i) {
+            if (stack[i].getClassName().startsWith(AUTHME_PACKAGE)) {
+                return top + " called from " + stack[i];
+            }
+        }
+        return top;
+    }
+
+    /**
+     * An operation which is being tracked.
+     */
+    public static final class Operation {
+        private final String name;
+        private final Thread thread;
+        private final long startNanos;
+        private final Operation parent;
+        /** Nested operation which is currently running. */
+        private volatile Operation child;
+        /** Time spent in nested operations which have finished. */
+        private volatile long nestedNanos;
+        private final ConcurrentMap<String, AtomicInteger> locations = new ConcurrentHashMap<>();
+        private final AtomicInteger sampleCount = new AtomicInteger();
+        // Only accessed by the sampler thread
+        private long nextReportNanos;
+
+        Operation(String name, Thread thread, long startNanos, Operation parent) {
+            this.name = name;
+            this.thread = thread;
+            this.startNanos = startNanos;
+            this.parent = parent;
+        }
+
+        void addSample(StackTraceElement[] stack) {
+            String location = toLocation(stack);
+            if (location == null) {
+                return;
+            }
+            sampleCount.incrementAndGet();
+            AtomicInteger count = locations.get(location);
+            if (count == null) {
+                if (locations.size() >= MAX_LOCATIONS) {
+                    location = "(other)";
+                }
+                AtomicInteger newCount = new AtomicInteger();
+                count = locations.putIfAbsent(location, newCount);
+                if (count == null) {
+                    count = newCount;
+                }
+            }
+            count.incrementAndGet();
+        }
+    }
+}
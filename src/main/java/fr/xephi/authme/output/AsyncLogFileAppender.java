@@ -0,0 +1,309 @@
+package fr.xephi.authme.output;
+
+import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.SecuritySettings;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes log messages to a file from a background thread. Messages are put in a bounded lock-free
+ * queue and written in batches; the log file can be rotated by size and daily.
+ */
+public class AsyncLogFileAppender {
+
+    private static final String NEW_LINE = System.getProperty("line.separator");
+    private static final int MAX_BATCH_SIZE = 512;
+    private static final int SAMPLE_RATE = 10;
+    private static final long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+    private static final long BLOCK_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+    private final File logFile;
+    private final int capacity;
+    private final LogOverflowPolicy overflowPolicy;
+    private final long maxFileSize;
+    private final boolean rotateDaily;
+    private final boolean compressRotatedFiles;
+
+    private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final AtomicInteger sampleCounter = new AtomicInteger();
+    private final AtomicLong droppedMessages = new AtomicLong();
+    private volatile boolean running;
+    private Thread writerThread;
+
+    // Only accessed by the writer thread once started
+    private final DateFormat dateFormat = new SimpleDateFormat("[MM-dd HH:mm:ss]");
+    private final StringBuilder batch = new StringBuilder();
+    private FileChannel channel;
+    private long fileSize;
+    private long nextDailyRotation;
+
+    /**
+     * Constructor.
+     *
+     * @param logFile the file to write to
+     * @param settings the settings
+     */
+    public AsyncLogFileAppender(File logFile, NewSetting settings) {
+        this.logFile = logFile;
+        this.capacity = Math.max(1, settings.getProperty(SecuritySettings.LOG_QUEUE_SIZE));
+        this.overflowPolicy = settings.getProperty(SecuritySettings.LOG_OVERFLOW_POLICY);
+        this.maxFileSize = Math.max(0, settings.getProperty(SecuritySettings.LOG_ROTATION_MAX_FILE_SIZE))
+            * 1024L * 1024L;
+        this.rotateDaily = settings.getProperty(SecuritySettings.LOG_ROTATION_DAILY);
+        this.compressRotatedFiles = settings.getProperty(SecuritySettings.LOG_ROTATION_COMPRESS);
+    }
+
+    /**
+     * Opens the log file and starts the writer thread.
+     *
+     * @throws IOException if the log file cannot be opened
+     */
+    public void start() throws IOException {
+        openChannel();
+        nextDailyRotation = getStartOfNextDay(logFile.lastModified() > 0
+            ? logFile.lastModified() : System.currentTimeMillis());
+        running = true;
+        writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                processQueue();
+            }
+        }, "AuthMe-LogWriter");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Queues a message to be written to the log file. Depending on the overflow policy, the message
+     * may be discarded or the call may block if the queue is full.
+     *
+     * @param message the message to write
+     */
+    public void append(String message) {
+        if (!running) {
+            return;
+        }
+        if (!reserveSlot()) {
+            droppedMessages.incrementAndGet();
+            return;
+        }
+        queue.add(new Entry(System.currentTimeMillis(), message));
+    }
+
+    /**
+     * Stops the writer thread after all queued messages have been written, and closes the log file.
+     */
+    public void close() {
+        running = false;
+        if (writerThread != null) {
+            LockSupport.unpark(writerThread);
+            try {
+                writerThread.join(CLOSE_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return the number of messages waiting to be written
+     */
+    public int getQueueSize() {
+        return queueSize.get();
+    }
+
+    /**
+     * @return the total number of messages that were discarded because the queue was full
+     */
+    public long getDroppedMessages() {
+        return droppedMessages.get();
+    }
+
+    private boolean reserveSlot() {
+        switch (overflowPolicy) {
+            case BLOCK:
+                while (!tryIncrementQueueSize()) {
+                    if (!running || Thread.currentThread() == writerThread) {
+                        return false;
+                    }
+                    LockSupport.unpark(writerThread);
+                    LockSupport.parkNanos(BLOCK_WAIT_NANOS);
+                }
+                return true;
+            case SAMPLE:
+                if (queueSize.get() >= capacity / 2 && sampleCounter.incrementAndGet() % SAMPLE_RATE != 0) {
+                    return false;
+                }
+                return tryIncrementQueueSize();
+            case DROP:
+            default:
+                return tryIncrementQueueSize();
+        }
+    }
+
+    private boolean tryIncrementQueueSize() {
+        int size;
+        do {
+            size = queueSize.get();
+            if (size >= capacity) {
+                return false;
+            }
+        } while (!queueSize.compareAndSet(size, size + 1));
+        return true;
+    }
+
+    private void processQueue() {
+        long reportedDrops = 0;
+        while (running || !queue.isEmpty()) {
+            int written = 0;
+            Entry entry;
+            while (written < MAX_BATCH_SIZE && (entry = queue.poll()) != null) {
+                queueSize.decrementAndGet();
+                if (rotateDaily && entry.timestamp >= nextDailyRotation) {
+                    flushBatch();
+                    rotate();
+                    nextDailyRotation = getStartOfNextDay(entry.timestamp);
+                }
+                appendLine(entry.timestamp, entry.message);
+                ++written;
+            }
+
+            long drops = droppedMessages.get();
+            if (drops != reportedDrops) {
+                appendLine(System.currentTimeMillis(), "[WARN] " + (drops - reportedDrops)
+                    + " log messages were discarded because the log queue was full");
+                reportedDrops = drops;
+            }
+            flushBatch();
+
+            if (written == 0) {
+                LockSupport.parkNanos(this, IDLE_WAIT_NANOS);
+            }
+        }
+        closeChannel();
+    }
+
+    private void appendLine(long timestamp, String message) {
+        batch.append(dateFormat.format(new Date(timestamp))).append(": ").append(message).append(NEW_LINE);
+    }
+
+    private void flushBatch() {
+        if (batch.length() == 0) {
+            return;
+        } else if (channel == null) {
+            batch.setLength(0);
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(batch.toString().getBytes(StandardCharsets.UTF_8));
+        batch.setLength(0);
+        try {
+            while (buffer.hasRemaining()) {
+                fileSize += channel.write(buffer);
+            }
+        } catch (IOException ignored) {
+            // Nothing we can do: logging the error would add another message to the log file
+            return;
+        }
+        if (maxFileSize > 0 && fileSize >= maxFileSize) {
+            rotate();
+        }
+    }
+
+    private void rotate() {
+        closeChannel();
+        if (logFile.length() > 0) {
+            File rotatedFile = getRotatedFile();
+            if (logFile.renameTo(rotatedFile) && compressRotatedFiles) {
+                compress(rotatedFile);
+            }
+        }
+        try {
+            openChannel();
+        } catch (IOException ignored) {
+            // Subsequent writes are skipped until the next rotation succeeds in opening the file
+        }
+    }
+
+    private File getRotatedFile() {
+        String name = logFile.getName();
+        int extensionIndex = name.lastIndexOf('.');
+        String baseName = extensionIndex > 0 ? name.substring(0, extensionIndex) : name;
+        String extension = extensionIndex > 0 ? name.substring(extensionIndex) : "";
+        String suffix = new SimpleDateFormat("yyyy-MM-dd-HHmmss").format(new Date());
+
+        File rotatedFile = new File(logFile.getParentFile(), baseName + "-" + suffix + extension);
+        for (int i = 1; rotatedFile.exists() || new File(rotatedFile.getPath() + ".gz").exists(); ++i) {
+            rotatedFile = new File(logFile.getParentFile(), baseName + "-" + suffix + "-" + i + extension);
+        }
+        return rotatedFile;
+    }
+
+    private static void compress(File file) {
+        File compressedFile = new File(file.getPath() + ".gz");
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(compressedFile))) {
+            Files.copy(file.toPath(), out);
+        } catch (IOException e) {
+            compressedFile.delete();
+            return;
+        }
+        file.delete();
+    }
+
+    private void openChannel() throws IOException {
+        channel = FileChannel.open(logFile.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        fileSize = channel.size();
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            channel = null;
+        }
+    }
+
+    private static long getStartOfNextDay(long timestamp) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(timestamp);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        return calendar.getTimeInMillis();
+    }
+
+    private static final class Entry {
+        private final long timestamp;
+        private final String message;
+
+        Entry(long timestamp, String message) {
+            this.timestamp = timestamp;
+            this.message = message;
+        }
+    }
+}
@@ -1,6 +1,21 @@
 package fr.xephi.authme.output;
 
-import fr.xephi.authme.util.StringUtils;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import fr.xephi.authme.command.CommandDescription;
+import fr.xephi.authme.command.CommandInitializer;
+import fr.xephi.authme.command.ExecutableCommand;
+import fr.xephi.authme.command.executable.authme.ChangePasswordAdminCommand;
+import fr.xephi.authme.command.executable.authme.RegisterAdminCommand;
+import fr.xephi.authme.command.executable.changepassword.ChangePasswordCommand;
+import fr.xephi.authme.command.executable.login.LoginCommand;
+import fr.xephi.authme.command.executable.register.RegisterCommand;
+import fr.xephi.authme.command.executable.unregister.UnregisterCommand;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 /**
  * Service class for the log filters.
@@ -9,9 +24,16 @@ public final class LogFilterHelper {
 
     private static final String ISSUED_COMMAND_TEXT = "issued server command:";
 
-    private static final String[] COMMANDS_TO_SKIP = {"/login ", "/l ", "/reg ", "/changepassword ",
-        "/unregister ", "/authme register ", "/authme changepassword ", "/authme reg ", "/authme cp ",
-        "/register "};
+    /** Commands which take a password as argument. */
+    private static final Set<Class<? extends ExecutableCommand>> SENSITIVE_COMMANDS = ImmutableSet.of(
+        LoginCommand.class, RegisterCommand.class, UnregisterCommand.class, ChangePasswordCommand.class,
+        RegisterAdminCommand.class, ChangePasswordAdminCommand.class);
+
+    private static final MultiPatternMatcher ISSUED_COMMAND_MATCHER =
+        MultiPatternMatcher.compile(Collections.singleton(ISSUED_COMMAND_TEXT));
+
+    private static final MultiPatternMatcher SENSITIVE_COMMAND_MATCHER =
+        MultiPatternMatcher.compile(collectSensitiveCommandPatterns(new CommandInitializer().getCommands()));
 
     private LogFilterHelper() {
         // Util class
@@ -28,7 +50,39 @@ public final class LogFilterHelper {
         if (message == null) {
             return false;
         }
-        String lowerMessage = message.toLowerCase();
-        return lowerMessage.contains(ISSUED_COMMAND_TEXT) && StringUtils.containsAny(lowerMessage, COMMANDS_TO_SKIP);
+        int commandStart = ISSUED_COMMAND_MATCHER.findEnd(message, 0);
+        return commandStart >= 0 && SENSITIVE_COMMAND_MATCHER.findEnd(message, commandStart) >= 0;
+    }
+
+    /**
+     * Builds the patterns to filter from the given commands: for each sensitive command, all combinations
+     * of its labels and of its parents' labels are returned, e.g. "/authme reg " or "/l ".
+     *
+     * @param baseCommands the base commands
+     * @return patterns of sensitive commands
+     */
+    @VisibleForTesting
+    static Set<String> collectSensitiveCommandPatterns(Collection<CommandDescription> baseCommands) {
+        Set<String> patterns = new LinkedHashSet<>();
+        for (CommandDescription command : baseCommands) {
+            collectSensitiveCommandPatterns(command, Collections.singleton("/"), patterns);
+        }
+        return patterns;
+    }
+
+    private static void collectSensitiveCommandPatterns(CommandDescription command, Set<String> prefixes,
+                                                        Set<String> patterns) {
+        Set<String> commandPrefixes = new LinkedHashSet<>();
+        for (String prefix : prefixes) {
+            for (String label : command.getLabels()) {
+                commandPrefixes.add(prefix + label + " ");
+            }
+        }
+        if (SENSITIVE_COMMANDS.contains(command.getExecutableCommand())) {
+            patterns.addAll(commandPrefixes);
+        }
+        for (CommandDescription child : command.getChildren()) {
+            collectSensitiveCommandPatterns(child, commandPrefixes, patterns);
+        }
     }
 }
@@ -0,0 +1,17 @@
+package fr.xephi.authme.output;
+
+/**
+ * Defines what happens with new log messages when the queue of the log file appender is full.
+ */
+public enum LogOverflowPolicy {
+
+    /** Discard new messages while the queue is full. */
+    DROP,
+
+    /** Wait until the writer has freed up space in the queue. */
+    BLOCK,
+
+    /** Only keep every tenth message once the queue is half full; discard messages while it is full. */
+    SAMPLE
+
+}
@@ -0,0 +1,182 @@
+package fr.xephi.authme.output;
+
+import org.bukkit.ChatColor;
+
+import java.util.Arrays;
+
+/**
+ * Precompiled, immutable form of a message: the color codes are translated and the message is split
+ * into lines once, and the position of every tag is remembered so that replacements can be applied
+ * in a single pass.
+ */
+final class MessageTemplate {
+
+    private static final int[] NO_SLOTS = new int[0];
+    private static final String[] NO_LINES = new String[0];
+
+    private final String[] tags;
+    private final String[] lines;
+    private final String joinedLines;
+    /** Per line, the offsets at which a tag starts. */
+    private final int[][] slotOffsets;
+    /** Per line, the index (in {@link #tags}) of the tag at the corresponding offset. */
+    private final int[][] slotTags;
+    private final boolean hasSlots;
+
+    private MessageTemplate(String[] tags, String[] lines) {
+        this.tags = tags;
+        this.lines = lines;
+        this.joinedLines = join(lines);
+        this.slotOffsets = new int[lines.length][];
+        this.slotTags = new int[lines.length][];
+
+        boolean foundSlot = false;
+        for (int i = 0; i < lines.length; ++i) {
+            findSlots(i);
+            foundSlot |= slotOffsets[i].length > 0;
+        }
+        this.hasSlots = foundSlot;
+    }
+
+    /**
+     * Compile the given raw message (as defined in the messages file).
+     *
+     * @param message the message to compile
+     * @param tags the tags the message may contain
+     * @return the compiled template
+     */
+    static MessageTemplate compile(String message, String[] tags) {
+        if (message.isEmpty()) {
+            return new MessageTemplate(tags, NO_LINES);
+        }
+        String[] lines = message.split("&n");
+        for (int i = 0; i < lines.length; ++i) {
+            lines[i] = ChatColor.translateAlternateColorCodes('&', lines[i]);
+        }
+        return new MessageTemplate(tags, lines);
+    }
+
+    /**
+     * Return the lines of the message without any replacements. The returned array is shared and
+     * must not be modified.
+     *
+     * @return the message's lines
+     */
+    String[] getLines() {
+        return lines;
+    }
+
+    /**
+     * @return the message's lines joined with a new line
+     */
+    String getJoinedLines() {
+        return joinedLines;
+    }
+
+    /**
+     * Render the message as one string with the given replacements, which must correspond
+     * in number to the template's tags.
+     *
+     * @param replacements the replacements to apply for the tags
+     * @return the message with replacements, lines separated by a new line
+     */
+    String render(String[] replacements) {
+        if (!hasSlots) {
+            return joinedLines;
+        }
+        StringBuilder sb = new StringBuilder(joinedLines.length() + 16 * replacements.length);
+        for (int i = 0; i < lines.length; ++i) {
+            if (i > 0) {
+                sb.append('\n');
+            }
+            appendLine(sb, i, replacements);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Render the message's lines with the given replacements, which must correspond in number
+     * to the template's tags.
+     *
+     * @param replacements the replacements to apply for the tags
+     * @return the lines of the message with replacements
+     */
+    String[] renderLines(String[] replacements) {
+        if (!hasSlots) {
+            return lines;
+        }
+        String[] result = new String[lines.length];
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lines.length; ++i) {
+            if (slotOffsets[i].length == 0) {
+                result[i] = lines[i];
+            } else {
+                sb.setLength(0);
+                appendLine(sb, i, replacements);
+                result[i] = sb.toString();
+            }
+        }
+        return result;
+    }
+
+    private void appendLine(StringBuilder sb, int lineIndex, String[] replacements) {
+        final String line = lines[lineIndex];
+        final int[] offsets = slotOffsets[lineIndex];
+        final int[] tagIndices = slotTags[lineIndex];
+        int position = 0;
+        for (int slot = 0; slot < offsets.length; ++slot) {
+            sb.append(line, position, offsets[slot]).append(replacements[tagIndices[slot]]);
+            position = offsets[slot] + tags[tagIndices[slot]].length();
+        }
+        sb.append(line, position, line.length());
+    }
+
+    private void findSlots(int lineIndex) {
+        final String line = lines[lineIndex];
+        int[] offsets = NO_SLOTS;
+        int[] tagIndices = NO_SLOTS;
+        int count = 0;
+
+        int position = 0;
+        while (position < line.length()) {
+            int tagIndex = matchTagAt(line, position);
+            if (tagIndex < 0) {
+                ++position;
+            } else {
+                if (count == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, count + 2);
+                    tagIndices = Arrays.copyOf(tagIndices, count + 2);
+                }
+                offsets[count] = position;
+                tagIndices[count] = tagIndex;
+                ++count;
+                position += tags[tagIndex].length();
+            }
+        }
+        slotOffsets[lineIndex] = Arrays.copyOf(offsets, count);
+        slotTags[lineIndex] = Arrays.copyOf(tagIndices, count);
+    }
+
+    private int matchTagAt(String line, int position) {
+        for (int i = 0; i < tags.length; ++i) {
+            if (!tags[i].isEmpty() && line.startsWith(tags[i], position)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String join(String[] lines) {
+        if (lines.length == 1) {
+            return lines[0];
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lines.length; ++i) {
+            if (i > 0) {
+                sb.append('\n');
+            }
+            sb.append(lines[i]);
+        }
+        return sb.toString();
+    }
+}
@@ -3,8 +3,6 @@ package fr.xephi.authme.output;
 import fr.xephi.authme.ConsoleLogger;
 import fr.xephi.authme.initialization.SettingsDependent;
 import fr.xephi.authme.settings.NewSetting;
-import fr.xephi.authme.util.StringUtils;
-import org.bukkit.ChatColor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
@@ -13,12 +11,15 @@ import javax.inject.Inject;
 import java.io.File;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.EnumMap;
+import java.util.Map;
 
 /**
  * Class for retrieving and sending translatable messages to players.
  */
 public class Messages implements SettingsDependent {
 
+    private Map<MessageKey, MessageTemplate> templates;
     private FileConfiguration configuration;
     private String fileName;
     private final String defaultFile;
@@ -31,8 +32,8 @@ public class Messages implements SettingsDependent {
      */
     @Inject
     Messages(NewSetting settings) {
-        reload(settings);
         this.defaultFile = settings.getDefaultMessagesFile();
+        reload(settings);
     }
 
     /**
@@ -58,31 +59,24 @@ public class Messages implements SettingsDependent {
      * @param replacements The replacements to apply for the tags
      */
     public void send(CommandSender sender, MessageKey key, String... replacements) {
-        String message = retrieveSingle(key, replacements);
-        for (String line : message.split("\n")) {
+        MessageTemplate template = templates.get(key);
+        String[] lines = hasValidReplacements(key, replacements)
+            ? template.renderLines(replacements)
+            : template.getLines();
+        for (String line : lines) {
             sender.sendMessage(line);
         }
     }
 
     /**
      * Retrieve the message from the text file and return it split by new line as an array.
+     * The returned array is shared and must not be modified.
      *
      * @param key The message key to retrieve
      * @return The message split by new lines
      */
     public String[] retrieve(MessageKey key) {
-        final String code = key.getKey();
-        String message = configuration.getString(code);
-
-        if (message == null) {
-            ConsoleLogger.warning("Error getting message with key '" + code + "'. "
-                + "Please verify your config file at '" + fileName + "'");
-            return formatMessage(getDefault(code));
-        }
-        if(message.isEmpty()) {
-            return new String[0];
-        }
-        return formatMessage(message);
+        return templates.get(key).getLines();
     }
 
     /**
@@ -92,7 +86,7 @@ public class Messages implements SettingsDependent {
      * @return The message from the file
      */
     public String retrieveSingle(MessageKey key) {
-        return StringUtils.join("\n", retrieve(key));
+        return templates.get(key).getJoinedLines();
     }
 
     /**
@@ -105,16 +99,10 @@ public class Messages implements SettingsDependent {
      * @return The message from the file with replacements
      */
     public String retrieveSingle(MessageKey key, String... replacements) {
-        String message = retrieveSingle(key);
-        String[] tags = key.getTags();
-        if (replacements.length == tags.length) {
-            for (int i = 0; i < tags.length; ++i) {
-                message = message.replace(tags[i], replacements[i]);
-            }
-        } else {
-            ConsoleLogger.warning("Invalid number of replacements for message key '" + key + "'");
-        }
-        return message;
+        MessageTemplate template = templates.get(key);
+        return hasValidReplacements(key, replacements)
+            ? template.render(replacements)
+            : template.getJoinedLines();
     }
 
     @Override
@@ -122,6 +110,29 @@ public class Messages implements SettingsDependent {
         File messageFile = settings.getMessagesFile();
         this.configuration = YamlConfiguration.loadConfiguration(messageFile);
         this.fileName = messageFile.getName();
+        this.templates = compileTemplates();
+    }
+
+    /**
+     * Compiles all messages into templates so that no lookups or formatting
+     * have to be performed when a message is sent.
+     */
+    private Map<MessageKey, MessageTemplate> compileTemplates() {
+        Map<MessageKey, MessageTemplate> compiledTemplates = new EnumMap<>(MessageKey.class);
+        for (MessageKey key : MessageKey.values()) {
+            compiledTemplates.put(key, MessageTemplate.compile(getMessage(key.getKey()), key.getTags()));
+        }
+        return compiledTemplates;
+    }
+
+    private String getMessage(String code) {
+        String message = configuration.getString(code);
+        if (message == null) {
+            ConsoleLogger.warning("Error getting message with key '" + code + "'. "
+                + "Please verify your config file at '" + fileName + "'");
+            return getDefault(code);
+        }
+        return message;
     }
 
     private String getDefault(String code) {
@@ -141,12 +152,12 @@ public class Messages implements SettingsDependent {
         return "Error retrieving message '" + code + "'";
     }
 
-    private static String[] formatMessage(String message) {
-        String[] lines = message.split("&n");
-        for (int i = 0; i < lines.length; ++i) {
-            lines[i] = ChatColor.translateAlternateColorCodes('&', lines[i]);
+    private static boolean hasValidReplacements(MessageKey key, String[] replacements) {
+        if (replacements.length == key.getTags().length) {
+            return true;
         }
-        return lines;
+        ConsoleLogger.warning("Invalid number of replacements for message key '" + key + "'");
+        return false;
     }
 
 }
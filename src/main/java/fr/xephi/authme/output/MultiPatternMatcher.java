@@ -0,0 +1,171 @@
+package fr.xephi.authme.output;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+
+/**
+ * Precompiled, case-insensitive matcher that checks whether a text contains any of a set of
+ * ASCII patterns (Aho-Corasick automaton). Matching runs in a single pass over the text and
+ * does not allocate any objects.
+ */
+final class MultiPatternMatcher {
+
+    private static final int ASCII_LIMIT = 128;
+
+    /** Maps an ASCII character to its index in the automaton's alphabet, or -1 if no pattern contains it. */
+    private final int[] alphabetIndex;
+    private final int alphabetSize;
+    /** Transition table: the next state for state {@code s} and character index {@code c} is at s * alphabetSize + c. */
+    private final int[] transitions;
+    /** Whether the state corresponds to the end of one or more patterns. */
+    private final boolean[] accepting;
+
+    private MultiPatternMatcher(int[] alphabetIndex, int alphabetSize, int[] transitions, boolean[] accepting) {
+        this.alphabetIndex = alphabetIndex;
+        this.alphabetSize = alphabetSize;
+        this.transitions = transitions;
+        this.accepting = accepting;
+    }
+
+    /**
+     * Compiles a matcher for the given patterns. Patterns may only contain ASCII characters.
+     *
+     * @param patterns the patterns to match (case-insensitive)
+     * @return the matcher
+     */
+    static MultiPatternMatcher compile(Collection<String> patterns) {
+        List<String> lowerPatterns = new ArrayList<>(patterns.size());
+        for (String pattern : patterns) {
+            if (!pattern.isEmpty()) {
+                lowerPatterns.add(pattern.toLowerCase(Locale.ROOT));
+            }
+        }
+
+        // Build the alphabet: upper case characters share the index of their lower case counterpart
+        int[] alphabetIndex = new int[ASCII_LIMIT];
+        Arrays.fill(alphabetIndex, -1);
+        int alphabetSize = 0;
+        for (String pattern : lowerPatterns) {
+            for (int i = 0; i < pattern.length(); ++i) {
+                char c = pattern.charAt(i);
+                if (c >= ASCII_LIMIT) {
+                    throw new IllegalArgumentException("Pattern '" + pattern + "' contains a non-ASCII character");
+                }
+                if (alphabetIndex[c] < 0) {
+                    alphabetIndex[c] = alphabetSize;
+                    alphabetIndex[Character.toUpperCase(c)] = alphabetSize;
+                    ++alphabetSize;
+                }
+            }
+        }
+
+        // Build the trie
+        List<int[]> trie = new ArrayList<>();
+        List<Boolean> terminal = new ArrayList<>();
+        trie.add(newNode(alphabetSize));
+        terminal.add(false);
+        for (String pattern : lowerPatterns) {
+            int state = 0;
+            for (int i = 0; i < pattern.length(); ++i) {
+                int c = alphabetIndex[pattern.charAt(i)];
+                if (trie.get(state)[c] < 0) {
+                    trie.get(state)[c] = trie.size();
+                    trie.add(newNode(alphabetSize));
+                    terminal.add(false);
+                }
+                state = trie.get(state)[c];
+            }
+            terminal.set(state, true);
+        }
+
+        // Compute failure links breadth-first and turn the trie into a complete transition table
+        final int stateCount = trie.size();
+        int[] transitions = new int[stateCount * alphabetSize];
+        boolean[] accepting = new boolean[stateCount];
+        int[] failure = new int[stateCount];
+        Queue<Integer> queue = new ArrayDeque<>();
+
+        accepting[0] = terminal.get(0);
+        for (int c = 0; c < alphabetSize; ++c) {
+            int next = trie.get(0)[c];
+            if (next < 0) {
+                transitions[c] = 0;
+            } else {
+                transitions[c] = next;
+                failure[next] = 0;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.remove();
+            accepting[state] = terminal.get(state) || accepting[failure[state]];
+            for (int c = 0; c < alphabetSize; ++c) {
+                int next = trie.get(state)[c];
+                int fallback = transitions[failure[state] * alphabetSize + c];
+                if (next < 0) {
+                    transitions[state * alphabetSize + c] = fallback;
+                } else {
+                    transitions[state * alphabetSize + c] = next;
+                    failure[next] = fallback;
+                    queue.add(next);
+                }
+            }
+        }
+        return new MultiPatternMatcher(alphabetIndex, alphabetSize, transitions, accepting);
+    }
+
+    /**
+     * Returns the index directly after the end of the first pattern found in the text
+     * at or after the given start index.
+     *
+     * @param text the text to search in
+     * @param fromIndex the index to start searching from
+     * @return the index after the first match, or -1 if no pattern is contained in the text
+     */
+    int findEnd(CharSequence text, int fromIndex) {
+        if (alphabetSize == 0) {
+            return -1;
+        }
+        int state = 0;
+        for (int i = fromIndex; i < text.length(); ++i) {
+            int c = indexOf(text.charAt(i));
+            state = c < 0 ? 0 : transitions[state * alphabetSize + c];
+            if (accepting[state]) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns whether the text contains any of the patterns.
+     *
+     * @param text the text to search in
+     * @return true if a pattern was found, false otherwise
+     */
+    boolean matches(CharSequence text) {
+        return findEnd(text, 0) >= 0;
+    }
+
+    private int indexOf(char c) {
+        if (c >= ASCII_LIMIT) {
+            // Some non-ASCII characters, such as the Kelvin sign, have an ASCII lower case equivalent
+            c = Character.toLowerCase(c);
+            if (c >= ASCII_LIMIT) {
+                return -1;
+            }
+        }
+        return alphabetIndex[c];
+    }
+
+    private static int[] newNode(int alphabetSize) {
+        int[] node = new int[alphabetSize];
+        Arrays.fill(node, -1);
+        return node;
+    }
+}
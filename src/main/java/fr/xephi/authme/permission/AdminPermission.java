@@ -100,6 +100,11 @@ public enum AdminPermission implements PermissionNode {
      */
     RELOAD("authme.admin.reload", DefaultPermission.OP_ONLY),
 
+    /**
+     * Administrator command to view the performance metrics of the plugin.
+     */
+    VIEW_METRICS("authme.admin.metrics", DefaultPermission.OP_ONLY),
+
     /**
      * Permission to see the other accounts of the players that log in.
      */
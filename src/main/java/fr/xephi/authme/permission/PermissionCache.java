@@ -0,0 +1,136 @@
+package fr.xephi.authme.permission;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import fr.xephi.authme.permission.handlers.PermissionHandler;
+import org.bukkit.entity.Player;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the permission decisions of the permission handler per player and permission node,
+ * as some permission systems resolve the whole inheritance chain on each query.
+ * <p>
+ * Each player has an array of decisions indexed by the node's position among all of AuthMe's
+ * permission nodes; the array is discarded after a short time so that changes made outside
+ * of AuthMe are picked up.
+ */
+class PermissionCache {
+
+    private static final byte UNKNOWN = 0;
+    private static final byte GRANTED = 1;
+    private static final byte DENIED = 2;
+
+    private static final Map<PermissionNode, Integer> NODE_INDICES = createNodeIndices();
+
+    private final Cache<UUID, byte[]> decisions;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param timeoutSeconds number of seconds after which the decisions of a player are discarded;
+     *                       zero or less disables the cache
+     */
+    PermissionCache(int timeoutSeconds) {
+        decisions = timeoutSeconds <= 0
+            ? null
+            : CacheBuilder.newBuilder().expireAfterWrite(timeoutSeconds, TimeUnit.SECONDS).<UUID, byte[]>build();
+    }
+
+    /**
+     * Returns whether the player has the given permission, querying the handler if the decision is not cached.
+     *
+     * @param player the player to check
+     * @param node the permission node to check
+     * @param handler the permission handler to query on a cache miss
+     * @return true if the player has the permission, false otherwise
+     */
+    boolean hasPermission(Player player, PermissionNode node, PermissionHandler handler) {
+        Integer index = NODE_INDICES.get(node);
+        UUID uuid = player.getUniqueId();
+        if (decisions == null || index == null || uuid == null) {
+            return handler.hasPermission(player, node);
+        }
+
+        byte[] playerDecisions = decisions.getIfPresent(uuid);
+        if (playerDecisions == null) {
+            playerDecisions = new byte[NODE_INDICES.size()];
+            byte[] previous = decisions.asMap().putIfAbsent(uuid, playerDecisions);
+            if (previous != null) {
+                playerDecisions = previous;
+            }
+        }
+
+        byte decision = playerDecisions[index];
+        if (decision != UNKNOWN) {
+            hits.incrementAndGet();
+            return decision == GRANTED;
+        }
+        misses.incrementAndGet();
+        boolean hasPermission = handler.hasPermission(player, node);
+        playerDecisions[index] = hasPermission ? GRANTED : DENIED;
+        return hasPermission;
+    }
+
+    /**
+     * Discards the cached decisions of the given player.
+     *
+     * @param player the player
+     */
+    void invalidate(Player player) {
+        UUID uuid = player.getUniqueId();
+        if (decisions != null && uuid != null) {
+            decisions.invalidate(uuid);
+        }
+    }
+
+    /**
+     * Discards all cached decisions.
+     */
+    void invalidateAll() {
+        if (decisions != null) {
+            decisions.invalidateAll();
+        }
+    }
+
+    /**
+     * @return number of permission checks answered from the cache
+     */
+    long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of permission checks which had to be delegated to the permission handler
+     */
+    long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of players with cached decisions
+     */
+    long size() {
+        return decisions == null ? 0 : decisions.size();
+    }
+
+    private static Map<PermissionNode, Integer> createNodeIndices() {
+        Map<PermissionNode, Integer> indices = new HashMap<>();
+        addNodes(indices, AdminPermission.values());
+        addNodes(indices, PlayerPermission.values());
+        addNodes(indices, PlayerStatePermission.values());
+        return indices;
+    }
+
+    private static void addNodes(Map<PermissionNode, Integer> indices, PermissionNode[] nodes) {
+        for (PermissionNode node : nodes) {
+            indices.put(node, indices.size());
+        }
+    }
+}
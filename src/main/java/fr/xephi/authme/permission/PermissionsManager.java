@@ -2,6 +2,7 @@ package fr.xephi.authme.permission;
 
 import fr.xephi.authme.ConsoleLogger;
 import fr.xephi.authme.initialization.Reloadable;
+import fr.xephi.authme.initialization.SettingsDependent;
 import fr.xephi.authme.permission.handlers.BPermissionsHandler;
 import fr.xephi.authme.permission.handlers.GroupManagerHandler;
 import fr.xephi.authme.permission.handlers.PermissionHandler;
@@ -10,6 +11,8 @@ import fr.xephi.authme.permission.handlers.PermissionsBukkitHandler;
 import fr.xephi.authme.permission.handlers.PermissionsExHandler;
 import fr.xephi.authme.permission.handlers.VaultHandler;
 import fr.xephi.authme.permission.handlers.ZPermissionsHandler;
+import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.PluginSettings;
 import fr.xephi.authme.util.StringUtils;
 import org.anjocaido.groupmanager.GroupManager;
 import org.bukkit.Server;
@@ -35,7 +38,7 @@ import java.util.List;
  * @author Tim Visée, http://timvisee.com
  * @version 0.3
  */
-public class PermissionsManager implements Reloadable {
+public class PermissionsManager implements Reloadable, SettingsDependent {
 
     private final Server server;
     private final PluginManager pluginManager;
@@ -46,16 +49,23 @@ public class PermissionsManager implements Reloadable {
      */
     private PermissionHandler handler = null;
 
+    /**
+     * Cache of the permission handler's decisions for online players.
+     */
+    private volatile PermissionCache permissionCache;
+
     /**
      * Constructor.
      *
      * @param server Server instance
      * @param pluginManager Bukkit plugin manager
+     * @param settings The settings
      */
     @Inject
-    public PermissionsManager(Server server, PluginManager pluginManager) {
+    public PermissionsManager(Server server, PluginManager pluginManager, NewSetting settings) {
         this.server = server;
         this.pluginManager = pluginManager;
+        this.permissionCache = new PermissionCache(settings.getProperty(PluginSettings.PERMISSION_CACHE_TIMEOUT));
     }
 
     /**
@@ -72,6 +82,9 @@ public class PermissionsManager implements Reloadable {
      */
     @PostConstruct
     private void setup() {
+        // Decisions of a previous permissions system are no longer valid
+        permissionCache.invalidateAll();
+
         // Loop through all the available permissions system types
         for (PermissionsSystemType type : PermissionsSystemType.values()) {
             try {
@@ -130,6 +143,7 @@ public class PermissionsManager implements Reloadable {
     private void unhook() {
         // Reset the current used permissions system
         this.handler = null;
+        permissionCache.invalidateAll();
 
         // Print a status message to the console
         ConsoleLogger.info("Unhooked from Permissions!");
@@ -147,6 +161,11 @@ public class PermissionsManager implements Reloadable {
         setup();
     }
 
+    @Override
+    public void reload(NewSetting settings) {
+        permissionCache = new PermissionCache(settings.getProperty(PluginSettings.PERMISSION_CACHE_TIMEOUT));
+    }
+
     /**
      * Method called when a plugin is being enabled.
      *
@@ -203,7 +222,35 @@ public class PermissionsManager implements Reloadable {
         }
 
         Player player = (Player) sender;
-        return handler.hasPermission(player, permissionNode);
+        return permissionCache.hasPermission(player, permissionNode, handler);
+    }
+
+    /**
+     * Discard the cached permission decisions of the given player, e.g. after his permissions have been
+     * changed or when he leaves the server.
+     *
+     * @param player The player.
+     */
+    public void invalidatePermissionCache(Player player) {
+        permissionCache.invalidate(player);
+    }
+
+    /**
+     * Return the number of permission checks which were answered from the cache.
+     *
+     * @return Number of cache hits since the cache was created.
+     */
+    public long getPermissionCacheHits() {
+        return permissionCache.getHitCount();
+    }
+
+    /**
+     * Return the number of permission checks which had to be passed to the permissions system.
+     *
+     * @return Number of cache misses since the cache was created.
+     */
+    public long getPermissionCacheMisses() {
+        return permissionCache.getMissCount();
     }
 
     /**
@@ -308,7 +355,9 @@ public class PermissionsManager implements Reloadable {
             return false;
         }
 
-        return handler.addToGroup(player, groupName);
+        boolean result = handler.addToGroup(player, groupName);
+        permissionCache.invalidate(player);
+        return result;
     }
 
     /**
@@ -349,7 +398,9 @@ public class PermissionsManager implements Reloadable {
         if (!isEnabled())
             return false;
 
-        return handler.removeFromGroup(player, groupName);
+        boolean result = handler.removeFromGroup(player, groupName);
+        permissionCache.invalidate(player);
+        return result;
     }
 
     /**
@@ -391,7 +442,9 @@ public class PermissionsManager implements Reloadable {
         if (!isEnabled())
             return false;
 
-        return handler.setGroup(player, groupName);
+        boolean result = handler.setGroup(player, groupName);
+        permissionCache.invalidate(player);
+        return result;
     }
 
     /**
@@ -1,5 +1,8 @@
 package fr.xephi.authme.process;
 
+import fr.xephi.authme.metrics.Metric;
+import fr.xephi.authme.metrics.MetricsRegistry;
+import fr.xephi.authme.metrics.SlowOperationWatchdog;
 import fr.xephi.authme.process.changepassword.AsyncChangePassword;
 import fr.xephi.authme.process.email.AsyncAddEmail;
 import fr.xephi.authme.process.email.AsyncChangeEmail;
@@ -9,7 +12,6 @@ import fr.xephi.authme.process.logout.AsynchronousLogout;
 import fr.xephi.authme.process.quit.AsynchronousQuit;
 import fr.xephi.authme.process.register.AsyncRegister;
 import fr.xephi.authme.process.unregister.AsynchronousUnregister;
-import fr.xephi.authme.util.BukkitService;
 import org.bukkit.entity.Player;
 
 import javax.inject.Inject;
@@ -18,7 +20,11 @@ import javax.inject.Inject;
 public class Management {
 
     @Inject
-    private BukkitService bukkitService;
+    private ProcessExecutor processExecutor;
+    @Inject
+    private MetricsRegistry metricsRegistry;
+    @Inject
+    private SlowOperationWatchdog watchdog;
 
     // Processes
     @Inject
@@ -44,7 +50,7 @@ public class Management {
 
 
     public void performLogin(final Player player, final String password, final boolean forceLogin) {
-        runTask(new Runnable() {
+        runTask(player, "login", new Runnable() {
             @Override
             public void run() {
                 asynchronousLogin.login(player, password, forceLogin);
@@ -53,7 +59,7 @@ public class Management {
     }
 
     public void performLogout(final Player player) {
-        runTask(new Runnable() {
+        runTask(player, "logout", new Runnable() {
             @Override
             public void run() {
                 asynchronousLogout.logout(player);
@@ -62,7 +68,7 @@ public class Management {
     }
 
     public void performRegister(final Player player, final String password, final String email, final boolean autoLogin) {
-        runTask(new Runnable() {
+        runTask(player, "register", new Runnable() {
             @Override
             public void run() {
                 asyncRegister.register(player, password, email, autoLogin);
@@ -71,7 +77,7 @@ public class Management {
     }
 
     public void performUnregister(final Player player, final String password, final boolean isForce) {
-        runTask(new Runnable() {
+        runTask(player, "unregister", new Runnable() {
             @Override
             public void run() {
                 asynchronousUnregister.unregister(player, password, isForce);
@@ -80,7 +86,7 @@ public class Management {
     }
 
     public void performJoin(final Player player) {
-        runTask(new Runnable() {
+        runTask(player, "join", new Runnable() {
             @Override
             public void run() {
                 asynchronousJoin.processJoin(player);
@@ -89,7 +95,7 @@ public class Management {
     }
 
     public void performQuit(final Player player, final boolean isKick) {
-        runTask(new Runnable() {
+        runTask(player, "quit", new Runnable() {
             @Override
             public void run() {
                 asynchronousQuit.processQuit(player, isKick);
@@ -98,7 +104,7 @@ public class Management {
     }
 
     public void performAddEmail(final Player player, final String newEmail) {
-        runTask(new Runnable() {
+        runTask(player, "add_email", new Runnable() {
             @Override
             public void run() {
                 asyncAddEmail.addEmail(player, newEmail);
@@ -107,7 +113,7 @@ public class Management {
     }
 
     public void performChangeEmail(final Player player, final String oldEmail, final String newEmail) {
-        runTask(new Runnable() {
+        runTask(player, "change_email", new Runnable() {
             @Override
             public void run() {
                 asyncChangeEmail.changeEmail(player, oldEmail, newEmail);
@@ -116,7 +122,7 @@ public class Management {
     }
 
     public void performPasswordChange(final Player player, final String oldPassword, final String newPassword) {
-        runTask(new Runnable() {
+        runTask(player, "change_password", new Runnable() {
             @Override
             public void run() {
                 asyncChangePassword.changePassword(player, oldPassword, newPassword);
@@ -124,7 +130,29 @@ public class Management {
         });
     }
 
-    private void runTask(Runnable runnable) {
-        bukkitService.runTaskAsynchronously(runnable);
+    /**
+     * Runs the given process asynchronously after the player's previous processes, records how long
+     * it waited and ran and lets the watchdog report it if it is slow.
+     *
+     * @param player the player the process is for
+     * @param processName the name of the process for the metrics
+     * @param runnable the process to run
+     */
+    private void runTask(Player player, final String processName, final Runnable runnable) {
+        final long queuedAt = System.nanoTime();
+        processExecutor.execute(player.getName(), new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                metricsRegistry.recordLatency(Metric.PROCESS_WAIT, processName, queuedAt);
+                SlowOperationWatchdog.Operation operation = watchdog.start("process." + processName);
+                try {
+                    runnable.run();
+                } finally {
+                    watchdog.finish(operation);
+                    metricsRegistry.recordLatency(Metric.PROCESS, processName, start);
+                }
+            }
+        });
     }
 }
@@ -0,0 +1,179 @@
+package fr.xephi.authme.process;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.initialization.SettingsDependent;
+import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.PluginSettings;
+
+import javax.inject.Inject;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the processes of players (login, register, quit, ...) on a bounded pool of worker threads.
+ * <p>
+ * The processes of a player are run one after the other in the order they were submitted, so
+ * that e.g. a quit cannot overtake a login which is still running. Processes of different players
+ * run in parallel on up to {@link PluginSettings#PROCESS_THREADS} threads.
+ */
+public class ProcessExecutor implements SettingsDependent {
+
+    /** Maximum time to wait for the pending processes when the plugin is disabled. */
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private final ThreadPoolExecutor executor;
+    /** The mailbox of each player with pending processes. Guarded by itself. */
+    private final Map<String, Mailbox> mailboxes = new HashMap<>();
+    private int queueSize;
+
+    /**
+     * Constructor.
+     *
+     * @param settings the settings
+     */
+    @Inject
+    public ProcessExecutor(NewSetting settings) {
+        int threads = getThreadCount(settings);
+        executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactoryBuilder().setNameFormat("AuthMe-Process-%d").setDaemon(true).build());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Runs the given process once all processes previously submitted for the player have finished.
+     *
+     * @param name the name of the player
+     * @param process the process to run
+     */
+    public void execute(String name, Runnable process) {
+        String key = name.toLowerCase();
+        synchronized (mailboxes) {
+            ++queueSize;
+            Mailbox mailbox = mailboxes.get(key);
+            if (mailbox != null) {
+                mailbox.processes.add(process);
+                return;
+            }
+            mailbox = new Mailbox(key);
+            mailbox.processes.add(process);
+            mailboxes.put(key, mailbox);
+            schedule(mailbox);
+        }
+    }
+
+    /**
+     * @return the number of processes which have been submitted but not finished yet
+     */
+    public int getQueueSize() {
+        synchronized (mailboxes) {
+            return queueSize;
+        }
+    }
+
+    /**
+     * @return the number of players with pending processes
+     */
+    public int getPendingPlayerCount() {
+        synchronized (mailboxes) {
+            return mailboxes.size();
+        }
+    }
+
+    @Override
+    public void reload(NewSetting settings) {
+        int threads = getThreadCount(settings);
+        // The maximum pool size may never be lower than the core pool size
+        if (threads > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(threads);
+            executor.setCorePoolSize(threads);
+        } else {
+            executor.setCorePoolSize(threads);
+            executor.setMaximumPoolSize(threads);
+        }
+    }
+
+    /**
+     * Waits for the pending processes to finish and stops the worker threads.
+     */
+    public void close() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SHUTDOWN_TIMEOUT_SECONDS);
+        synchronized (mailboxes) {
+            try {
+                long remaining;
+                while (queueSize > 0 && (remaining = deadline - System.nanoTime()) > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(mailboxes, remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (queueSize > 0) {
+                ConsoleLogger.warning("Stopped waiting for " + queueSize + " player processes to finish");
+            }
+        }
+        executor.shutdownNow();
+    }
+
+    // Must be called while holding the lock on mailboxes
+    private void schedule(Mailbox mailbox) {
+        try {
+            executor.execute(mailbox);
+        } catch (RejectedExecutionException e) {
+            queueSize -= mailbox.processes.size();
+            mailboxes.remove(mailbox.key);
+            ConsoleLogger.warning("Discarding processes of player '" + mailbox.key
+                + "': the plugin is being disabled");
+        }
+    }
+
+    private static int getThreadCount(NewSetting settings) {
+        return Math.max(1, settings.getProperty(PluginSettings.PROCESS_THREADS));
+    }
+
+    /**
+     * The pending processes of a player. A mailbox is submitted to the worker pool at most once at a time;
+     * it runs one process and resubmits itself if there are more, so that players with many pending
+     * processes cannot starve the others.
+     */
+    private final class Mailbox implements Runnable {
+        private final String key;
+        private final Queue<Runnable> processes = new ArrayDeque<>();
+
+        Mailbox(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            Runnable process;
+            synchronized (mailboxes) {
+                process = processes.peek();
+            }
+            try {
+                process.run();
+            } catch (RuntimeException e) {
+                ConsoleLogger.logException("Error during process of player '" + key + "':", e);
+            } finally {
+                synchronized (mailboxes) {
+                    processes.remove();
+                    --queueSize;
+                    if (processes.isEmpty()) {
+                        mailboxes.remove(key);
+                        if (queueSize == 0) {
+                            mailboxes.notifyAll();
+                        }
+                    } else {
+                        schedule(this);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package fr.xephi.authme.process;
 
+import fr.xephi.authme.cache.auth.PlayerAuth;
 import fr.xephi.authme.process.login.ProcessSyncPlayerLogin;
 import fr.xephi.authme.process.logout.ProcessSynchronousPlayerLogout;
 import fr.xephi.authme.process.quit.ProcessSyncronousPlayerQuit;
@@ -62,11 +63,11 @@ public class SyncProcessManager {
         });
     }
 
-    public void processSyncPlayerLogin(final Player player) {
+    public void processSyncPlayerLogin(final Player player, final PlayerAuth auth) {
         runTask(new Runnable() {
             @Override
             public void run() {
-                processSyncPlayerLogin.processPlayerLogin(player);
+                processSyncPlayerLogin.processPlayerLogin(player, auth);
             }
         });
     }
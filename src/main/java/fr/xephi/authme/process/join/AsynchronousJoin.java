@@ -86,7 +86,7 @@ public class AsynchronousJoin implements AsynchronousProcess {
 
         if (service.getProperty(RestrictionSettings.FORCE_SURVIVAL_MODE)
             && !service.hasPermission(player, PlayerStatePermission.BYPASS_FORCE_SURVIVAL)) {
-            bukkitService.runTask(new Runnable() {
+            bukkitService.scheduleSyncDelayedTask(new Runnable() {
                 @Override
                 public void run() {
                     player.setGameMode(GameMode.SURVIVAL);
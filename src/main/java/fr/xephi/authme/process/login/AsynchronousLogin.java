@@ -181,7 +181,7 @@ public class AsynchronousLogin implements AsynchronousProcess {
             if (playerData != null) {
                 playerData.clearTasks();
             }
-            syncProcessManager.processSyncPlayerLogin(player);
+            syncProcessManager.processSyncPlayerLogin(player, pAuth);
         } else if (player.isOnline()) {
             if (!service.getProperty(SecuritySettings.REMOVE_SPAM_FROM_CONSOLE)) {
                 ConsoleLogger.info(player.getName() + " used the wrong password");
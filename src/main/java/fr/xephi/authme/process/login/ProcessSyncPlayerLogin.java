@@ -2,9 +2,9 @@ package fr.xephi.authme.process.login;
 
 import fr.xephi.authme.AuthMe;
 import fr.xephi.authme.cache.auth.PlayerAuth;
+import fr.xephi.authme.cache.auth.PlayerCache;
 import fr.xephi.authme.cache.limbo.LimboCache;
 import fr.xephi.authme.cache.limbo.PlayerData;
-import fr.xephi.authme.datasource.DataSource;
 import fr.xephi.authme.events.LoginEvent;
 import fr.xephi.authme.events.RestoreInventoryEvent;
 import fr.xephi.authme.listener.AuthMePlayerListener;
@@ -53,7 +53,7 @@ public class ProcessSyncPlayerLogin implements SynchronousProcess {
     private TeleportationService teleportationService;
 
     @Inject
-    private DataSource dataSource;
+    private PlayerCache playerCache;
 
     ProcessSyncPlayerLogin() {
     }
@@ -76,7 +76,13 @@ public class ProcessSyncPlayerLogin implements SynchronousProcess {
         }
     }
 
-    public void processPlayerLogin(Player player) {
+    /**
+     * Finishes the login of the player on the main thread.
+     *
+     * @param player the player who logged in
+     * @param auth the data of the player as loaded by the asynchronous login
+     */
+    public void processPlayerLogin(Player player, PlayerAuth auth) {
         final String name = player.getName().toLowerCase();
 
         final PlayerData limbo = limboCache.getPlayerData(name);
@@ -96,7 +102,6 @@ public class ProcessSyncPlayerLogin implements SynchronousProcess {
             restoreInventory(player);
         }
 
-        final PlayerAuth auth = dataSource.getAuth(name);
         teleportationService.teleportOnLogin(player, auth, limbo);
 
         // We can now display the join message (if delayed)
@@ -119,7 +124,10 @@ public class ProcessSyncPlayerLogin implements SynchronousProcess {
         // The Login event now fires (as intended) after everything is processed
         bukkitService.callEvent(new LoginEvent(player));
         player.saveData();
-        bungeeService.sendBungeeMessage(player, "login");
+        PlayerAuth session = playerCache.getAuth(name);
+        if (session != null) {
+            bungeeService.sendLogin(session);
+        }
 
         // Login is done, display welcome message
         if (service.getProperty(RegistrationSettings.USE_WELCOME_MESSAGE)) {
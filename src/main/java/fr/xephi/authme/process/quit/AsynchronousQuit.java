@@ -101,9 +101,9 @@ public class AsynchronousQuit implements AsynchronousProcess {
         if (plugin.isEnabled()) {
             syncProcessManager.processSyncPlayerQuit(player);
         }
-        // remove player from cache
+        // keep the player in the cache for a quick rejoin
         if (database instanceof CacheDataSource) {
-            ((CacheDataSource) database).getCachedAuths().invalidate(name);
+            ((CacheDataSource) database).retainQuitPlayer(name);
         }
     }
 
@@ -4,6 +4,7 @@ import fr.xephi.authme.AuthMe;
 import fr.xephi.authme.cache.auth.PlayerAuth;
 import fr.xephi.authme.cache.auth.PlayerCache;
 import fr.xephi.authme.datasource.DataSource;
+import fr.xephi.authme.listener.ListenerService;
 import fr.xephi.authme.mail.SendMailSSL;
 import fr.xephi.authme.output.MessageKey;
 import fr.xephi.authme.permission.PermissionsManager;
@@ -59,6 +60,9 @@ public class AsyncRegister implements AsynchronousProcess {
     @Inject
     private SendMailSSL sendMailSsl;
 
+    @Inject
+    private ListenerService listenerService;
+
     AsyncRegister() { }
 
     private boolean preRegisterCheck(Player player, String password) {
@@ -139,9 +143,16 @@ public class AsyncRegister implements AsynchronousProcess {
             service.send(player, MessageKey.ERROR);
             return;
         }
+        listenerService.invalidateRegistration(name);
         database.updateEmail(auth);
         database.updateSession(auth);
-        sendMailSsl.sendPasswordMail(auth, password);
+        if (!sendMailSsl.sendPasswordMail(auth, password)) {
+            // The player would never get the password: undo the registration
+            database.removeAuth(name);
+            listenerService.invalidateRegistration(name);
+            service.send(player, MessageKey.ERROR);
+            return;
+        }
         syncProcessManager.processSyncEmailRegister(player);
     }
 
@@ -161,6 +172,7 @@ public class AsyncRegister implements AsynchronousProcess {
             service.send(player, MessageKey.ERROR);
             return;
         }
+        listenerService.invalidateRegistration(name);
 
         if (!service.getProperty(RegistrationSettings.FORCE_LOGIN_AFTER_REGISTER) && autoLogin) {
             plugin.getManagement().performLogin(player, "dontneed", true);
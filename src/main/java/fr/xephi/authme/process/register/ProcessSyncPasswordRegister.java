@@ -96,7 +96,7 @@ public class ProcessSyncPasswordRegister implements SynchronousProcess {
         }
 
         // Send Bungee stuff. The service will check if it is enabled or not.
-        bungeeService.sendBungeeMessage(player, "register");
+        bungeeService.sendRegister(player);
         bungeeService.connectPlayer(player);
     }
 }
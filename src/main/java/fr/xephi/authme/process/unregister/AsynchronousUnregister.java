@@ -5,6 +5,7 @@ import fr.xephi.authme.cache.auth.PlayerAuth;
 import fr.xephi.authme.cache.auth.PlayerCache;
 import fr.xephi.authme.cache.limbo.LimboCache;
 import fr.xephi.authme.datasource.DataSource;
+import fr.xephi.authme.listener.ListenerService;
 import fr.xephi.authme.output.MessageKey;
 import fr.xephi.authme.permission.AuthGroupType;
 import fr.xephi.authme.process.AsynchronousProcess;
@@ -51,6 +52,9 @@ public class AsynchronousUnregister implements AsynchronousProcess {
     @Inject
     private TeleportationService teleportationService;
 
+    @Inject
+    private ListenerService listenerService;
+
     AsynchronousUnregister() { }
 
 
@@ -62,6 +66,7 @@ public class AsynchronousUnregister implements AsynchronousProcess {
                 service.send(player, MessageKey.ERROR);
                 return;
             }
+            listenerService.invalidateRegistration(name);
 
             if (service.getProperty(RegistrationSettings.FORCE)) {
                 teleportationService.teleportOnJoin(player);
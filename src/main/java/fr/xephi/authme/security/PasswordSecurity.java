@@ -4,6 +4,8 @@ import fr.xephi.authme.datasource.DataSource;
 import fr.xephi.authme.events.PasswordEncryptionEvent;
 import fr.xephi.authme.initialization.AuthMeServiceInitializer;
 import fr.xephi.authme.initialization.Reloadable;
+import fr.xephi.authme.metrics.Metric;
+import fr.xephi.authme.metrics.MetricsRegistry;
 import fr.xephi.authme.security.crypts.EncryptionMethod;
 import fr.xephi.authme.security.crypts.HashedPassword;
 import fr.xephi.authme.settings.NewSetting;
@@ -30,6 +32,9 @@ public class PasswordSecurity implements Reloadable {
     @Inject
     private AuthMeServiceInitializer initializer;
 
+    @Inject
+    private MetricsRegistry metricsRegistry;
+
     private HashAlgorithm algorithm;
     private boolean supportOldAlgorithm;
 
@@ -54,7 +59,10 @@ public class PasswordSecurity implements Reloadable {
     public HashedPassword computeHash(String password, String playerName) {
         String playerLowerCase = playerName.toLowerCase();
         EncryptionMethod method = initializeEncryptionMethodWithEvent(algorithm, playerLowerCase);
-        return method.computeHash(password, playerLowerCase);
+        long start = System.nanoTime();
+        HashedPassword hash = method.computeHash(password, playerLowerCase);
+        metricsRegistry.recordLatency(Metric.HASH_COMPUTE, algorithm.name(), start);
+        return hash;
     }
 
     /**
@@ -82,7 +90,10 @@ public class PasswordSecurity implements Reloadable {
     public boolean comparePassword(String password, HashedPassword hashedPassword, String playerName) {
         EncryptionMethod method = initializeEncryptionMethodWithEvent(algorithm, playerName);
         String playerLowerCase = playerName.toLowerCase();
-        return methodMatches(method, password, hashedPassword, playerLowerCase)
+        long start = System.nanoTime();
+        boolean isMatch = methodMatches(method, password, hashedPassword, playerLowerCase);
+        metricsRegistry.recordLatency(Metric.HASH_COMPARE, algorithm.name(), start);
+        return isMatch
             || supportOldAlgorithm && compareWithAllEncryptionMethods(password, hashedPassword, playerLowerCase);
     }
 
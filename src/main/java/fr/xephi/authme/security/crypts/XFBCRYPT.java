@@ -3,6 +3,7 @@ package fr.xephi.authme.security.crypts;
 import fr.xephi.authme.ConsoleLogger;
 import fr.xephi.authme.util.StringUtils;
 
+import java.nio.charset.StandardCharsets;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -42,7 +43,7 @@ public class XFBCRYPT implements EncryptionMethod {
     }
 
     public static String getHashFromBlob(byte[] blob) {
-        String line = new String(blob);
+        String line = new String(blob, StandardCharsets.UTF_8);
         Matcher m = HASH_PATTERN.matcher(line);
         if (m.find()) {
             return m.group(1);
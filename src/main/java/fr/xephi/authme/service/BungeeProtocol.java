@@ -0,0 +1,264 @@
+package fr.xephi.authme.service;
+
+import com.google.common.io.ByteArrayDataInput;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import fr.xephi.authme.cache.auth.PlayerAuth;
+import fr.xephi.authme.security.crypts.HashedPassword;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary protocol used to synchronize the state of players between the AuthMe instances of a BungeeCord network.
+ * <p>
+ * A frame starts with the protocol version (byte) and the number of messages (short). Each message consists of
+ * its operation code (byte), the length of its body (short) and the body itself. Strings are written with
+ * {@link java.io.DataOutput#writeUTF}, nullable strings are preceded by a boolean. Messages with an unknown
+ * operation code are skipped so that newer versions can add operations without breaking older servers.
+ */
+public final class BungeeProtocol {
+
+    /** The BungeeCord sub-channel the frames are forwarded on. */
+    public static final String SUB_CHANNEL = "AuthMeSync";
+
+    /** Current version of the protocol. */
+    public static final byte VERSION = 2;
+
+    /** Maximum size of a frame in bytes, below the size limit of plugin messages. */
+    public static final int MAX_FRAME_SIZE = 30000;
+
+    private BungeeProtocol() {
+    }
+
+    /**
+     * Encodes the given messages into as few frames as possible.
+     *
+     * @param messages the messages to encode
+     * @return the frames
+     */
+    public static List<byte[]> encodeFrames(List<Message> messages) {
+        List<byte[]> frames = new ArrayList<>();
+        List<byte[]> currentMessages = new ArrayList<>();
+        int currentSize = 3;
+        for (Message message : messages) {
+            byte[] encoded = encodeMessage(message);
+            if (!currentMessages.isEmpty() && currentSize + encoded.length > MAX_FRAME_SIZE) {
+                frames.add(createFrame(currentMessages));
+                currentMessages.clear();
+                currentSize = 3;
+            }
+            currentMessages.add(encoded);
+            currentSize += encoded.length;
+        }
+        if (!currentMessages.isEmpty()) {
+            frames.add(createFrame(currentMessages));
+        }
+        return frames;
+    }
+
+    /**
+     * Decodes a frame.
+     *
+     * @param frame the frame to decode
+     * @return the messages of the frame
+     * @throws IllegalArgumentException if the frame has an unsupported version
+     * @throws IllegalStateException if the frame is truncated
+     */
+    public static List<Message> decodeFrame(byte[] frame) {
+        ByteArrayDataInput in = ByteStreams.newDataInput(frame);
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported protocol version " + version);
+        }
+
+        int count = in.readUnsignedShort();
+        List<Message> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            Operation operation = Operation.fromCode(in.readByte());
+            byte[] body = new byte[in.readUnsignedShort()];
+            in.readFully(body);
+            if (operation != null) {
+                messages.add(decodeMessage(operation, ByteStreams.newDataInput(body)));
+            }
+        }
+        return messages;
+    }
+
+    private static byte[] createFrame(List<byte[]> encodedMessages) {
+        ByteArrayDataOutput out = ByteStreams.newDataOutput();
+        out.writeByte(VERSION);
+        out.writeShort(encodedMessages.size());
+        for (byte[] message : encodedMessages) {
+            out.write(message);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] encodeMessage(Message message) {
+        ByteArrayDataOutput body = ByteStreams.newDataOutput();
+        body.writeUTF(message.getName());
+        switch (message.getOperation()) {
+            case LOGIN:
+                // Only the data written by the login is sent, never the password or the email
+                body.writeUTF(message.getRealName());
+                writeNullable(body, message.getIp());
+                body.writeLong(message.getLastLogin());
+                break;
+            case CHANGE_PASSWORD:
+                writePassword(body, message.getPassword());
+                break;
+            default:
+                // Only the name is sent
+        }
+        byte[] bodyBytes = body.toByteArray();
+
+        ByteArrayDataOutput out = ByteStreams.newDataOutput();
+        out.writeByte(message.getOperation().code);
+        out.writeShort(bodyBytes.length);
+        out.write(bodyBytes);
+        return out.toByteArray();
+    }
+
+    private static Message decodeMessage(Operation operation, ByteArrayDataInput in) {
+        String name = in.readUTF();
+        switch (operation) {
+            case LOGIN:
+                String realName = in.readUTF();
+                String ip = readNullable(in);
+                return new Message(operation, name, null, realName, ip, in.readLong());
+            case CHANGE_PASSWORD:
+                return Message.changePassword(name, readPassword(in));
+            default:
+                return new Message(operation, name, null, null, null, 0);
+        }
+    }
+
+    private static void writePassword(ByteArrayDataOutput out, HashedPassword password) {
+        out.writeUTF(password.getHash());
+        writeNullable(out, password.getSalt());
+    }
+
+    private static HashedPassword readPassword(ByteArrayDataInput in) {
+        String hash = in.readUTF();
+        String salt = readNullable(in);
+        return new HashedPassword(hash, salt);
+    }
+
+    private static void writeNullable(ByteArrayDataOutput out, String value) {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(ByteArrayDataInput in) {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Operations of the protocol. Codes must never be reused.
+     */
+    public enum Operation {
+        LOGIN(1),
+        LOGOUT(2),
+        REGISTER(3),
+        CHANGE_PASSWORD(4);
+
+        private final byte code;
+
+        Operation(int code) {
+            this.code = (byte) code;
+        }
+
+        private static Operation fromCode(byte code) {
+            for (Operation operation : values()) {
+                if (operation.code == code) {
+                    return operation;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A change of a player's state.
+     */
+    public static final class Message {
+        private final Operation operation;
+        private final String name;
+        private final HashedPassword password;
+        private final String realName;
+        private final String ip;
+        private final long lastLogin;
+
+        private Message(Operation operation, String name, HashedPassword password,
+                        String realName, String ip, long lastLogin) {
+            this.operation = operation;
+            this.name = name.toLowerCase();
+            this.password = password;
+            this.realName = realName;
+            this.ip = ip;
+            this.lastLogin = lastLogin;
+        }
+
+        /**
+         * Creates a login message with the session data of the player, i.e. the data written by the login.
+         *
+         * @param auth the session data of the player who logged in
+         * @return the message
+         */
+        public static Message login(PlayerAuth auth) {
+            return new Message(Operation.LOGIN, auth.getNickname(), null,
+                auth.getRealName(), auth.getIp(), auth.getLastLogin());
+        }
+
+        public static Message logout(String name) {
+            return new Message(Operation.LOGOUT, name, null, null, null, 0);
+        }
+
+        public static Message register(String name) {
+            return new Message(Operation.REGISTER, name, null, null, null, 0);
+        }
+
+        public static Message changePassword(String name, HashedPassword password) {
+            return new Message(Operation.CHANGE_PASSWORD, name, password, null, null, 0);
+        }
+
+        public Operation getOperation() {
+            return operation;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the new password for password change messages
+         */
+        public HashedPassword getPassword() {
+            return password;
+        }
+
+        /**
+         * @return the name with proper casing for login messages
+         */
+        public String getRealName() {
+            return realName;
+        }
+
+        /**
+         * @return the IP address for login messages
+         */
+        public String getIp() {
+            return ip;
+        }
+
+        /**
+         * @return the last login timestamp for login messages
+         */
+        public long getLastLogin() {
+            return lastLogin;
+        }
+    }
+}
@@ -1,19 +1,31 @@
 package fr.xephi.authme.service;
 
+import com.google.common.collect.Iterables;
 import com.google.common.io.ByteArrayDataOutput;
 import com.google.common.io.ByteStreams;
 import fr.xephi.authme.AuthMe;
+import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.cache.auth.PlayerAuth;
 import fr.xephi.authme.initialization.SettingsDependent;
 import fr.xephi.authme.security.crypts.HashedPassword;
+import fr.xephi.authme.service.BungeeProtocol.Message;
 import fr.xephi.authme.settings.NewSetting;
 import fr.xephi.authme.settings.properties.HooksSettings;
 import fr.xephi.authme.util.BukkitService;
 import org.bukkit.entity.Player;
 
 import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Class to manage all BungeeCord related processes.
+ * <p>
+ * State changes are queued and sent to the other servers of the network once per tick,
+ * batched into as few {@link BungeeProtocol} frames as possible.
  */
 public class BungeeService implements SettingsDependent {
 
@@ -23,10 +35,20 @@ public class BungeeService implements SettingsDependent {
     private boolean isEnabled;
     private String bungeeServer;
 
+    private final Queue<Message> pendingMessages = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean isFlushScheduled = new AtomicBoolean();
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
     /**
      * Constructor.
      *
      * @param plugin AuthMe plugin.
+     * @param bukkitService Bukkit service.
      * @param settings AuthMe settings.
      */
     @Inject
@@ -37,22 +59,36 @@ public class BungeeService implements SettingsDependent {
     }
 
     /**
-     * Sends a Bungee message to a player, e.g. login.
+     * Notifies the other servers that the player has logged in.
      *
-     * @param player The player to send the message to.
-     * @param action The action to send, e.g. login.
+     * @param auth The session data of the player who logged in.
      */
-    public void sendBungeeMessage(Player player, String action) {
-        if (!isEnabled) {
-            return;
+    public void sendLogin(PlayerAuth auth) {
+        if (isEnabled) {
+            queueMessage(Message.login(auth));
         }
+    }
 
-        ByteArrayDataOutput out = ByteStreams.newDataOutput();
-        out.writeUTF("Forward");
-        out.writeUTF("ALL");
-        out.writeUTF("AuthMe");
-        out.writeUTF(action + ";" + player.getName());
-        player.sendPluginMessage(plugin, "BungeeCord", out.toByteArray());
+    /**
+     * Notifies the other servers that the player has logged out.
+     *
+     * @param player The player who logged out.
+     */
+    public void sendLogout(Player player) {
+        if (isEnabled) {
+            queueMessage(Message.logout(player.getName()));
+        }
+    }
+
+    /**
+     * Notifies the other servers that the player has registered.
+     *
+     * @param player The player who registered.
+     */
+    public void sendRegister(Player player) {
+        if (isEnabled) {
+            queueMessage(Message.register(player.getName()));
+        }
     }
 
     /**
@@ -61,25 +97,10 @@ public class BungeeService implements SettingsDependent {
      * @param player The player who's password is changed.
      * @param password The new password.
      */
-    public void sendPasswordChanged(final Player player, HashedPassword password) {
-        if (!isEnabled) {
-            return;
+    public void sendPasswordChanged(Player player, HashedPassword password) {
+        if (isEnabled) {
+            queueMessage(Message.changePassword(player.getName(), password));
         }
-
-        final String hash = password.getHash();
-        final String salt = password.getSalt();
-
-        bukkitService.scheduleSyncDelayedTask(new Runnable() {
-            @Override
-            public void run() {
-                ByteArrayDataOutput out = ByteStreams.newDataOutput();
-                out.writeUTF("Forward");
-                out.writeUTF("ALL");
-                out.writeUTF("AuthMe");
-                out.writeUTF("changepassword;" + player.getName() + ";" + hash + ";" + salt);
-                player.sendPluginMessage(plugin, "BungeeCord", out.toByteArray());
-            }
-        });
     }
 
     /**
@@ -99,9 +120,57 @@ public class BungeeService implements SettingsDependent {
         player.sendPluginMessage(plugin, "BungeeCord", out.toByteArray());
     }
 
+    /**
+     * Returns the number of messages waiting to be sent to the other servers.
+     *
+     * @return number of queued messages
+     */
+    public int getPendingMessageCount() {
+        return pendingMessages.size();
+    }
+
     @Override
     public void reload(NewSetting settings) {
         this.isEnabled = settings.getProperty(HooksSettings.BUNGEECORD);
         this.bungeeServer = settings.getProperty(HooksSettings.BUNGEECORD_SERVER);
     }
+
+    private void queueMessage(Message message) {
+        pendingMessages.add(message);
+        if (isFlushScheduled.compareAndSet(false, true)) {
+            bukkitService.scheduleSyncDelayedTask(flushTask);
+        }
+    }
+
+    /**
+     * Sends all queued messages. Runs on the main thread.
+     */
+    private void flush() {
+        isFlushScheduled.set(false);
+        List<Message> messages = new ArrayList<>();
+        Message message;
+        while ((message = pendingMessages.poll()) != null) {
+            messages.add(message);
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        // Plugin messages can only be sent through a connected player
+        Player carrier = Iterables.getFirst(bukkitService.getOnlinePlayers(), null);
+        if (carrier == null) {
+            ConsoleLogger.warning("Could not send " + messages.size() + " BungeeCord message(s): no player is online");
+            return;
+        }
+
+        for (byte[] frame : BungeeProtocol.encodeFrames(messages)) {
+            ByteArrayDataOutput out = ByteStreams.newDataOutput();
+            out.writeUTF("Forward");
+            out.writeUTF("ALL");
+            out.writeUTF(BungeeProtocol.SUB_CHANNEL);
+            out.writeShort(frame.length);
+            out.write(frame);
+            carrier.sendPluginMessage(plugin, "BungeeCord", out.toByteArray());
+        }
+    }
 }
@@ -5,12 +5,16 @@ import fr.xephi.authme.settings.domain.Comment;
 import fr.xephi.authme.settings.domain.Property;
 import fr.xephi.authme.settings.domain.SettingsClass;
 
+import java.util.List;
+
+import static fr.xephi.authme.settings.domain.Property.newListProperty;
 import static fr.xephi.authme.settings.domain.Property.newProperty;
 
 public class DatabaseSettings implements SettingsClass {
 
     @Comment({"What type of database do you want to use?",
-            "Valid values: sqlite, mysql"})
+            "Valid values: sqlite, mysql, embedded",
+            "embedded keeps the accounts in a journal file and is faster than sqlite on large servers"})
     public static final Property<DataSourceType> BACKEND =
         newProperty(DataSourceType.class, "DataSource.backend", DataSourceType.SQLITE);
 
@@ -18,6 +22,26 @@ public class DatabaseSettings implements SettingsClass {
     public static final Property<Boolean> USE_CACHING =
         newProperty("DataSource.caching", true);
 
+    @Comment({
+        "Maximum size of the database cache. A registered player counts as 10.",
+        "The least recently used entries are removed when the cache is full.",
+        "Names which are not registered are kept apart, up to the same number"
+    })
+    public static final Property<Integer> CACHE_MAXIMUM_WEIGHT =
+        newProperty("DataSource.cacheMaximumWeight", 100000);
+
+    @Comment("For how many seconds to remember that a name is not registered")
+    public static final Property<Integer> CACHE_UNREGISTERED_TTL =
+        newProperty("DataSource.cacheUnregisteredTtl", 60);
+
+    @Comment({
+        "For how many minutes to keep the data of players who quit in the cache,",
+        "so that players who rejoin soon do not have to be loaded again. 0 to disable.",
+        "With MySQL, it requires mySQLChangeLog to be enabled"
+    })
+    public static final Property<Integer> CACHE_QUIT_RETENTION =
+        newProperty("DataSource.cacheQuitRetention", 10);
+
     @Comment("Database host address")
     public static final Property<String> MYSQL_HOST =
         newProperty("DataSource.mySQLHost", "127.0.0.1");
@@ -102,6 +126,77 @@ public class DatabaseSettings implements SettingsClass {
     public static final Property<Boolean> MYSQL_WEBSITE =
         newProperty("DataSource.mySQLWebsite", false);
 
+    @Comment({
+        "Record the changes to players in a change log table, so that all servers",
+        "sharing the MySQL database keep their cache up to date. Enable it on",
+        "every server which uses the same table and has caching enabled"
+    })
+    public static final Property<Boolean> MYSQL_CHANGE_LOG =
+        newProperty("DataSource.mySQLChangeLog", false);
+
+    @Comment("Table of the change log")
+    public static final Property<String> MYSQL_CHANGE_LOG_TABLE =
+        newProperty("DataSource.mySQLChangeLogTable", "authme_changes");
+
+    @Comment("Interval in seconds in which the change log is checked for changes made by other servers")
+    public static final Property<Integer> MYSQL_CHANGE_LOG_INTERVAL =
+        newProperty("DataSource.mySQLChangeLogInterval", 5);
+
+    @Comment({
+        "Maximum number of connections to MySQL. Each running process or API request uses",
+        "one connection; about twice the number of CPU cores of the database host is a good start"
+    })
+    public static final Property<Integer> MYSQL_POOL_SIZE =
+        newProperty("DataSource.poolSize", 10);
+
+    @Comment("Minimum number of idle connections to MySQL, -1 to keep poolSize connections open")
+    public static final Property<Integer> MYSQL_MINIMUM_IDLE =
+        newProperty("DataSource.poolMinimumIdle", -1);
+
+    @Comment("Maximum time in seconds to wait for a connection before the operation fails")
+    public static final Property<Integer> MYSQL_CONNECTION_TIMEOUT =
+        newProperty("DataSource.connectionTimeout", 5);
+
+    @Comment("Time in seconds after which connections above poolMinimumIdle are closed when idle")
+    public static final Property<Integer> MYSQL_IDLE_TIMEOUT =
+        newProperty("DataSource.idleTimeout", 600);
+
+    @Comment({
+        "Maximum lifetime of a connection in seconds. Set it a few seconds shorter",
+        "than the wait_timeout of the MySQL server"
+    })
+    public static final Property<Integer> MYSQL_MAX_LIFETIME =
+        newProperty("DataSource.maxLifetime", 1800);
+
+    @Comment({
+        "Log a warning with the stack trace if a connection is used for more",
+        "than this many seconds, which may indicate a connection leak. 0 to disable"
+    })
+    public static final Property<Integer> MYSQL_LEAK_DETECTION_THRESHOLD =
+        newProperty("DataSource.leakDetectionThreshold", 20);
+
+    @Comment({
+        "Maximum time in seconds a single query may take before it is cancelled. 0 to disable.",
+        "Schema updates and bulk operations such as the purge are not limited"
+    })
+    public static final Property<Integer> MYSQL_QUERY_TIMEOUT =
+        newProperty("DataSource.queryTimeout", 10);
+
+    @Comment({
+        "MySQL read replicas as host:port, e.g. [db-replica1:3306, db-replica2:3306].",
+        "If set, players are read from the replicas and written to mySQLHost.",
+        "Reads fall back to mySQLHost while no replica can be reached"
+    })
+    public static final Property<List<String>> MYSQL_REPLICA_HOSTS =
+        newListProperty("DataSource.mySQLReplicaHosts");
+
+    @Comment({
+        "For how many seconds a player is read from mySQLHost after being written,",
+        "should be larger than the replication lag of the replicas"
+    })
+    public static final Property<Integer> MYSQL_REPLICA_LAG_TOLERANCE =
+        newProperty("DataSource.mySQLReplicaLagTolerance", 5);
+
     private DatabaseSettings() {
     }
 
@@ -67,6 +67,18 @@ public class EmailSettings implements SettingsClass {
     public static final Property<String> OAUTH2_TOKEN =
         newProperty("Email.emailOauth2Token", "");
 
+    @Comment("Maximum number of emails waiting to be sent; further emails are rejected until the queue has space")
+    public static final Property<Integer> MAIL_QUEUE_SIZE =
+        newProperty("Email.queueSize", 100);
+
+    @Comment("Number of connections to the SMTP server which are kept open to send emails")
+    public static final Property<Integer> SMTP_CONNECTIONS =
+        newProperty("Email.smtpConnections", 2);
+
+    @Comment("How many times should AuthMe try to send an email before giving up?")
+    public static final Property<Integer> MAX_SEND_ATTEMPTS =
+        newProperty("Email.maxSendAttempts", 3);
+
     private EmailSettings() {
     }
 
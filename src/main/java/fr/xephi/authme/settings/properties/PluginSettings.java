@@ -1,5 +1,6 @@
 package fr.xephi.authme.settings.properties;
 
+import fr.xephi.authme.cache.backup.PlayerDataStorageType;
 import fr.xephi.authme.settings.domain.Comment;
 import fr.xephi.authme.settings.domain.Property;
 import fr.xephi.authme.settings.domain.SettingsClass;
@@ -43,6 +44,52 @@ public class PluginSettings implements SettingsClass {
     public static final Property<String> MESSAGES_LANGUAGE =
         newProperty("settings.messagesLanguage", "en");
 
+    @Comment({
+        "How to store the data (location, group, etc.) of unauthenticated players on disk:",
+        "JSON = one file per player in the playerdata folder,",
+        "BINARY = all players in a single compact file (recommended for servers with many players).",
+        "Existing JSON files are migrated automatically when switching to BINARY"
+    })
+    public static final Property<PlayerDataStorageType> PLAYER_DATA_STORAGE =
+        newProperty(PlayerDataStorageType.class, "settings.playerDataStorage", PlayerDataStorageType.JSON);
+
+    @Comment({
+        "Number of threads running the logins, registrations etc. of players.",
+        "The actions of one player are always processed one after the other"
+    })
+    public static final Property<Integer> PROCESS_THREADS =
+        newProperty("settings.processThreads", 4);
+
+    @Comment({
+        "Maximum time in milliseconds per server tick to spend on AuthMe's tasks on the main thread",
+        "(teleports, messages, ... after logins). Remaining tasks are run in the next tick"
+    })
+    public static final Property<Integer> SYNC_TASK_BUDGET =
+        newProperty("settings.syncTaskBudget", 10);
+
+    @Comment({
+        "Serve AuthMe's performance metrics (data source, login and hashing durations, ...)",
+        "in the Prometheus format on http://127.0.0.1:<port>/metrics?",
+        "The metrics can also be viewed in game with /authme metrics"
+    })
+    public static final Property<Boolean> METRICS_ENDPOINT_ENABLED =
+        newProperty("settings.metrics.prometheusEndpoint", false);
+
+    @Comment("Port of the metrics endpoint; it only accepts connections from the local machine")
+    public static final Property<Integer> METRICS_ENDPOINT_PORT =
+        newProperty("settings.metrics.prometheusPort", 9225);
+
+    @Comment({
+        "Log a report of logins, registrations, database calls etc. which take longer",
+        "than this many milliseconds, showing where the time was spent. Set to 0 to disable"
+    })
+    public static final Property<Integer> SLOW_OPERATION_THRESHOLD =
+        newProperty("settings.metrics.slowOperationThreshold", 2000);
+
+    @Comment("How often, in milliseconds, to sample what a slow operation is doing")
+    public static final Property<Integer> STACK_SAMPLE_INTERVAL =
+        newProperty("settings.metrics.stackSampleInterval", 100);
+
     @Comment({
         "Take care with this option; if you don't want",
         "to use Vault and group switching of AuthMe",
@@ -52,6 +99,13 @@ public class PluginSettings implements SettingsClass {
     public static final Property<Boolean> ENABLE_PERMISSION_CHECK =
         newProperty("permission.EnablePermissionCheck", false);
 
+    @Comment({
+        "How many seconds should the result of a permission check be cached for a player?",
+        "Permission changes made with other plugins may take this long to apply. Set to 0 to disable"
+    })
+    public static final Property<Integer> PERMISSION_CACHE_TIMEOUT =
+        newProperty("permission.cacheTimeout", 5);
+
     @Comment({
         "Keeps collisions disabled for logged players",
         "Works only with MC 1.9"
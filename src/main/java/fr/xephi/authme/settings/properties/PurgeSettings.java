@@ -40,6 +40,14 @@ public class PurgeSettings implements SettingsClass {
     public static final Property<Boolean> REMOVE_PERMISSIONS =
         newProperty("Purge.removePermissions", false);
 
+    @Comment("Number of accounts to check and delete at once during the purge process")
+    public static final Property<Integer> BATCH_SIZE =
+        newProperty("Purge.batchSize", 1000);
+
+    @Comment("Milliseconds to wait between two batches so that the database can handle other requests")
+    public static final Property<Integer> PAUSE_BETWEEN_BATCHES =
+        newProperty("Purge.pauseBetweenBatches", 100);
+
     private PurgeSettings() {
     }
 
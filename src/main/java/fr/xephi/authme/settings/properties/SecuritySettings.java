@@ -1,5 +1,6 @@
 package fr.xephi.authme.settings.properties;
 
+import fr.xephi.authme.output.LogOverflowPolicy;
 import fr.xephi.authme.security.HashAlgorithm;
 import fr.xephi.authme.settings.domain.Comment;
 import fr.xephi.authme.settings.domain.Property;
@@ -34,6 +35,28 @@ public class SecuritySettings implements SettingsClass {
     public static final Property<Boolean> USE_LOGGING =
         newProperty("Security.console.logConsole", true);
 
+    @Comment("Maximum number of log messages waiting to be written to the log file")
+    public static final Property<Integer> LOG_QUEUE_SIZE =
+        newProperty("Security.console.logQueueSize", 4096);
+
+    @Comment({"What to do with new log messages if the log queue is full:",
+        "BLOCK = wait until there is space, DROP = discard new messages,",
+        "SAMPLE = only keep every tenth message once the queue is half full"})
+    public static final Property<LogOverflowPolicy> LOG_OVERFLOW_POLICY =
+        newProperty(LogOverflowPolicy.class, "Security.console.logOverflowPolicy", LogOverflowPolicy.DROP);
+
+    @Comment("Rotate the log file once it reaches the given size in MB (0 to disable)")
+    public static final Property<Integer> LOG_ROTATION_MAX_FILE_SIZE =
+        newProperty("Security.console.logRotation.maxFileSize", 0);
+
+    @Comment("Rotate the log file every day?")
+    public static final Property<Boolean> LOG_ROTATION_DAILY =
+        newProperty("Security.console.logRotation.daily", false);
+
+    @Comment("Compress rotated log files with gzip?")
+    public static final Property<Boolean> LOG_ROTATION_COMPRESS =
+        newProperty("Security.console.logRotation.compress", true);
+
     @Comment("Enable captcha when a player uses wrong password too many times")
     public static final Property<Boolean> USE_CAPTCHA =
         newProperty("Security.captcha.useCaptcha", false);
@@ -0,0 +1,166 @@
+package fr.xephi.authme.task;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.datasource.DataSource;
+import fr.xephi.authme.permission.PermissionsManager;
+import fr.xephi.authme.permission.PlayerStatePermission;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.command.CommandSender;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Removes old accounts from the database in batches. Each batch of candidates is read from the database,
+ * accounts with the bypass permission are filtered out in parallel and the remaining accounts are deleted
+ * before the next batch is read. The task pauses between batches so that other database requests are
+ * not held up by a large purge.
+ */
+class DatabasePurgeTask implements Runnable {
+
+    private static final int MAX_PERMISSION_CHECK_THREADS = 4;
+
+    private final PurgeService purgeService;
+    private final DataSource dataSource;
+    private final PermissionsManager permissionsManager;
+    private final CommandSender sender;
+    private final OfflinePlayer[] offlinePlayers;
+    private final long until;
+    private final int batchSize;
+    private final long pauseMillis;
+
+    /**
+     * Constructor.
+     *
+     * @param purgeService the purge service to report back to
+     * @param dataSource the data source
+     * @param permissionsManager the permissions manager
+     * @param sender the sender who started the purge, or null
+     * @param offlinePlayers the offline players, taken on the main thread
+     * @param until the last login before which accounts are purged
+     * @param batchSize the number of accounts to handle per batch
+     * @param pauseMillis the pause between two batches
+     */
+    DatabasePurgeTask(PurgeService purgeService, DataSource dataSource, PermissionsManager permissionsManager,
+                      CommandSender sender, OfflinePlayer[] offlinePlayers, long until, int batchSize,
+                      long pauseMillis) {
+        this.purgeService = purgeService;
+        this.dataSource = dataSource;
+        this.permissionsManager = permissionsManager;
+        this.sender = sender;
+        this.offlinePlayers = offlinePlayers;
+        this.until = until;
+        this.batchSize = Math.max(1, batchSize);
+        this.pauseMillis = pauseMillis;
+    }
+
+    @Override
+    public void run() {
+        int threads = Math.min(MAX_PERMISSION_CHECK_THREADS, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+            .setNameFormat("AuthMe-PurgePermissionCheck-%d")
+            .setDaemon(true)
+            .build());
+
+        Set<String> purgedNames = new HashSet<>();
+        try {
+            String lastName = null;
+            int checkedAccounts = 0;
+            while (true) {
+                List<String> candidates = dataSource.getRecordsToPurge(until, lastName, batchSize);
+                if (candidates.isEmpty()) {
+                    break;
+                }
+                lastName = candidates.get(candidates.size() - 1);
+                checkedAccounts += candidates.size();
+
+                Set<String> toPurge = removeBypassingPlayers(candidates, executor, threads);
+                if (!toPurge.isEmpty()) {
+                    dataSource.purgeRecords(toPurge);
+                    purgedNames.addAll(toPurge);
+                }
+                ConsoleLogger.info("Purge progress: checked " + checkedAccounts + " accounts, deleted "
+                    + purgedNames.size());
+
+                if (candidates.size() < batchSize || !pause()) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            ConsoleLogger.logException("Purge stopped after deleting " + purgedNames.size() + " accounts:", e);
+        } finally {
+            executor.shutdownNow();
+            // Always report back, also on failure, so that the purge is not considered to be running forever
+            purgeService.onDatabasePurgeFinished(sender, purgedNames, offlinePlayers);
+        }
+    }
+
+    /**
+     * Checks the bypass permission of the given names in parallel.
+     *
+     * @param candidates the names to check
+     * @param executor the executor to run the checks with
+     * @param threads the number of threads of the executor
+     * @return the names without the bypass permission
+     */
+    private Set<String> removeBypassingPlayers(List<String> candidates, ExecutorService executor, int threads) {
+        int chunkSize = (candidates.size() + threads - 1) / threads;
+        List<Future<List<String>>> results = new ArrayList<>();
+        for (final List<String> chunk : Lists.partition(candidates, chunkSize)) {
+            results.add(executor.submit(new Callable<List<String>>() {
+                @Override
+                public List<String> call() {
+                    List<String> toPurge = new ArrayList<>(chunk.size());
+                    for (String name : chunk) {
+                        if (!permissionsManager.hasPermissionOffline(name, PlayerStatePermission.BYPASS_PURGE)) {
+                            toPurge.add(name);
+                        }
+                    }
+                    return toPurge;
+                }
+            }));
+        }
+
+        Set<String> toPurge = new HashSet<>();
+        for (Future<List<String>> result : results) {
+            try {
+                toPurge.addAll(result.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                // Keep the accounts of the chunk if we can't tell whether they may be purged
+                ConsoleLogger.logException("Could not check purge permission:", e.getCause());
+            }
+        }
+        return toPurge;
+    }
+
+    /**
+     * Waits between two batches.
+     *
+     * @return true if the purge may continue, false if the thread was interrupted
+     */
+    private boolean pause() {
+        if (pauseMillis <= 0) {
+            return !Thread.currentThread().isInterrupted();
+        }
+        try {
+            Thread.sleep(pauseMillis);
+            return true;
+        } catch (InterruptedException e) {
+            ConsoleLogger.warning("Purge was interrupted");
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
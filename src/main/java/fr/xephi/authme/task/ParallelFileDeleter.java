@@ -0,0 +1,115 @@
+package fr.xephi.authme.task;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import fr.xephi.authme.ConsoleLogger;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Deletes the files of a directory which match a filter. The directory is listed only once
+ * and the matching files are deleted in parallel on a bounded pool of threads.
+ */
+class ParallelFileDeleter implements AutoCloseable {
+
+    /** Number of files to delete per task submitted to the pool. */
+    private static final int FILES_PER_TASK = 64;
+
+    private final ExecutorService executor;
+
+    /**
+     * Constructor.
+     *
+     * @param threads the maximum number of threads to delete files with
+     */
+    ParallelFileDeleter(int threads) {
+        executor = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactoryBuilder()
+            .setNameFormat("AuthMe-PurgeFiles-%d")
+            .setDaemon(true)
+            .build());
+    }
+
+    /**
+     * Deletes all files in the given directory whose name is accepted by the filter.
+     *
+     * @param directory the directory to process
+     * @param filter the filter deciding which files to delete
+     * @return the number of deleted files
+     */
+    int deleteMatchingFiles(File directory, FilenameFilter filter) {
+        if (!directory.isDirectory()) {
+            return 0;
+        }
+
+        List<Path> toDelete = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory.toPath())) {
+            for (Path path : stream) {
+                if (filter.accept(directory, path.getFileName().toString())) {
+                    toDelete.add(path);
+                }
+            }
+        } catch (IOException e) {
+            ConsoleLogger.logException("Could not list files of '" + directory + "':", e);
+            return 0;
+        }
+
+        List<Future<Integer>> results = new ArrayList<>();
+        for (final List<Path> chunk : Lists.partition(toDelete, FILES_PER_TASK)) {
+            results.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    return deleteFiles(chunk);
+                }
+            }));
+        }
+        return sumResults(results);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private static int deleteFiles(List<Path> files) {
+        int deleted = 0;
+        for (Path file : files) {
+            try {
+                Files.delete(file);
+                ++deleted;
+            } catch (NoSuchFileException e) {
+                // Already removed in the meantime, nothing to do
+            } catch (IOException e) {
+                ConsoleLogger.warning("Could not delete file '" + file + "': " + e.getMessage());
+            }
+        }
+        return deleted;
+    }
+
+    private static int sumResults(List<Future<Integer>> results) {
+        int total = 0;
+        for (Future<Integer> result : results) {
+            try {
+                total += result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                ConsoleLogger.logException("Error while deleting files:", e.getCause());
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,149 @@
+package fr.xephi.authme.task;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import fr.xephi.authme.ConsoleLogger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Records the progress of a purge on disk so that an interrupted purge can continue where it stopped.
+ * <p>
+ * The first line of the file lists the completed steps, the following lines contain the names to purge.
+ */
+class PurgeCheckpoint {
+
+    static final String FILE_NAME = "purge-checkpoint.txt";
+
+    private static final String COMPLETED_PREFIX = "completed:";
+
+    private final File file;
+    private final Set<String> names;
+    private final Set<PurgeStep> completedSteps;
+
+    private PurgeCheckpoint(File file, Set<String> names, Set<PurgeStep> completedSteps) {
+        this.file = file;
+        this.names = names;
+        this.completedSteps = completedSteps;
+    }
+
+    /**
+     * Creates a new checkpoint for the given names and saves it to disk.
+     *
+     * @param dataFolder the data folder to save the checkpoint in
+     * @param names the names to purge
+     * @return the checkpoint
+     */
+    static PurgeCheckpoint create(File dataFolder, Set<String> names) {
+        PurgeCheckpoint checkpoint = new PurgeCheckpoint(new File(dataFolder, FILE_NAME),
+            new HashSet<>(names), EnumSet.noneOf(PurgeStep.class));
+        checkpoint.save();
+        return checkpoint;
+    }
+
+    /**
+     * Loads the checkpoint of an interrupted purge.
+     *
+     * @param dataFolder the data folder the checkpoint is saved in
+     * @return the checkpoint, or null if there is no interrupted purge
+     */
+    static PurgeCheckpoint load(File dataFolder) {
+        File file = new File(dataFolder, FILE_NAME);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        Set<String> names = new HashSet<>();
+        Set<PurgeStep> completedSteps = EnumSet.noneOf(PurgeStep.class);
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), Charsets.UTF_8)) {
+            String line = reader.readLine();
+            if (line == null || !line.startsWith(COMPLETED_PREFIX)) {
+                ConsoleLogger.warning("Ignoring invalid purge checkpoint file '" + file + "'");
+                return null;
+            }
+            for (String step : Splitter.on(',').omitEmptyStrings().split(line.substring(COMPLETED_PREFIX.length()))) {
+                completedSteps.add(PurgeStep.valueOf(step));
+            }
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    names.add(line);
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            ConsoleLogger.logException("Could not read purge checkpoint file '" + file + "':", e);
+            return null;
+        }
+        return new PurgeCheckpoint(file, names, completedSteps);
+    }
+
+    Set<String> getNames() {
+        return names;
+    }
+
+    boolean isCompleted(PurgeStep step) {
+        return completedSteps.contains(step);
+    }
+
+    /**
+     * Marks the given step as completed and saves the checkpoint.
+     *
+     * @param step the completed step
+     */
+    void markCompleted(PurgeStep step) {
+        completedSteps.add(step);
+        save();
+    }
+
+    /**
+     * Removes the checkpoint file once the purge is finished.
+     */
+    void delete() {
+        if (file.exists() && !file.delete()) {
+            ConsoleLogger.warning("Could not delete purge checkpoint file '" + file + "'");
+        }
+    }
+
+    private void save() {
+        Path target = file.toPath();
+        Path temporary = target.resolveSibling(FILE_NAME + ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temporary, Charsets.UTF_8)) {
+                writer.write(COMPLETED_PREFIX + Joiner.on(',').join(completedSteps));
+                writer.newLine();
+                for (String name : names) {
+                    writer.write(name);
+                    writer.newLine();
+                }
+            }
+            try {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            ConsoleLogger.logException("Could not save purge checkpoint file '" + file + "':", e);
+        }
+    }
+
+    /**
+     * The steps of a purge after the accounts have been removed from the database.
+     */
+    enum PurgeStep {
+        ESSENTIALS,
+        PLAYER_DAT,
+        LIMITED_CREATIVE,
+        ANTI_XRAY,
+        PERMISSIONS
+    }
+}
@@ -3,14 +3,12 @@ package fr.xephi.authme.task;
 import fr.xephi.authme.ConsoleLogger;
 import fr.xephi.authme.datasource.DataSource;
 import fr.xephi.authme.hooks.PluginHooks;
+import fr.xephi.authme.initialization.DataFolder;
 import fr.xephi.authme.initialization.Reloadable;
 import fr.xephi.authme.permission.PermissionsManager;
-import fr.xephi.authme.permission.PlayerStatePermission;
 import fr.xephi.authme.settings.NewSetting;
 import fr.xephi.authme.settings.properties.PurgeSettings;
 import fr.xephi.authme.util.BukkitService;
-import fr.xephi.authme.util.CollectionUtils;
-import fr.xephi.authme.util.Utils;
 import org.bukkit.ChatColor;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.Server;
@@ -20,8 +18,8 @@ import org.bukkit.command.ConsoleCommandSender;
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import java.io.File;
+import java.io.FilenameFilter;
 import java.util.Calendar;
-import java.util.HashSet;
 import java.util.Set;
 
 import static fr.xephi.authme.util.StringUtils.makePath;
@@ -46,10 +44,16 @@ public class PurgeService implements Reloadable {
     @Inject
     private Server server;
 
-    private boolean isPurging = false;
+    @Inject
+    @DataFolder
+    private File dataFolder;
+
+    private volatile boolean isPurging = false;
 
     // Settings
     private int daysBeforePurge;
+    private int batchSize;
+    private int pauseBetweenBatches;
 
     /**
      * Return whether a purge is in progress.
@@ -89,21 +93,23 @@ public class PurgeService implements Reloadable {
     }
 
     /**
-     * Run a purge with a specified time.
+     * Run a purge with a specified time. The accounts are removed from the database asynchronously
+     * in batches, after which the other data of the purged players is removed.
      *
      * @param sender Sender running the command.
      * @param until The minimum last login.
      */
     public void runPurge(CommandSender sender, long until) {
-        //todo: note this should may run async because it may executes a SQL-Query
-        Set<String> initialPurge = dataSource.getRecordsToPurge(until);
-        if (CollectionUtils.isEmpty(initialPurge)) {
-            logAndSendMessage(sender, "No players to purge");
+        if (isPurging) {
+            logAndSendMessage(sender, "Purge is already in progress! Aborting purge request");
             return;
         }
 
-        Set<String> toPurge = getFinalPurgeList(initialPurge);
-        purgePlayers(sender, toPurge, bukkitService.getOfflinePlayers());
+        isPurging = true;
+        // The Bukkit API may not be used from the purge task, so get the offline players now
+        OfflinePlayer[] offlinePlayers = bukkitService.getOfflinePlayers();
+        bukkitService.runTaskAsynchronously(new DatabasePurgeTask(this, dataSource, permissionsManager,
+            sender, offlinePlayers, until, batchSize, pauseBetweenBatches));
     }
 
     /**
@@ -121,114 +127,92 @@ public class PurgeService implements Reloadable {
         }
 
         dataSource.purgeRecords(names);
+        purgeOtherData(sender, names, players);
+    }
+
+    /**
+     * Called by the {@link DatabasePurgeTask} once all accounts have been removed from the database.
+     *
+     * @param sender Sender running the command.
+     * @param names The names which were removed.
+     * @param players Collection of OfflinePlayers, taken when the purge was started.
+     */
+    void onDatabasePurgeFinished(CommandSender sender, Set<String> names, OfflinePlayer[] players) {
+        if (names.isEmpty()) {
+            logAndSendMessage(sender, "No players to purge");
+            isPurging = false;
+            return;
+        }
+        purgeOtherData(sender, names, players);
+    }
+
+    private void purgeOtherData(CommandSender sender, Set<String> names, OfflinePlayer[] players) {
         logAndSendMessage(sender, ChatColor.GOLD + "Deleted " + names.size() + " user accounts");
         logAndSendMessage(sender, ChatColor.GOLD + "Purging user accounts...");
 
         isPurging = true;
-        PurgeTask purgeTask = new PurgeTask(this, sender, names, players);
-        bukkitService.runTaskAsynchronously(purgeTask);
+        PurgeCheckpoint checkpoint = PurgeCheckpoint.create(dataFolder, names);
+        bukkitService.runTaskAsynchronously(new PurgeTask(this, sender, names, players, checkpoint));
     }
 
     /**
-     * Check each name in the initial purge findings to remove any player from the purge list
-     * that has the bypass permission.
-     *
-     * @param initial The initial list of players to purge.
-     *
-     * @return The list of players to purge after permission check.
+     * Continues a purge which was interrupted, e.g. because the server was stopped. Run on startup.
      */
-    private Set<String> getFinalPurgeList(Set<String> initial) {
-        Set<String> toPurge = new HashSet<>();
-
-        for (String name : initial) {
-            if (!permissionsManager.hasPermissionOffline(name, PlayerStatePermission.BYPASS_PURGE)) {
-                toPurge.add(name);
-            }
+    public void resumeInterruptedPurge() {
+        PurgeCheckpoint checkpoint = PurgeCheckpoint.load(dataFolder);
+        if (checkpoint == null || isPurging) {
+            return;
         }
 
-        return toPurge;
+        ConsoleLogger.info("Resuming interrupted purge of " + checkpoint.getNames().size() + " players");
+        isPurging = true;
+        bukkitService.runTaskAsynchronously(new PurgeTask(this, null, checkpoint.getNames(),
+            bukkitService.getOfflinePlayers(), checkpoint));
     }
 
-    synchronized void purgeAntiXray(Set<String> cleared) {
+    void purgeAntiXray(final Set<String> names, ParallelFileDeleter deleter) {
         if (!settings.getProperty(PurgeSettings.REMOVE_ANTI_XRAY_FILE)) {
             return;
         }
 
-        int i = 0;
         File dataFolder = new File("." + File.separator + "plugins" + File.separator + "AntiXRayData"
             + File.separator + "PlayerData");
-        if (!dataFolder.exists() || !dataFolder.isDirectory()) {
-            return;
-        }
-
-        for (String file : dataFolder.list()) {
-            if (cleared.contains(file.toLowerCase())) {
-                File playerFile = new File(dataFolder, file);
-                if (playerFile.exists() && playerFile.delete()) {
-                    i++;
-                }
+        int i = deleter.deleteMatchingFiles(dataFolder, new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String file) {
+                return names.contains(file.toLowerCase());
             }
-        }
+        });
 
         ConsoleLogger.info("AutoPurge: Removed " + i + " AntiXRayData Files");
     }
 
-    synchronized void purgeLimitedCreative(Set<String> cleared) {
+    void purgeLimitedCreative(final Set<String> names, ParallelFileDeleter deleter) {
         if (!settings.getProperty(PurgeSettings.REMOVE_LIMITED_CREATIVE_INVENTORIES)) {
             return;
         }
 
-        int i = 0;
         File dataFolder = new File("." + File.separator + "plugins" + File.separator + "LimitedCreative"
             + File.separator + "inventories");
-        if (!dataFolder.exists() || !dataFolder.isDirectory()) {
-            return;
-        }
-        for (String file : dataFolder.list()) {
-            String name = file;
-            int idx;
-            idx = file.lastIndexOf("_creative.yml");
-            if (idx != -1) {
-                name = name.substring(0, idx);
-            } else {
-                idx = file.lastIndexOf("_adventure.yml");
-                if (idx != -1) {
-                    name = name.substring(0, idx);
-                } else {
-                    idx = file.lastIndexOf(".yml");
-                    if (idx != -1) {
-                        name = name.substring(0, idx);
-                    }
-                }
+        int i = deleter.deleteMatchingFiles(dataFolder, new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String file) {
+                String name = getLimitedCreativePlayerName(file);
+                return name != null && names.contains(name.toLowerCase());
             }
-            if (name.equals(file)) {
-                continue;
-            }
-            if (cleared.contains(name.toLowerCase())) {
-                File dataFile = new File(dataFolder, file);
-                if (dataFile.exists() && dataFile.delete()) {
-                    i++;
-                }
-            }
-        }
+        });
+
         ConsoleLogger.info("AutoPurge: Removed " + i + " LimitedCreative Survival, Creative and Adventure files");
     }
 
-    synchronized void purgeDat(Set<OfflinePlayer> cleared) {
+    void purgeDat(Set<String> playerIds, ParallelFileDeleter deleter) {
         if (!settings.getProperty(PurgeSettings.REMOVE_PLAYER_DAT)) {
             return;
         }
 
-        int i = 0;
         File dataFolder = new File(server.getWorldContainer()
             , makePath(settings.getProperty(PurgeSettings.DEFAULT_WORLD), "players"));
-
-        for (OfflinePlayer offlinePlayer : cleared) {
-            File playerFile = new File(dataFolder, Utils.getUUIDorName(offlinePlayer) + ".dat");
-            if (playerFile.delete()) {
-                i++;
-            }
-        }
+        int i = deleter.deleteMatchingFiles(dataFolder, new PlayerFileFilter(playerIds, ".dat"));
 
         ConsoleLogger.info("AutoPurge: Removed " + i + " .dat Files");
     }
@@ -236,14 +220,14 @@ public class PurgeService implements Reloadable {
     /**
      * Method purgeEssentials.
      *
-     * @param cleared List of String
+     * @param playerIds UUIDs or names of the players to purge
+     * @param deleter the file deleter to use
      */
-    synchronized void purgeEssentials(Set<OfflinePlayer> cleared) {
+    void purgeEssentials(Set<String> playerIds, ParallelFileDeleter deleter) {
         if (!settings.getProperty(PurgeSettings.REMOVE_ESSENTIALS_FILES)) {
             return;
         }
 
-        int i = 0;
         File essentialsDataFolder = pluginHooks.getEssentialsDataFolder();
         if (essentialsDataFolder == null) {
             ConsoleLogger.info("Cannot purge Essentials: plugin is not loaded");
@@ -251,16 +235,7 @@ public class PurgeService implements Reloadable {
         }
 
         final File userDataFolder = new File(essentialsDataFolder, "userdata");
-        if (!userDataFolder.exists() || !userDataFolder.isDirectory()) {
-            return;
-        }
-
-        for (OfflinePlayer offlinePlayer : cleared) {
-            File playerFile = new File(userDataFolder, Utils.getUUIDorName(offlinePlayer) + ".yml");
-            if (playerFile.exists() && playerFile.delete()) {
-                i++;
-            }
-        }
+        int i = deleter.deleteMatchingFiles(userDataFolder, new PlayerFileFilter(playerIds, ".yml"));
 
         ConsoleLogger.info("AutoPurge: Removed " + i + " EssentialsFiles");
     }
@@ -280,6 +255,23 @@ public class PurgeService implements Reloadable {
         ConsoleLogger.info("AutoPurge: Removed permissions from " + cleared.size() + " player(s).");
     }
 
+    /**
+     * Returns the player name of a LimitedCreative inventory file ("name.yml", "name_creative.yml"
+     * or "name_adventure.yml").
+     *
+     * @param file the file name
+     * @return the player name, or null if the file is not an inventory file
+     */
+    private static String getLimitedCreativePlayerName(String file) {
+        for (String suffix : new String[]{"_creative.yml", "_adventure.yml", ".yml"}) {
+            int idx = file.lastIndexOf(suffix);
+            if (idx != -1) {
+                return file.substring(0, idx);
+            }
+        }
+        return null;
+    }
+
     private static void logAndSendMessage(CommandSender sender, String message) {
         ConsoleLogger.info(message);
         // Make sure sender is not console user, which will see the message from ConsoleLogger already
@@ -288,9 +280,30 @@ public class PurgeService implements Reloadable {
         }
     }
 
+    /**
+     * Accepts the files named after one of the given players, i.e. "&lt;uuid or name&gt;&lt;extension&gt;".
+     */
+    private static final class PlayerFileFilter implements FilenameFilter {
+        private final Set<String> playerIds;
+        private final String extension;
+
+        PlayerFileFilter(Set<String> playerIds, String extension) {
+            this.playerIds = playerIds;
+            this.extension = extension;
+        }
+
+        @Override
+        public boolean accept(File dir, String file) {
+            return file.endsWith(extension)
+                && playerIds.contains(file.substring(0, file.length() - extension.length()));
+        }
+    }
+
     @PostConstruct
     @Override
     public void reload() {
         this.daysBeforePurge = settings.getProperty(PurgeSettings.DAYS_BEFORE_REMOVE_PLAYER);
+        this.batchSize = settings.getProperty(PurgeSettings.BATCH_SIZE);
+        this.pauseBetweenBatches = settings.getProperty(PurgeSettings.PAUSE_BETWEEN_BATCHES);
     }
 }
@@ -1,32 +1,35 @@
 package fr.xephi.authme.task;
 
 import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.task.PurgeCheckpoint.PurgeStep;
+import fr.xephi.authme.util.Utils;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitRunnable;
 
 import java.util.HashSet;
 import java.util.Set;
 import java.util.UUID;
 
-public class PurgeTask extends BukkitRunnable {
+/**
+ * Removes the data of purged players which is kept outside of the database (player files, Essentials files, etc.).
+ * Every directory is listed only once and the progress is saved to a checkpoint after each step.
+ */
+public class PurgeTask implements Runnable {
 
-    //how many players we should check for each tick
-    private static final int INTERVALL_CHECK = 5;
+    /** Maximum number of threads to delete files with. */
+    private static final int MAX_DELETE_THREADS = 4;
 
     private final PurgeService purgeService;
     private final UUID sender;
     private final Set<String> toPurge;
-
     private final OfflinePlayer[] offlinePlayers;
-    private final int totalPurgeCount;
-
-    private int currentPage = 0;
+    private final PurgeCheckpoint checkpoint;
 
-    public PurgeTask(PurgeService service, CommandSender sender, Set<String> toPurge, OfflinePlayer[] offlinePlayers) {
+    PurgeTask(PurgeService service, CommandSender sender, Set<String> toPurge, OfflinePlayer[] offlinePlayers,
+              PurgeCheckpoint checkpoint) {
         this.purgeService = service;
         if (sender instanceof Player) {
             this.sender = ((Player) sender).getUniqueId();
@@ -35,68 +38,83 @@ public class PurgeTask extends BukkitRunnable {
         }
 
         this.toPurge = toPurge;
-        this.totalPurgeCount = toPurge.size();
         this.offlinePlayers = offlinePlayers;
+        this.checkpoint = checkpoint;
     }
 
     @Override
     public void run() {
-        if (toPurge.isEmpty()) {
-            //everything was removed
-            finish();
-            return;
+        try {
+            purge();
+        } finally {
+            // The checkpoint is kept if the purge did not complete, so that it is resumed on the next start
+            purgeService.setPurging(false);
         }
+    }
 
-        Set<OfflinePlayer> playerPortion = new HashSet<OfflinePlayer>(INTERVALL_CHECK);
-        Set<String> namePortion = new HashSet<String>(INTERVALL_CHECK);
-        for (int i = 0; i < INTERVALL_CHECK; i++) {
-            int nextPosition = (currentPage * INTERVALL_CHECK) + i;
-            if (offlinePlayers.length <= nextPosition) {
-                //no more offline players on this page
-                break;
-            }
+    private void purge() {
+        Set<String> names = new HashSet<>(toPurge.size());
+        for (String name : toPurge) {
+            names.add(name.toLowerCase());
+        }
 
-            OfflinePlayer offlinePlayer = offlinePlayers[nextPosition];
-            //remove to speed up later lookups
-            if (toPurge.remove(offlinePlayer.getName().toLowerCase())) {
-                playerPortion.add(offlinePlayer);
-                namePortion.add(offlinePlayer.getName());
+        Set<OfflinePlayer> players = new HashSet<>();
+        Set<String> playerIds = new HashSet<>();
+        for (OfflinePlayer offlinePlayer : offlinePlayers) {
+            String name = offlinePlayer.getName();
+            if (name != null && names.contains(name.toLowerCase())) {
+                players.add(offlinePlayer);
+                playerIds.add(Utils.getUUIDorName(offlinePlayer));
             }
         }
 
-        if (!toPurge.isEmpty() && playerPortion.isEmpty()) {
-            ConsoleLogger.info("Finished lookup up offlinePlayers. Begin looking purging player names only");
-
-            //we went through all offlineplayers but there are still names remaining
-            namePortion.addAll(toPurge);
-            toPurge.clear();
+        int threads = Math.min(MAX_DELETE_THREADS, Runtime.getRuntime().availableProcessors());
+        try (ParallelFileDeleter deleter = new ParallelFileDeleter(threads)) {
+            for (PurgeStep step : PurgeStep.values()) {
+                if (checkpoint.isCompleted(step)) {
+                    continue;
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    ConsoleLogger.warning("Purge was interrupted; it will be resumed on the next start");
+                    return;
+                }
+                runStep(step, deleter, names, playerIds, players);
+                checkpoint.markCompleted(step);
+            }
         }
 
-        currentPage++;
-        purgeData(playerPortion, namePortion);
-        if (currentPage % 20 == 0) {
-            int completed = totalPurgeCount - toPurge.size();
-            sendMessage("[AuthMe] Purge progress " + completed + '/' + totalPurgeCount);
-        }
+        checkpoint.delete();
+        finish();
     }
 
-    private void purgeData(Set<OfflinePlayer> playerPortion, Set<String> namePortion) {
-        // Purge other data
-        purgeService.purgeEssentials(playerPortion);
-        purgeService.purgeDat(playerPortion);
-        purgeService.purgeLimitedCreative(namePortion);
-        purgeService.purgeAntiXray(namePortion);
-        purgeService.purgePermissions(playerPortion);
+    private void runStep(PurgeStep step, ParallelFileDeleter deleter, Set<String> names, Set<String> playerIds,
+                         Set<OfflinePlayer> players) {
+        switch (step) {
+            case ESSENTIALS:
+                purgeService.purgeEssentials(playerIds, deleter);
+                break;
+            case PLAYER_DAT:
+                purgeService.purgeDat(playerIds, deleter);
+                break;
+            case LIMITED_CREATIVE:
+                purgeService.purgeLimitedCreative(names, deleter);
+                break;
+            case ANTI_XRAY:
+                purgeService.purgeAntiXray(names, deleter);
+                break;
+            case PERMISSIONS:
+                purgeService.purgePermissions(players);
+                break;
+            default:
+                throw new IllegalStateException("Unhandled purge step '" + step + "'");
+        }
     }
 
     private void finish() {
-        cancel();
-
         // Show a status message
         sendMessage(ChatColor.GREEN + "[AuthMe] Database has been purged correctly");
 
         ConsoleLogger.info("Purge Finished!");
-        purgeService.setPurging(false);
     }
 
     private void sendMessage(String message) {
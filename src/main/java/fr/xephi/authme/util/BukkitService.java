@@ -31,25 +31,27 @@ public class BukkitService {
     public static final int TICKS_PER_MINUTE = 60 * TICKS_PER_SECOND;
 
     private final AuthMe authMe;
+    private final SyncTaskDispatcher syncTaskDispatcher;
     private final boolean getOnlinePlayersIsCollection;
     private Method getOnlinePlayers;
 
     @Inject
-    BukkitService(AuthMe authMe) {
+    BukkitService(AuthMe authMe, SyncTaskDispatcher syncTaskDispatcher) {
         this.authMe = authMe;
+        this.syncTaskDispatcher = syncTaskDispatcher;
         getOnlinePlayersIsCollection = initializeOnlinePlayersIsCollectionField();
     }
 
     /**
      * Schedules a once off task to occur as soon as possible.
      * <p>
-     * This task will be executed by the main server thread.
+     * This task will be executed by the main server thread. Tasks are run in batches limited
+     * to a time budget per tick, see {@link SyncTaskDispatcher}.
      *
      * @param task Task to be executed
-     * @return Task id number (-1 if scheduling failed)
      */
-    public int scheduleSyncDelayedTask(Runnable task) {
-        return Bukkit.getScheduler().scheduleSyncDelayedTask(authMe, task);
+    public void scheduleSyncDelayedTask(Runnable task) {
+        syncTaskDispatcher.submit(task);
     }
 
     /**
@@ -0,0 +1,109 @@
+package fr.xephi.authme.util;
+
+import fr.xephi.authme.AuthMe;
+import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.initialization.SettingsDependent;
+import fr.xephi.authme.metrics.Metric;
+import fr.xephi.authme.metrics.MetricsRegistry;
+import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.PluginSettings;
+import org.bukkit.scheduler.BukkitScheduler;
+
+import javax.inject.Inject;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the tasks which have to be run on the main thread (teleports, messages, kicks, ...) in batches.
+ * <p>
+ * Tasks can be submitted from any thread. A single task drains the queue on the main thread, but only
+ * for {@link PluginSettings#SYNC_TASK_BUDGET} milliseconds per tick; the remaining tasks are run in the
+ * next tick. A wave of hundreds of joining players therefore cannot make a single tick take seconds.
+ */
+public class SyncTaskDispatcher implements Runnable, SettingsDependent {
+
+    /** Label of the drain time of ticks which ran all queued tasks. */
+    static final String COMPLETED = "completed";
+    /** Label of the drain time of ticks which left tasks for the next tick. */
+    static final String CARRIED_OVER = "carried_over";
+
+    private final AuthMe plugin;
+    private final BukkitScheduler scheduler;
+    private final MetricsRegistry metricsRegistry;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger backlog = new AtomicInteger();
+    private final AtomicBoolean isScheduled = new AtomicBoolean();
+    private volatile long budgetNanos;
+
+    @Inject
+    SyncTaskDispatcher(AuthMe plugin, BukkitScheduler scheduler, NewSetting settings,
+                       MetricsRegistry metricsRegistry) {
+        this.plugin = plugin;
+        this.scheduler = scheduler;
+        this.metricsRegistry = metricsRegistry;
+        reload(settings);
+    }
+
+    /**
+     * Queues a task to be run on the main thread as soon as the tick budget allows.
+     *
+     * @param task the task to run
+     */
+    public void submit(Runnable task) {
+        tasks.add(task);
+        backlog.incrementAndGet();
+        scheduleDrain();
+    }
+
+    /**
+     * @return the number of tasks waiting to be run
+     */
+    public int getBacklog() {
+        return backlog.get();
+    }
+
+    /**
+     * Runs queued tasks until the queue is empty or the budget of the tick is used up. Runs on the main thread.
+     */
+    @Override
+    public void run() {
+        isScheduled.set(false);
+        Runnable task = tasks.poll();
+        if (task == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        long deadline = start + budgetNanos;
+        // Always run at least one task so that the queue advances even with a tiny budget
+        do {
+            backlog.decrementAndGet();
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                ConsoleLogger.logException("Error while running a task on the main thread:", e);
+            }
+        } while (System.nanoTime() < deadline && (task = tasks.poll()) != null);
+
+        if (tasks.isEmpty()) {
+            metricsRegistry.recordLatency(Metric.SYNC_TASK_DRAIN, COMPLETED, start);
+        } else {
+            metricsRegistry.recordLatency(Metric.SYNC_TASK_DRAIN, CARRIED_OVER, start);
+            scheduleDrain();
+        }
+    }
+
+    @Override
+    public void reload(NewSetting settings) {
+        budgetNanos = TimeUnit.MILLISECONDS.toNanos(settings.getProperty(PluginSettings.SYNC_TASK_BUDGET));
+    }
+
+    private void scheduleDrain() {
+        if (isScheduled.compareAndSet(false, true)) {
+            // Runs in the next tick, also if called from the main thread
+            scheduler.runTask(plugin, this);
+        }
+    }
+}
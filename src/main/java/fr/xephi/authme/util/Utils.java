@@ -17,10 +17,15 @@ public final class Utils {
 
     @Deprecated
     public static boolean isUnrestricted(Player player) {
+        return isUnrestricted(player.getName());
+    }
+
+    @Deprecated
+    public static boolean isUnrestricted(String name) {
         // TODO ljacqu 20160602: Checking for Settings.isAllowRestrictedIp is wrong! Nothing in the config suggests
         // that this setting has anything to do with unrestricted names
         return Settings.isAllowRestrictedIp
-            && Settings.getUnrestrictedName.contains(player.getName().toLowerCase());
+            && Settings.getUnrestrictedName.contains(name.toLowerCase());
     }
 
     /**
@@ -0,0 +1,108 @@
+package fr.xephi.authme.api;
+
+import fr.xephi.authme.cache.auth.PlayerAuth;
+import fr.xephi.authme.datasource.AsyncDataSource;
+import fr.xephi.authme.datasource.DataSource;
+import fr.xephi.authme.security.PasswordSecurity;
+import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.PluginSettings;
+import fr.xephi.authme.util.BukkitService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test for {@link AsyncAPI}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class AsyncAPITest {
+
+    private AsyncAPI asyncApi;
+    private AsyncDataSource asyncDataSource;
+
+    @Mock
+    private DataSource dataSource;
+    @Mock
+    private PasswordSecurity passwordSecurity;
+    @Mock
+    private BukkitService bukkitService;
+    @Mock
+    private NewSetting settings;
+
+    @Before
+    public void initApi() {
+        given(settings.getProperty(PluginSettings.PROCESS_THREADS)).willReturn(2);
+        asyncDataSource = new AsyncDataSource(dataSource, settings);
+        asyncApi = new AsyncAPI(asyncDataSource, passwordSecurity, bukkitService, settings);
+    }
+
+    @After
+    public void closeApi() {
+        asyncApi.close();
+        asyncDataSource.close();
+    }
+
+    @Test
+    public void shouldCheckIfPlayersAreRegisteredWithOneLookup() throws InterruptedException, ExecutionException {
+        // given
+        List<String> names = Arrays.asList("Bobby", "Alice");
+        PlayerAuth bobby = PlayerAuth.builder().name("bobby").build();
+        given(dataSource.getAuths(names)).willReturn(Collections.singletonMap("bobby", bobby));
+
+        // when
+        Map<String, Boolean> result = asyncApi.areRegistered(names).get();
+
+        // then
+        assertThat(result.get("Bobby"), equalTo(true));
+        assertThat(result.get("Alice"), equalTo(false));
+        verify(dataSource).getAuths(names);
+    }
+
+    @Test
+    public void shouldCheckPassword() throws InterruptedException, ExecutionException {
+        // given
+        given(passwordSecurity.comparePassword("secret", "Bobby")).willReturn(true);
+
+        // when
+        boolean result = asyncApi.checkPassword("Bobby", "secret").get();
+
+        // then
+        assertThat(result, equalTo(true));
+    }
+
+    @Test
+    public void shouldCheckIfPlayerIsRegistered() throws InterruptedException, ExecutionException {
+        // given
+        given(dataSource.isAuthAvailable("bobby")).willReturn(true);
+
+        // when
+        boolean result = asyncApi.isRegistered("Bobby").get();
+
+        // then
+        assertThat(result, equalTo(true));
+    }
+
+    @Test
+    public void shouldReturnInstance() {
+        // given / when
+        AsyncAPI instance = AsyncAPI.getInstance();
+
+        // then
+        assertThat(instance, sameInstance(asyncApi));
+    }
+}
@@ -0,0 +1,138 @@
+package fr.xephi.authme.cache.backup;
+
+import fr.xephi.authme.TestHelper;
+import fr.xephi.authme.cache.limbo.PlayerData;
+import fr.xephi.authme.util.BukkitService;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Test for {@link BinaryPlayerDataStore}.
+ */
+public class BinaryPlayerDataStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File file;
+    private BukkitService bukkitService;
+    private World world;
+
+    @BeforeClass
+    public static void initLogger() {
+        TestHelper.setupLogger();
+    }
+
+    @Before
+    public void setUpFileAndWorld() throws IOException {
+        file = new File(temporaryFolder.newFolder(), "playerdata.dat");
+        bukkitService = mock(BukkitService.class);
+        world = mock(World.class);
+        given(world.getName()).willReturn("world");
+        given(bukkitService.getWorld("world")).willReturn(world);
+    }
+
+    @Test
+    public void shouldReturnPendingDataBeforeFlush() throws IOException {
+        // given
+        BinaryPlayerDataStore store = new BinaryPlayerDataStore(file, bukkitService);
+
+        // when
+        store.write("abc", newPlayerData("admins"));
+
+        // then
+        assertThat(store.contains("abc"), equalTo(true));
+        assertThat(store.read("abc").getGroup(), equalTo("admins"));
+        assertThat(store.contains("other"), equalTo(false));
+        store.close();
+    }
+
+    @Test
+    public void shouldPersistDataAcrossRestarts() throws IOException {
+        // given
+        BinaryPlayerDataStore store = new BinaryPlayerDataStore(file, bukkitService);
+        store.write("abc", newPlayerData("players"));
+        store.write("def", newPlayerData("admins"));
+        store.write("abc", newPlayerData("vip"));
+        store.write("ghi", newPlayerData("players"));
+        store.flush();
+        store.remove("ghi");
+        store.close();
+
+        // when
+        BinaryPlayerDataStore reopenedStore = new BinaryPlayerDataStore(file, bukkitService);
+
+        // then
+        PlayerData data = reopenedStore.read("abc");
+        assertThat(data.getGroup(), equalTo("vip"));
+        assertThat(data.isOperator(), equalTo(true));
+        assertThat(data.getWalkSpeed(), equalTo(0.3f));
+        Location location = data.getLocation();
+        assertThat(location.getWorld(), equalTo(world));
+        assertThat(location.getX(), equalTo(12.5));
+        assertThat(location.getYaw(), equalTo(-90.25f));
+        assertThat(reopenedStore.read("def").getGroup(), equalTo("admins"));
+        assertThat(reopenedStore.contains("ghi"), equalTo(false));
+        assertThat(reopenedStore.read("ghi"), nullValue());
+        reopenedStore.close();
+    }
+
+    @Test
+    public void shouldDiscardIncompleteRecord() throws IOException {
+        // given
+        BinaryPlayerDataStore store = new BinaryPlayerDataStore(file, bukkitService);
+        store.write("abc", newPlayerData("players"));
+        store.flush();
+        store.write("def", newPlayerData("admins"));
+        store.close();
+        // Simulate a crash while writing the last record
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        // when
+        BinaryPlayerDataStore reopenedStore = new BinaryPlayerDataStore(file, bukkitService);
+
+        // then
+        assertThat(reopenedStore.read("abc").getGroup(), equalTo("players"));
+        assertThat(reopenedStore.contains("def"), equalTo(false));
+        reopenedStore.close();
+    }
+
+    @Test
+    public void shouldReportWhetherRecordsHaveBeenWritten() throws IOException {
+        // given
+        BinaryPlayerDataStore store = new BinaryPlayerDataStore(file, bukkitService);
+        store.write("abc", newPlayerData("players"));
+
+        // when
+        boolean firstResult = store.flush();
+        store.close();
+        store.write("def", newPlayerData("admins"));
+        boolean resultAfterClose = store.flush();
+
+        // then
+        assertThat(firstResult, equalTo(true));
+        assertThat(resultAfterClose, equalTo(false));
+    }
+
+    private PlayerData newPlayerData(String group) {
+        Location location = new Location(world, 12.5, 64.0, -3.75, -90.25f, 12.0f);
+        return new PlayerData(location, true, group, false, 0.3f, 0.1f);
+    }
+}
@@ -7,7 +7,9 @@ import fr.xephi.authme.permission.PermissionsManager;
 import fr.xephi.authme.runner.BeforeInjecting;
 import fr.xephi.authme.runner.DelayedInjectionRunner;
 import fr.xephi.authme.runner.InjectDelayed;
+import fr.xephi.authme.settings.NewSetting;
 import fr.xephi.authme.settings.SpawnLoader;
+import fr.xephi.authme.settings.properties.PluginSettings;
 import fr.xephi.authme.util.BukkitService;
 import fr.xephi.authme.util.StringUtils;
 import org.bukkit.Location;
@@ -52,6 +54,9 @@ public class PlayerDataStorageTest {
     @Mock
     private PermissionsManager permissionsManager;
 
+    @Mock
+    private NewSetting settings;
+
     @DataFolder
     private File dataFolder;
 
@@ -60,6 +65,7 @@ public class PlayerDataStorageTest {
 
     @BeforeInjecting
     public void copyTestFiles() throws IOException {
+        given(settings.getProperty(PluginSettings.PLAYER_DATA_STORAGE)).willReturn(PlayerDataStorageType.JSON);
         dataFolder = temporaryFolder.newFolder();
         File playerFolder = new File(dataFolder, StringUtils.makePath("playerdata", SAMPLE_UUID.toString()));
         if (!playerFolder.mkdirs()) {
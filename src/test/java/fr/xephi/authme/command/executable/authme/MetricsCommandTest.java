@@ -0,0 +1,55 @@
+package fr.xephi.authme.command.executable.authme;
+
+import fr.xephi.authme.ReflectionTestUtils;
+import fr.xephi.authme.metrics.Metric;
+import fr.xephi.authme.metrics.MetricsRegistry;
+import org.bukkit.command.CommandSender;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test for {@link MetricsCommand}.
+ */
+public class MetricsCommandTest {
+
+    @Test
+    public void shouldShowRecordedMetrics() {
+        // given
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.getHistogram(Metric.DATA_SOURCE, "getAuth").record(3000000L);
+        registry.increment(Metric.DATA_SOURCE_ERRORS, "saveAuth");
+        registry.registerGauge("authme_mail_queue_size", "Queued emails", new MetricsRegistry.Gauge() {
+            @Override
+            public double getValue() {
+                return 2;
+            }
+        });
+        MetricsCommand command = new MetricsCommand();
+        ReflectionTestUtils.setField(MetricsCommand.class, command, "metricsRegistry", registry);
+        CommandSender sender = mock(CommandSender.class);
+
+        // when
+        command.executeCommand(sender, Collections.<String>emptyList());
+
+        // then
+        ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+        verify(sender, atLeastOnce()).sendMessage(captor.capture());
+        List<String> messages = captor.getAllValues();
+        assertThat(messages, hasItem(containsString("getAuth")));
+        assertThat(messages, hasItem(containsString("saveAuth")));
+        assertThat(messages, hasItem(containsString("authme_mail_queue_size")));
+        // Nothing was recorded for hashing
+        assertThat(messages, not(hasItem(containsString(Metric.HASH_COMPUTE.getDescription()))));
+    }
+}
@@ -7,6 +7,7 @@ import org.junit.Test;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static fr.xephi.authme.AuthMeMatchers.equalToHash;
@@ -105,6 +106,21 @@ public abstract class AbstractDataSourceIntegrationTest {
         assertThat(userAuth.getPassword(), equalToHash("b28c32f624a4eb161d6adc9acb5bfc5b", "f750ba32"));
     }
 
+    @Test
+    public void shouldGetAuths() {
+        // given
+        DataSource dataSource = getDataSource();
+
+        // when
+        Map<String, PlayerAuth> auths = dataSource.getAuths(Arrays.asList("Bobby", "notInDB", "user"));
+
+        // then
+        assertThat(auths.keySet(), containsInAnyOrder("bobby", "user"));
+        assertThat(auths.get("bobby"), hasAuthBasicData("bobby", "Bobby", "your@email.com", "123.45.67.89"));
+        assertThat(auths.get("bobby").getPassword(), equalToHash("$SHA$11aa0706173d7272$dbba966"));
+        assertThat(auths.get("user"), hasAuthLocation(124.1, 76.3, -127.8, "nether"));
+    }
+
     @Test
     public void shouldCountAuthsByEmail() {
         // given
@@ -341,6 +357,25 @@ public abstract class AbstractDataSourceIntegrationTest {
         assertThat(dataSource.isAuthAvailable("bobby"), equalTo(true));
     }
 
+    @Test
+    public void shouldGetRecordsToPurgeInPages() {
+        // given
+        DataSource dataSource = getDataSource();
+        // 1453242857 -> user, 1449136800 -> bobby
+
+        // when
+        List<String> page1 = dataSource.getRecordsToPurge(1460000000, null, 1);
+        List<String> page2 = dataSource.getRecordsToPurge(1460000000, "bobby", 1);
+        List<String> page3 = dataSource.getRecordsToPurge(1460000000, "user", 1);
+        List<String> allRecords = dataSource.getRecordsToPurge(1460000000, null, 5);
+
+        // then
+        assertThat(page1, contains("bobby"));
+        assertThat(page2, contains("user"));
+        assertThat(page3, empty());
+        assertThat(allRecords, contains("bobby", "user"));
+    }
+
     @Test
     public void shouldPerformOperationsOnIsLoggedColumnSuccessfully() {
         DataSource dataSource = getDataSource();
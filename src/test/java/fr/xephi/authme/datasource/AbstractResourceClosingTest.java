@@ -219,7 +219,7 @@ public abstract class AbstractResourceClosingTest {
 
             Object element = PARAM_VALUES.get(genericType);
             Preconditions.checkNotNull(element, "No sample element for list of generic type " + genericType);
-            if (List.class == parameterizedType.getRawType()) {
+            if (List.class == parameterizedType.getRawType() || Collection.class == parameterizedType.getRawType()) {
                 return Arrays.asList(element, element, element);
             } else if (Set.class == parameterizedType.getRawType()) {
                 return new HashSet<>(Arrays.asList(element, element, element));
@@ -267,6 +267,7 @@ public abstract class AbstractResourceClosingTest {
         Connection connection = mock(Connection.class);
         try {
             given(connection.prepareStatement(anyString())).willAnswer(preparedStatementAnswer());
+            given(connection.prepareStatement(anyString(), anyInt())).willAnswer(preparedStatementAnswer());
             given(connection.createStatement()).willAnswer(preparedStatementAnswer());
             given(connection.createBlob()).willReturn(mock(Blob.class));
             return connection;
@@ -284,6 +285,7 @@ public abstract class AbstractResourceClosingTest {
                 closeables.add(pst);
                 given(pst.executeQuery()).willAnswer(resultSetAnswer());
                 given(pst.executeQuery(anyString())).willAnswer(resultSetAnswer());
+                given(pst.getGeneratedKeys()).willAnswer(resultSetAnswer());
                 return pst;
             }
         };
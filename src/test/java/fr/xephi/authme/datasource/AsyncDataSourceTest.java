@@ -0,0 +1,89 @@
+package fr.xephi.authme.datasource;
+
+import fr.xephi.authme.cache.auth.PlayerAuth;
+import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.DatabaseSettings;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test for {@link AsyncDataSource}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class AsyncDataSourceTest {
+
+    private AsyncDataSource asyncDataSource;
+
+    @Mock
+    private DataSource dataSource;
+    @Mock
+    private NewSetting settings;
+
+    @Before
+    public void initDataSource() {
+        given(settings.getProperty(DatabaseSettings.BACKEND)).willReturn(DataSourceType.MYSQL);
+        given(settings.getProperty(DatabaseSettings.MYSQL_POOL_SIZE)).willReturn(2);
+        asyncDataSource = new AsyncDataSource(dataSource, settings);
+    }
+
+    @After
+    public void closeDataSource() {
+        asyncDataSource.close();
+    }
+
+    @Test
+    public void shouldLoadAuth() throws InterruptedException, ExecutionException {
+        // given
+        PlayerAuth auth = PlayerAuth.builder().name("bobby").build();
+        given(dataSource.getAuth("bobby")).willReturn(auth);
+
+        // when
+        PlayerAuth result = asyncDataSource.getAuth("bobby").get();
+
+        // then
+        assertThat(result, sameInstance(auth));
+    }
+
+    @Test
+    public void shouldUpdateRealName() throws InterruptedException, ExecutionException {
+        // given
+        given(dataSource.updateRealName("bobby", "Bobby")).willReturn(true);
+
+        // when
+        boolean result = asyncDataSource.updateRealName("bobby", "Bobby").get();
+
+        // then
+        assertThat(result, equalTo(true));
+        verify(dataSource).updateRealName("bobby", "Bobby");
+    }
+
+    @Test
+    public void shouldReturnFailedFutureAfterClose() throws InterruptedException {
+        // given
+        asyncDataSource.close();
+
+        // when
+        try {
+            asyncDataSource.isAuthAvailable("bobby").get();
+            fail("Expected exception");
+        } catch (ExecutionException e) {
+            // then
+            assertThat(e.getCause(), instanceOf(RejectedExecutionException.class));
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package fr.xephi.authme.datasource;
+
+import fr.xephi.authme.cache.auth.PlayerAuth;
+import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.DatabaseSettings;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test for {@link CacheDataSource}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class CacheDataSourceTest {
+
+    private CacheDataSource cacheDataSource;
+
+    @Mock
+    private DataSource source;
+    @Mock
+    private NewSetting settings;
+
+    @Before
+    public void initDataSource() {
+        given(settings.getProperty(DatabaseSettings.CACHE_MAXIMUM_WEIGHT)).willReturn(1000);
+        given(settings.getProperty(DatabaseSettings.CACHE_UNREGISTERED_TTL)).willReturn(60);
+        given(settings.getProperty(DatabaseSettings.CACHE_QUIT_RETENTION)).willReturn(10);
+        cacheDataSource = new CacheDataSource(source, settings);
+    }
+
+    @Test
+    public void shouldApplyWritesWithoutReloading() {
+        // given
+        given(source.getAuth("bobby")).willReturn(newAuth("bobby", "old@example.org"));
+        given(source.updateEmail(any(PlayerAuth.class))).willReturn(true);
+        PlayerAuth loadedAuth = cacheDataSource.getAuth("Bobby");
+
+        // when
+        boolean result = cacheDataSource.updateEmail(newAuth("bobby", "new@example.org"));
+
+        // then
+        assertThat(result, equalTo(true));
+        assertThat(cacheDataSource.getAuth("bobby").getEmail(), equalTo("new@example.org"));
+        // The previously returned instance is not modified
+        assertThat(loadedAuth.getEmail(), equalTo("old@example.org"));
+        verify(source, times(1)).getAuth("bobby");
+    }
+
+    @Test
+    public void shouldReloadValueLoadedDuringWrite() {
+        // given
+        given(source.updateEmail(any(PlayerAuth.class))).willReturn(true);
+        given(source.getAuth("bobby")).willAnswer(new Answer<PlayerAuth>() {
+            private int calls;
+
+            @Override
+            public PlayerAuth answer(InvocationOnMock invocation) {
+                if (++calls == 1) {
+                    // Another thread writes the player while the row is being read
+                    cacheDataSource.updateEmail(newAuth("bobby", "new@example.org"));
+                    return newAuth("bobby", "old@example.org");
+                }
+                return newAuth("bobby", "new@example.org");
+            }
+        });
+
+        // when
+        PlayerAuth auth = cacheDataSource.getAuth("bobby");
+
+        // then
+        assertThat(auth.getEmail(), equalTo("new@example.org"));
+        verify(source, times(2)).getAuth("bobby");
+    }
+
+    @Test
+    public void shouldCacheRemovedPlayerAsUnregistered() {
+        // given
+        given(source.getAuth("bobby")).willReturn(newAuth("bobby", "bobby@example.org"));
+        given(source.removeAuth("bobby")).willReturn(true);
+        cacheDataSource.getAuth("bobby");
+
+        // when
+        cacheDataSource.removeAuth("Bobby");
+
+        // then
+        assertThat(cacheDataSource.isAuthAvailable("bobby"), equalTo(false));
+        verify(source, times(1)).getAuth("bobby");
+    }
+
+    @Test
+    public void shouldLoadMissingPlayersInOneCall() {
+        // given
+        given(source.getAuth("bobby")).willReturn(newAuth("bobby", "bobby@example.org"));
+        cacheDataSource.getAuth("bobby");
+        given(source.getAuths(Collections.singleton("alice")))
+            .willReturn(Collections.singletonMap("alice", newAuth("alice", "alice@example.org")));
+
+        // when
+        Map<String, PlayerAuth> auths = cacheDataSource.getAuths(Arrays.asList("Bobby", "Alice"));
+
+        // then
+        assertThat(auths.keySet(), containsInAnyOrder("bobby", "alice"));
+        verify(source).getAuths(Collections.singleton("alice"));
+        // Alice is now cached
+        assertThat(cacheDataSource.getAuth("alice").getEmail(), equalTo("alice@example.org"));
+        verify(source, times(0)).getAuth("alice");
+    }
+
+    @Test
+    public void shouldReloadUnregisteredNameAfterTtl() {
+        // given
+        given(settings.getProperty(DatabaseSettings.CACHE_UNREGISTERED_TTL)).willReturn(0);
+        cacheDataSource = new CacheDataSource(source, settings);
+        given(source.getAuth("bobby")).willReturn(null);
+        cacheDataSource.isAuthAvailable("bobby");
+        // Registered on another server without going through this cache
+        given(source.getAuth("bobby")).willReturn(newAuth("bobby", "bobby@example.org"));
+
+        // when
+        boolean result = cacheDataSource.isAuthAvailable("bobby");
+
+        // then
+        assertThat(result, equalTo(true));
+    }
+
+    @Test
+    public void shouldCountLookupsOfUnregisteredNamesAsHits() {
+        // given
+        cacheDataSource.isAuthAvailable("bobby");
+
+        // when
+        cacheDataSource.isAuthAvailable("bobby");
+        cacheDataSource.getAuths(Collections.singletonList("bobby"));
+
+        // then
+        assertThat(cacheDataSource.getCacheStats().hitCount(), equalTo(2L));
+        assertThat(cacheDataSource.getCacheStats().missCount(), equalTo(1L));
+        verify(source, times(1)).getAuth("bobby");
+    }
+
+    @Test
+    public void shouldBoundCacheByWeight() {
+        // given
+        given(settings.getProperty(DatabaseSettings.CACHE_MAXIMUM_WEIGHT)).willReturn(100);
+        cacheDataSource = new CacheDataSource(source, settings);
+
+        // when
+        for (int i = 0; i < 500; ++i) {
+            cacheDataSource.isAuthAvailable("bot" + i);
+        }
+
+        // then
+        assertThat(cacheDataSource.getCacheSize() <= 100, equalTo(true));
+        assertThat(cacheDataSource.getCacheStats().evictionCount() >= 400, equalTo(true));
+        assertThat(cacheDataSource.getCachedUnregisteredCount(), equalTo((int) cacheDataSource.getCacheSize()));
+    }
+
+    @Test
+    public void shouldNotEvictRegisteredPlayersForUnknownNames() {
+        // given
+        given(settings.getProperty(DatabaseSettings.CACHE_MAXIMUM_WEIGHT)).willReturn(100);
+        cacheDataSource = new CacheDataSource(source, settings);
+        for (int i = 0; i < 5; ++i) {
+            given(source.getAuth("player" + i)).willReturn(newAuth("player" + i, "player" + i + "@example.org"));
+            cacheDataSource.getAuth("player" + i);
+        }
+
+        // when
+        for (int i = 0; i < 500; ++i) {
+            cacheDataSource.isAuthAvailable("bot" + i);
+        }
+
+        // then
+        for (int i = 0; i < 5; ++i) {
+            assertThat(cacheDataSource.isAuthAvailable("player" + i), equalTo(true));
+            verify(source, times(1)).getAuth("player" + i);
+        }
+        assertThat(cacheDataSource.getCachedUnregisteredCount() <= 100, equalTo(true));
+    }
+
+    @Test
+    public void shouldReuseDataOfRejoiningPlayer() {
+        // given
+        given(source.getAuth("bobby")).willReturn(
+            PlayerAuth.builder().name("bobby").email("bobby@example.org").lastLogin(1449136800L).build());
+        PlayerAuth cachedAuth = cacheDataSource.getAuth("bobby");
+        cacheDataSource.retainQuitPlayer("Bobby");
+
+        // when
+        PlayerAuth auth = cacheDataSource.getAuth("bobby");
+
+        // then
+        assertThat(auth, sameInstance(cachedAuth));
+        verify(source, times(1)).getAuth("bobby");
+    }
+
+    @Test
+    public void shouldReloadRejoiningPlayerIfWritesOfOtherServersAreNotTracked() {
+        // given
+        given(source.getType()).willReturn(DataSourceType.MYSQL);
+        cacheDataSource = new CacheDataSource(source, settings);
+        given(source.getAuth("bobby")).willReturn(newAuth("bobby", "bobby@example.org"));
+        cacheDataSource.getAuth("bobby");
+        cacheDataSource.retainQuitPlayer("bobby");
+        given(source.getAuth("bobby")).willReturn(newAuth("bobby", "new@example.org"));
+
+        // when
+        PlayerAuth auth = cacheDataSource.getAuth("bobby");
+
+        // then
+        assertThat(auth.getEmail(), equalTo("new@example.org"));
+        verify(source, times(2)).getAuth("bobby");
+    }
+
+    @Test
+    public void shouldNotUseOldPasswordOfRejoiningPlayerAfterReset() {
+        // given
+        given(source.getType()).willReturn(DataSourceType.MYSQL);
+        cacheDataSource = new CacheDataSource(source, settings);
+        cacheDataSource.trackExternalWrites();
+        given(source.getAuth("bobby")).willReturn(
+            PlayerAuth.builder().name("bobby").password("old-hash", null).lastLogin(1449136800L).build());
+        cacheDataSource.getAuth("bobby");
+        cacheDataSource.retainQuitPlayer("bobby");
+        // Password reset by an admin on another server, read from the change log
+        given(source.getAuth("bobby")).willReturn(
+            PlayerAuth.builder().name("bobby").password("new-hash", null).lastLogin(1449136800L).build());
+        cacheDataSource.invalidateCache("bobby");
+
+        // when
+        PlayerAuth auth = cacheDataSource.getAuth("bobby");
+
+        // then
+        assertThat(auth.getPassword().getHash(), equalTo("new-hash"));
+    }
+
+    private static PlayerAuth newAuth(String name, String email) {
+        return PlayerAuth.builder().name(name).email(email).build();
+    }
+}
@@ -0,0 +1,107 @@
+package fr.xephi.authme.datasource;
+
+import fr.xephi.authme.TestHelper;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test for {@link ChangeLogPoller}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ChangeLogPollerTest {
+
+    @Mock
+    private MySQL mySql;
+    @Mock
+    private CacheDataSource cacheDataSource;
+
+    @BeforeClass
+    public static void initLogger() {
+        TestHelper.setupLogger();
+    }
+
+    @Test
+    public void shouldInvalidatePlayersChangedByOtherServers() throws SQLException {
+        // given
+        given(mySql.getLatestChangeId()).willReturn(40L);
+        ChangeLogPoller poller = new ChangeLogPoller(mySql, cacheDataSource);
+        given(mySql.getChanges(40L, 1000)).willReturn(Arrays.asList(
+            new MySQL.Change(41L, "bobby", false), new MySQL.Change(42L, "alice", true)));
+
+        // when
+        poller.run();
+
+        // then
+        verify(cacheDataSource).invalidateCache("bobby");
+        verify(mySql).markWritten("bobby");
+        verify(cacheDataSource, never()).invalidateCache("alice");
+        verify(mySql, never()).markWritten("alice");
+        verify(mySql).deleteChanges(anyLong());
+    }
+
+    @Test
+    public void shouldContinueAfterLastReadChange() throws SQLException {
+        // given
+        given(mySql.getLatestChangeId()).willReturn(40L);
+        ChangeLogPoller poller = new ChangeLogPoller(mySql, cacheDataSource);
+        given(mySql.getChanges(40L, 1000)).willReturn(Collections.singletonList(new MySQL.Change(41L, "bobby", false)));
+        given(mySql.getChanges(41L, 1000)).willReturn(Collections.<MySQL.Change>emptyList());
+        poller.run();
+
+        // when
+        poller.run();
+
+        // then
+        verify(mySql).getChanges(41L, 1000);
+    }
+
+    @Test
+    public void shouldReadChangeCommittedAfterHigherId() throws SQLException {
+        // given
+        given(mySql.getLatestChangeId()).willReturn(40L);
+        ChangeLogPoller poller = new ChangeLogPoller(mySql, cacheDataSource);
+        // The transaction with change 41 commits after the one with change 42
+        given(mySql.getChanges(40L, 1000)).willReturn(
+            Collections.singletonList(new MySQL.Change(42L, "bobby", false)),
+            Arrays.asList(new MySQL.Change(41L, "alice", false), new MySQL.Change(42L, "bobby", false)));
+        given(mySql.getChanges(42L, 1000)).willReturn(Collections.<MySQL.Change>emptyList());
+        poller.run();
+
+        // when
+        poller.run();
+        poller.run();
+
+        // then
+        verify(cacheDataSource).invalidateCache("alice");
+        verify(cacheDataSource).invalidateCache("bobby");
+        verify(mySql, times(2)).getChanges(40L, 1000);
+        verify(mySql).getChanges(42L, 1000);
+    }
+
+    @Test
+    public void shouldHandleReadError() throws SQLException {
+        // given
+        ChangeLogPoller poller = new ChangeLogPoller(mySql, cacheDataSource);
+        given(mySql.getChanges(anyLong(), anyInt())).willThrow(new SQLException("Connection lost"));
+
+        // when
+        poller.run();
+
+        // then
+        verify(cacheDataSource, never()).invalidateCache("bobby");
+    }
+}
@@ -0,0 +1,221 @@
+package fr.xephi.authme.datasource;
+
+import fr.xephi.authme.TestHelper;
+import fr.xephi.authme.cache.auth.PlayerAuth;
+import fr.xephi.authme.security.crypts.HashedPassword;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static fr.xephi.authme.AuthMeMatchers.equalToHash;
+import static fr.xephi.authme.AuthMeMatchers.hasAuthBasicData;
+import static fr.xephi.authme.AuthMeMatchers.hasAuthLocation;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Integration test for {@link EmbeddedDataSource}.
+ */
+public class EmbeddedDataSourceIntegrationTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File journal;
+    private EmbeddedDataSource dataSource;
+
+    @BeforeClass
+    public static void initLogger() {
+        TestHelper.setupLogger();
+    }
+
+    @Before
+    public void createJournal() throws IOException {
+        journal = new File(temporaryFolder.getRoot(), "authme.journal");
+        dataSource = new EmbeddedDataSource(journal);
+        dataSource.saveAuth(PlayerAuth.builder().name("bobby").realName("Bobby").password("$SHA$11aa0706173d7272$dbba966", null)
+            .ip("123.45.67.89").email("your@email.com").lastLogin(1449136800L).locX(1.05).locY(2.1).locZ(4.2)
+            .locWorld("world").build());
+        dataSource.saveAuth(PlayerAuth.builder().name("user").realName("user").password("b28c32f624a4eb161d6adc9acb5bfc5b", "f750ba32")
+            .ip("34.56.78.90").email("user@example.org").lastLogin(1453242857L).locX(124.1).locY(76.3).locZ(-127.8)
+            .locWorld("nether").build());
+    }
+
+    @After
+    public void closeJournal() {
+        dataSource.close();
+    }
+
+    @Test
+    public void shouldGetAuth() {
+        // given / when
+        PlayerAuth bobby = dataSource.getAuth("Bobby");
+        PlayerAuth chris = dataSource.getAuth("chris");
+
+        // then
+        assertThat(bobby, hasAuthBasicData("bobby", "Bobby", "your@email.com", "123.45.67.89"));
+        assertThat(bobby, hasAuthLocation(1.05, 2.1, 4.2, "world"));
+        assertThat(bobby.getLastLogin(), equalTo(1449136800L));
+        assertThat(chris, nullValue());
+        assertThat(dataSource.getPassword("user"), equalToHash("b28c32f624a4eb161d6adc9acb5bfc5b", "f750ba32"));
+        assertThat(dataSource.getAccountsRegistered(), equalTo(2));
+    }
+
+    @Test
+    public void shouldNotSaveExistingPlayerAgain() {
+        // given / when
+        boolean result = dataSource.saveAuth(PlayerAuth.builder().name("Bobby").build());
+
+        // then
+        assertThat(result, equalTo(false));
+        assertThat(dataSource.getAuth("bobby").getEmail(), equalTo("your@email.com"));
+    }
+
+    @Test
+    public void shouldKeepChangesAfterReopening() throws IOException {
+        // given
+        dataSource.updateEmail(PlayerAuth.builder().name("bobby").email("bobby@example.org").build());
+        dataSource.updatePassword("user", new HashedPassword("new-hash"));
+        dataSource.setLogged("user");
+        dataSource.removeAuth("bobby");
+        dataSource.saveAuth(PlayerAuth.builder().name("chris").email("chris@example.org").build());
+        dataSource.close();
+
+        // when
+        dataSource = new EmbeddedDataSource(journal);
+
+        // then
+        assertThat(dataSource.isAuthAvailable("bobby"), equalTo(false));
+        assertThat(dataSource.getPassword("user"), equalToHash("new-hash"));
+        assertThat(dataSource.isLogged("user"), equalTo(true));
+        assertThat(dataSource.getAuth("chris").getEmail(), equalTo("chris@example.org"));
+        assertThat(dataSource.getAccountsRegistered(), equalTo(2));
+    }
+
+    @Test
+    public void shouldDiscardIncompleteRecordAfterCrash() throws IOException {
+        // given
+        dataSource.close();
+        long validLength = journal.length();
+        // A record whose length says it has 100 bytes, of which only 3 were written
+        try (FileOutputStream out = new FileOutputStream(journal, true)) {
+            out.write(new byte[]{0, 0, 0, 100, 1, 2, 3, 4, 1, 2, 3});
+        }
+
+        // when
+        dataSource = new EmbeddedDataSource(journal);
+
+        // then
+        assertThat(journal.length(), equalTo(validLength));
+        assertThat(dataSource.getAccountsRegistered(), equalTo(2));
+        assertThat(dataSource.saveAuth(PlayerAuth.builder().name("chris").build()), equalTo(true));
+        assertThat(dataSource.getAuth("user").getIp(), equalTo("34.56.78.90"));
+    }
+
+    @Test
+    public void shouldNotOpenJournalCorruptedBeforeLastRecord() throws IOException {
+        // given
+        dataSource.close();
+        byte[] content = Files.readAllBytes(journal.toPath());
+        // Change a byte of the first record, which is followed by the record of "user"
+        content[8 + 8 + 3] ^= 0xFF;
+        Files.write(journal.toPath(), content);
+
+        // when
+        try {
+            new EmbeddedDataSource(journal);
+            fail("Expected exception");
+        } catch (IOException e) {
+            // then
+            assertThat(e.getMessage(), containsString("corrupted"));
+        }
+        assertThat(Files.readAllBytes(journal.toPath()), equalTo(content));
+    }
+
+    @Test
+    public void shouldCompactJournal() throws IOException {
+        // given
+        for (int i = 0; i < 100; ++i) {
+            dataSource.updateEmail(PlayerAuth.builder().name("bobby").email("bobby" + i + "@example.org").build());
+        }
+        long sizeBeforeCompaction = journal.length();
+
+        // when
+        dataSource.compact();
+
+        // then
+        assertThat(journal.length(), lessThan(sizeBeforeCompaction));
+        assertThat(dataSource.getAuth("bobby").getEmail(), equalTo("bobby99@example.org"));
+        dataSource.updateEmail(PlayerAuth.builder().name("user").email("user@example.com").build());
+        dataSource.close();
+        dataSource = new EmbeddedDataSource(journal);
+        assertThat(dataSource.getAuth("bobby").getEmail(), equalTo("bobby99@example.org"));
+        assertThat(dataSource.getAuth("user").getEmail(), equalTo("user@example.com"));
+    }
+
+    @Test
+    public void shouldCommitConcurrentWrites() throws Exception {
+        // given
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 200; ++i) {
+            final String name = "player" + i;
+            results.add(executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return dataSource.saveAuth(PlayerAuth.builder().name(name).build());
+                }
+            }));
+        }
+
+        // when
+        for (Future<Boolean> result : results) {
+            assertThat(result.get(), equalTo(true));
+        }
+        executor.shutdown();
+        dataSource.close();
+        dataSource = new EmbeddedDataSource(journal);
+
+        // then
+        assertThat(dataSource.getAccountsRegistered(), equalTo(202));
+    }
+
+    @Test
+    public void shouldFindAndPurgeRecords() {
+        // given / when
+        List<String> byIp = dataSource.getAllAuthsByIp("123.45.67.89");
+        int byEmail = dataSource.countAuthsByEmail("USER@example.org");
+        List<String> toPurge = dataSource.getRecordsToPurge(1453242858L, "bobby", 10);
+        dataSource.purgeRecords(new HashSet<>(Arrays.asList("bobby", "doesnotexist")));
+
+        // then
+        assertThat(byIp, contains("bobby"));
+        assertThat(byEmail, equalTo(1));
+        assertThat(toPurge, contains("user"));
+        assertThat(dataSource.getRecordsToPurge(1453242858L), containsInAnyOrder("user"));
+        assertThat(dataSource.getAllAuths(), hasSize(1));
+    }
+}
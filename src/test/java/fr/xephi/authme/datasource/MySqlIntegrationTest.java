@@ -2,13 +2,19 @@ package fr.xephi.authme.datasource;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.pool.HikariPool.PoolInitializationException;
 import fr.xephi.authme.TestHelper;
+import fr.xephi.authme.cache.auth.PlayerAuth;
+import fr.xephi.authme.security.HashAlgorithm;
+import fr.xephi.authme.security.crypts.HashedPassword;
 import fr.xephi.authme.settings.NewSetting;
 import fr.xephi.authme.settings.domain.Property;
 import fr.xephi.authme.settings.properties.DatabaseSettings;
+import fr.xephi.authme.settings.properties.SecuritySettings;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.BeforeClass;
+import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
@@ -16,11 +22,18 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -88,6 +101,90 @@ public class MySqlIntegrationTest extends AbstractDataSourceIntegrationTest {
         return new MySQL(settings, hikariSource);
     }
 
+    @Test
+    public void shouldReadFromPrimaryIfReplicasCannotBeReached() throws SQLException {
+        // given
+        HikariDataSource replicas = mock(HikariDataSource.class);
+        given(replicas.getConnection()).willThrow(new PoolInitializationException(new SQLException("Refused")));
+        MySQL dataSource = new MySQL(settings, hikariSource, replicas);
+        long start = System.currentTimeMillis();
+
+        // when
+        boolean isBobbyRegistered = dataSource.isAuthAvailable("bobby");
+        boolean isUserRegistered = dataSource.isAuthAvailable("user");
+
+        // then
+        assertThat(isBobbyRegistered, equalTo(true));
+        assertThat(isUserRegistered, equalTo(true));
+        assertThat(dataSource.getReplicaRetryTime(), greaterThan(start));
+        // The second read went to the primary directly
+        verify(replicas, times(1)).getConnection();
+    }
+
+    @Test
+    public void shouldReadFromPrimaryIfReplicaLagsBehind() throws SQLException {
+        // given
+        ResultSet slaveStatus = mock(ResultSet.class);
+        given(slaveStatus.next()).willReturn(true);
+        given(slaveStatus.getLong("Seconds_Behind_Master")).willReturn(60L);
+        Statement statement = mock(Statement.class);
+        given(statement.executeQuery("SHOW SLAVE STATUS")).willReturn(slaveStatus);
+        Connection replicaConnection = mock(Connection.class);
+        given(replicaConnection.createStatement()).willReturn(statement);
+        HikariDataSource replicas = mock(HikariDataSource.class);
+        given(replicas.getConnection()).willReturn(replicaConnection);
+        MySQL dataSource = new MySQL(settings, hikariSource, replicas);
+        long start = System.currentTimeMillis();
+
+        // when
+        boolean isBobbyRegistered = dataSource.isAuthAvailable("bobby");
+
+        // then
+        assertThat(isBobbyRegistered, equalTo(true));
+        assertThat(dataSource.getReplicaRetryTime(), greaterThan(start));
+        verify(replicaConnection).close();
+    }
+
+    @Test
+    public void shouldRollBackRegistrationIfForumTableCannotBeWritten() {
+        // given
+        // There is no xf_user_authenticate table in the test database
+        MySQL dataSource = createDataSourceWithHash(HashAlgorithm.XFBCRYPT);
+        PlayerAuth auth = PlayerAuth.builder().name("newplayer").realName("NewPlayer")
+            .password("$2y$10$hash", null).build();
+
+        // when
+        boolean result = dataSource.saveAuth(auth);
+
+        // then
+        assertThat(result, equalTo(false));
+        assertThat(dataSource.isAuthAvailable("newplayer"), equalTo(false));
+    }
+
+    @Test
+    public void shouldRollBackPasswordChangeIfForumTableCannotBeWritten() {
+        // given
+        MySQL dataSource = createDataSourceWithHash(HashAlgorithm.XFBCRYPT);
+        HashedPassword oldPassword = dataSource.getPassword("bobby");
+
+        // when
+        boolean result = dataSource.updatePassword("bobby", new HashedPassword("$2y$10$new", null));
+
+        // then
+        assertThat(result, equalTo(false));
+        assertThat(dataSource.getPassword("bobby").getHash(), equalTo(oldPassword.getHash()));
+    }
+
+    private MySQL createDataSourceWithHash(HashAlgorithm hashAlgorithm) {
+        set(SecuritySettings.PASSWORD_HASH, hashAlgorithm);
+        try {
+            return new MySQL(settings, hikariSource);
+        } finally {
+            // The settings mock is shared by all tests
+            set(SecuritySettings.PASSWORD_HASH, SecuritySettings.PASSWORD_HASH.getDefaultValue());
+        }
+    }
+
     private static <T> void set(Property<T> property, T value) {
         when(settings.getProperty(property)).thenReturn(value);
     }
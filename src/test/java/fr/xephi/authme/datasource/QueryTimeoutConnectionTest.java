@@ -0,0 +1,56 @@
+package fr.xephi.authme.datasource;
+
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test for {@link QueryTimeoutConnection}.
+ */
+public class QueryTimeoutConnectionTest {
+
+    @Test
+    public void shouldSetTimeoutOnStatements() throws SQLException {
+        // given
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        Statement statement = mock(Statement.class);
+        given(connection.prepareStatement("SELECT 1")).willReturn(preparedStatement);
+        given(connection.createStatement()).willReturn(statement);
+        Connection wrapped = QueryTimeoutConnection.wrap(connection, 7);
+
+        // when
+        PreparedStatement result1 = wrapped.prepareStatement("SELECT 1");
+        Statement result2 = wrapped.createStatement();
+        wrapped.close();
+
+        // then
+        assertThat(result1, sameInstance(preparedStatement));
+        assertThat(result2, sameInstance(statement));
+        verify(preparedStatement).setQueryTimeout(7);
+        verify(statement).setQueryTimeout(7);
+        verify(connection).close();
+    }
+
+    @Test(expected = SQLException.class)
+    public void shouldPropagateException() throws SQLException {
+        // given
+        Connection connection = mock(Connection.class);
+        given(connection.prepareStatement("SELECT 1")).willThrow(new SQLException("Connection lost"));
+        Connection wrapped = QueryTimeoutConnection.wrap(connection, 7);
+
+        // when
+        wrapped.prepareStatement("SELECT 1");
+
+        // then - expect exception
+    }
+}
@@ -188,6 +188,22 @@ public class AuthMeServiceInitializerTest {
         assertThat(testClass.getBetaManager(), not(nullValue()));
     }
 
+    @Test
+    public void shouldReuseInjectionForNewInstances() {
+        // given
+        initializer.provide(Size.class, 15123);
+
+        // when
+        PostConstructTestClass first = initializer.newInstance(PostConstructTestClass.class);
+        PostConstructTestClass second = initializer.newInstance(PostConstructTestClass.class);
+
+        // then
+        assertThat(first, not(sameInstance(second)));
+        assertThat(first.wasPostConstructCalled(), equalTo(true));
+        assertThat(second.wasPostConstructCalled(), equalTo(true));
+        assertThat(second.getBetaManager(), sameInstance(first.getBetaManager()));
+    }
+
     @Test
     public void shouldThrowForInvalidPostConstructMethod() {
         // given / when / then
@@ -1,7 +1,9 @@
 package fr.xephi.authme.listener;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
 import fr.xephi.authme.cache.auth.PlayerCache;
-import fr.xephi.authme.datasource.DataSource;
+import fr.xephi.authme.datasource.AsyncDataSource;
 import fr.xephi.authme.hooks.PluginHooks;
 import fr.xephi.authme.runner.BeforeInjecting;
 import fr.xephi.authme.runner.InjectDelayed;
@@ -24,6 +26,7 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertThat;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 
@@ -40,7 +43,7 @@ public class ListenerServiceTest {
     private NewSetting settings;
 
     @Mock
-    private DataSource dataSource;
+    private AsyncDataSource asyncDataSource;
 
     @Mock
     private PluginHooks pluginHooks;
@@ -96,7 +99,7 @@ public class ListenerServiceTest {
         // then
         assertThat(result, equalTo(false));
         verify(playerCache).isAuthenticated(playerName);
-        verifyZeroInteractions(dataSource);
+        verifyZeroInteractions(asyncDataSource);
     }
 
     @Test
@@ -115,7 +118,7 @@ public class ListenerServiceTest {
         assertThat(result, equalTo(true));
         verify(playerCache).isAuthenticated(playerName);
         // makes sure the setting is checked first = avoid unnecessary DB operation
-        verifyZeroInteractions(dataSource);
+        verifyZeroInteractions(asyncDataSource);
     }
 
     @Test
@@ -127,6 +130,7 @@ public class ListenerServiceTest {
         given(settings.getProperty(RegistrationSettings.FORCE)).willReturn(false);
         EntityEvent event = mock(EntityEvent.class);
         given(event.getEntity()).willReturn(player);
+        given(asyncDataSource.isAuthAvailable("myplayer1")).willReturn(Futures.immediateFuture(false));
         listenerService.reload(settings);
 
         // when
@@ -135,7 +139,51 @@ public class ListenerServiceTest {
         // then
         assertThat(result, equalTo(false));
         verify(playerCache).isAuthenticated(playerName);
-        verify(dataSource).isAuthAvailable(playerName);
+        verify(asyncDataSource).isAuthAvailable("myplayer1");
+    }
+
+    @Test
+    public void shouldDenyPlayerWhileRegistrationIsBeingLookedUp() {
+        // given
+        String playerName = "myPlayer1";
+        Player player = mockPlayerWithName(playerName);
+        given(settings.getProperty(RegistrationSettings.FORCE)).willReturn(false);
+        SettableFuture<Boolean> lookup = SettableFuture.create();
+        given(asyncDataSource.isAuthAvailable("myplayer1")).willReturn(lookup);
+        listenerService.reload(settings);
+
+        // when
+        boolean resultWhilePending = listenerService.shouldCancelEvent(player);
+        lookup.set(false);
+        boolean resultAfterLookup = listenerService.shouldCancelEvent(player);
+
+        // then
+        assertThat(resultWhilePending, equalTo(true));
+        assertThat(resultAfterLookup, equalTo(false));
+        verify(asyncDataSource).isAuthAvailable("myplayer1");
+    }
+
+    @Test
+    public void shouldKeepRegistrationStatusUntilInvalidated() {
+        // given
+        String playerName = "myPlayer1";
+        Player player = mockPlayerWithName(playerName);
+        given(settings.getProperty(RegistrationSettings.FORCE)).willReturn(false);
+        given(asyncDataSource.isAuthAvailable("myplayer1"))
+            .willReturn(Futures.immediateFuture(false), Futures.immediateFuture(true));
+        listenerService.reload(settings);
+
+        // when
+        boolean firstResult = listenerService.shouldCancelEvent(player);
+        boolean secondResult = listenerService.shouldCancelEvent(player);
+        listenerService.invalidateRegistration(playerName);
+        boolean resultAfterInvalidation = listenerService.shouldCancelEvent(player);
+
+        // then
+        assertThat(firstResult, equalTo(false));
+        assertThat(secondResult, equalTo(false));
+        assertThat(resultAfterInvalidation, equalTo(true));
+        verify(asyncDataSource, times(2)).isAuthAvailable("myplayer1");
     }
 
     @Test
@@ -151,7 +199,7 @@ public class ListenerServiceTest {
 
         // then
         assertThat(result, equalTo(false));
-        verifyZeroInteractions(dataSource);
+        verifyZeroInteractions(asyncDataSource);
     }
 
     @Test
@@ -186,7 +234,7 @@ public class ListenerServiceTest {
         // then
         assertThat(result, equalTo(false));
         verify(playerCache).isAuthenticated(playerName);
-        verifyZeroInteractions(dataSource);
+        verifyZeroInteractions(asyncDataSource);
     }
 
     @Test
@@ -214,7 +262,7 @@ public class ListenerServiceTest {
         // then
         assertThat(result, equalTo(true));
         verify(playerCache).isAuthenticated(playerName);
-        verifyZeroInteractions(dataSource);
+        verifyZeroInteractions(asyncDataSource);
         verify(pluginHooks).isNpc(player);
     }
 
@@ -3,7 +3,7 @@ package fr.xephi.authme.listener;
 import fr.xephi.authme.AntiBot;
 import fr.xephi.authme.TestHelper;
 import fr.xephi.authme.cache.auth.PlayerAuth;
-import fr.xephi.authme.datasource.DataSource;
+import fr.xephi.authme.datasource.AsyncDataSource;
 import fr.xephi.authme.output.MessageKey;
 import fr.xephi.authme.output.Messages;
 import fr.xephi.authme.permission.PermissionsManager;
@@ -55,7 +55,7 @@ public class OnJoinVerifierTest {
     @Mock
     private NewSetting settings;
     @Mock
-    private DataSource dataSource;
+    private AsyncDataSource asyncDataSource;
     @Mock
     private Messages messages;
     @Mock
@@ -91,7 +91,7 @@ public class OnJoinVerifierTest {
         verify(event).getResult();
         verifyNoMoreInteractions(event);
         verifyZeroInteractions(bukkitService);
-        verifyZeroInteractions(dataSource);
+        verifyZeroInteractions(asyncDataSource);
         verifyZeroInteractions(permissionsManager);
     }
 
@@ -113,7 +113,7 @@ public class OnJoinVerifierTest {
         assertThat(event.getResult(), equalTo(PlayerLoginEvent.Result.KICK_FULL));
         assertThat(event.getKickMessage(), equalTo(serverFullMessage));
         verifyZeroInteractions(bukkitService);
-        verifyZeroInteractions(dataSource);
+        verifyZeroInteractions(asyncDataSource);
     }
 
     @Test
@@ -262,7 +262,7 @@ public class OnJoinVerifierTest {
         onJoinVerifier.checkNameCasing(player, auth);
 
         // then
-        verifyZeroInteractions(dataSource);
+        verifyZeroInteractions(asyncDataSource);
     }
 
     @Test
@@ -277,7 +277,7 @@ public class OnJoinVerifierTest {
 
         // when / then
         onJoinVerifier.checkNameCasing(player, auth);
-        verifyZeroInteractions(dataSource);
+        verifyZeroInteractions(asyncDataSource);
     }
 
     @Test
@@ -291,7 +291,7 @@ public class OnJoinVerifierTest {
         onJoinVerifier.checkNameCasing(player, auth);
 
         // then
-        verify(dataSource).updateRealName("authme", "Authme");
+        verify(asyncDataSource).updateRealName("authme", "Authme");
     }
 
     @Test
@@ -305,7 +305,7 @@ public class OnJoinVerifierTest {
         onJoinVerifier.checkNameCasing(player, auth);
 
         // then
-        verify(dataSource).updateRealName("someone", "SOMEONE");
+        verify(asyncDataSource).updateRealName("someone", "SOMEONE");
     }
 
     @Test
@@ -319,7 +319,7 @@ public class OnJoinVerifierTest {
         onJoinVerifier.checkNameCasing(player, auth);
 
         // then
-        verifyZeroInteractions(dataSource);
+        verifyZeroInteractions(asyncDataSource);
     }
 
     @Test
@@ -333,7 +333,7 @@ public class OnJoinVerifierTest {
         onJoinVerifier.checkNameCasing(player, auth);
 
         // then
-        verifyZeroInteractions(dataSource);
+        verifyZeroInteractions(asyncDataSource);
     }
 
     @Test
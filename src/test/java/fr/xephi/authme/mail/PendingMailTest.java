@@ -0,0 +1,80 @@
+package fr.xephi.authme.mail;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeThat;
+
+/**
+ * Test for {@link PendingMail}.
+ */
+public class PendingMailTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldSaveAndLoadMails() throws IOException {
+        // given
+        File file = temporaryFolder.newFile();
+        List<PendingMail> mails = Arrays.asList(
+            new PendingMail("bobby@example.org", "Bobby", "<p>Your new password: Tëst</p>", null),
+            new PendingMail("user@example.com", "user", "<image />", "s3cr3t"));
+
+        // when
+        PendingMail.saveAll(file, mails);
+        List<PendingMail> result = PendingMail.loadAll(file);
+
+        // then
+        assertThat(result, hasSize(2));
+        assertThat(result.get(0).getRecipient(), equalTo("bobby@example.org"));
+        assertThat(result.get(0).getPlayerName(), equalTo("Bobby"));
+        assertThat(result.get(0).getContent(), equalTo("<p>Your new password: Tëst</p>"));
+        assertThat(result.get(0).getImagePassword(), nullValue());
+        assertThat(result.get(1).getRecipient(), equalTo("user@example.com"));
+        assertThat(result.get(1).getContent(), equalTo("<image />"));
+        assertThat(result.get(1).getImagePassword(), equalTo("s3cr3t"));
+    }
+
+    @Test
+    public void shouldMakeFileReadableByOwnerOnly() throws IOException {
+        // given
+        File file = temporaryFolder.newFile();
+        assumeThat(file.toPath().getFileSystem().supportedFileAttributeViews().contains("posix"), equalTo(true));
+
+        // when
+        PendingMail.saveAll(file, Arrays.asList(new PendingMail("test@example.org", "test", "content", "s3cr3t")));
+
+        // then
+        assertThat(Files.getPosixFilePermissions(file.toPath()),
+            equalTo(PosixFilePermissions.fromString("rw-------")));
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldThrowForTruncatedFile() throws IOException {
+        // given
+        File file = temporaryFolder.newFile();
+        PendingMail.saveAll(file, Arrays.asList(new PendingMail("test@example.org", "test", "content", null)));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        // when
+        PendingMail.loadAll(file);
+
+        // then - expect exception
+    }
+}
@@ -0,0 +1,67 @@
+package fr.xephi.authme.metrics;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.both;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void shouldReturnQuantilesWithinBucketPrecision() {
+        // given
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // when
+        for (int i = 1; i <= 1000; ++i) {
+            histogram.record(i * 1000L);
+        }
+
+        // then
+        assertThat(histogram.getCount(), equalTo(1000L));
+        assertThat(histogram.getSum(), equalTo(500500000L));
+        assertThat(histogram.getMax(), equalTo(1000000L));
+        assertThat(histogram.getQuantile(0.5), both(greaterThanOrEqualTo(500000L)).and(lessThanOrEqualTo(562500L)));
+        assertThat(histogram.getQuantile(0.99), both(greaterThanOrEqualTo(990000L)).and(lessThanOrEqualTo(1000000L)));
+        assertThat(histogram.getQuantile(1.0), equalTo(1000000L));
+    }
+
+    @Test
+    public void shouldReturnZeroForEmptyHistogram() {
+        // given
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // when / then
+        assertThat(histogram.getQuantile(0.5), equalTo(0L));
+        assertThat(histogram.getCount(), equalTo(0L));
+    }
+
+    @Test
+    public void shouldMapValuesToBucketsContainingThem() {
+        // given
+        long[] values = {0, 1, 7, 8, 9, 15, 16, 17, 1000, 123456789, Long.MAX_VALUE};
+
+        // when / then
+        for (long value : values) {
+            int index = LatencyHistogram.getBucketIndex(value);
+            assertThat(LatencyHistogram.getBucketUpperBound(index), greaterThanOrEqualTo(value));
+            if (index > 0) {
+                assertThat(LatencyHistogram.getBucketUpperBound(index - 1), lessThanOrEqualTo(value - 1));
+            }
+        }
+    }
+
+    @Test
+    public void shouldFormatDurations() {
+        // given / when / then
+        assertThat(LatencyHistogram.formatNanos(512), equalTo("512 ns"));
+        assertThat(LatencyHistogram.formatNanos(2500000), equalTo(String.format("%.1f ms", 2.5)));
+        assertThat(LatencyHistogram.formatNanos(3000000000L), equalTo(String.format("%.2f s", 3.0)));
+    }
+}
@@ -0,0 +1,78 @@
+package fr.xephi.authme.metrics;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link MetricsRegistry}.
+ */
+public class MetricsRegistryTest {
+
+    @Test
+    public void shouldReturnSameHistogramForLabel() {
+        // given
+        MetricsRegistry registry = new MetricsRegistry();
+
+        // when
+        LatencyHistogram first = registry.getHistogram(Metric.DATA_SOURCE, "getAuth");
+        LatencyHistogram second = registry.getHistogram(Metric.DATA_SOURCE, "getAuth");
+
+        // then
+        assertThat(first, sameInstance(second));
+        assertThat(registry.getHistograms(Metric.DATA_SOURCE).size(), equalTo(1));
+    }
+
+    @Test
+    public void shouldCountPerLabel() {
+        // given
+        MetricsRegistry registry = new MetricsRegistry();
+
+        // when
+        registry.increment(Metric.DATA_SOURCE_ERRORS, "saveAuth");
+        registry.increment(Metric.DATA_SOURCE_ERRORS, "saveAuth");
+        registry.increment(Metric.DATA_SOURCE_ERRORS, "getAuth");
+
+        // then
+        assertThat(registry.getCounters(Metric.DATA_SOURCE_ERRORS).get("saveAuth"), equalTo(2L));
+        assertThat(registry.getCounters(Metric.DATA_SOURCE_ERRORS).get("getAuth"), equalTo(1L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectCounterAsHistogram() {
+        // given
+        MetricsRegistry registry = new MetricsRegistry();
+
+        // when
+        registry.getHistogram(Metric.DATA_SOURCE_ERRORS, "getAuth");
+
+        // then - expect exception
+    }
+
+    @Test
+    public void shouldExportInPrometheusFormat() {
+        // given
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.getHistogram(Metric.HASH_COMPUTE, "BCRYPT").record(250000000L);
+        registry.increment(Metric.DATA_SOURCE_ERRORS, "saveAuth");
+        registry.registerGauge("authme_mail_queue_size", "Queued emails", new MetricsRegistry.Gauge() {
+            @Override
+            public double getValue() {
+                return 3;
+            }
+        });
+
+        // when
+        String result = registry.toPrometheusFormat();
+
+        // then
+        assertThat(result, containsString("# TYPE authme_hash_compute_seconds summary\n"));
+        assertThat(result, containsString("authme_hash_compute_seconds{algorithm=\"BCRYPT\",quantile=\"0.5\"} 0.25\n"));
+        assertThat(result, containsString("authme_hash_compute_seconds_count{algorithm=\"BCRYPT\"} 1\n"));
+        assertThat(result, containsString("authme_datasource_errors_total{method=\"saveAuth\"} 1\n"));
+        assertThat(result, containsString("# TYPE authme_mail_queue_size gauge\nauthme_mail_queue_size 3.0\n"));
+    }
+}
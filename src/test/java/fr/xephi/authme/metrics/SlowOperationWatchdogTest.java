@@ -0,0 +1,127 @@
+package fr.xephi.authme.metrics;
+
+import fr.xephi.authme.TestHelper;
+import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.PluginSettings;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Test for {@link SlowOperationWatchdog}.
+ */
+public class SlowOperationWatchdogTest {
+
+    private SlowOperationWatchdog watchdog;
+
+    @BeforeClass
+    public static void initLogger() {
+        TestHelper.setupLogger();
+    }
+
+    @After
+    public void closeWatchdog() {
+        if (watchdog != null) {
+            watchdog.close();
+        }
+    }
+
+    @Test
+    public void shouldCountSlowOperations() throws InterruptedException {
+        // given
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        watchdog = new SlowOperationWatchdog(metricsRegistry, mockSettings(1));
+
+        // when
+        SlowOperationWatchdog.Operation slowOperation = watchdog.start("process.login");
+        Thread.sleep(5);
+        watchdog.sampleSlowOperations();
+        watchdog.finish(slowOperation);
+
+        // then
+        assertThat(metricsRegistry.getCounters(Metric.SLOW_OPERATIONS).get("process.login"), equalTo(1L));
+    }
+
+    @Test
+    public void shouldJudgeOperationByTotalTime() throws InterruptedException {
+        // given
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        watchdog = new SlowOperationWatchdog(metricsRegistry, mockSettings(200));
+
+        // when
+        SlowOperationWatchdog.Operation process = watchdog.start("process.login");
+        for (int i = 0; i < 3; ++i) {
+            SlowOperationWatchdog.Operation dataSourceCall = watchdog.start("datasource.getAuth");
+            Thread.sleep(80);
+            watchdog.finish(dataSourceCall);
+        }
+        watchdog.finish(process);
+
+        // then
+        assertThat(metricsRegistry.getCounters(Metric.SLOW_OPERATIONS).get("process.login"), equalTo(1L));
+        assertThat(metricsRegistry.getCounters(Metric.SLOW_OPERATIONS).get("datasource.getAuth"), nullValue());
+    }
+
+    @Test
+    public void shouldCountSlowNestedOperationAndItsParent() throws InterruptedException {
+        // given
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        watchdog = new SlowOperationWatchdog(metricsRegistry, mockSettings(200));
+
+        // when
+        SlowOperationWatchdog.Operation process = watchdog.start("process.login");
+        SlowOperationWatchdog.Operation dataSourceCall = watchdog.start("datasource.getAuth");
+        Thread.sleep(250);
+        watchdog.finish(dataSourceCall);
+        watchdog.finish(process);
+
+        // then
+        assertThat(metricsRegistry.getCounters(Metric.SLOW_OPERATIONS).get("datasource.getAuth"), equalTo(1L));
+        assertThat(metricsRegistry.getCounters(Metric.SLOW_OPERATIONS).get("process.login"), equalTo(1L));
+    }
+
+    @Test
+    public void shouldNotTrackOperationsIfDisabled() {
+        // given
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        watchdog = new SlowOperationWatchdog(metricsRegistry, mockSettings(0));
+
+        // when
+        SlowOperationWatchdog.Operation operation = watchdog.start("datasource.getAuth");
+        watchdog.finish(operation);
+
+        // then
+        assertThat(operation, nullValue());
+        assertThat(metricsRegistry.getCounters(Metric.SLOW_OPERATIONS).isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void shouldAggregateByTopFrameAndClosestAuthMeFrame() {
+        // given
+        StackTraceElement[] stack = {
+            new StackTraceElement("java.net.SocketInputStream", "socketRead0", "SocketInputStream.java", -2),
+            new StackTraceElement("com.mysql.jdbc.MysqlIO", "readFully", "MysqlIO.java", 3008),
+            new StackTraceElement("fr.xephi.authme.datasource.MySQL", "getAuth", "MySQL.java", 320)
+        };
+
+        // when
+        String location = SlowOperationWatchdog.toLocation(stack);
+
+        // then
+        assertThat(location, equalTo("java.net.SocketInputStream.socketRead0(Native Method) "
+            + "called from fr.xephi.authme.datasource.MySQL.getAuth(MySQL.java:320)"));
+    }
+
+    private static NewSetting mockSettings(int threshold) {
+        NewSetting settings = mock(NewSetting.class);
+        given(settings.getProperty(PluginSettings.SLOW_OPERATION_THRESHOLD)).willReturn(threshold);
+        given(settings.getProperty(PluginSettings.STACK_SAMPLE_INTERVAL)).willReturn(100);
+        return settings;
+    }
+}
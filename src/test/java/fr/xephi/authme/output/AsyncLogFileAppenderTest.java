@@ -0,0 +1,102 @@
+package fr.xephi.authme.output;
+
+import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.SecuritySettings;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Test for {@link AsyncLogFileAppender}.
+ */
+public class AsyncLogFileAppenderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldWriteAllMessagesOnClose() throws IOException {
+        // given
+        File logFile = new File(temporaryFolder.newFolder(), "authme.log");
+        AsyncLogFileAppender appender = new AsyncLogFileAppender(logFile, mockSettings(LogOverflowPolicy.BLOCK, 0));
+        appender.start();
+
+        // when
+        for (int i = 0; i < 100; ++i) {
+            appender.append("[INFO] Message " + i);
+        }
+        appender.close();
+
+        // then
+        List<String> lines = Files.readAllLines(logFile.toPath(), StandardCharsets.UTF_8);
+        assertThat(lines, hasSize(100));
+        assertThat(lines.get(0), endsWith(": [INFO] Message 0"));
+        assertThat(lines.get(99), endsWith(": [INFO] Message 99"));
+    }
+
+    @Test
+    public void shouldNotWriteMessagesAfterClose() throws IOException {
+        // given
+        File logFile = new File(temporaryFolder.newFolder(), "authme.log");
+        AsyncLogFileAppender appender = new AsyncLogFileAppender(logFile, mockSettings(LogOverflowPolicy.DROP, 0));
+        appender.start();
+        appender.append("[INFO] Message");
+        appender.close();
+
+        // when
+        appender.append("[INFO] Ignored message");
+
+        // then
+        List<String> lines = Files.readAllLines(logFile.toPath(), StandardCharsets.UTF_8);
+        assertThat(lines, hasSize(1));
+        assertThat(appender.getQueueSize(), equalTo(0));
+    }
+
+    @Test
+    public void shouldRotateAndCompressLargeFile() throws IOException {
+        // given
+        File folder = temporaryFolder.newFolder();
+        File logFile = new File(folder, "authme.log");
+        Files.write(logFile.toPath(), new byte[1024 * 1024]);
+        AsyncLogFileAppender appender = new AsyncLogFileAppender(logFile, mockSettings(LogOverflowPolicy.BLOCK, 1));
+        appender.start();
+
+        // when
+        appender.append("[INFO] Message after rotation threshold");
+        appender.close();
+
+        // then
+        File[] rotatedFiles = folder.listFiles(new java.io.FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith("authme-") && name.endsWith(".log.gz");
+            }
+        });
+        assertThat(rotatedFiles, arrayWithSize(1));
+        assertThat(logFile.length(), equalTo(0L));
+    }
+
+    private static NewSetting mockSettings(LogOverflowPolicy policy, int maxFileSize) {
+        NewSetting settings = mock(NewSetting.class);
+        given(settings.getProperty(SecuritySettings.LOG_QUEUE_SIZE)).willReturn(4096);
+        given(settings.getProperty(SecuritySettings.LOG_OVERFLOW_POLICY)).willReturn(policy);
+        given(settings.getProperty(SecuritySettings.LOG_ROTATION_MAX_FILE_SIZE)).willReturn(maxFileSize);
+        given(settings.getProperty(SecuritySettings.LOG_ROTATION_DAILY)).willReturn(false);
+        given(settings.getProperty(SecuritySettings.LOG_ROTATION_COMPRESS)).willReturn(true);
+        return settings;
+    }
+}
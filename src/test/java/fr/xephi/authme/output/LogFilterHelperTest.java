@@ -0,0 +1,44 @@
+package fr.xephi.authme.output;
+
+import fr.xephi.authme.command.CommandInitializer;
+import org.junit.Test;
+
+import java.util.Set;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link LogFilterHelper}.
+ */
+public class LogFilterHelperTest {
+
+    @Test
+    public void shouldCollectPatternsForAllAliases() {
+        // given / when
+        Set<String> patterns = LogFilterHelper.collectSensitiveCommandPatterns(new CommandInitializer().getCommands());
+
+        // then
+        assertThat(patterns, hasItems("/login ", "/l ", "/log ", "/reg ", "/register ", "/unregister ",
+            "/changepassword ", "/cp ", "/authme register ", "/authme reg ", "/authme r ", "/authme cp ",
+            "/authme changepassword "));
+        assertThat(patterns, not(hasItems("/logout ")));
+        assertThat(patterns, not(hasItems("/authme forcelogin ")));
+        assertThat(patterns, not(hasItems("/authme ")));
+    }
+
+    @Test
+    public void shouldDetectSensitiveCommands() {
+        // given / when / then
+        assertThat(LogFilterHelper.isSensitiveAuthMeCommand("Bob issued server command: /login test"), equalTo(true));
+        assertThat(LogFilterHelper.isSensitiveAuthMeCommand("Bob issued server command: /LOG test"), equalTo(true));
+        assertThat(LogFilterHelper.isSensitiveAuthMeCommand("Bob Issued Server Command: /authme r Bob pass"),
+            equalTo(true));
+        assertThat(LogFilterHelper.isSensitiveAuthMeCommand("Bob issued server command: /logout"), equalTo(false));
+        assertThat(LogFilterHelper.isSensitiveAuthMeCommand("Starting the server... Write /l for logs"),
+            equalTo(false));
+        assertThat(LogFilterHelper.isSensitiveAuthMeCommand(null), equalTo(false));
+    }
+}
@@ -0,0 +1,78 @@
+package fr.xephi.authme.output;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link MessageTemplate}.
+ */
+public class MessageTemplateTest {
+
+    @Test
+    public void shouldSplitLinesAndTranslateColors() {
+        // given
+        String message = "&cFirst line&nSecond &bline";
+
+        // when
+        MessageTemplate template = MessageTemplate.compile(message, new String[0]);
+
+        // then
+        assertThat(template.getLines(), equalTo(new String[]{"§cFirst line", "Second §bline"}));
+        assertThat(template.getJoinedLines(), equalTo("§cFirst line\nSecond §bline"));
+    }
+
+    @Test
+    public void shouldReturnNoLinesForEmptyMessage() {
+        // given / when
+        MessageTemplate template = MessageTemplate.compile("", new String[0]);
+
+        // then
+        assertThat(template.getLines(), arrayWithSize(0));
+        assertThat(template.getJoinedLines(), equalTo(""));
+    }
+
+    @Test
+    public void shouldReplaceAllTagOccurrences() {
+        // given
+        String[] tags = {"%max_acc", "%reg_count", "%reg_names"};
+        MessageTemplate template = MessageTemplate.compile(
+            "&cYou have %reg_count of %max_acc accounts&n%reg_names (%reg_count)", tags);
+
+        // when
+        String result = template.render(new String[]{"3", "2", "Bobby, Bob"});
+        String[] lines = template.renderLines(new String[]{"3", "2", "Bobby, Bob"});
+
+        // then
+        assertThat(result, equalTo("§cYou have 2 of 3 accounts\nBobby, Bob (2)"));
+        assertThat(lines, equalTo(new String[]{"§cYou have 2 of 3 accounts", "Bobby, Bob (2)"}));
+    }
+
+    @Test
+    public void shouldReturnCachedLinesForMessageWithoutTags() {
+        // given
+        MessageTemplate template = MessageTemplate.compile("No tags here&nat all", new String[]{"THE_CAPTCHA"});
+
+        // when
+        String[] lines = template.renderLines(new String[]{"1234"});
+
+        // then
+        assertThat(lines, sameInstance(template.getLines()));
+        assertThat(template.render(new String[]{"1234"}), sameInstance(template.getJoinedLines()));
+    }
+
+    @Test
+    public void shouldKeepTextAroundTagsAtEdges() {
+        // given
+        MessageTemplate template = MessageTemplate.compile("REG_EXREG_EX", new String[]{"REG_EX"});
+
+        // when
+        String result = template.render(new String[]{"[a-z]"});
+
+        // then
+        assertThat(result, equalTo("[a-z][a-z]"));
+    }
+}
@@ -0,0 +1,67 @@
+package fr.xephi.authme.output;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link MultiPatternMatcher}.
+ */
+public class MultiPatternMatcherTest {
+
+    @Test
+    public void shouldFindPatternsCaseInsensitively() {
+        // given
+        MultiPatternMatcher matcher = MultiPatternMatcher.compile(Arrays.asList("/login ", "/L ", "/authme reg "));
+
+        // when / then
+        assertThat(matcher.matches("Bobby issued server command: /LOGIN test"), equalTo(true));
+        assertThat(matcher.matches("Bobby issued server command: /l test"), equalTo(true));
+        assertThat(matcher.matches("Bobby issued server command: /AuthMe Reg Bob pass"), equalTo(true));
+        assertThat(matcher.matches("Bobby issued server command: /logout"), equalTo(false));
+        assertThat(matcher.matches("Bobby issued server command: /authme register"), equalTo(false));
+    }
+
+    @Test
+    public void shouldFindOverlappingPatterns() {
+        // given
+        MultiPatternMatcher matcher = MultiPatternMatcher.compile(Arrays.asList("abcd", "bcx", "cd"));
+
+        // when / then
+        assertThat(matcher.findEnd("xxabcx", 0), equalTo(6));
+        assertThat(matcher.findEnd("abce abcd", 0), equalTo(9));
+        assertThat(matcher.findEnd("abcy", 0), equalTo(-1));
+    }
+
+    @Test
+    public void shouldStartAtGivenIndex() {
+        // given
+        MultiPatternMatcher matcher = MultiPatternMatcher.compile(Collections.singleton("issued"));
+
+        // when / then
+        assertThat(matcher.findEnd("issued server command: issued", 0), equalTo(6));
+        assertThat(matcher.findEnd("issued server command: issued", 1), equalTo(29));
+    }
+
+    @Test
+    public void shouldNotMatchAnythingForNoPatterns() {
+        // given
+        MultiPatternMatcher matcher = MultiPatternMatcher.compile(Collections.<String>emptyList());
+
+        // when / then
+        assertThat(matcher.matches("Some text"), equalTo(false));
+        assertThat(matcher.matches(""), equalTo(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNonAsciiPattern() {
+        // given / when
+        MultiPatternMatcher.compile(Collections.singleton("/régister "));
+
+        // then - expect exception
+    }
+}
@@ -0,0 +1,103 @@
+package fr.xephi.authme.permission;
+
+import fr.xephi.authme.permission.handlers.PermissionHandler;
+import org.bukkit.entity.Player;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test for {@link PermissionCache}.
+ */
+public class PermissionCacheTest {
+
+    private PermissionHandler handler;
+    private Player player;
+
+    @Before
+    public void setUpMocks() {
+        handler = mock(PermissionHandler.class);
+        player = mock(Player.class);
+        given(player.getUniqueId()).willReturn(UUID.randomUUID());
+    }
+
+    @Test
+    public void shouldCacheDecisions() {
+        // given
+        PermissionCache cache = new PermissionCache(60);
+        given(handler.hasPermission(player, AdminPermission.RELOAD)).willReturn(true);
+        given(handler.hasPermission(player, PlayerPermission.LOGIN)).willReturn(false);
+
+        // when
+        boolean result1 = cache.hasPermission(player, AdminPermission.RELOAD, handler);
+        boolean result2 = cache.hasPermission(player, PlayerPermission.LOGIN, handler);
+        boolean result3 = cache.hasPermission(player, AdminPermission.RELOAD, handler);
+        boolean result4 = cache.hasPermission(player, PlayerPermission.LOGIN, handler);
+
+        // then
+        assertThat(result1, equalTo(true));
+        assertThat(result2, equalTo(false));
+        assertThat(result3, equalTo(true));
+        assertThat(result4, equalTo(false));
+        verify(handler).hasPermission(player, AdminPermission.RELOAD);
+        verify(handler).hasPermission(player, PlayerPermission.LOGIN);
+        assertThat(cache.getHitCount(), equalTo(2L));
+        assertThat(cache.getMissCount(), equalTo(2L));
+    }
+
+    @Test
+    public void shouldQueryHandlerAgainAfterInvalidation() {
+        // given
+        PermissionCache cache = new PermissionCache(60);
+        given(handler.hasPermission(player, PlayerStatePermission.BYPASS_ANTIBOT)).willReturn(false, true);
+        cache.hasPermission(player, PlayerStatePermission.BYPASS_ANTIBOT, handler);
+
+        // when
+        cache.invalidate(player);
+        boolean result = cache.hasPermission(player, PlayerStatePermission.BYPASS_ANTIBOT, handler);
+
+        // then
+        assertThat(result, equalTo(true));
+        verify(handler, times(2)).hasPermission(player, PlayerStatePermission.BYPASS_ANTIBOT);
+        assertThat(cache.getHitCount(), equalTo(0L));
+    }
+
+    @Test
+    public void shouldNotCacheIfDisabled() {
+        // given
+        PermissionCache cache = new PermissionCache(0);
+        given(handler.hasPermission(player, AdminPermission.RELOAD)).willReturn(true);
+
+        // when
+        cache.hasPermission(player, AdminPermission.RELOAD, handler);
+        cache.hasPermission(player, AdminPermission.RELOAD, handler);
+
+        // then
+        verify(handler, times(2)).hasPermission(player, AdminPermission.RELOAD);
+        assertThat(cache.size(), equalTo(0L));
+    }
+
+    @Test
+    public void shouldNotCacheUnknownNode() {
+        // given
+        PermissionCache cache = new PermissionCache(60);
+        PermissionNode node = mock(PermissionNode.class);
+        given(handler.hasPermission(player, node)).willReturn(true);
+
+        // when
+        cache.hasPermission(player, node, handler);
+        cache.hasPermission(player, node, handler);
+
+        // then
+        verify(handler, times(2)).hasPermission(player, node);
+        assertThat(cache.size(), equalTo(0L));
+    }
+}
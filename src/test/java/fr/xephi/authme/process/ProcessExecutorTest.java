@@ -0,0 +1,137 @@
+package fr.xephi.authme.process;
+
+import fr.xephi.authme.TestHelper;
+import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.PluginSettings;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Test for {@link ProcessExecutor}.
+ */
+public class ProcessExecutorTest {
+
+    private ProcessExecutor processExecutor;
+
+    @BeforeClass
+    public static void initLogger() {
+        TestHelper.setupLogger();
+    }
+
+    @Before
+    public void initExecutor() {
+        NewSetting settings = mock(NewSetting.class);
+        given(settings.getProperty(PluginSettings.PROCESS_THREADS)).willReturn(4);
+        processExecutor = new ProcessExecutor(settings);
+    }
+
+    @After
+    public void closeExecutor() {
+        processExecutor.close();
+    }
+
+    @Test
+    public void shouldRunProcessesOfPlayerInOrder() throws InterruptedException {
+        // given
+        final CountDownLatch firstStarted = new CountDownLatch(1);
+        final CountDownLatch releaseFirst = new CountDownLatch(1);
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+
+        // when
+        processExecutor.execute("Bobby", new Runnable() {
+            @Override
+            public void run() {
+                firstStarted.countDown();
+                await(releaseFirst);
+                events.add("login");
+            }
+        });
+        firstStarted.await(5, TimeUnit.SECONDS);
+        processExecutor.execute("bobby", new Runnable() {
+            @Override
+            public void run() {
+                events.add("quit");
+            }
+        });
+        int queueSize = processExecutor.getQueueSize();
+        releaseFirst.countDown();
+        processExecutor.close();
+
+        // then
+        assertThat(queueSize, equalTo(2));
+        assertThat(events, contains("login", "quit"));
+        assertThat(processExecutor.getQueueSize(), equalTo(0));
+        assertThat(processExecutor.getPendingPlayerCount(), equalTo(0));
+    }
+
+    @Test
+    public void shouldRunProcessesOfDifferentPlayersInParallel() throws InterruptedException {
+        // given
+        final CountDownLatch blockBobby = new CountDownLatch(1);
+        final CountDownLatch aliceDone = new CountDownLatch(1);
+
+        // when
+        processExecutor.execute("Bobby", new Runnable() {
+            @Override
+            public void run() {
+                await(blockBobby);
+            }
+        });
+        processExecutor.execute("Alice", new Runnable() {
+            @Override
+            public void run() {
+                aliceDone.countDown();
+            }
+        });
+
+        // then
+        boolean hasAliceFinished = aliceDone.await(5, TimeUnit.SECONDS);
+        blockBobby.countDown();
+        assertThat(hasAliceFinished, equalTo(true));
+    }
+
+    @Test
+    public void shouldContinueAfterFailingProcess() throws InterruptedException {
+        // given
+        final CountDownLatch secondRun = new CountDownLatch(1);
+
+        // when
+        processExecutor.execute("Bobby", new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("Test exception");
+            }
+        });
+        processExecutor.execute("Bobby", new Runnable() {
+            @Override
+            public void run() {
+                secondRun.countDown();
+            }
+        });
+
+        // then
+        assertThat(secondRun.await(5, TimeUnit.SECONDS), equalTo(true));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -5,6 +5,7 @@ import fr.xephi.authme.TestHelper;
 import fr.xephi.authme.datasource.DataSource;
 import fr.xephi.authme.events.PasswordEncryptionEvent;
 import fr.xephi.authme.initialization.AuthMeServiceInitializer;
+import fr.xephi.authme.metrics.MetricsRegistry;
 import fr.xephi.authme.security.crypts.EncryptionMethod;
 import fr.xephi.authme.security.crypts.HashedPassword;
 import fr.xephi.authme.security.crypts.JOOMLA;
@@ -83,6 +84,7 @@ public class PasswordSecurityTest {
         initializer.register(NewSetting.class, settings);
         initializer.register(DataSource.class, dataSource);
         initializer.register(PluginManager.class, pluginManager);
+        initializer.register(MetricsRegistry.class, new MetricsRegistry());
     }
 
     @Test
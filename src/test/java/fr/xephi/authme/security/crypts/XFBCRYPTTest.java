@@ -2,6 +2,12 @@ package fr.xephi.authme.security.crypts;
 
 import fr.xephi.authme.TestHelper;
 import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
 
 /**
  * Test for {@link XFBCRYPT}.
@@ -20,4 +26,17 @@ public class XFBCRYPTTest extends AbstractEncryptionMethodTest {
             "$2a$10$yHjm02.K4HP5iFU1F..yLeTeo7PWZVbKAr/QGex5jU4.J3mdq/uuO",  // &^%te$t?Pw@_
             "$2a$10$joIayhGStExKWxNbiqMMPOYFSpQ76HVNjpOB7.QwTmG5q.TiJJ.0e"); // âË_3(íù*
     }
+
+    @Test
+    public void shouldGetHashFromSerializedData() {
+        // given
+        String hash = "$2a$10$UtuON/ZG.x8EWG/zQbryB.BHfQVrfxk3H7qykzP.UJQ8YiLjZyfqq";
+        byte[] data = XFBCRYPT.serializeHash(hash).getBytes(StandardCharsets.UTF_8);
+
+        // when
+        String result = XFBCRYPT.getHashFromBlob(data);
+
+        // then
+        assertThat(result, equalTo(hash));
+    }
 }
@@ -0,0 +1,114 @@
+package fr.xephi.authme.service;
+
+import fr.xephi.authme.cache.auth.PlayerAuth;
+import fr.xephi.authme.security.crypts.HashedPassword;
+import fr.xephi.authme.service.BungeeProtocol.Message;
+import fr.xephi.authme.service.BungeeProtocol.Operation;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link BungeeProtocol}.
+ */
+public class BungeeProtocolTest {
+
+    @Test
+    public void shouldEncodeAndDecodeMessages() {
+        // given
+        List<Message> messages = Arrays.asList(
+            Message.login(newSession("Bobby", "123.45.67.89")),
+            Message.login(newSession("test", "127.0.0.1")),
+            Message.logout("user"),
+            Message.register("NewPlayer"),
+            Message.changePassword("bobby", new HashedPassword("hash", "salt")));
+
+        // when
+        List<byte[]> frames = BungeeProtocol.encodeFrames(messages);
+        List<Message> result = BungeeProtocol.decodeFrame(frames.get(0));
+
+        // then
+        assertThat(frames, hasSize(1));
+        assertThat(result, hasSize(5));
+
+        Message login = result.get(0);
+        assertThat(login.getOperation(), equalTo(Operation.LOGIN));
+        assertThat(login.getName(), equalTo("bobby"));
+        assertThat(login.getRealName(), equalTo("Bobby"));
+        assertThat(login.getIp(), equalTo("123.45.67.89"));
+        assertThat(login.getLastLogin(), equalTo(1449136800L));
+        assertThat(login.getPassword(), nullValue());
+        assertThat(result.get(1).getName(), equalTo("test"));
+        assertThat(result.get(1).getIp(), equalTo("127.0.0.1"));
+        assertThat(result.get(2).getOperation(), equalTo(Operation.LOGOUT));
+        assertThat(result.get(2).getName(), equalTo("user"));
+        assertThat(result.get(3).getOperation(), equalTo(Operation.REGISTER));
+        assertThat(result.get(3).getName(), equalTo("newplayer"));
+        assertThat(result.get(4).getOperation(), equalTo(Operation.CHANGE_PASSWORD));
+        assertThat(result.get(4).getPassword().getHash(), equalTo("hash"));
+        assertThat(result.get(4).getPassword().getSalt(), equalTo("salt"));
+    }
+
+    @Test
+    public void shouldSplitLargeBatchIntoSeveralFrames() {
+        // given
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 5000; ++i) {
+            messages.add(Message.logout("player" + i));
+        }
+
+        // when
+        List<byte[]> frames = BungeeProtocol.encodeFrames(messages);
+
+        // then
+        assertThat(frames.size(), greaterThan(1));
+        int total = 0;
+        for (byte[] frame : frames) {
+            assertThat(frame.length, lessThanOrEqualTo(BungeeProtocol.MAX_FRAME_SIZE));
+            total += BungeeProtocol.decodeFrame(frame).size();
+        }
+        assertThat(total, equalTo(5000));
+    }
+
+    @Test
+    public void shouldOnlySendSessionDataOfPlayerWhoLoggedIn() {
+        // given
+        PlayerAuth auth = PlayerAuth.builder().name("bobby").realName("Bobby").ip("127.0.0.1")
+            .lastLogin(1449136800L).email("bobby@example.org").password("hash", "salt").build();
+        Message login = Message.login(auth);
+
+        // when
+        byte[] frame = BungeeProtocol.encodeFrames(Collections.singletonList(login)).get(0);
+
+        // then
+        // version, count, operation, body length, name and real name ("bobby" and "Bobby" with their lengths),
+        // IP address with its flag and length, last login
+        assertThat(frame.length, equalTo(1 + 2 + 1 + 2 + 7 + 7 + 1 + 11 + 8));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnknownVersion() {
+        // given
+        byte[] frame = BungeeProtocol.encodeFrames(Collections.singletonList(Message.logout("test"))).get(0);
+        frame[0] = 42;
+
+        // when
+        BungeeProtocol.decodeFrame(frame);
+
+        // then - expect exception
+    }
+
+    private static PlayerAuth newSession(String name, String ip) {
+        return PlayerAuth.builder().name(name.toLowerCase()).realName(name).ip(ip).lastLogin(1449136800L).build();
+    }
+}
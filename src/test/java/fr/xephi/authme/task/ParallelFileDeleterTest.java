@@ -0,0 +1,75 @@
+package fr.xephi.authme.task;
+
+import fr.xephi.authme.TestHelper;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+
+import static org.hamcrest.Matchers.arrayContainingInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link ParallelFileDeleter}.
+ */
+public class ParallelFileDeleterTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void initLogger() {
+        TestHelper.setupLogger();
+    }
+
+    @Test
+    public void shouldDeleteMatchingFiles() throws IOException {
+        // given
+        File folder = temporaryFolder.newFolder();
+        for (int i = 0; i < 150; ++i) {
+            new File(folder, "delete" + i + ".yml").createNewFile();
+        }
+        new File(folder, "keep.yml").createNewFile();
+        new File(folder, "keep2.dat").createNewFile();
+
+        // when
+        int result;
+        try (ParallelFileDeleter deleter = new ParallelFileDeleter(3)) {
+            result = deleter.deleteMatchingFiles(folder, new FilenameFilter() {
+                @Override
+                public boolean accept(File dir, String name) {
+                    return name.startsWith("delete");
+                }
+            });
+        }
+
+        // then
+        assertThat(result, equalTo(150));
+        assertThat(folder.list(), arrayContainingInAnyOrder("keep.yml", "keep2.dat"));
+    }
+
+    @Test
+    public void shouldHandleMissingFolder() {
+        // given
+        File folder = new File(temporaryFolder.getRoot(), "does-not-exist");
+
+        // when
+        int result;
+        try (ParallelFileDeleter deleter = new ParallelFileDeleter(2)) {
+            result = deleter.deleteMatchingFiles(folder, new FilenameFilter() {
+                @Override
+                public boolean accept(File dir, String name) {
+                    return true;
+                }
+            });
+        }
+
+        // then
+        assertThat(result, equalTo(0));
+    }
+}
@@ -0,0 +1,62 @@
+package fr.xephi.authme.task;
+
+import com.google.common.collect.Sets;
+import fr.xephi.authme.TestHelper;
+import fr.xephi.authme.task.PurgeCheckpoint.PurgeStep;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link PurgeCheckpoint}.
+ */
+public class PurgeCheckpointTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void initLogger() {
+        TestHelper.setupLogger();
+    }
+
+    @Test
+    public void shouldSaveAndLoadProgress() throws IOException {
+        // given
+        File dataFolder = temporaryFolder.newFolder();
+        PurgeCheckpoint checkpoint = PurgeCheckpoint.create(dataFolder, Sets.newHashSet("alfa", "bravo", "charlie"));
+
+        // when
+        checkpoint.markCompleted(PurgeStep.ESSENTIALS);
+        checkpoint.markCompleted(PurgeStep.LIMITED_CREATIVE);
+        PurgeCheckpoint loaded = PurgeCheckpoint.load(dataFolder);
+
+        // then
+        assertThat(loaded.getNames(), containsInAnyOrder("alfa", "bravo", "charlie"));
+        assertThat(loaded.isCompleted(PurgeStep.ESSENTIALS), equalTo(true));
+        assertThat(loaded.isCompleted(PurgeStep.PLAYER_DAT), equalTo(false));
+        assertThat(loaded.isCompleted(PurgeStep.LIMITED_CREATIVE), equalTo(true));
+    }
+
+    @Test
+    public void shouldReturnNullIfNoCheckpointExists() throws IOException {
+        // given
+        File dataFolder = temporaryFolder.newFolder();
+        PurgeCheckpoint.create(dataFolder, Sets.newHashSet("test")).delete();
+
+        // when
+        PurgeCheckpoint result = PurgeCheckpoint.load(dataFolder);
+
+        // then
+        assertThat(result, nullValue());
+    }
+}
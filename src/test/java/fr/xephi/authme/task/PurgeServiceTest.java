@@ -4,6 +4,7 @@ import fr.xephi.authme.ReflectionTestUtils;
 import fr.xephi.authme.TestHelper;
 import fr.xephi.authme.datasource.DataSource;
 import fr.xephi.authme.hooks.PluginHooks;
+import fr.xephi.authme.initialization.DataFolder;
 import fr.xephi.authme.permission.PermissionsManager;
 import fr.xephi.authme.permission.PlayerStatePermission;
 import fr.xephi.authme.runner.BeforeInjecting;
@@ -18,11 +19,17 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import org.hamcrest.Matchers;
 import org.junit.BeforeClass;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Set;
@@ -34,6 +41,7 @@ import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.equalToIgnoringCase;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertThat;
 import static org.mockito.BDDMockito.given;
@@ -41,8 +49,10 @@ import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anySet;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 
@@ -67,6 +77,11 @@ public class PurgeServiceTest {
     private PluginHooks pluginHooks;
     @Mock
     private Server server;
+    @DataFolder
+    private File dataFolder;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
 
     @BeforeClass
     public static void initLogger() {
@@ -74,8 +89,11 @@ public class PurgeServiceTest {
     }
 
     @BeforeInjecting
-    public void initSettingDefaults() {
+    public void initSettingDefaults() throws IOException {
+        dataFolder = temporaryFolder.newFolder();
         given(settings.getProperty(PurgeSettings.DAYS_BEFORE_REMOVE_PLAYER)).willReturn(60);
+        given(settings.getProperty(PurgeSettings.BATCH_SIZE)).willReturn(100);
+        given(settings.getProperty(PurgeSettings.PAUSE_BETWEEN_BATCHES)).willReturn(0);
     }
 
     @Test
@@ -109,17 +127,18 @@ public class PurgeServiceTest {
         // given
         given(settings.getProperty(PurgeSettings.USE_AUTO_PURGE)).willReturn(true);
         given(settings.getProperty(PurgeSettings.DAYS_BEFORE_REMOVE_PLAYER)).willReturn(60);
-        String[] playerNames = {"alpha", "bravo", "charlie", "delta"};
-        given(dataSource.getRecordsToPurge(anyLong())).willReturn(newHashSet(playerNames));
+        given(dataSource.getRecordsToPurge(anyLong(), eq((String) null), eq(100)))
+            .willReturn(Arrays.asList("alpha", "bravo", "charlie", "delta"));
         mockReturnedOfflinePlayers();
         mockHasBypassPurgePermission("bravo", "delta");
 
         // when
         purgeService.runAutoPurge();
+        runDatabasePurgeTask();
 
         // then
         ArgumentCaptor<Long> captor = ArgumentCaptor.forClass(Long.class);
-        verify(dataSource).getRecordsToPurge(captor.capture());
+        verify(dataSource).getRecordsToPurge(captor.capture(), eq((String) null), eq(100));
         assertCorrectPurgeTimestamp(captor.getValue(), 60);
         verify(dataSource).purgeRecords(newHashSet("alpha", "charlie"));
         assertThat(purgeService.isPurging(), equalTo(true));
@@ -131,24 +150,44 @@ public class PurgeServiceTest {
     public void shouldRecognizeNoPlayersToPurge() {
         // given
         long delay = 123012301L;
-        given(dataSource.getRecordsToPurge(delay)).willReturn(Collections.<String>emptySet());
+        given(dataSource.getRecordsToPurge(delay, null, 100)).willReturn(Collections.<String>emptyList());
         CommandSender sender = mock(CommandSender.class);
 
         // when
         purgeService.runPurge(sender, delay);
+        runDatabasePurgeTask();
 
         // then
-        verify(dataSource).getRecordsToPurge(delay);
+        verify(dataSource).getRecordsToPurge(delay, null, 100);
         verify(dataSource, never()).purgeRecords(anySet());
         verify(sender).sendMessage("No players to purge");
-        verifyZeroInteractions(bukkitService, permissionsManager);
+        verifyZeroInteractions(permissionsManager);
+        assertThat(purgeService.isPurging(), equalTo(false));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void shouldFinishPurgeAfterDatabaseError() {
+        // given
+        long delay = 1809714L;
+        given(dataSource.getRecordsToPurge(delay, null, 100)).willThrow(new IllegalStateException("Connection lost"));
+        CommandSender sender = mock(CommandSender.class);
+
+        // when
+        purgeService.runPurge(sender, delay);
+        runDatabasePurgeTask();
+
+        // then
+        verify(dataSource, never()).purgeRecords(anySet());
+        assertThat(purgeService.isPurging(), equalTo(false));
     }
 
     @Test
     public void shouldRunPurge() {
         // given
         long delay = 1809714L;
-        given(dataSource.getRecordsToPurge(delay)).willReturn(newHashSet("charlie", "delta", "echo", "foxtrot"));
+        given(dataSource.getRecordsToPurge(delay, null, 100))
+            .willReturn(Arrays.asList("charlie", "delta", "echo", "foxtrot"));
         mockReturnedOfflinePlayers();
         mockHasBypassPurgePermission("echo");
         Player sender = mock(Player.class);
@@ -157,14 +196,58 @@ public class PurgeServiceTest {
 
         // when
         purgeService.runPurge(sender, delay);
+        runDatabasePurgeTask();
 
         // then
-        verify(dataSource).getRecordsToPurge(delay);
+        verify(dataSource).getRecordsToPurge(delay, null, 100);
         verify(dataSource).purgeRecords(newHashSet("charlie", "delta", "foxtrot"));
         verify(sender).sendMessage(argThat(containsString("Deleted 3 user accounts")));
         verifyScheduledPurgeTask(uuid, "charlie", "delta", "foxtrot");
     }
 
+    @Test
+    public void shouldPurgeInBatches() {
+        // given
+        given(settings.getProperty(PurgeSettings.BATCH_SIZE)).willReturn(2);
+        purgeService.reload();
+        long delay = 1809714L;
+        given(dataSource.getRecordsToPurge(delay, null, 2)).willReturn(Arrays.asList("alfa", "bravo"));
+        given(dataSource.getRecordsToPurge(delay, "bravo", 2)).willReturn(Arrays.asList("charlie", "delta"));
+        given(dataSource.getRecordsToPurge(delay, "delta", 2)).willReturn(Collections.singletonList("echo"));
+        mockReturnedOfflinePlayers();
+        mockHasBypassPurgePermission("delta");
+        CommandSender sender = mock(CommandSender.class);
+
+        // when
+        purgeService.runPurge(sender, delay);
+        runDatabasePurgeTask();
+
+        // then
+        InOrder inOrder = inOrder(dataSource);
+        inOrder.verify(dataSource).getRecordsToPurge(delay, null, 2);
+        inOrder.verify(dataSource).purgeRecords(newHashSet("alfa", "bravo"));
+        inOrder.verify(dataSource).getRecordsToPurge(delay, "bravo", 2);
+        inOrder.verify(dataSource).purgeRecords(newHashSet("charlie"));
+        inOrder.verify(dataSource).getRecordsToPurge(delay, "delta", 2);
+        inOrder.verify(dataSource).purgeRecords(newHashSet("echo"));
+        inOrder.verifyNoMoreInteractions();
+        verifyScheduledPurgeTask(null, "alfa", "bravo", "charlie", "echo");
+    }
+
+    @Test
+    public void shouldNotStartPurgeIfProcessIsAlreadyRunning() {
+        // given
+        purgeService.setPurging(true);
+        CommandSender sender = mock(CommandSender.class);
+
+        // when
+        purgeService.runPurge(sender, 1809714L);
+
+        // then
+        verify(sender).sendMessage(argThat(containsString("Purge is already in progress")));
+        verifyZeroInteractions(bukkitService, dataSource, permissionsManager);
+    }
+
     @Test
     public void shouldRunPurgeIfProcessIsAlreadyRunning() {
         // given
@@ -180,6 +263,37 @@ public class PurgeServiceTest {
         verifyZeroInteractions(bukkitService, dataSource, permissionsManager);
     }
 
+    @Test
+    public void shouldResumeInterruptedPurge() {
+        // given
+        PurgeCheckpoint checkpoint = PurgeCheckpoint.create(dataFolder, newHashSet("bravo", "delta"));
+        checkpoint.markCompleted(PurgeCheckpoint.PurgeStep.ESSENTIALS);
+        mockReturnedOfflinePlayers();
+
+        // when
+        purgeService.resumeInterruptedPurge();
+
+        // then
+        assertThat(purgeService.isPurging(), equalTo(true));
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(bukkitService).runTaskAsynchronously(captor.capture());
+        PurgeCheckpoint checkpointInTask = (PurgeCheckpoint) ReflectionTestUtils.getFieldValue(
+            PurgeTask.class, (PurgeTask) captor.getValue(), "checkpoint");
+        assertThat(checkpointInTask.getNames(), containsInAnyOrder("bravo", "delta"));
+        assertThat(checkpointInTask.isCompleted(PurgeCheckpoint.PurgeStep.ESSENTIALS), equalTo(true));
+        assertThat(checkpointInTask.isCompleted(PurgeCheckpoint.PurgeStep.PLAYER_DAT), equalTo(false));
+    }
+
+    @Test
+    public void shouldNotResumeIfNoPurgeWasInterrupted() {
+        // given / when
+        purgeService.resumeInterruptedPurge();
+
+        // then
+        assertThat(purgeService.isPurging(), equalTo(false));
+        verifyZeroInteractions(bukkitService);
+    }
+
     /**
      * Returns mock OfflinePlayer objects with names corresponding to A - G of the NATO phonetic alphabet,
      * in various casing.
@@ -220,11 +334,19 @@ public class PurgeServiceTest {
             Math.abs(timestamp - expectedTimestamp), not(greaterThan(toleranceMillis)));
     }
 
+    private void runDatabasePurgeTask() {
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(bukkitService).runTaskAsynchronously(captor.capture());
+        assertThat(captor.getValue(), instanceOf(DatabasePurgeTask.class));
+        captor.getValue().run();
+    }
+
     @SuppressWarnings("unchecked")
     private void verifyScheduledPurgeTask(UUID uuid, String... names) {
-        ArgumentCaptor<PurgeTask> captor = ArgumentCaptor.forClass(PurgeTask.class);
-        verify(bukkitService).runTaskAsynchronously(captor.capture());
-        PurgeTask task = captor.getValue();
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(bukkitService, times(2)).runTaskAsynchronously(captor.capture());
+        assertThat(captor.getValue(), instanceOf(PurgeTask.class));
+        PurgeTask task = (PurgeTask) captor.getValue();
 
         Object senderInTask = ReflectionTestUtils.getFieldValue(PurgeTask.class, task, "sender");
         Set<String> namesInTask = (Set<String>) ReflectionTestUtils.getFieldValue(PurgeTask.class, task, "toPurge");
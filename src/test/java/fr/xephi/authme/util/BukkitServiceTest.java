@@ -23,6 +23,8 @@ public class BukkitServiceTest {
 
     @Mock
     private AuthMe authMe;
+    @Mock
+    private SyncTaskDispatcher syncTaskDispatcher;
 
     /**
      * Checks that {@link BukkitService#getOnlinePlayersIsCollection} is initialized to {@code true} on startup;
@@ -31,7 +33,7 @@ public class BukkitServiceTest {
     @Test
     public void shouldHavePlayerListAsCollectionMethod() {
         // given
-        BukkitService bukkitService = new BukkitService(authMe);
+        BukkitService bukkitService = new BukkitService(authMe, syncTaskDispatcher);
 
         // when
         boolean doesMethodReturnCollection = (Boolean) ReflectionTestUtils
@@ -44,7 +46,7 @@ public class BukkitServiceTest {
     @Test
     public void shouldRetrieveListOfOnlinePlayersFromReflectedMethod() {
         // given
-        BukkitService bukkitService = new BukkitService(authMe);
+        BukkitService bukkitService = new BukkitService(authMe, syncTaskDispatcher);
         ReflectionTestUtils.setField(BukkitService.class, bukkitService, "getOnlinePlayersIsCollection", false);
         ReflectionTestUtils.setField(BukkitService.class, bukkitService, "getOnlinePlayers",
             ReflectionTestUtils.getMethod(BukkitServiceTest.class, "onlinePlayersImpl"));
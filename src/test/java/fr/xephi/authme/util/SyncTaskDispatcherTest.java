@@ -0,0 +1,108 @@
+package fr.xephi.authme.util;
+
+import fr.xephi.authme.AuthMe;
+import fr.xephi.authme.TestHelper;
+import fr.xephi.authme.metrics.Metric;
+import fr.xephi.authme.metrics.MetricsRegistry;
+import fr.xephi.authme.settings.NewSetting;
+import fr.xephi.authme.settings.properties.PluginSettings;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+/**
+ * Test for {@link SyncTaskDispatcher}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class SyncTaskDispatcherTest {
+
+    @Mock
+    private AuthMe plugin;
+    @Mock
+    private BukkitScheduler scheduler;
+    @Mock
+    private NewSetting settings;
+
+    @BeforeClass
+    public static void initLogger() {
+        TestHelper.setupLogger();
+    }
+
+    @Test
+    public void shouldRunQueuedTasksInOneTick() {
+        // given
+        given(settings.getProperty(PluginSettings.SYNC_TASK_BUDGET)).willReturn(50);
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        SyncTaskDispatcher dispatcher = new SyncTaskDispatcher(plugin, scheduler, settings, metricsRegistry);
+        Runnable task1 = mock(Runnable.class);
+        Runnable task2 = mock(Runnable.class);
+        dispatcher.submit(task1);
+        dispatcher.submit(task2);
+
+        // when
+        dispatcher.run();
+
+        // then
+        verify(scheduler, times(1)).runTask(plugin, dispatcher);
+        verify(task1).run();
+        verify(task2).run();
+        assertThat(dispatcher.getBacklog(), equalTo(0));
+        assertThat(metricsRegistry.getHistogram(Metric.SYNC_TASK_DRAIN, SyncTaskDispatcher.COMPLETED).getCount(),
+            equalTo(1L));
+    }
+
+    @Test
+    public void shouldCarryOverTasksExceedingTheBudget() {
+        // given
+        given(settings.getProperty(PluginSettings.SYNC_TASK_BUDGET)).willReturn(0);
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        SyncTaskDispatcher dispatcher = new SyncTaskDispatcher(plugin, scheduler, settings, metricsRegistry);
+        Runnable task1 = mock(Runnable.class);
+        Runnable task2 = mock(Runnable.class);
+        dispatcher.submit(task1);
+        dispatcher.submit(task2);
+
+        // when
+        dispatcher.run();
+
+        // then
+        verify(task1).run();
+        verifyZeroInteractions(task2);
+        assertThat(dispatcher.getBacklog(), equalTo(1));
+        // Scheduled once on submit and once for the carried over task
+        verify(scheduler, times(2)).runTask(plugin, dispatcher);
+        assertThat(metricsRegistry.getHistogram(Metric.SYNC_TASK_DRAIN, SyncTaskDispatcher.CARRIED_OVER).getCount(),
+            equalTo(1L));
+    }
+
+    @Test
+    public void shouldContinueAfterFailingTask() {
+        // given
+        given(settings.getProperty(PluginSettings.SYNC_TASK_BUDGET)).willReturn(50);
+        SyncTaskDispatcher dispatcher = new SyncTaskDispatcher(plugin, scheduler, settings, new MetricsRegistry());
+        Runnable failingTask = mock(Runnable.class);
+        doThrow(IllegalStateException.class).when(failingTask).run();
+        Runnable task = mock(Runnable.class);
+        dispatcher.submit(failingTask);
+        dispatcher.submit(task);
+
+        // when
+        dispatcher.run();
+
+        // then
+        verify(task).run();
+        assertThat(dispatcher.getBacklog(), equalTo(0));
+    }
+}